@@ -0,0 +1,16 @@
+import numpy as np
+
+# Reads the training samples written by the game (utils.SampleSink): res/gamelogs/<game id>/<seed>_<rep>_<mode>[vision<radius>].bin,
+# one file for each radius of core.Game.SAMPLE_RADII.
+# Each row is: player id, action, position fraction, window width, window height, window cells (padded with zeros).
+
+MAGIC = 0x504d5353
+VERSION = 1
+
+
+def read_samples(path):
+    header = np.fromfile(path, dtype='>i4', count=4)
+    if header[0] != MAGIC or header[1] != VERSION:
+        raise ValueError('Not a sample shard of version %d: %s' % (VERSION, path))
+    record_floats = header[2]
+    return np.fromfile(path, dtype='>f4', offset=16).reshape(-1, record_floats)
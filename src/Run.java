@@ -1,4 +1,7 @@
 import core.Game;
+import core.GameJournal;
+import core.SequentialTournament;
+import core.Tournament;
 import players.*;
 import players.mcts.MCTSParams;
 import players.mcts.MCTSPlayer;
@@ -7,6 +10,7 @@ import players.rhea.utils.Constants;
 import players.rhea.utils.RHEAParams;
 import utils.*;
 
+import java.io.File;
 import java.util.*;
 
 import static utils.Types.VISUALS;
@@ -27,6 +31,12 @@ public class Run {
         System.out.println("\t\t 3 SimplePlayer");
         System.out.println("\t\t 4 RHEA 200 itereations, shift buffer, pop size 1, random init, length: 12");
         System.out.println("\t\t 5 MCTS 200 iterations, length: 12");
+        System.out.println("\t [arg index = 8] (Optional) Number of games played in parallel. Defaults to 1.");
+        System.out.println("\t [arg index = 9] (Optional) Confidence (e.g. 0.95). Stops once it is known whether agent 0");
+        System.out.println("\t\t wins more or less than its fair share (1/4 in FFA, 1/2 in TEAM); N is then the maximum.");
+        System.out.println("\t [arg index = 10] (Optional) Journal file. Finished games are added to it, and not played again");
+        System.out.println("\t\t when run with the same arguments and journal. Random seeds are drawn from the journal's seed.");
+        System.out.println("\t\t Not allowed with a confidence: those experiments are played from the start every time.");
     }
 
     public static void main(String[] args) {
@@ -54,129 +64,170 @@ public class Run {
 //        args = new String[]{"0", "5", "10", "-1", "5", "2", "2", "2"};
 //        args = new String[]{"0", "5", "10", "2", "5", "2", "2", "2"};
 
-        if(args.length != 8) {
+        if(args.length < 8 || args.length > 11) {
             printHelp();
             return;
         }
 
         try {
+            runExperiment(args);
+        } catch(Exception e) {
+            e.printStackTrace();
+            printHelp();
+        }
+    }
 
-            Random rnd = new Random();
-
-            // Create players
-            ArrayList<Player> players = new ArrayList<>();
-            int playerID = Types.TILETYPE.AGENT0.getKey();
-            int boardSize = Types.BOARD_SIZE;
-
-            Types.GAME_MODE gMode = Types.GAME_MODE.FFA;
-            if(Integer.parseInt(args[0]) == 1)
-                gMode = Types.GAME_MODE.TEAM;
-
-            int S = Integer.parseInt(args[1]);
-            int N = Integer.parseInt(args[2]);
-            Types.DEFAULT_VISION_RANGE = Integer.parseInt(args[3]);
-
-            long seeds[];
-
-            if (S == -1)
-            {
-                //Special case, these seeds are fixed for the experiments in the paper:
-                seeds = new long[] {93988, 19067, 64416, 83884, 55636, 27599, 44350, 87872, 40815,
-                        11772, 58367, 17546, 75375, 75772, 58237, 30464, 27180, 23643, 67054, 19508};
-                for (int i=0; i < N; i++){
-                    seeds[i] = rnd.nextInt(100000);
-                }
-
-            }else
-            {
-                if(S <= 0)
-                    S = 1;
-
-                //Otherwise, all seeds are random
-                seeds = new long[S];
-                for(int i = 0; i < S; i++)
-                    seeds[i] = rnd.nextInt(100000);
-            }
+    /**
+     * Runs the experiment described by the arguments (see printHelp()), with the default settings, and prints its
+     * results.
+     * @param args - arguments of the experiment, 8 to 11 of them.
+     * @throws Exception if the arguments are not valid or the journal can't be used.
+     */
+    static void runExperiment(String[] args) throws Exception {
+        runExperiment(args, GameSettings.defaults());
+    }
+
+    /**
+     * Runs the experiment described by the arguments (see printHelp()), and prints its results. The static defaults
+     * of Types are left untouched, so experiments run one after another don't change each other's rules.
+     * @param args - arguments of the experiment, 8 to 11 of them.
+     * @param settings - rules of the games. The vision range is taken from the arguments.
+     * @throws Exception if the arguments are not valid or the journal can't be used.
+     */
+    static void runExperiment(String[] args, GameSettings settings) throws Exception {
+        String gameIdStr = "";
+        for(int i = 0; i <= 7; ++i) {
+            gameIdStr += args[i];
+            if(i != 7)
+                gameIdStr+="-";
+        }
 
-            long seed = 0;
-
-            String[] playerStr = new String[4];
-
-            for(int i = 4; i <= 7; ++i) {
-                int agentType = Integer.parseInt(args[i]);
-                Player p = null;
-
-
-                switch(agentType) {
-                    case 0:
-                        p = new DoNothingPlayer(playerID++);
-                        playerStr[i-4] = "DoNothing";
-                        break;
-                    case 1:
-                        p = new RandomPlayer(seed, playerID++);
-                        playerStr[i-4] = "Random";
-                        break;
-                    case 2:
-                        p = new OSLAPlayer(seed, playerID++);
-                        playerStr[i-4] = "OSLA";
-                        break;
-                    case 3:
-                        p = new SimplePlayer(seed, playerID++);
-                        playerStr[i-4] = "RuleBased";
-                        break;
-                    case 4:
-                        RHEAParams rheaParams = new RHEAParams();
-                        rheaParams.budget_type = Constants.ITERATION_BUDGET;
-                        rheaParams.iteration_budget = 200;
-                        rheaParams.individual_length = 12;
-                        rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
-
-                        p = new RHEAPlayer(seed, playerID++, rheaParams);
-                        playerStr[i-4] = "RHEA";
-                        break;
-                    case 5:
-                        MCTSParams mctsParams = new MCTSParams();
-                        mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
-                        mctsParams.num_iterations = 200;
-                        mctsParams.rollout_depth = 12;
-
-                        mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
-                        p = new MCTSPlayer(seed, playerID++, mctsParams);
-                        playerStr[i-4] = "MCTS";
-                        break;
-                    default:
-                        System.out.println("WARNING: Invalid agent ID: " + agentType );
-                }
-
-                players.add(p);
+        int nWorkers = args.length > 8 ? Integer.parseInt(args[8]) : 1;
+        double confidence = args.length > 9 ? Double.parseDouble(args[9]) : 0;
+
+        // Games played before are kept in the journal, with the seed all random choices are drawn from.
+        // Experiments stopped by confidence play their games in rounds decided as they go, and are not journaled.
+        GameJournal journal = null;
+        long runSeed = System.currentTimeMillis();
+        if (args.length > 10) {
+            if (confidence > 0)
+                throw new IllegalArgumentException("Experiments with a confidence can't be journaled, they are " +
+                        "played from the start every time");
+            journal = new GameJournal(new File(args[10]), gameIdStr);
+            runSeed = journal.startPlayerSeed(runSeed);
+        }
+        Random rnd = new Random(runSeed);
+
+        // Create players
+        ArrayList<Player> players = new ArrayList<>();
+        int playerID = Types.TILETYPE.AGENT0.getKey();
+        int boardSize = Types.BOARD_SIZE;
+
+        Types.GAME_MODE gMode = Types.GAME_MODE.FFA;
+        if(Integer.parseInt(args[0]) == 1)
+            gMode = Types.GAME_MODE.TEAM;
+
+        int S = Integer.parseInt(args[1]);
+        int N = Integer.parseInt(args[2]);
+        settings = settings.withVisionRange(Integer.parseInt(args[3]));
+        long seeds[];
+
+        if (S == -1)
+        {
+            //Special case, these seeds are fixed for the experiments in the paper:
+            seeds = new long[] {93988, 19067, 64416, 83884, 55636, 27599, 44350, 87872, 40815,
+                    11772, 58367, 17546, 75375, 75772, 58237, 30464, 27180, 23643, 67054, 19508};
+            for (int i=0; i < N; i++){
+                seeds[i] = rnd.nextInt(100000);
             }
 
-            String gameIdStr = "";
-            for(int i = 0; i <= 7; ++i) {
-                gameIdStr += args[i];
-                if(i != 7)
-                    gameIdStr+="-";
+        }else
+        {
+            if(S <= 0)
+                S = 1;
+
+            //Otherwise, all seeds are random
+            seeds = new long[S];
+            for(int i = 0; i < S; i++)
+                seeds[i] = rnd.nextInt(100000);
+        }
+
+        long seed = 0;
+
+        String[] playerStr = new String[4];
+
+        for(int i = 4; i <= 7; ++i) {
+            int agentType = Integer.parseInt(args[i]);
+            Player p = null;
+
+
+            switch(agentType) {
+                case 0:
+                    p = new DoNothingPlayer(playerID++);
+                    playerStr[i-4] = "DoNothing";
+                    break;
+                case 1:
+                    p = new RandomPlayer(seed, playerID++);
+                    playerStr[i-4] = "Random";
+                    break;
+                case 2:
+                    p = new OSLAPlayer(seed, playerID++);
+                    playerStr[i-4] = "OSLA";
+                    break;
+                case 3:
+                    p = new SimplePlayer(seed, playerID++);
+                    playerStr[i-4] = "RuleBased";
+                    break;
+                case 4:
+                    RHEAParams rheaParams = new RHEAParams();
+                    rheaParams.budget_type = Constants.ITERATION_BUDGET;
+                    rheaParams.iteration_budget = 200;
+                    rheaParams.individual_length = 12;
+                    rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
+
+                    p = new RHEAPlayer(seed, playerID++, rheaParams);
+                    playerStr[i-4] = "RHEA";
+                    break;
+                case 5:
+                    MCTSParams mctsParams = new MCTSParams();
+                    mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
+                    mctsParams.num_iterations = 200;
+                    mctsParams.rollout_depth = 12;
+
+                    mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
+                    p = new MCTSPlayer(seed, playerID++, mctsParams);
+                    playerStr[i-4] = "MCTS";
+                    break;
+                default:
+                    System.out.println("WARNING: Invalid agent ID: " + agentType );
             }
 
-            Game game = new Game(seeds[0], boardSize, gMode, gameIdStr);
+            players.add(p);
+        }
 
-            // Make sure we have exactly NUM_PLAYERS players
-            assert players.size() == Types.NUM_PLAYERS;
-            game.setPlayers(players);
+        Game game = new Game(seeds[0], boardSize, gMode, gameIdStr, settings);
 
-            System.out.print(gameIdStr + " [");
-            for(int i = 0; i < playerStr.length; ++i) {
-                System.out.print(playerStr[i]);
-                if(i != playerStr.length-1)
-                    System.out.print(',');
+        // Make sure we have exactly NUM_PLAYERS players
+        assert players.size() == Types.NUM_PLAYERS;
+        game.setPlayers(players);
 
-            }
-            System.out.println("]");
-            System.out.println("seeds: "+ seeds.length);
-            runGames(game, seeds, N, false);
-        } catch(Exception e) {
-            e.printStackTrace();
-            printHelp();
+        System.out.print(gameIdStr + " [");
+        for(int i = 0; i < playerStr.length; ++i) {
+            System.out.print(playerStr[i]);
+            if(i != playerStr.length-1)
+                System.out.print(',');
+
+        }
+        System.out.println("]");
+        System.out.println("seeds: "+ seeds.length);
+        try {
+            if (confidence > 0)
+                runSequentialGames(game, seeds, N, false, nWorkers, confidence);
+            else
+                runGames(game, seeds, N, false, nWorkers, journal);
+        } finally {
+            if (journal != null)
+                journal.close();
         }
     }
 
@@ -203,75 +254,64 @@ public class Run {
     }
 
     public static void runGames(Game g, long seeds[], int repetitions, boolean useSeparateThreads){
-        int numPlayers = g.getPlayers().size();
-        int[] winCount = new int[numPlayers];
-        int[] tieCount = new int[numPlayers];
-        int[] lossCount = new int[numPlayers];
-
-        int[] overtimeCount = new int[numPlayers];
-
-        int numSeeds = seeds.length;
-        int totalNgames = numSeeds * repetitions;
-
-        for(int s = 0; s<numSeeds; s++) {
-            long seed = seeds[s];
-
-            for (int i = 0; i < repetitions; i++) {
-                long playerSeed = System.currentTimeMillis();
-                System.out.println("seeds.length: " + numSeeds);
-                System.out.println("seeds" + seed);
-                g.reset(seeds[s]);
-
-                System.out.println( playerSeed + ", " + seed + ", " + (s*repetitions + i) + "/" + totalNgames + ", ");
-                //s++;
-                //seed = seeds[s];
-
-
-                EventsStatistics.REP = i;
-                GameLog.REP = i;
-
-                // Set random seed for players and reset them
-                ArrayList<Player> players = g.getPlayers();
-                for (int p = 0; p < g.nPlayers(); p++) {
-                    players.get(p).reset(playerSeed, p);
-                }
-                    System.out.println("Working Directory = " +
-                            System.getProperty("user.dir"));
-
-                Types.RESULT[] results = g.run(useSeparateThreads);
-
-
-                for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
-                    switch (results[pIdx]) {
-                        case WIN:
-                            winCount[pIdx]++;
-                            break;
-                        case TIE:
-                            tieCount[pIdx]++;
-                            break;
-                        case LOSS:
-                            lossCount[pIdx]++;
-                            break;
-                    }
-                }
-
-                int[] overtimes = g.getPlayerOvertimes();
-                for(int j = 0; j < overtimes.length; ++j)
-                    overtimeCount[j] += overtimes[j];
-            }
-        }
+        runGames(g, seeds, repetitions, useSeparateThreads, 1);
+    }
+
+    /**
+     * Runs all seeds the given number of times and prints the results of each player.
+     * @param g - game to run, with its players set.
+     * @param seeds - level generation seeds.
+     * @param repetitions - games played with each seed.
+     * @param useSeparateThreads - if separate threads should be used for the agents or not.
+     * @param nWorkers - number of games played at the same time, each with its own copy of the game and players.
+     */
+    public static void runGames(Game g, long seeds[], int repetitions, boolean useSeparateThreads, int nWorkers){
+        runGames(g, seeds, repetitions, useSeparateThreads, nWorkers, null);
+    }
+
+    /**
+     * Runs all seeds the given number of times, skipping the games already in the journal, and prints the results of
+     * each player.
+     * @param g - game to run, with its players set.
+     * @param seeds - level generation seeds.
+     * @param repetitions - games played with each seed.
+     * @param useSeparateThreads - if separate threads should be used for the agents or not.
+     * @param nWorkers - number of games played at the same time, each with its own copy of the game and players.
+     * @param journal - journal the games are added to, null to play all games without one.
+     */
+    public static void runGames(Game g, long seeds[], int repetitions, boolean useSeparateThreads, int nWorkers,
+                                GameJournal journal){
+        Tournament tournament = new Tournament(g, seeds, repetitions, useSeparateThreads);
+        tournament.setWorkers(nWorkers);
+        tournament.setJournal(journal);
+        tournament.run();
 
         //Done, show stats
-        System.out.println("N \tWin \tTie \tLoss \tPlayer (overtime average)");
-        for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
-            String player = g.getPlayers().get(pIdx).getClass().toString().replaceFirst("class ", "");
+        tournament.printSummary();
+    }
 
-            double winPerc = winCount[pIdx] * 100.0 / (double)totalNgames;
-            double tiePerc = tieCount[pIdx] * 100.0 / (double)totalNgames;
-            double lossPerc = lossCount[pIdx] * 100.0 / (double)totalNgames;
-            double overtimesAvg = overtimeCount[pIdx] / (double)totalNgames;
+    /**
+     * Plays the seeds until it is known, at the given confidence, whether player 0 wins more or less than its fair
+     * share of the games (see SequentialTournament), and prints the result. Games are not journaled, so a run
+     * stopped early can't be resumed.
+     * @param g - game to run, with its players set.
+     * @param seeds - level generation seeds, played in order.
+     * @param repetitions - maximum number of games played with each seed.
+     * @param useSeparateThreads - if separate threads should be used for the agents or not.
+     * @param nWorkers - number of games played at the same time, each with its own copy of the game and players.
+     * @param confidence - confidence of the decision, e.g. 0.95.
+     */
+    public static void runSequentialGames(Game g, long seeds[], int repetitions, boolean useSeparateThreads,
+                                          int nWorkers, double confidence){
+        SequentialTournament tournament = new SequentialTournament(seeds);
+        tournament.setStopRule(SequentialTournament.STOP_RULE.WILSON, confidence);
+        tournament.setThreshold(g.getGameMode() == Types.GAME_MODE.FFA ? 0.25 : 0.5, 0.05);
+        tournament.setBudget(10, seeds.length * repetitions, seeds.length * repetitions);
+        tournament.setWorkers(nWorkers, useSeparateThreads);
+        tournament.addMatchup(g.getGameIdStr(), g, 0);
+        tournament.run();
 
-            System.out.println(totalNgames + "\t" + winPerc + "%\t" + tiePerc + "%\t" + lossPerc + "%\t" + player + " (" + overtimesAvg + ")" );
-        }
+        //Done, show stats
+        tournament.printSummary();
     }
 }
@@ -0,0 +1,143 @@
+import utils.GameSettings;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Runs experiments one after another on the same JVM, so only the first one pays for starting it, loading the
+ * classes and compiling the code (early ticks of a cold JVM are slower, and count more overtimes).
+ *
+ * Watches a directory for job files, NAME.job, each a line with the arguments of Run (see Run.printHelp()), and runs
+ * them in name order:
+ *   - NAME.job is renamed to NAME.running while it runs, and to NAME.done or NAME.failed when it ends.
+ *   - Everything the experiment prints, including its results, is written to NAME.out.
+ *   - Unless the job gives its own, games are journaled to NAME.journal, so a job left running when the daemon
+ *     stopped is resumed when the daemon starts again. Jobs with a confidence (see Run.printHelp()) are not
+ *     journaled, and are played again from the start.
+ * The daemon exits once the current job ends if a file named "stop" is in the directory, and removes it.
+ *
+ * Every job is played with the settings the daemon started with (see GameSettings.defaults()), so a job doesn't
+ * change the rules of the jobs after it.
+ */
+public class RunDaemon {
+
+    private static final String JOB = ".job", RUNNING = ".running", DONE = ".done", FAILED = ".failed";
+    private static final String OUT = ".out", JOURNAL = ".journal", STOP = "stop";
+
+    private static void printHelp()
+    {
+        System.out.println("Usage: java RunDaemon [args]");
+        System.out.println("\t [arg index = 0] Directory of the job files (NAME.job, with the arguments of Run).");
+        System.out.println("\t [arg index = 1] (Optional) Milliseconds between looks for new jobs. Defaults to 1000.");
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            printHelp();
+            return;
+        }
+        File dir = new File(args[0]);
+        long pollInterval = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        if (!dir.isDirectory()) {
+            System.out.println("Not a directory: " + dir);
+            printHelp();
+            return;
+        }
+
+        // Jobs running when the daemon last stopped are run again, resuming from their journals.
+        for (File running : list(dir, RUNNING)) {
+            running.renameTo(withExtension(running, RUNNING, JOB));
+        }
+
+        GameSettings settings = GameSettings.defaults();
+        File stop = new File(dir, STOP);
+        System.out.println("Waiting for jobs in " + dir.getAbsolutePath());
+        while (!stop.exists()) {
+            File[] jobs = list(dir, JOB);
+            if (jobs.length > 0) {
+                runJob(jobs[0], settings);
+                continue;
+            }
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        stop.delete();
+    }
+
+    /**
+     * @return files of the directory with the given extension, in name order.
+     */
+    private static File[] list(File dir, String extension) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(extension));
+        if (files == null) return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static File withExtension(File file, String extension, String newExtension) {
+        String name = file.getName();
+        return new File(file.getParentFile(), name.substring(0, name.length() - extension.length()) + newExtension);
+    }
+
+    /**
+     * Runs one job, with its output written to its .out file.
+     * @param job - job file, NAME.job.
+     * @param settings - rules of the games of the job.
+     */
+    static void runJob(File job, GameSettings settings) {
+        File running = withExtension(job, JOB, RUNNING);
+        if (!job.renameTo(running)) {
+            // Taken by another daemon watching the same directory.
+            return;
+        }
+        System.out.println("Running " + job.getName());
+
+        boolean done = false;
+        PrintStream stdout = System.out, stderr = System.err;
+        try (PrintStream out = new PrintStream(new FileOutputStream(withExtension(job, JOB, OUT), true), true)) {
+            System.setOut(out);
+            System.setErr(out);
+            try {
+                String spec = new String(Files.readAllBytes(running.toPath()), StandardCharsets.UTF_8).trim();
+                String[] args = spec.isEmpty() ? new String[0] : spec.split("\\s+");
+                if (args.length < 8 || args.length > 11) {
+                    System.out.println("Expected 8 to 11 arguments of Run, not " + args.length + ": " + spec);
+                } else {
+                    Run.runExperiment(withJournal(args, withExtension(job, JOB, JOURNAL)), settings);
+                    done = true;
+                }
+            } catch (Exception | Error e) {
+                e.printStackTrace();
+            } finally {
+                System.setOut(stdout);
+                System.setErr(stderr);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        running.renameTo(withExtension(job, JOB, done ? DONE : FAILED));
+        System.out.println((done ? "Done " : "Failed ") + job.getName());
+    }
+
+    /**
+     * @return the arguments of Run, with the given journal if they don't have one (and the defaults of the optional
+     * arguments before it), unless they have a confidence.
+     */
+    private static String[] withJournal(String[] args, File journal) {
+        if (args.length > 10) return args;
+        if (args.length > 9 && Double.parseDouble(args[9]) > 0) return args;
+        String[] defaults = {"1", "0"};  // Workers and confidence
+        String[] full = Arrays.copyOf(args, 11);
+        for (int i = args.length; i < 10; i++) {
+            full[i] = defaults[i - 8];
+        }
+        full[10] = journal.getPath();
+        return full;
+    }
+}
@@ -0,0 +1,60 @@
+import org.junit.jupiter.api.Test;
+import utils.GameSettings;
+import utils.Types;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunDaemonTest {
+
+    /**
+     * A job run after another one gives the same games as the same job run on its own, and jobs don't change the
+     * static defaults.
+     */
+    @Test
+    void jobsDontLeakIntoEachOther() throws IOException {
+        int visionRange = Types.DEFAULT_VISION_RANGE;
+        File alone = Files.createTempDirectory("daemon").toFile();
+        File after = Files.createTempDirectory("daemon").toFile();
+        try {
+            List<String> expected = runJob(alone, "second", "0 2 1 2 1 2 3 3");
+
+            runJob(after, "first", "0 2 1 -1 3 2 1 3");
+            assertEquals(visionRange, Types.DEFAULT_VISION_RANGE);
+            List<String> actual = runJob(after, "second", "0 2 1 2 1 2 3 3");
+
+            assertEquals(1 + 2, expected.size());
+            assertEquals(expected, actual);
+            assertEquals(visionRange, Types.DEFAULT_VISION_RANGE);
+        } finally {
+            delete(alone);
+            delete(after);
+        }
+    }
+
+    /**
+     * Runs a job, with its players seeded by its journal, and returns the journal.
+     */
+    private static List<String> runJob(File dir, String name, String spec) throws IOException {
+        File job = new File(dir, name + ".job");
+        File journal = new File(dir, name + ".journal");
+        Files.write(job.toPath(), spec.getBytes(StandardCharsets.UTF_8));
+        Files.write(journal.toPath(), "# playerSeed\t42\n".getBytes(StandardCharsets.UTF_8));
+        RunDaemon.runJob(job, GameSettings.defaults());
+        assertTrue(new File(dir, name + ".done").exists(), name + " failed");
+        return Files.readAllLines(journal.toPath());
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) delete(f);
+        }
+        file.delete();
+    }
+}
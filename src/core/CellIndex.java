@@ -0,0 +1,104 @@
+package core;
+
+import objects.GameObject;
+import utils.Vector2d;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of game objects by the cell of the board they are on, so the objects on a cell can be found without going
+ * through the whole list. Objects are kept in slots, linked per cell: first() gives the first slot of a cell and
+ * next() the following one. Slots of a cell follow the order of the indexed list.
+ *
+ * The index is a snapshot of the positions when it was built, it must be built again after objects move.
+ */
+final class CellIndex {
+
+    // Value of first() and next() when there are no more objects on the cell.
+    static final int NONE = -1;
+
+    private final int size;
+    private final int[] head;  // First slot of each cell, indexed by y * size + x
+
+    // Slots: object, its index in the list, cell it is on and next slot on the same cell.
+    private GameObject[] objects = new GameObject[16];
+    private int[] indices = new int[16];
+    private int[] cells = new int[16];
+    private int[] next = new int[16];
+    private int nSlots;
+
+    CellIndex(int size) {
+        this.size = size;
+        head = new int[size * size];
+        Arrays.fill(head, NONE);
+    }
+
+    /**
+     * Indexes the objects of the given list by their position, replacing the objects indexed before. Objects
+     * without a position (not observed) are left out.
+     * @param list - objects to index.
+     */
+    void build(List<GameObject> list) {
+        clear();
+        if (objects.length < list.size()) {
+            int capacity = Math.max(list.size(), objects.length * 2);
+            objects = new GameObject[capacity];
+            indices = new int[capacity];
+            cells = new int[capacity];
+            next = new int[capacity];
+        }
+        // Objects are pushed at the head of their cell, so going backwards keeps the order of the list.
+        for (int i = list.size() - 1; i >= 0; i--) {
+            GameObject go = list.get(i);
+            Vector2d position = go.getPosition();
+            if (position == null) continue;
+            int cell = position.y * size + position.x;
+            objects[nSlots] = go;
+            indices[nSlots] = i;
+            cells[nSlots] = cell;
+            next[nSlots] = head[cell];
+            head[cell] = nSlots;
+            nSlots++;
+        }
+    }
+
+    /**
+     * Removes all objects from the index. Only the cells used are cleared.
+     */
+    void clear() {
+        for (int s = 0; s < nSlots; s++) {
+            head[cells[s]] = NONE;
+            objects[s] = null;
+        }
+        nSlots = 0;
+    }
+
+    /**
+     * @return first slot on the given cell, NONE if there are no objects on it.
+     */
+    int first(int x, int y) {
+        return head[y * size + x];
+    }
+
+    /**
+     * @return slot following the given one on the same cell, NONE if it is the last one.
+     */
+    int next(int slot) {
+        return next[slot];
+    }
+
+    /**
+     * @return object in the given slot.
+     */
+    GameObject get(int slot) {
+        return objects[slot];
+    }
+
+    /**
+     * @return index in the indexed list of the object in the given slot.
+     */
+    int index(int slot) {
+        return indices[slot];
+    }
+}
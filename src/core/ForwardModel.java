@@ -5,6 +5,7 @@ import objects.Bomb;
 import objects.Flame;
 import objects.GameObject;
 import utils.EventsStatistics;
+import utils.GameSettings;
 import utils.LevelGenerator;
 import utils.Types;
 import utils.Vector2d;
@@ -44,6 +45,9 @@ public class ForwardModel {
     // Game mode being played
     private Types.GAME_MODE game_mode;
 
+    // Rules of the game
+    private GameSettings settings;
+
     // Indicates if this model is the true model of the game. False if it is in a simulation of the agents.
     private boolean trueModel = false;
 
@@ -54,14 +58,67 @@ public class ForwardModel {
     private EventsStatistics es;
     private boolean[] isAgentStuck;
 
+    // Scratch buffers reused on every call to next(), so rolling the model forward produces no garbage.
+    // They are not part of the state of the game, and are only created when the model is first rolled forward.
+    private int[][] flameOccupancy;     // Number of flames on each position this tick
+    private int[][] positionCount;      // Number of objects that want to move to each position
+    private CellIndex bombIndex;        // Bombs, alive agents and flames by the cell they are on, built when needed
+    private CellIndex agentIndex;
+    private CellIndex flameIndex;
+    private int[] explosionKeys;        // Explosion worklist (see handleBombExplosions()): key of each bomb,
+    private int[] explosionQueue;       // and binary heap of keys
+    private int explosionQueueSize;
+    private ArrayList<GameObject> deadFlames;
+    private ArrayList<GameObject> deadBombs;
+    private ArrayList<GameObject> newFlames;
+    private ArrayList<GameObject> deadAgentsThisTick;
+    private ArrayList<GameObject> collapsedAgents;
+    private Vector2d nextPosition;
+
+    // Bombs and flames that died, reused for new ones instead of allocating them (see addBomb() and Bomb.explode()).
+    // Emptied when ticks are undone, as that may bring them back to life. Null until the model is rolled forward.
+    private ArrayList<GameObject> spareBombs;
+    private ArrayList<GameObject> spareFlames;
+
+    // Journal of the changes made by next(), so they can be undone (see mark()). Null if not recording.
+    private UndoJournal journal;
+
+    // Copy-on-write of the grids (board, power-ups, bomb blast strength and life). Rows flagged here are shared with
+    // full copies of this model (see reduce()), and are copied before being written to. Null if no rows are shared.
+    private boolean[] sharedRows;
+
+    // True if the bomb grids may not match the bombs (after bombs are added or removed directly, or when parsed
+    // from an observation). Copies then compute them again from the bombs instead of sharing them.
+    private boolean bombGridsStale = true;
+
+    // Zobrist hash of the board and power-ups (see StateHash), kept up to date by setTile() and setPowerUp() once it
+    // has been computed. Objects are added to it when the hash is requested, see hash().
+    private long gridHash;
+    private boolean gridHashValid = false;
+
+    // Key of bombs that already exploded in the explosion worklist.
+    private static final int EXPLODED = Integer.MAX_VALUE;
+
+    // Collision types for kicked bombs, and types that can't be overwritten when an object moves away.
+    private static final ArrayList<Types.TILETYPE> KICK_COLLISIONS = new ArrayList<>();
+    private static final HashSet<Types.TILETYPE> POWER_UP_TYPES = Types.TILETYPE.getPowerUpTypes();
+    private static final HashSet<Types.TILETYPE> AGENT_TYPES = Types.TILETYPE.getAgentTypes();
+    static {
+        KICK_COLLISIONS.add(Types.TILETYPE.RIGID);
+        KICK_COLLISIONS.add(Types.TILETYPE.WOOD);
+        KICK_COLLISIONS.addAll(AGENT_TYPES);
+    }
+
     /**
      * Creates a forward model object.
      * @param size Size of the board.
      * @param game_mode game mode being played.
+     * @param settings rules of the game.
      */
-    ForwardModel(int size, Types.GAME_MODE game_mode) {
+    ForwardModel(int size, Types.GAME_MODE game_mode, GameSettings settings) {
         this.size = size;
         this.game_mode = game_mode;
+        this.settings = settings;
     }
 
     /**
@@ -69,10 +126,12 @@ public class ForwardModel {
      * @param seed Random seed
      * @param size Size of board
      * @param game_mode Mode of game
+     * @param settings rules of the game.
      */
-    ForwardModel(long seed, int size, Types.GAME_MODE game_mode) {
+    ForwardModel(long seed, int size, Types.GAME_MODE game_mode, GameSettings settings) {
         this.size = size;
         this.game_mode = game_mode;
+        this.settings = settings;
         init(seed, size, game_mode, null, null);
     }
 
@@ -85,6 +144,7 @@ public class ForwardModel {
     ForwardModel(long seed, int[][] intBoard, Types.GAME_MODE game_mode) {
         size = intBoard.length;
         this.game_mode = game_mode;
+        this.settings = GameSettings.defaults();
         init(seed, intBoard.length, game_mode, intBoard, null);
     }
 
@@ -95,12 +155,15 @@ public class ForwardModel {
      * @param bombLife Bomb life array
      * @param alive Indices of players alive
      * @param game_mode Mode of game
+     * @param settings rules of the game
      */
-    ForwardModel(int[][] intBoard, int[][] bombBlastStrength, int[][] bombLife, int[] alive, Types.GAME_MODE game_mode, int playerIdx){
+    ForwardModel(int[][] intBoard, int[][] bombBlastStrength, int[][] bombLife, int[] alive, Types.GAME_MODE game_mode,
+                 int playerIdx, GameSettings settings){
 
         // this is used for communicating with the python client
         this.size = intBoard.length;
         this.game_mode = game_mode;
+        this.settings = settings;
         this.board = new TILETYPE[size][size];
         init(10, intBoard.length, game_mode, intBoard, alive);
         this.bombBlastStrength = bombBlastStrength;
@@ -131,7 +194,7 @@ public class ForwardModel {
 
                 // If not player observing, reset properties to default
                 if (i != playerIdx) {
-                    ((Avatar) a).reset();
+                    ((Avatar) a).reset(settings);
                 }
             }
         }
@@ -144,7 +207,7 @@ public class ForwardModel {
                 if (type == Types.TILETYPE.BOMB){
                     addBomb(x, y, bombBlastStrength[y][x], bombLife[y][x], -1, true);
                 } else if (type == Types.TILETYPE.FLAMES){
-                    addFlame(x, y, FLAME_LIFE);
+                    addFlame(x, y, settings.getFlameLife());
                 } else if (agentTypes.contains(type)){
                     addAgent(x, y, type.getKey()-10);
                 }
@@ -157,6 +220,26 @@ public class ForwardModel {
         }
     }
 
+    /**
+     * Optional forward model constructor, assembles a model from already built components.
+     * Used to unpack a PackedForwardModel into game objects.
+     */
+    ForwardModel(int size, Types.GAME_MODE game_mode, GameSettings settings, Types.TILETYPE[][] board,
+                 Types.TILETYPE[][] powerups, int[][] bombBlastStrength, int[][] bombLife, GameObject[] agents,
+                 ArrayList<GameObject> aliveAgents, ArrayList<GameObject> bombs, ArrayList<GameObject> flames) {
+        this.size = size;
+        this.game_mode = game_mode;
+        this.settings = settings;
+        this.board = board;
+        this.powerups = powerups;
+        this.bombBlastStrength = bombBlastStrength;
+        this.bombLife = bombLife;
+        this.agents = agents;
+        this.aliveAgents = aliveAgents;
+        this.bombs = bombs;
+        this.flames = flames;
+    }
+
     /**
      * Call this method to indicate that the model used is the true model of the game.
      */
@@ -167,9 +250,9 @@ public class ForwardModel {
     /**
      * Executes "saveToTextFile" method of EventsStatistics class, only works for the true model.
      */
-    void saveEventsStatistics(String gameIdStr, long seed) {
+    void saveEventsStatistics(String gameIdStr, long seed, int rep) {
         if (trueModel && LOGGING_STATISTICS && es != null)
-            es.saveToTextFile(gameIdStr, seed);
+            es.saveToTextFile(gameIdStr, seed, rep);
     }
 
     /**
@@ -178,6 +261,9 @@ public class ForwardModel {
      * Generates the initial board of the game.
      */
     void init(long seed, int size, Types.GAME_MODE gameMode, int[][] intBoard, int[] alive) {
+        sharedRows = null;
+        bombGridsStale = true;
+        gridHashValid = false;
         flames = new ArrayList<>();
         bombs = new ArrayList<>();
 
@@ -196,7 +282,7 @@ public class ForwardModel {
         HashSet<Types.TILETYPE> agentTypes = Types.TILETYPE.getAgentTypes();
         agents = new GameObject[agentTypes.size()];
         for (Types.TILETYPE type : agentTypes) {
-            agents[type.getKey() - Types.TILETYPE.AGENT0.getKey()] = new Avatar(type.getKey(), gameMode);
+            agents[type.getKey() - Types.TILETYPE.AGENT0.getKey()] = new Avatar(type.getKey(), gameMode, settings);
         }
 
         for (GameObject agent : agents){
@@ -244,13 +330,28 @@ public class ForwardModel {
     ArrayList<GameObject> getAliveAgents() {
         return aliveAgents;
     }
+    Types.TILETYPE[][] getPowerups() {
+        return powerups;
+    }
+    ArrayList<GameObject> getBombs() {
+        return bombs;
+    }
+    ArrayList<GameObject> getFlames() {
+        return flames;
+    }
+    Types.GAME_MODE getGameMode() {
+        return game_mode;
+    }
+    GameSettings getSettings() {
+        return settings;
+    }
 
     /**
      * Creates a copy of this model
      * @return a deep copy of this model
      */
     ForwardModel copy(int playerIdx) {
-        ForwardModel copy = new ForwardModel(size, game_mode);
+        ForwardModel copy = new ForwardModel(size, game_mode, settings);
         copy.trueModel = false;  // This is a copy, not the true model
         reduce(copy, playerIdx);
         return copy;
@@ -267,6 +368,12 @@ public class ForwardModel {
         if (VERBOSE_FM_DEBUG && trueModel) {
             System.out.println();
         }
+        if (flameOccupancy == null) {
+            initScratchBuffers();
+        }
+        if (journal != null) {
+            journal.beginTick();
+        }
 
         // 1. Put actions into effect
         translatePlayerActions(playerActions);
@@ -280,8 +387,9 @@ public class ForwardModel {
         }
 
         // 2. Tick the flames
-        ArrayList<GameObject> deadFlames = new ArrayList<>();
-        for (GameObject f : flames) {
+        deadFlames.clear();
+        for (int i = 0; i < flames.size(); i++) {
+            GameObject f = flames.get(i);
             f.tick();
             if (f.getLife() == 0) {  // Flame is dead, remove it from the list
                 deadFlames.add(f);
@@ -290,34 +398,38 @@ public class ForwardModel {
 
         // 3. Agents already have desired positions set from GameState call according to their chosen actions
         // 4. Tick bombs, they set their desired position in the tick() method as well as their life. They also
-        for (GameObject b : bombs) {
+        for (int i = 0; i < bombs.size(); i++) {
+            GameObject b = bombs.get(i);
             b.tick();
 
             // Wrap around board size, don't let bombs outside of game area, check collisions with walls.
             if (!setDesiredCoordinate(b, b.getDesiredCoordinate(), board))
-                ((Bomb)b).setVelocity(new Vector2d());
+                ((Bomb)b).setVelocity(0, 0);
         }
 
         // 5. Position swap:
         //      agent <-> agent. Bounce back both.
         //      bomb <-> bomb. Bounce back both.
         //      bomb <-> agent. Bomb only bounce back.
-        checkPositionSwap(aliveAgents, aliveAgents, board, false, VERBOSE_FM_DEBUG && trueModel);
-        checkPositionSwap(bombs, bombs, board, false, VERBOSE_FM_DEBUG && trueModel);
-        checkPositionSwap(aliveAgents, bombs, board, true, VERBOSE_FM_DEBUG && trueModel);
+        agentIndex.build(aliveAgents);
+        bombIndex.build(bombs);
+        checkPositionSwap(aliveAgents, agentIndex, false, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionSwap(bombs, bombIndex, false, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionSwap(aliveAgents, bombIndex, true, VERBOSE_FM_DEBUG && trueModel);
 
         // 6. If >= 2 agents or >= 2 bombs on same space, bounce both back.
-        checkPositionOverlap(aliveAgents, board, VERBOSE_FM_DEBUG && trueModel);
-        checkPositionOverlap(bombs, board, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionOverlap(aliveAgents, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionOverlap(bombs, VERBOSE_FM_DEBUG && trueModel);
 
         // 7. Handle kicks & moving bombs hitting agents that can not kick
         handleMovingBombs();
 
         // 8. Late update bomb overlaps. In previous loop it's possible that some bombs ended up overlapping.
-        checkPositionOverlap(bombs, board, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionOverlap(bombs, VERBOSE_FM_DEBUG && trueModel);
 
         // If bombs were bounced back, then they may overlap players again, bounce players back too if players moved.
-        for (GameObject b: bombs) {
+        for (int i = 0; i < bombs.size(); i++) {
+            GameObject b = bombs.get(i);
             for (GameObject p : agents) {
                 if(p.getDesiredCoordinate() != null && p.getPosition() != null) {
                     if (!p.getDesiredCoordinate().equals(p.getPosition()) &&
@@ -335,7 +447,8 @@ public class ForwardModel {
         }
 
         // 9. Players pick up power-ups
-        for (GameObject p: aliveAgents) {
+        for (int i = 0; i < aliveAgents.size(); i++) {
+            GameObject p = aliveAgents.get(i);
             if(p.getDesiredCoordinate() != null) {
                 int x = p.getDesiredCoordinate().x;
                 int y = p.getDesiredCoordinate().y;
@@ -344,66 +457,88 @@ public class ForwardModel {
         }
 
         // 10. Explode bombs
-        HashMap<Vector2d, Integer> flameOccupancy = handleBombExplosions();
+        handleBombExplosions();
 
         // 11. Resolve flame on death effects
-        for (GameObject f : deadFlames) {
+        for (int i = 0; i < deadFlames.size(); i++) {
+            GameObject f = deadFlames.get(i);
             if (f.getPosition() != null) {  // Flame had a physical presence, resolve on death effects
                 int x = f.getPosition().x;
                 int y = f.getPosition().y;
 
                 // If there is a power-up at that position, add it to the board
                 if (powerups[y][x] != null) {
-                    board[y][x] = powerups[y][x];
-                    powerups[y][x] = null;
+                    setTile(x, y, powerups[y][x]);
+                    setPowerUp(x, y, null);
                     // If no power-up, add a passage to the board
                 } else {
-                    board[y][x] = Types.TILETYPE.PASSAGE;
+                    setTile(x, y, Types.TILETYPE.PASSAGE);
                 }
             }
         }
         flames.removeAll(deadFlames);
+        for (int i = 0; i < deadFlames.size(); i++) {
+            GameObject o = deadFlames.get(i);
+            spareFlames.add(o);  // Not addAll(), which copies the list
+        }
 
         // 12. Add flames left alive back into the board if missing. Multiple flames may share a position, and the board
         // Should contain a flame until all flames are dead.
-        for (GameObject f : flames) {
+        for (int i = 0; i < flames.size(); i++) {
+            GameObject f = flames.get(i);
             int x = f.getDesiredCoordinate().x;
             int y = f.getDesiredCoordinate().y;
             if (board[y][x] != Types.TILETYPE.FLAMES) {
                 f.setPosition(f.getDesiredCoordinate());
-                board[y][x] = f.getType();
+                setTile(x, y, f.getType());
             }
         }
 
         // 13. Kill agents on flames. Otherwise, update position on board.
-        ArrayList<GameObject> deadAgentsThisTick = handleAgentKilling(flameOccupancy);
+        handleAgentKilling();
 
         // 14. Check for terminated agents
         if(deadAgentsThisTick.size() > 0) {
-            Types.getGameConfig().processDeadAgents(agents, aliveAgents, deadAgentsThisTick, game_mode);
+            settings.getGameConfig().processDeadAgents(agents, aliveAgents, deadAgentsThisTick, game_mode);
         }
 
         // 15. Update observable board grids of item types, bomb blast strengths, bomb lives
-        bombBlastStrength = new int[size][size];
-        bombLife = new int[size][size];
+        // Only rows that had or have bombs are written, the others may be shared with copies of this model.
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (bombBlastStrength[y][x] != 0 || bombLife[y][x] != 0) {
+                    ownRow(y);
+                    bombBlastStrength[y][x] = 0;
+                    bombLife[y][x] = 0;
+                }
+            }
+        }
 
-        for(GameObject bombObject : bombs){
+        for (int i = 0; i < bombs.size(); i++) {
+            GameObject bombObject = bombs.get(i);
             Bomb bomb = (Bomb) bombObject;
             Vector2d position = bomb.getPosition();
+            ownRow(position.y);
             bombBlastStrength[position.y][position.x] = bomb.getBlastStrength();
             bombLife[position.y][position.x] = bomb.getLife();
         }
+        bombGridsStale = false;
 
         // 16. Collapse
-        if(Types.COLLAPSE_BOARD) {
-            if (gsTick >= COLLAPSE_START && (gsTick - COLLAPSE_START) % COLLAPSE_STEP == 0) {
+        if(settings.isCollapseBoard()) {
+            int collapseStart = settings.getCollapseStart();
+            int collapseStep = settings.getCollapseStep();
+            if (gsTick >= collapseStart && (gsTick - collapseStart) % collapseStep == 0) {
 
-                int collapse_stage = (gsTick - COLLAPSE_START) / COLLAPSE_STEP; // 0, 1, 2, ...
+                int collapse_stage = (gsTick - collapseStart) / collapseStep; // 0, 1, 2, ...
 
                 int ring_min = collapse_stage;
                 int ring_max = size - collapse_stage - 1;
 
-                ArrayList<GameObject> collapsedAgents = new ArrayList<>();
+                collapsedAgents.clear();
+                bombIndex.build(bombs);
+                flameIndex.build(flames);
+                agentIndex.build(aliveAgents);
 
                 for (int x = ring_min; x <= ring_max; x++) {
                     if (x == ring_min || x == ring_max) {
@@ -417,7 +552,7 @@ public class ForwardModel {
 
                 // Kill agents.
                 if (collapsedAgents.size() > 0)
-                    Types.getGameConfig().processDeadAgents(agents, aliveAgents, collapsedAgents, game_mode);
+                    settings.getGameConfig().processDeadAgents(agents, aliveAgents, collapsedAgents, game_mode);
             }
         }
 
@@ -439,25 +574,278 @@ public class ForwardModel {
         }
     }
 
+    /**
+     * Marks the current state of the model, so it can be brought back to it with undoTo(). From the first mark on,
+     * the changes made by next() (and by the game configuration on the agents after it) are recorded.
+     * Changes made through the add/set/remove methods are not.
+     * @return mark to pass to undoTo().
+     */
+    int mark() {
+        if (journal == null) {
+            journal = new UndoJournal(this);
+        }
+        return journal.mark();
+    }
+
+    /**
+     * Undoes all ticks rolled after the given mark. Marks made after it are no longer valid.
+     * @param mark - mark returned by mark().
+     * @return the number of ticks undone.
+     */
+    int undoTo(int mark) {
+        if (journal == null) {
+            throw new IllegalStateException("No marks made on this model.");
+        }
+        if (spareBombs != null) {
+            spareBombs.clear();
+            spareFlames.clear();
+        }
+        return journal.undoTo(mark);
+    }
+
+    /**
+     * Stops recording changes made by next(), and forgets all marks.
+     */
+    void clearMarks() {
+        journal = null;
+    }
+
+    /**
+     * Makes the given row of the grids private to this model before writing to it, copying it if it is shared
+     * with other copies of the model.
+     * @param y - row about to be written.
+     */
+    void ownRow(int y) {
+        if (sharedRows != null && sharedRows[y]) {
+            board[y] = board[y].clone();
+            powerups[y] = powerups[y].clone();
+            bombBlastStrength[y] = bombBlastStrength[y].clone();
+            bombLife[y] = bombLife[y].clone();
+            sharedRows[y] = false;
+        }
+    }
+
+    /**
+     * Writes a tile of the board, keeping the hash up to date.
+     * @param x - x coordinate of the tile.
+     * @param y - y coordinate of the tile.
+     * @param type - new type of the tile.
+     */
+    void setTile(int x, int y, Types.TILETYPE type) {
+        Types.TILETYPE current = board[y][x];
+        if (current == type) return;
+        ownRow(y);
+        if (gridHashValid) {
+            int cell = y * size + x;
+            gridHash ^= StateHash.tile(cell, current) ^ StateHash.tile(cell, type);
+        }
+        board[y][x] = type;
+    }
+
+    /**
+     * Writes the power-up hidden under a tile, keeping the hash up to date.
+     * @param x - x coordinate of the tile.
+     * @param y - y coordinate of the tile.
+     * @param type - new power-up, null for none.
+     */
+    void setPowerUp(int x, int y, Types.TILETYPE type) {
+        Types.TILETYPE current = powerups[y][x];
+        if (current == type) return;
+        ownRow(y);
+        if (gridHashValid) {
+            int cell = y * size + x;
+            gridHash ^= StateHash.powerUp(cell, current) ^ StateHash.powerUp(cell, type);
+        }
+        powerups[y][x] = type;
+    }
+
+    /**
+     * Returns the Zobrist hash of this model: tiles, power-ups, bombs, flames and avatars. The hash of the grids is
+     * computed once and then updated as tiles are written, so this only goes through the objects.
+     * @return 64-bit hash of the model.
+     */
+    long hash() {
+        if (!gridHashValid) {
+            gridHash = 0;
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    gridHash ^= StateHash.tile(y * size + x, board[y][x]) ^
+                            StateHash.powerUp(y * size + x, powerups[y][x]);
+                }
+            }
+            gridHashValid = true;
+        }
+
+        long hash = gridHash;
+        for (GameObject b : bombs) {
+            Bomb bomb = (Bomb) b;
+            Vector2d velocity = bomb.getVelocity();
+            hash ^= StateHash.bomb(bomb.getPosition().x, bomb.getPosition().y, bomb.getLife(),
+                    bomb.getBlastStrength(), velocity == null ? 0 : velocity.x, velocity == null ? 0 : velocity.y);
+        }
+        for (GameObject f : flames) {
+            hash ^= StateHash.flame(f.getPosition().x, f.getPosition().y, f.getLife());
+        }
+        for (int i = 0; i < agents.length; i++) {
+            Avatar agent = (Avatar) agents[i];
+            Vector2d position = agent.getPosition();
+            boolean alive = false;
+            for (GameObject a : aliveAgents) {
+                if (a == agent) {
+                    alive = true;
+                    break;
+                }
+            }
+            hash ^= StateHash.avatar(i, position == null ? -1 : position.x, position == null ? -1 : position.y,
+                    agent.getAmmo(), agent.getBlastStrength(), agent.canKick(), alive);
+        }
+        return hash;
+    }
+
+    /**
+     * Indicates that the bomb grids may no longer match the bombs, so copies compute them again.
+     */
+    void markBombGridsStale() {
+        bombGridsStale = true;
+    }
+
+    /**
+     * @return true if the bomb grids may not match the bombs.
+     */
+    boolean areBombGridsStale() {
+        return bombGridsStale;
+    }
+
+    /**
+     * Shares all rows of the grids of this model with the given copy, instead of copying them. Both models copy a
+     * row before writing to it (see ownRow()). Bomb grids are only shared if they match the bombs.
+     * @param copy - copy of this model.
+     */
+    private void shareGrids(ForwardModel copy) {
+        copy.board = board.clone();
+        copy.powerups = powerups.clone();
+        if (!bombGridsStale) {
+            copy.bombBlastStrength = bombBlastStrength.clone();
+            copy.bombLife = bombLife.clone();
+        }
+        if (sharedRows == null) {
+            sharedRows = new boolean[size];
+        }
+        Arrays.fill(sharedRows, true);
+        copy.sharedRows = new boolean[size];
+        Arrays.fill(copy.sharedRows, true);
+    }
+
+    /**
+     * Creates the scratch buffers used by next().
+     */
+    private void initScratchBuffers() {
+        flameOccupancy = new int[size][size];
+        positionCount = new int[size][size];
+        bombIndex = new CellIndex(size);
+        agentIndex = new CellIndex(size);
+        flameIndex = new CellIndex(size);
+        explosionKeys = new int[16];
+        explosionQueue = new int[16];
+        deadFlames = new ArrayList<>();
+        deadBombs = new ArrayList<>();
+        newFlames = new ArrayList<>();
+        deadAgentsThisTick = new ArrayList<>();
+        collapsedAgents = new ArrayList<>();
+        nextPosition = new Vector2d();
+        spareBombs = new ArrayList<>();
+        spareFlames = new ArrayList<>();
+    }
+
+    /**
+     * Checks if objects swap positions. Bounce both back, or only the second one if revertOnlySecond. Same as
+     * Utils.checkPositionSwap(), but only compares each object of the first list with the objects of the second one
+     * that are on the position it wants to move to, found in an index of the second list.
+     * @param golist1 - first list of game objects to check.
+     * @param index2 - index of the second list of game objects, by position.
+     */
+    private void checkPositionSwap(ArrayList<GameObject> golist1, CellIndex index2, boolean revertOnlySecond,
+                                   boolean verbose) {
+        for (int i = 0; i < golist1.size(); i++) {
+            GameObject g1 = golist1.get(i);
+            Vector2d desired = g1.getDesiredCoordinate();
+            if (desired == null) continue;
+            for (int s = index2.first(desired.x, desired.y); s != CellIndex.NONE; s = index2.next(s)) {
+                GameObject g2 = index2.get(s);
+                if (!g1.equals(g2)) {
+                    if (g1.getDesiredCoordinate() != null && g1.getPosition() != null &&
+                            g2.getDesiredCoordinate() != null && g2.getPosition() != null &&
+                            !g1.getDesiredCoordinate().equals(g1.getPosition()) &&
+                            !g2.getDesiredCoordinate().equals(g2.getPosition())) {
+                        // The objects need to both have moved to count for a swap check.
+                        if (g1.getDesiredCoordinate().equals(g2.getPosition()) &&
+                                g2.getDesiredCoordinate().equals(g1.getPosition())) {
+                            if (!revertOnlySecond) {
+                                if (verbose) {
+                                    System.out.println("Reverting " + g1.getType() + " swap with " + g2.getType());
+                                }
+                                setDesiredCoordinate(g1, g1.getPosition(), board);
+                            }
+                            if (verbose) {
+                                System.out.println("Reverting " + g2.getType() + " swap with " + g1.getType());
+                            }
+                            setDesiredCoordinate(g2, g2.getPosition(), board);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if more than 1 object wants to move to the same position. Bounce all back. Same as
+     * Utils.checkPositionOverlap(), counting positions on a grid instead of a map.
+     * @param golist - list of game objects to check.
+     */
+    private void checkPositionOverlap(ArrayList<GameObject> golist, boolean verbose) {
+        // Count how many objects want to move to each position. Unknown positions (null) count together.
+        int nullCount = 0;
+        for (int[] row : positionCount) {
+            Arrays.fill(row, 0);
+        }
+        for (int i = 0; i < golist.size(); i++) {
+            GameObject g = golist.get(i);
+            Vector2d d = g.getDesiredCoordinate();
+            if (d == null) nullCount++;
+            else positionCount[d.y][d.x]++;
+        }
+
+        // If more than 1 object are at a position, revert all to previous position.
+        for (int i = 0; i < golist.size(); i++) {
+            GameObject g = golist.get(i);
+            Vector2d d = g.getDesiredCoordinate();
+            int count = d == null ? nullCount : positionCount[d.y][d.x];
+            if (count > 1) {
+                if (verbose) {
+                    System.out.println("Reverting " + g.getType() + " overlap");
+                }
+                setDesiredCoordinate(g, g.getPosition(), board);
+            }
+        }
+    }
+
     private void collapseTile(int x, int y, ArrayList<GameObject> collapsedAgents){
         //System.out.println("Collapsing "+x+" "+y);
+        ownRow(y);  // Bomb grids may be written below
 
         Types.TILETYPE tiletype = board[y][x];
 
+        // Objects are looked up in the indexes built before collapsing, each tile collapses once.
         if(tiletype == Types.TILETYPE.BOMB){
-            Vector2d pos = new Vector2d(x, y);
-            ArrayList<GameObject> gos = findObjectInList(pos, bombs);
-            for (GameObject go: gos) {
-                bombs.remove(go);
+            for (int s = bombIndex.first(x, y); s != CellIndex.NONE; s = bombIndex.next(s)) {
+                bombs.remove(bombIndex.get(s));
             }
             bombLife[y][x] = 0;
             bombBlastStrength[y][x] = 0;
         }
         else if(tiletype == Types.TILETYPE.FLAMES){
-            Vector2d pos = new Vector2d(x, y);
-            ArrayList<GameObject> gos = findObjectInList(pos, flames);
-            for (GameObject go: gos) {
-                flames.remove(go);
+            for (int s = flameIndex.first(x, y); s != CellIndex.NONE; s = flameIndex.next(s)) {
+                flames.remove(flameIndex.get(s));
             }
         }
         else if(tiletype == Types.TILETYPE.AGENT0 ||
@@ -465,13 +853,11 @@ public class ForwardModel {
                 tiletype == Types.TILETYPE.AGENT2 ||
                 tiletype == Types.TILETYPE.AGENT3){
 
-            Vector2d pos = new Vector2d(x, y);
-            ArrayList<GameObject> gos = findObjectInList(pos, aliveAgents);
-            for (GameObject go: gos) {
-                collapsedAgents.add(go);
+            for (int s = agentIndex.first(x, y); s != CellIndex.NONE; s = agentIndex.next(s)) {
+                collapsedAgents.add(agentIndex.get(s));
             }
         }
-        board[y][x] = Types.TILETYPE.RIGID;
+        setTile(x, y, Types.TILETYPE.RIGID);
     }
 
     /**
@@ -479,30 +865,28 @@ public class ForwardModel {
      */
     private void handleMovingBombs()
     {
-        for (GameObject b: bombs) {
-            for (GameObject p: aliveAgents) {
+        for (int i = 0; i < bombs.size(); i++) {
+            GameObject b = bombs.get(i);
+            for (int k = 0; k < aliveAgents.size(); k++) {
+                GameObject p = aliveAgents.get(k);
 
                 if(p.getDesiredCoordinate() != null && p.getPosition() != null){
 
 
                     if (b.getDesiredCoordinate().equals(b.getPosition())) {
-                        ((Bomb) b).setVelocity(new Vector2d());
+                        ((Bomb) b).setVelocity(0, 0);
                     }
                     if (p.getDesiredCoordinate().equals(b.getDesiredCoordinate())) {
                         // Agent tried to move onto bomb OR bomb tried to move onto agent, check if agent can kick
                         if (((Avatar) p).canKick()) {
                             // Player can kick, so set bomb velocity
-                            Vector2d velocity = p.getDesiredCoordinate().subtract(p.getPosition());
-                            ((Bomb) b).setVelocity(velocity);
+                            int vx = p.getDesiredCoordinate().x - p.getPosition().x;
+                            int vy = p.getDesiredCoordinate().y - p.getPosition().y;
+                            ((Bomb) b).setVelocity(vx, vy);
 
                             // First bomb move on the same tick as the kick happened. Do not move into players or walls.
                             // If bomb couldn't move, reset its velocity
-                            ArrayList<Types.TILETYPE> collisions = new ArrayList<>();
-                            collisions.add(Types.TILETYPE.RIGID);
-                            collisions.add(Types.TILETYPE.WOOD);
-                            collisions.addAll(Types.TILETYPE.getAgentTypes());
-
-                            if (velocity.mag() == 0) {
+                            if (vx == 0 && vy == 0) {
                                 // They can be on same position only if agent just dropped bomb
                                 // Move agent back if they moved & the bomb didn't move when the kick was attempted
                                 if (!p.getDesiredCoordinate().equals(p.getPosition())) {
@@ -512,8 +896,9 @@ public class ForwardModel {
                                     setDesiredCoordinate(p, p.getPosition(), board);
                                 }
                             } else {
-                                if (!setDesiredCoordinate(b, b.getDesiredCoordinate().add(velocity), board, collisions)) {
-                                    ((Bomb) b).setVelocity(new Vector2d());
+                                nextPosition.set(b.getDesiredCoordinate().x + vx, b.getDesiredCoordinate().y + vy);
+                                if (!setDesiredCoordinate(b, nextPosition, board, KICK_COLLISIONS)) {
+                                    ((Bomb) b).setVelocity(0, 0);
                                 }
                             }
                         } else {
@@ -539,95 +924,174 @@ public class ForwardModel {
 
     /**
      * Handles bomb explosions, creating the flame objects that destroy things.
-     * @return the set of positions occupied by flames.
+     * Fills flameOccupancy with the number of flames on each position.
+     *
+     * Bombs explode in passes over the list of bombs, in order, until a pass makes no new flames: a bomb explodes
+     * when visited if its life reached 0 or there are flames on it, including the flames of the bombs that exploded
+     * before it. So a bomb reached by the flames of a bomb earlier in the list explodes in the same pass, and one
+     * reached by a bomb later in the list explodes in the next pass. Instead of going through all bombs on each pass,
+     * the bombs due to explode are kept in a worklist ordered by (pass, index in the list), and the bombs reached by
+     * new flames are found on an index of bomb positions. Explosions happen in the same order as in the passes, so
+     * flames are created in the same order, and rays stop at the same wooden tiles (flames burn wood as they go).
      */
-    private HashMap<Vector2d, Integer> handleBombExplosions()
+    private void handleBombExplosions()
     {
-        boolean newExplosions = true;
-
         // Get positions of flames
-        HashMap<Vector2d, Integer> flameOccupancy = checkOccupancy(flames);
-
-        while (newExplosions) {
-            // Use this flag to chain explosions. If new flames are added, then we need to check all bombs again
-            newExplosions = false;
-
-            ArrayList<GameObject> deadBombs = new ArrayList<>();
-            for (GameObject b : bombs) {
-
-                // Force this bomb to explode if there is a flame at this position.
-                boolean forceExplosion = false;
-                if (flameOccupancy.get(b.getPosition()) != null) forceExplosion = true;
+        for (int[] row : flameOccupancy) {
+            Arrays.fill(row, 0);
+        }
+        for (int i = 0; i < flames.size(); i++) {
+            GameObject f = flames.get(i);
+            flameOccupancy[f.getDesiredCoordinate().y][f.getDesiredCoordinate().x]++;
+        }
 
-                // Find the flame owners who triggered the explosion
-                if(trueModel && LOGGING_STATISTICS) {
-                    if (forceExplosion) {
-                        StringBuilder eventSB = new StringBuilder();
-                        eventSB.append(tick + " | [" + ((Bomb) b).getPlayerIdx() + "]'s bomb exploded at ("
-                                + b.getPosition().x + ", " + b.getPosition().y + ") triggered by ");
-                        Set<Integer> killerIDs = new HashSet<>();
-                        for (GameObject flame : this.flames) {
-                            if (flame.getPosition().equals(b.getPosition()))
-                                killerIDs.add(((Flame) flame).playerIdx);
-                        }
-                        for (Integer id : killerIDs) {
-                            eventSB.append("[" + id + "]");
-                            es.bombsTriggered[id]++;
-                        }
-                        eventSB.append("\n");
-                        es.events.add(eventSB.toString());
+        // Bombs that explode in the first pass
+        int nBombs = bombs.size();
+        if (explosionKeys.length < nBombs) {
+            explosionKeys = new int[Math.max(nBombs, explosionKeys.length * 2)];
+            explosionQueue = new int[explosionKeys.length];
+        }
+        explosionQueueSize = 0;
+        for (int i = 0; i < nBombs; i++) {
+            GameObject b = bombs.get(i);
+            explosionKeys[i] = -1;
+            if (b.getLife() == 0 || flameOccupancy[b.getPosition().y][b.getPosition().x] > 0) {
+                scheduleExplosion(i, i);
+            }
+        }
+        if (explosionQueueSize == 0) {
+            return;
+        }
+        bombIndex.build(bombs);
+
+        deadBombs.clear();
+        while (explosionQueueSize > 0) {
+            int key = pollExplosion();
+            int i = key % nBombs;
+            if (explosionKeys[i] != key) continue;  // Already exploded, or moved to an earlier pass
+            explosionKeys[i] = EXPLODED;
+            int pass = key / nBombs;
+            GameObject b = bombs.get(i);
+
+            // Force this bomb to explode if there is a flame at this position.
+            boolean forceExplosion = flameOccupancy[b.getPosition().y][b.getPosition().x] > 0;
+
+            // Find the flame owners who triggered the explosion
+            if(trueModel && LOGGING_STATISTICS) {
+                if (forceExplosion) {
+                    StringBuilder eventSB = new StringBuilder();
+                    eventSB.append(tick + " | [" + ((Bomb) b).getPlayerIdx() + "]'s bomb exploded at ("
+                            + b.getPosition().x + ", " + b.getPosition().y + ") triggered by ");
+                    Set<Integer> killerIDs = new HashSet<>();
+                    for (GameObject flame : this.flames) {
+                        if (flame.getPosition().equals(b.getPosition()))
+                            killerIDs.add(((Flame) flame).playerIdx);
                     }
-                    else if(b.getLife() == 0){
-                        String eventString = tick + " | [" + ((Bomb) b).getPlayerIdx() + "]'s bomb exploded at ("
-                                + b.getPosition().x + ", " + b.getPosition().y + ")\n";
-                        es.events.add(eventString);
+                    for (Integer id : killerIDs) {
+                        eventSB.append("[" + id + "]");
+                        es.bombsTriggered[id]++;
                     }
+                    eventSB.append("\n");
+                    es.events.add(eventSB.toString());
                 }
+                else if(b.getLife() == 0){
+                    String eventString = tick + " | [" + ((Bomb) b).getPlayerIdx() + "]'s bomb exploded at ("
+                            + b.getPosition().x + ", " + b.getPosition().y + ")\n";
+                    es.events.add(eventString);
+                }
+            }
 
-                // TODO: Wood removals happen here, but within Bomb class, what's the best way of doing this? (to count them)
-
-                // This bomb will explode and create new flames if life reached 0, or forced to explode
-                ArrayList<GameObject> newFlames = ((Bomb) b).explode(forceExplosion, board, powerups);
-                if (newFlames != null && newFlames.size() > 0) {
-
-                    flames.addAll(newFlames);
-                    newExplosions = true;
-
-                    // Remove this bomb from the list of bombs
-                    deadBombs.add(b);
-
-                    // Give the player 1 ammo back for this bomb
-                    int pIdx = ((Bomb) b).getPlayerIdx();
-                    if (pIdx >= 0) {
-                        ((Avatar)agents[pIdx]).addAmmo();
+            // TODO: Wood removals happen here, but within Bomb class, what's the best way of doing this? (to count them)
+
+            // This bomb will explode and create new flames if life reached 0, or forced to explode
+            newFlames.clear();
+            ((Bomb) b).explode(forceExplosion, board, powerups, newFlames, spareFlames, settings.getFlameLife());
+            if (newFlames.size() > 0) {
+
+                // Add new flames to the game and the board, and their positions to the occupancy grid
+                for (int n = 0; n < newFlames.size(); n++) {
+                    GameObject f = newFlames.get(n);
+                    int x = f.getPosition().x;
+                    int y = f.getPosition().y;
+                    flames.add(f);
+                    setTile(x, y, f.getType());
+                    flameOccupancy[f.getDesiredCoordinate().y][f.getDesiredCoordinate().x]++;
+
+                    // Bombs reached by this flame explode later in this pass, or in the next one
+                    for (int s = bombIndex.first(x, y); s != CellIndex.NONE; s = bombIndex.next(s)) {
+                        int j = bombIndex.index(s);
+                        scheduleExplosion(j, (j > i ? pass : pass + 1) * nBombs + j);
                     }
+                }
 
-                    // Add new flame positions to the map
-                    HashMap<Vector2d, Integer> newOccupancy = checkOccupancy(newFlames);
-                    for (Map.Entry<Vector2d, Integer> e : newOccupancy.entrySet()) {
-                        flameOccupancy.merge(e.getKey(), e.getValue(), (a, b1) -> b1 + a);
-                    }
+                // Remove this bomb from the list of bombs
+                deadBombs.add(b);
+
+                // Give the player 1 ammo back for this bomb
+                int pIdx = ((Bomb) b).getPlayerIdx();
+                if (pIdx >= 0) {
+                    ((Avatar)agents[pIdx]).addAmmo();
                 }
             }
-            bombs.removeAll(deadBombs);
         }
+        bombIndex.clear();
+        bombs.removeAll(deadBombs);
+        for (int i = 0; i < deadBombs.size(); i++) {
+            GameObject o = deadBombs.get(i);
+            spareBombs.add(o);  // Not addAll(), which copies the list
+        }
+    }
 
-        return flameOccupancy;
+    /**
+     * Adds a bomb to the explosion worklist, unless it already exploded or is due to explode earlier.
+     * @param bomb - index of the bomb in the list of bombs.
+     * @param key - pass in which it explodes * number of bombs + index of the bomb.
+     */
+    private void scheduleExplosion(int bomb, int key) {
+        int current = explosionKeys[bomb];
+        if (current == EXPLODED || (current != -1 && current <= key)) return;
+        explosionKeys[bomb] = key;
+
+        // Push on the binary heap
+        int k = explosionQueueSize++;
+        while (k > 0 && explosionQueue[(k - 1) / 2] > key) {
+            explosionQueue[k] = explosionQueue[(k - 1) / 2];
+            k = (k - 1) / 2;
+        }
+        explosionQueue[k] = key;
+    }
+
+    /**
+     * @return smallest key in the explosion worklist, removing it.
+     */
+    private int pollExplosion() {
+        int first = explosionQueue[0];
+        int last = explosionQueue[--explosionQueueSize];
+        int k = 0;
+        while (2 * k + 1 < explosionQueueSize) {
+            int child = 2 * k + 1;
+            if (child + 1 < explosionQueueSize && explosionQueue[child + 1] < explosionQueue[child]) child++;
+            if (explosionQueue[child] >= last) break;
+            explosionQueue[k] = explosionQueue[child];
+            k = child;
+        }
+        explosionQueue[k] = last;
+        return first;
     }
 
     /**
-     * Handles killing agents with flames in the board.
-     * @param flameOccupancy location of the flames on this tick.
-     * @return list of agents killed on this tick
+     * Handles killing agents with flames in the board (as counted in flameOccupancy).
+     * Fills deadAgentsThisTick with the agents killed on this tick.
      */
-    private ArrayList<GameObject> handleAgentKilling(HashMap<Vector2d, Integer> flameOccupancy)
+    private void handleAgentKilling()
     {
-        ArrayList<GameObject> deadAgentsThisTick = new ArrayList<>();
-        for (GameObject p : aliveAgents) {
+        deadAgentsThisTick.clear();
+        for (int i = 0; i < aliveAgents.size(); i++) {
+            GameObject p = aliveAgents.get(i);
             Vector2d nextPos = p.getDesiredCoordinate();
             Vector2d currPos = p.getPosition();
 
-            if (nextPos != null && currPos != null && flameOccupancy.containsKey(nextPos)) {
+            if (nextPos != null && currPos != null && flameOccupancy[nextPos.y][nextPos.x] > 0) {
                 // This agent was killed by a flame, remove from list
                 p.setLife(0);
                 deadAgentsThisTick.add(p);
@@ -661,13 +1125,12 @@ public class ForwardModel {
 
                 if (board[currPos.y][currPos.x] != Types.TILETYPE.BOMB
                         && board[currPos.y][currPos.x] != Types.TILETYPE.FLAMES) {
-                    board[currPos.y][currPos.x] = Types.TILETYPE.PASSAGE;
+                    setTile(currPos.x, currPos.y, Types.TILETYPE.PASSAGE);
                 }
             } else {
                 move(p);
             }
         }
-        return deadAgentsThisTick;
     }
 
     /**
@@ -680,58 +1143,59 @@ public class ForwardModel {
 
         if(currentPos != null && nextPos != null) {
 
-            //System.out.println(o.getType());
-            //System.out.println("cp: "+currentPos+" | np: "+nextPos);
-
-            if (!(currentPos.equals(nextPos))) { // !(currentPos.equals(nextPos))  //(currentPos != null && !(currentPos.equals(nextPos)))
+            if (!(currentPos.equals(nextPos))) {
                 Types.TILETYPE nextType = board[nextPos.y][nextPos.x];
 
-                if (board[nextPos.y][nextPos.x] != Types.TILETYPE.RIGID &&
-                        board[nextPos.y][nextPos.x] != Types.TILETYPE.WOOD) {
+                if (nextType != Types.TILETYPE.RIGID && nextType != Types.TILETYPE.WOOD) {
                     if (trueModel && VERBOSE_FM_DEBUG) {
                         System.out.println("Moving " + o.getType() + ": " + currentPos + " -> " + nextPos);
                     }
-                    o.setPosition(nextPos.copy());
-
-                    HashSet<Types.TILETYPE> powerUpTypes = Types.TILETYPE.getPowerUpTypes();
-                    HashSet<Types.TILETYPE> agentTypes = TILETYPE.getAgentTypes();
 
-                    // Set up sprites that cannot be replaced with a passage when current sprite moves from its square.
-                    HashSet<Types.TILETYPE> illegalOverwriteTypes = new HashSet<>(powerUpTypes);
-                    illegalOverwriteTypes.add(Types.TILETYPE.FLAMES);  // We don't remove flames
-                    illegalOverwriteTypes.addAll(agentTypes);  // We don't remove other agents...
-                    illegalOverwriteTypes.remove(o.getType()); // Unless this agent is the current object
+                    // Position is updated in place, keep the coordinates of the square the object leaves.
+                    int x = currentPos.x;
+                    int y = currentPos.y;
+                    o.setPosition(nextPos);
 
-                    // Bombs don't leave traces of bombs behind them, and other sprites do not remove bombs from the board
-                    if (o.getType() != Types.TILETYPE.BOMB) {
-                        illegalOverwriteTypes.add(Types.TILETYPE.BOMB);
-                    } else {
-                        // Check if next is a powerup, we should put it back in the powerup array before removing it from
-                        // the board (unless it's an avatar collecting it).
-                        if (!agentTypes.contains(o.getType()) && powerUpTypes.contains(nextType)) {
-                            powerups[nextPos.y][nextPos.x] = board[nextPos.y][nextPos.x];
-                        }
+                    // Check if next is a powerup, we should put it back in the powerup array before removing it from
+                    // the board (unless it's an avatar collecting it).
+                    if (o.getType() == Types.TILETYPE.BOMB && POWER_UP_TYPES.contains(nextType)) {
+                        setPowerUp(nextPos.x, nextPos.y, nextType);
                     }
 
                     // Update current position
                     // Only update current position if the object there can be overwritten
                     // Replace with passage if there isn't a power-up there that should be added back in
-                    if (canOverwrite(currentPos, board, illegalOverwriteTypes)) {
-                        if (powerups[currentPos.y][currentPos.x] != null) {
-                            board[currentPos.y][currentPos.x] = powerups[currentPos.y][currentPos.x];
-                            powerups[currentPos.y][currentPos.x] = null;
+                    if (canOverwrite(o.getType(), board[y][x])) {
+                        if (powerups[y][x] != null) {
+                            setTile(x, y, powerups[y][x]);
+                            setPowerUp(x, y, null);
                         } else {
-                            board[currentPos.y][currentPos.x] = Types.TILETYPE.PASSAGE;
+                            setTile(x, y, Types.TILETYPE.PASSAGE);
                         }
                     }
                 }
             }
 
             // Update next position. The order is bombs, avatars, so avatars would overwrite bombs.
-            board[nextPos.y][nextPos.x] = o.getType();
+            setTile(nextPos.x, nextPos.y, o.getType());
         }
     }
 
+    /**
+     * Checks if the square an object of the given type moves away from can be cleared.
+     * Power-ups, flames and other agents are not removed. Bombs don't leave traces of bombs behind them, and other
+     * sprites do not remove bombs from the board.
+     * @param type - type of the object moving.
+     * @param current - type currently on the board at the square the object moves away from.
+     * @return true if the square can be overwritten.
+     */
+    private static boolean canOverwrite(Types.TILETYPE type, Types.TILETYPE current) {
+        if (current == type)
+            return true;
+        return current != Types.TILETYPE.FLAMES && current != Types.TILETYPE.BOMB &&
+                !POWER_UP_TYPES.contains(current) && !AGENT_TYPES.contains(current);
+    }
+
     /**
      * Function to insert player action effects into the game.
      * Index in actions array is the same as in aliveAgents array.
@@ -757,13 +1221,15 @@ public class ForwardModel {
                 action = Types.ACTIONS.ACTION_STOP;
             }
 
-            boolean successful = setDesiredCoordinate(agent, pos.add(action.getDirection().toVec()), board);
+            Types.DIRECTIONS direction = action.getDirection();
+            nextPosition.set(pos.x + direction.x(), pos.y + direction.y());
+            boolean successful = setDesiredCoordinate(agent, nextPosition, board);
 
             if (action == Types.ACTIONS.ACTION_BOMB) {
                 if (agent.getAmmo() > 0 && bombBlastStrength[pos.y][pos.x] == 0) {
                     // Check if a bomb is not already there
                     agent.reduceAmmo();
-                    addBomb(pos.x, pos.y, agent.getBlastStrength(), BOMB_LIFE, i, true);
+                    addBomb(pos.x, pos.y, agent.getBlastStrength(), settings.getBombLife(), i, true);
                     successful = true;
                     if(trueModel && LOGGING_STATISTICS) {
                         int agentID = (agent.getPlayerID() - 10);
@@ -835,7 +1301,7 @@ public class ForwardModel {
      * It uses Types.BOARD_* to decide number of rigid blocks, wood, items, etc.
      */
     private void generateBoard(long seed) {
-        int[][] intBoard = LevelGenerator.makeBoard(seed, size, Types.BOARD_NUM_RIGID, Types.BOARD_NUM_WOOD, agents);
+        int[][] intBoard = LevelGenerator.makeBoard(seed, size, settings, agents);
         generateBoard(intBoard, seed);
     }
 
@@ -843,7 +1309,7 @@ public class ForwardModel {
      * Generates the game board given an intBoard that will be translated.
      */
     private void generateBoard(int[][] intBoard, long seed) {
-        int[][] intPowerups = LevelGenerator.makeItems(intBoard, Types.BOARD_NUM_ITEMS, seed);
+        int[][] intPowerups = LevelGenerator.makeItems(intBoard, settings.getBoardNumItems(), seed);
         translate(intBoard, true);
         translate(intPowerups, false);
     }
@@ -864,9 +1330,9 @@ public class ForwardModel {
                 for (int j = 0; j < intBoard[i].length; j++) {
                     Types.TILETYPE type = utils.Types.TILETYPE.values()[intBoard[i][j]];
                     if (type == Types.TILETYPE.BOMB) {
-                        addBomb(j, i, DEFAULT_BOMB_BLAST, BOMB_LIFE, -1, true);
+                        addBomb(j, i, settings.getDefaultBombBlast(), settings.getBombLife(), -1, true);
                     } else if (type == Types.TILETYPE.FLAMES) {
-                        addFlame(j, i, FLAME_LIFE);
+                        addFlame(j, i, settings.getFlameLife());
                     } else if (Types.TILETYPE.getAgentTypes().contains(type)) {
                         int idx = type.getKey() - 10;
                         addAgent(j, i, idx);
@@ -893,12 +1359,21 @@ public class ForwardModel {
     // add* methods can be used by agents to insert things into the model
 
     void addBomb(int x, int y, int blastStrength, int bombLife, int playerIdx, boolean addToBoard) {
-        Bomb bomb = new Bomb(blastStrength, bombLife, playerIdx);
-        bomb.setPosition(new Vector2d(x, y));
-        setDesiredCoordinate(bomb, new Vector2d(x, y), board);
+        Bomb bomb;
+        if (spareBombs != null && !spareBombs.isEmpty()) {
+            bomb = (Bomb) spareBombs.remove(spareBombs.size() - 1);
+            bomb.reuse(blastStrength, bombLife, playerIdx);
+            bomb.getPosition().set(x, y);
+            setDesiredCoordinate(bomb, bomb.getPosition(), board);
+        } else {
+            bomb = new Bomb(blastStrength, bombLife, playerIdx);
+            bomb.setPosition(new Vector2d(x, y));
+            setDesiredCoordinate(bomb, new Vector2d(x, y), board);
+        }
         bombs.add(bomb);
+        bombGridsStale = true;
         if (addToBoard) {
-            board[y][x] = Types.TILETYPE.BOMB;
+            setTile(x, y, Types.TILETYPE.BOMB);
         }
     }
 
@@ -908,7 +1383,7 @@ public class ForwardModel {
         setDesiredCoordinate(flame, new Vector2d(x, y), board);
         flame.setPosition(flame.getDesiredCoordinate());
         flames.add(flame);
-        board[y][x] = Types.TILETYPE.FLAMES;
+        setTile(x, y, Types.TILETYPE.FLAMES);
     }
 
     void addPowerUp(int x, int y, Types.TILETYPE type, boolean visible) {
@@ -930,7 +1405,7 @@ public class ForwardModel {
         ((Avatar)agent).setWinner(Types.RESULT.INCOMPLETE);
         agent.setPosition(new Vector2d(x, y));
         setDesiredCoordinate(agent, new Vector2d(x, y), board);
-        board[y][x] = agent.getType();
+        setTile(x, y, agent.getType());
     }
 
     void removePowerUp(int x, int y, Types.TILETYPE type) {
@@ -945,12 +1420,14 @@ public class ForwardModel {
         GameObject object = new GameObject(type);
         object.setPosition(new Vector2d(x, y));
         setDesiredCoordinate(object, new Vector2d(x, y), targetArray);
-        targetArray[y][x] = type;
+        if (targetArray == powerups) setPowerUp(x, y, type);
+        else setTile(x, y, type);
     }
 
     private void removeObject(int x, int y, Types.TILETYPE type, Types.TILETYPE[][] targetArray, boolean onlyBoard) {
         Vector2d pos = new Vector2d(x, y);
-        targetArray[y][x] = TILETYPE.PASSAGE;
+        if (targetArray == powerups) setPowerUp(x, y, TILETYPE.PASSAGE);
+        else setTile(x, y, TILETYPE.PASSAGE);
 
         if (!onlyBoard) {
             if (type == TILETYPE.BOMB) {
@@ -958,8 +1435,10 @@ public class ForwardModel {
                 for (GameObject go: gos) {
                     bombs.remove(go);
                 }
+                ownRow(y);
                 bombLife[y][x] = 0;
                 bombBlastStrength[y][x] = 0;
+                bombGridsStale = true;
             } else if (type == TILETYPE.FLAMES) {
                 ArrayList<GameObject> gos = findObjectInList(pos, flames);
                 for (GameObject go: gos) {
@@ -970,7 +1449,7 @@ public class ForwardModel {
                 ((Avatar)ob).setWinner(RESULT.LOSS);
                 aliveAgents.remove(ob);
             } else if (TILETYPE.getPowerUpTypes().contains(type)) {
-                powerups[y][x] = null;
+                setPowerUp(x, y, null);
             }
         }
     }
@@ -991,7 +1470,7 @@ public class ForwardModel {
         for (GameObject go: gos) {
             Bomb bomb = (Bomb)go;
             bomb.setPlayerIdx(playerIdx);
-            bomb.setVelocity(velocity);
+            bomb.setVelocity(velocity.copy());
         }
     }
 
@@ -1128,9 +1607,12 @@ public class ForwardModel {
             range = avatar.getVisionRange();
         }
 
-        // Init new power-up and board arrays
-        copy.powerups = new Types.TILETYPE[size][size];
-        copy.board = new Types.TILETYPE[size][size];
+        // Tiles seen by the player, null if everything is. Nothing is seen without a position.
+        long[] visibleRows = null;
+        if (range != -1) {
+            visibleRows = avatarPosition == null ? new long[size] :
+                    VisionMask.get(size, range, avatarPosition.x, avatarPosition.y);
+        }
 
         // Init new flames and bomb arrays
         copy.flames = new ArrayList<>();
@@ -1141,47 +1623,51 @@ public class ForwardModel {
         if (range != -1) {
             for (int i = 0; i < copy.agents.length; i++) {
                 GameObject a = copy.agents[i];
-                if (a.getPosition() != null && a.getPosition().custom_dist(avatarPosition) > range) {
+                Vector2d position = a.getPosition();
+                if (position != null && !VisionMask.isVisible(visibleRows, position.x, position.y)) {
                     // This agent's position is not observed
                     a.setPositionNull();
                     a.setDesiredCoordinateNull();
                 }
                 // If not player observing, reset properties to default
                 if (i != playerIdx) {
-                    ((Avatar) a).reset();
+                    ((Avatar) a).reset(settings);
                 }
             }
         }
 
-        // Reduce power-ups and board arrays
-        for (int y = 0; y < size; y++) {
-            for (int x = 0; x < size; x++) {
-                if (range == -1 || avatarPosition != null && avatarPosition.custom_dist(x, y) <= range) {
-                    copy.board[y][x] = board[y][x];
-                    if (range == -1)
-                        copy.powerups[y][x] = powerups[y][x];
-                } else {
-                    copy.board[y][x] = Types.TILETYPE.FOG;
-                }
+        // Reduce power-ups and board arrays. Full copies share the rows of the grids until either model writes them.
+        if (range == -1) {
+            shareGrids(copy);
+            copy.gridHash = gridHash;
+            copy.gridHashValid = gridHashValid;
+        } else {
+            copy.powerups = new Types.TILETYPE[size][size];
+            copy.board = new Types.TILETYPE[size][size];
+            for (int y = 0; y < size; y++) {
+                VisionMask.copyVisible(board[y], copy.board[y], visibleRows[y]);
             }
         }
 
         // Reduce arraylists of flames and bombs
         // Reset flames life if playerIdx > -1, players don't know this information
-        _reduceHiddenList(flames, copy.flames, avatarPosition, range);
-        _reduceHiddenList(bombs, copy.bombs, avatarPosition, range);
+        _reduceHiddenList(flames, copy.flames, visibleRows, settings.getFlameLife());
+        _reduceHiddenList(bombs, copy.bombs, visibleRows, settings.getFlameLife());
         copy.aliveAgents = findAliveAgents(copy.agents);
 
-        // Finally construct the main components of observations
-        copy.bombBlastStrength = new int[size][size];
-        copy.bombLife = new int[size][size];
+        // Finally construct the main components of observations, unless shared with this model
+        if (copy.bombBlastStrength == null) {
+            copy.bombBlastStrength = new int[size][size];
+            copy.bombLife = new int[size][size];
 
-        for(GameObject bombObject : copy.bombs){
-            Bomb bomb = (Bomb) bombObject;
-            Vector2d position = bomb.getPosition();
-            copy.bombBlastStrength[position.y][position.x] = bomb.getBlastStrength();
-            copy.bombLife[position.y][position.x] = bomb.getLife();
+            for (GameObject bombObject : copy.bombs) {
+                Bomb bomb = (Bomb) bombObject;
+                Vector2d position = bomb.getPosition();
+                copy.bombBlastStrength[position.y][position.x] = bomb.getBlastStrength();
+                copy.bombLife[position.y][position.x] = bomb.getLife();
+            }
         }
+        copy.bombGridsStale = false;
     }
 
     @Override
@@ -95,6 +95,28 @@ class ForwardModelTest {
     }
 
     private Game testNFrames(int n, int[][] intBoard, Types.ACTIONS[] actions1, Types.ACTIONS[] actions2, Types.GAME_MODE gameMode, boolean canKick){
+        Game game = createGame(intBoard, actions1, actions2, gameMode, canKick);
+
+        // The same scenario rolled forward with the packed forward model must go through the same states.
+        Game packedGame = createGame(intBoard, actions1, actions2, gameMode, canKick);
+        packedGame.setPackedModel(true);
+
+        for (int i = 0; i < n; i++) {
+            if (!game.isEnded()) {
+                // Loop game while it's not ended.
+                game.tick(false);
+                packedGame.tick(false);
+                if (VERBOSE) {
+                    game.printBoard();
+                }
+                assertEquals(game.getGameState(), packedGame.getGameState(),
+                        "Packed forward model diverged at tick " + game.getGameState().getTick());
+            }
+        }
+        return game;
+    }
+
+    private Game createGame(int[][] intBoard, Types.ACTIONS[] actions1, Types.ACTIONS[] actions2, Types.GAME_MODE gameMode, boolean canKick){
         ForwardModel model = new ForwardModel(seed, intBoard, gameMode);
 
         Queue<Types.ACTIONS> actionsQueue1 = new ArrayDeque<>();
@@ -123,16 +145,6 @@ class ForwardModelTest {
             Avatar avatar2 = (Avatar)game.getAliveAvatars(-1).get(1);
             avatar2.setCanKick();
         }
-
-        for (int i = 0; i < n; i++) {
-            if (!game.isEnded()) {
-                // Loop game while it's not ended.
-                game.tick(false);
-                if (VERBOSE) {
-                    game.printBoard();
-                }
-            }
-        }
         return game;
     }
 
@@ -1129,6 +1141,41 @@ class ForwardModelTest {
         assertEquals(4, game.getGameState().getBoard()[7][4].getKey());
     }
 
+    /**
+     * Bombs reached by a bomb earlier in the list explode right after it, before the other bombs in the list. Here
+     * bomb 1 (reached by bomb 0) burns the wood before bomb 2 explodes, so bomb 2's flames go through it.
+     */
+    @Test
+    void chainReactionsFollowBombOrder() {
+
+        int[][] intBoard = new int[][]{
+                new int[]{0,0,0,0,0,0,0,0,0,0,0},
+                new int[]{0,10,0,0,0,0,0,0,0,11,0},
+                new int[]{0,0,0,0,0,0,0,0,0,0,0},
+                new int[]{0,0,0,0,0,0,0,0,0,0,0},
+                new int[]{0,0,0,0,0,0,0,0,0,0,0},
+                new int[]{0,0,0,0,0,0,2,0,0,0,0},
+                new int[]{0,0,0,0,0,0,0,0,0,0,0},
+                new int[]{0,0,0,0,0,0,0,0,0,0,0},
+                new int[]{0,0,0,0,0,0,0,0,0,0,0},
+                new int[]{0,12,0,0,0,0,0,0,0,13,0},
+                new int[]{0,0,0,0,0,0,0,0,0,0,0},
+        };
+
+        ForwardModel model = new ForwardModel(seed, intBoard, Types.GAME_MODE.FFA);
+        model.addBomb(2, 5, 3, 1, -1, true);  // Explodes this tick, reaches bomb 1
+        model.addBomb(4, 5, 3, 9, -1, true);  // Burns the wood at (6, 5)
+        model.addBomb(6, 7, 4, 1, -1, true);  // Explodes this tick, up through (6, 5)
+
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        Arrays.fill(actions, Types.ACTIONS.ACTION_STOP);
+        model.next(actions, 0);
+
+        assertEquals(0, model.getBombs().size());
+        assertEquals(Types.TILETYPE.FLAMES, model.getBoard()[5][6]);
+        assertEquals(Types.TILETYPE.FLAMES, model.getBoard()[4][6]);
+    }
+
     /**
      * When the player picks up a blast range boost, their bombs blast range is larger
      */
@@ -11,8 +11,9 @@ import com.google.gson.GsonBuilder;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static utils.Types.*;
 import static utils.Types.VISUALS;
@@ -22,6 +23,7 @@ public class Game {
 
      // State of the game (objects, ticks, etc).
     private GameLog gameLog;
+    private BinaryGameLog binaryLog;  // Log written during the game when it is not logged to JSON, null otherwise.
 
     // State of the game (objects, ticks, etc).
     private GameState gs;
@@ -41,20 +43,34 @@ public class Game {
     // Size of the board.
     private int size;
 
+    // Rules of the game.
+    private GameSettings settings;
+
     // String that identifies this game (for logging purposes)
     private String gameIdStr;
 
     // Log flags
     public static boolean LOG_GAME = false;
     public static boolean LOG_GAME_JSON = false; // If the game is being logged, should it be saved to json
+    public static boolean LOG_GAME_ARCHIVE = false; // If binary logs are moved to the archive (see GameLogArchive)
+    public static int[] SAMPLE_RADII = {LocalWindow.OPPONENT_MODEL_RADIUS, 2}; // Radii of the windows of the training samples, one file each
 
-    // Variables for multi-threaded run 
+    // Variables for multi-threaded run
+    public static boolean AGENT_VIRTUAL_THREADS = false; // Players act on virtual threads, if the Java version has them.
+    private ExecutorService agentExecutor;  // Runs the players' act() calls, kept for the whole game.
+    private boolean ownsAgentExecutor;      // True if created by this game, which shuts it down when it ends.
     private Actor[] actors = new Actor[NUM_PLAYERS];
-    private Thread[] threads = new Thread[NUM_PLAYERS];
+    private Future<?>[] decisions = new Future<?>[NUM_PLAYERS];  // Decision of each player not collected yet.
 
     //Counts how many time a player did overtime
     private int[] playerOvertimes = new int[NUM_PLAYERS];
 
+    // Time each player took to decide its actions (wall clock), since the game was reset.
+    private LatencySummary[] decisionTimes = newDecisionTimes();
+
+    // Indicates if the game is rolled forward with the packed forward model (see PackedForwardModel).
+    private boolean packedModel = false;
+
     /**
      * Constructor of the game
      * @param seed Seed for the game (used only for board generation)
@@ -62,10 +78,22 @@ public class Game {
      * @param gameMode Mode of this game.
      */
     public Game(long seed, int size, Types.GAME_MODE gameMode, String gameIdStr) {
+        this(seed, size, gameMode, gameIdStr, GameSettings.defaults());
+    }
+
+    /**
+     * Constructor of a game with its own rules, instead of the defaults in Types.
+     * @param seed Seed for the game (used only for board generation)
+     * @param size Size of the board.
+     * @param gameMode Mode of this game.
+     * @param settings Rules of this game, kept when it is reset.
+     */
+    public Game(long seed, int size, Types.GAME_MODE gameMode, String gameIdStr, GameSettings settings) {
         this.gameMode = gameMode;
         this.seed = seed;
         this.size = size;
         this.gameIdStr = gameIdStr;
+        this.settings = settings;
         reset(seed);
     }
 
@@ -79,8 +107,10 @@ public class Game {
         this.gameMode = gameMode;
         this.seed = seed;
         this.gs = state.copy();
-        this.gs.model.setTrueModel();
-        this.size = state.model.getBoard().length;
+        this.settings = state.getSettings();
+        this.packedModel = state.usesPackedModel();
+        this.gs.getModel().setTrueModel();
+        this.size = state.getBoard().length;
         updateAssignedGameStates();
     }
 
@@ -95,7 +125,8 @@ public class Game {
         this.seed = seed;
         this.size = model.getBoard().length;
         this.gs = new GameState(seed, model, gameMode);
-        this.gs.model.setTrueModel();
+        this.settings = gs.getSettings();
+        this.gs.getModel().setTrueModel();
         updateAssignedGameStates();
     }
 
@@ -105,10 +136,12 @@ public class Game {
      */
     public Game(GameState gs) {
         this.gs = gs.copy();
+        this.settings = gs.getSettings();
         this.gameMode = gs.gameMode;
         this.seed = gs.getSeed();
-        this.size = gs.model.getBoard().length;
-        this.gs.model.setTrueModel();
+        this.size = gs.getBoard().length;
+        this.packedModel = gs.usesPackedModel();
+        this.gs.getModel().setTrueModel();
         updateAssignedGameStates();
     }
 
@@ -119,9 +152,12 @@ public class Game {
     public void reset(long seed)
     {
         this.seed = seed;
-        this.gs = new GameState(seed, size, gameMode, true);
-        this.gs.model.setTrueModel();
+        this.gs = new GameState(seed, size, gameMode, true, settings);
+        this.gs.getModel().setTrueModel();
         this.gs.init();
+        this.gs.setPackedModel(packedModel);
+        Arrays.fill(playerOvertimes, 0);
+        for (LatencySummary times : decisionTimes) times.reset();
         updateAssignedGameStates();
     }
 
@@ -134,9 +170,12 @@ public class Game {
         if (!sameBoard) {
             this.seed = System.currentTimeMillis();
         }
-        this.gs = new GameState(seed, size, gameMode, true);
-        this.gs.model.setTrueModel();
+        this.gs = new GameState(seed, size, gameMode, true, settings);
+        this.gs.getModel().setTrueModel();
         this.gs.init();
+        this.gs.setPackedModel(packedModel);
+        Arrays.fill(playerOvertimes, 0);
+        for (LatencySummary times : decisionTimes) times.reset();
         updateAssignedGameStates();
     }
 
@@ -145,6 +184,8 @@ public class Game {
      */
     public Game copy() {
         Game copy = new Game(gs);
+        copy.gameIdStr = gameIdStr;
+        copy.REP = REP;
         ArrayList<Player> copyPlayers = new ArrayList<>(this.players.size());
         for (Player player : players) {
             copyPlayers.add(player.copy());
@@ -157,9 +198,22 @@ public class Game {
         }
         if (gameLog != null)
             copy.gameLog = gameLog.copy();
+        if (!ownsAgentExecutor)
+            copy.agentExecutor = agentExecutor;
         return copy;
     }
 
+    /**
+     * Selects the forward model used to roll this game forward: the packed one (primitive arrays, cheaper to
+     * copy and advance) or the object one (default). The choice is kept when the game is reset, and the
+     * game states given to the players use the same engine. Event statistics are only logged by the object one.
+     * @param usePacked true to use the packed forward model.
+     */
+    public void setPackedModel(boolean usePacked) {
+        this.packedModel = usePacked;
+        gs.setPackedModel(usePacked);
+    }
+
     /**
      * Sets the players of the game and initializes the array to hold their game states.
      * @param players Players of the game.
@@ -202,34 +256,38 @@ public class Game {
      * @return the results of the game, per player.
      */
 
-    ArrayList<String> toSaveGs = new ArrayList<String>();
-    ArrayList<String> toSaveGs2 = new ArrayList<String>();
-    ArrayList<String> toSaveGs3 = new ArrayList<String>();
-    ArrayList<String> toSaveGs5 = new ArrayList<String>();
-    ArrayList<String> toSaveGs6 = new ArrayList<String>();
-    ArrayList<String> toSaveGs7 = new ArrayList<String>();
-    ArrayList<String> toSaveGs8 = new ArrayList<String>();
+    // Training samples of the game being run (see addSample()), one sink for each radius, null when not running.
+    private SampleSink[] samples;
+    private int[] sampleRadii;
+    private int maxSampleRadius;
+    private float[] sampleCells;  // Window of the largest radius, the others are views of it.
 
     Gson gson = new GsonBuilder().setPrettyPrinting().create();
     String json;
     String JSON_GAMELOGS_PATH = "res/gamelogs/";
-    int REP = 0;
+    int REP = 0; // Repetition of the game with this seed, names the files it is logged to.
 
     public Types.RESULT[] run(GUI frame, WindowInput wi, boolean separateThreads)
     {
-        if (frame == null || wi == null)
-            VISUALS = false;
+        // Shown only if there is a window, without changing the default for other games.
+        boolean visuals = VISUALS && frame != null && wi != null;
 
         boolean firstEnd = true;
         Types.RESULT[] results = null;
-        if (LOG_GAME)
-            gameLog = new GameLog(seed, size, gameMode);
+        if (LOG_GAME) {
+            gameLog = new GameLog(seed, size, gameMode, settings);
+            if (!LOG_GAME_JSON) {
+                openBinaryLog();
+            }
+        }
+
+        openSamples();
 
         if (separateThreads) {
             createActors();
         }
 
-        while(!isEnded() || VISUALS && wi != null && !wi.windowClosed && !isEnded()) {
+        while(!isEnded() || visuals && !wi.windowClosed && !isEnded()) {
             // Loop while window is still open, even if the game ended.
             // If not playing with visuals, loop while the game's not ended.
             tick(separateThreads);
@@ -237,136 +295,24 @@ public class Game {
             // Check end of game
             if (firstEnd && isEnded()) {
                 firstEnd = false;
-                results = terminate();
-
-                int numPlayers = NUM_PLAYERS; // we are by default using 4 players
-                for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
-                    String playerId;
-                    Player p = players.get(pIdx);
-                    switch (results[pIdx]) {
-                        case WIN:
-                            break;
-                        case TIE:
-//                            playerId = p.toString();
-//                            //System.out.println("playerId: " + playerId);
-//                            toSaveGs.removeIf(x -> x.startsWith(playerId));
-                            break;
-                        case LOSS:
-                            playerId = p.toString();
-                            //System.out.println("playerId: " + playerId);
-                            toSaveGs.removeIf(x -> x.startsWith(playerId));
-                            toSaveGs2.removeIf(x -> x.startsWith(playerId));
-                            toSaveGs3.removeIf(x -> x.startsWith(playerId));
-                            toSaveGs5.removeIf(x -> x.startsWith(playerId));
-                            toSaveGs6.removeIf(x -> x.startsWith(playerId));
-                            toSaveGs7.removeIf(x -> x.startsWith(playerId));
-                            toSaveGs8.removeIf(x -> x.startsWith(playerId));
-                            break;
+                // Players still deciding late actions are done before being told the result.
+                if (separateThreads) {
+                    try {
+                        killThreads();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
                     }
                 }
+                results = terminate();
 
-
-                toSaveGs.removeIf(x -> x.contains("ACTION_STOP"));
-                toSaveGs3.removeIf(x -> x.contains("ACTION_STOP"));
-                toSaveGs2.removeIf(x -> x.contains("ACTION_STOP"));
-                toSaveGs5.removeIf(x -> x.contains("ACTION_STOP"));
-                toSaveGs6.removeIf(x -> x.contains("ACTION_STOP"));
-                toSaveGs7.removeIf(x -> x.contains("ACTION_STOP"));
-                toSaveGs8.removeIf(x -> x.contains("ACTION_STOP"));
-                //System.out.println("toSaveGs: " + toSaveGs);
-
-
-//                System.out.println("toSaveGs5: " + toSaveGs5);
-//                System.out.println("toSaveGs6: " + toSaveGs6);
-//                System.out.println("toSaveGs7: " + toSaveGs7);
-//                System.out.println("toSaveGs8: " + toSaveGs8);
-
-                File file = new File(JSON_GAMELOGS_PATH + gameIdStr + "/");
-                if (! file.exists()){
-                    file.mkdirs();
-                }
-                if (file.listFiles() == null) {
-                    throw new Error("Folder specified at "+ JSON_GAMELOGS_PATH +" does not exist nor could be created.");
-                }
-                String textPath = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ REP +"_"+  gameMode.name() + "["+size+"x"+size+"].txt";
-                String textPath2 = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ REP +"_"+  gameMode.name() + "[vision2].txt";
-                String textPath3 = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ REP +"_"+  gameMode.name() + "[vision3].txt";
-                String textPath5 = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ REP +"_"+  gameMode.name() + "[vision5].txt";
-                String textPath6 = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ REP +"_"+  gameMode.name() + "[vision6].txt";
-                String textPath7 = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ REP +"_"+  gameMode.name() + "[vision7].txt";
-                String textPath8 = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ REP +"_"+  gameMode.name() + "[vision8].txt";
-
-//                try {
-//                    PrintWriter textOut = new PrintWriter(textPath);
-//                    textOut.println(toSaveGs.toString());
-//                    textOut.close();
-//                } catch (IOException i) {
-//                i.printStackTrace();
-//
-//                }
-
-                try {
-                    PrintWriter textOut = new PrintWriter(textPath2);
-                    textOut.println(toSaveGs2.toString());
-                    textOut.close();
-                } catch (IOException i) {
-                    i.printStackTrace();
-
-                }
-
-                try {
-                    PrintWriter textOut = new PrintWriter(textPath3);
-                    textOut.println(toSaveGs3.toString());
-                    textOut.close();
-                } catch (IOException i) {
-                    i.printStackTrace();
-
-                }
-
-//                try {
-//                    PrintWriter textOut = new PrintWriter(textPath5);
-//                    textOut.println(toSaveGs5.toString());
-//                    textOut.close();
-//                } catch (IOException i) {
-//                    i.printStackTrace();
-//
-//                }
-//
-//                try {
-//                    PrintWriter textOut = new PrintWriter(textPath6);
-//                    textOut.println(toSaveGs6.toString());
-//                    textOut.close();
-//                } catch (IOException i) {
-//                    i.printStackTrace();
-//
-//                }
-//
-//                try {
-//                    PrintWriter textOut = new PrintWriter(textPath7);
-//                    textOut.println(toSaveGs7.toString());
-//                    textOut.close();
-//                } catch (IOException i) {
-//                    i.printStackTrace();
-//
-//                }
-//
-//                try {
-//                    PrintWriter textOut = new PrintWriter(textPath8);
-//                    textOut.println(toSaveGs8.toString());
-//                    textOut.close();
-//                } catch (IOException i) {
-//                    i.printStackTrace();
-//
-//                }
-
-                if (!VISUALS) {
+                if (!visuals) {
                     // The game has ended, end the loop if we're running without visuals.
                     break;
                 }
             }
 
             // Paint game state
-            if (VISUALS && frame != null) {
+            if (visuals) {
                 frame.paint();
                 try {
                     Thread.sleep(FRAME_DELAY);
@@ -381,18 +327,29 @@ public class Game {
             results = terminate();
         }
 
+        // Samples of the players that lost are dropped.
+        if (samples != null) {
+            finishSamples(results);
+        }
+
         // Save logged game
         if (LOG_GAME) {
             if (LOG_GAME_JSON) {
-                gameLog.serializeJSON(gameIdStr);
+                gameLog.serializeJSON(gameIdStr, REP);
                 System.out.println("gameLog: " + gameLog);
 
             } else {
-                gameLog.serialize();
+                closeBinaryLog();
+                if (LOG_GAME_ARCHIVE) {
+                    archiveBinaryLog(true);
+                } else if (GameLogArchive.defaultExists()) {
+                    // Kept in the game's folder, and added to the archive so it knows the last game logged.
+                    archiveBinaryLog(false);
+                }
             }
         }
 
-        // Collect and kill all threads
+        // Collect late decisions and release the threads
         if (separateThreads) {
             try {
                 killThreads();
@@ -427,6 +384,14 @@ public class Game {
         // Log actions
         if (LOG_GAME) {
             gameLog.addActions(actions);
+            if (binaryLog != null) {
+                try {
+                    binaryLog.add(actions);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    closeBinaryLog();
+                }
+            }
         }
 
         // Advance the game state
@@ -443,294 +408,24 @@ public class Game {
      * Get player actions, 1 for each avatar still in the game. Called at every frame.
      */
     private Types.ACTIONS[] getAvatarActions() {
-        String tempString;
-        String tempString2;
-        String tempString3;
-        String tempString5;
-        String tempString6;
-        String tempString7;
-        String tempString8;
+        // Board the samples of this tick are taken from.
+        Types.TILETYPE[][] board = samples != null ? gs.getBoard() : null;
 
         // Get player actions, 1 for each avatar still in the game
         Types.ACTIONS[] actions = new Types.ACTIONS[NUM_PLAYERS];
         for (int i = 0; i < NUM_PLAYERS; i++) {
-            tempString = "";
-            tempString2 = "";
-            tempString3 = "";
-            tempString5 = "";
-            tempString6 = "";
-            tempString7 = "";
-            tempString8 = "";
             Player p = players.get(i);
 
-            GameObject agents [];
-            agents = gs.getAgents();
-            Avatar av = (Avatar) agents[i];
-            Vector2d avatarPosition = av.getPosition();
-            String [] tempAvPosition = (avatarPosition.toString().replace(" : ",",")).split(",");
-
-            int gsArray [][];
-            gsArray = gs.model.toArray();
-
-            int boardSize = gs.getBoard().length;
-
-            // position to start from  1 instead of 0 - so 1 to 12
-//            System.out.println("tempAvPosition[0]: " + tempAvPosition[0]+ " tempAvPosition[1]: "+ tempAvPosition[1] + "size: " + size);
-//            System.out.println("Float.parseFloat(tempAvPosition[1]+1): "+ Float.parseFloat(tempAvPosition[1]));
-//            System.out.println("(Float.parseFloat(tempAvPosition[1]+1) * size): "+ (Float.parseFloat(tempAvPosition[1]) * size));
-//            System.out.println("Float.parseFloat(tempAvPosition[0]+1): "+ Float.parseFloat(tempAvPosition[0]));
-//            System.out.println("(size - Float.parseFloat(tempAvPosition[0]+1)): "+ (size - Float.parseFloat(tempAvPosition[0])));
-//            System.out.println("Final: "+ ((Float.parseFloat(tempAvPosition[0])+1 * size) - (size - Float.parseFloat(tempAvPosition[1])))/121);
-
-
-            float squarePositionFraction = ((Float.parseFloat(tempAvPosition[0])+1 * size) - (size - Float.parseFloat(tempAvPosition[1])))/121;
-
-//            float gsArraywithPosition [][] = new float [size][size];
-//            for (int x = 0; x < boardSize; x++) {
-//                for (int y = 0; y < boardSize; y++) {
-//                    gsArraywithPosition[x][y] = gsArray[x][y]*squarePositionFraction;
-//                    //System.out.println("squarePositionFraction: " + squarePositionFraction);
-//                    //System.out.println("gsArraywithPosition[x][y]: " +  gsArraywithPosition[x][y]);
-//                }
-//            }
-
-            float flatGameState [] = new float[boardSize * boardSize + 1];
-            int index = 0;
-            for (int x = 0; x < boardSize; x++) {
-                for (int y = 0; y < boardSize; y++) {
-                    flatGameState[index] = gsArray[x][y];
-                    index++;
-                }
-                flatGameState[boardSize * boardSize] = squarePositionFraction;
-            }
-
-
-            int xyrange2 [] = new int [2];
-            int xyrange3 [] = new int [2];
-            int xyrange5 [] = new int [2];
-            int xyrange6 [] = new int [2];
-            int xyrange7 [] = new int [2];
-            int xyrange8 [] = new int [2];
-
-
-            int start2 [] = new int [2];
-            int start3 [] = new int [2];
-            int start5 [] = new int [2];
-            int start6 [] = new int [2];
-            int start7 [] = new int [2];
-            int start8 [] = new int [2];
-
-            float gsSize2 [][];
-            float gsSize3 [][];
-            float gsSize5 [][];
-            float gsSize6 [][];
-            float gsSize7 [][];
-            float gsSize8 [][];
-
-            float flat2 [];
-            float flat3 [];
-            float flat5 [];
-            float flat6 [];
-            float flat7 [];
-            float flat8 [];
-
-            for (int y = 2; y < 3; y++) {
-                int z = y;
-                int zvert = y;
-                int minhorizontal = Integer.parseInt(tempAvPosition[0]) - z;
-                int minvertical = Integer.parseInt(tempAvPosition[1]) - z;
-                while (z >= 0) {
-                    if (minhorizontal >= 0) {
-                        break;
-                    } else {
-                        z--;
-                        minhorizontal++;
-                    }
-                }
-                while (zvert >= 0) {
-                    if (minvertical >= 0) {
-                        break;
-                    } else {
-                        zvert--;
-                        minvertical++;
-                    }
-                }
-                int xrange = z + 1 + y;
-                int yrange = zvert + 1 + y;
-
-                while (xrange > y+1) {
-                    xrange--;
-                }
-                while (yrange > y+1) {
-                    yrange--;
-                }
-
-
-
-                //System.out.println("for dimension " + y+ ", xrange = " + xrange + ", yrange = " + yrange +  ", (minhorizontal, minvertical) = (" + minhorizontal + ", " + minvertical +")" );
-                switch (y) {
-
-                    case 2: {
-                        start2[0] = minhorizontal;
-                        start2[1] = minvertical;
-                        xyrange2[0] = xrange;
-                        xyrange2[1] = yrange;
-                        gsSize2 = new float[xrange][yrange];
-                        for (int startH = 0; startH < xyrange2[0]; startH++) {
-                            for (int startV = 0; startV < xyrange2[1]; startV++) {
-                                gsSize2[startH][startV] = gsArray[minhorizontal + startH][minvertical + startV];
-                            }
-                        }
-                        flat2 = new float[gsSize2[0].length * gsSize2[1].length+1];
-                        index = 0;
-                        for (int x = 0; x < gsSize2[0].length; x++) {
-                            for (int yy = 0; yy < gsSize2[1].length; yy++) {
-                                flat2[index] = gsArray[x][yy];
-                                index++;
-                            }
-                            flat2[gsSize2[0].length * gsSize2[1].length] = squarePositionFraction;
-                        }
-                        tempString2 = tempString2 + p.toString() + "\t" + Arrays.toString(flat2)  + "\t";
-                        //System.out.println("gsSiz2: " + Arrays.deepToString(gsSize2));
-                        break;
-                    }
-
-                    case 3: {
-                        start3[0] = minhorizontal;
-                        start3[1] = minvertical;
-                        xyrange3[0] = xrange;
-                        xyrange3[1] = yrange;
-                        gsSize3 = new float[xrange][yrange];
-                        for (int startH = 0; startH < xyrange3[0]; startH++) {
-                            for (int startV = 0; startV < xyrange3[1]; startV++) {
-                                gsSize3[startH][startV] = gsArray[minhorizontal + startH][minvertical + startV];
-                            }
-                        }
-                        flat3 = new float[gsSize3[0].length * gsSize3[1].length+1];
-                        index = 0;
-                        for (int x = 0; x < gsSize3[0].length; x++) {
-                            for (int yy = 0; yy < gsSize3[1].length; yy++) {
-                                flat3[index] = gsArray[x][yy];
-                                index++;
-                            }
-                            flat3[gsSize3[0].length * gsSize3[1].length] = squarePositionFraction;
-                        }
-                        tempString3 = tempString3 + p.toString() + "\t" + Arrays.toString(flat3)  + "\t";
-                        //System.out.println("gsSiz3: " + Arrays.deepToString(gsSize3));
-                        break;
-                    }
-
-                    case 5: {
-                        start5[0] = minhorizontal;
-                        start5[1] = minvertical;
-                        xyrange5[0] = xrange;
-                        xyrange5[1] = yrange;
-                        gsSize5 = new float[xrange][yrange];
-                        for (int startH = 0; startH < xyrange5[0]; startH++) {
-                            for (int startV = 0; startV < xyrange5[1]; startV++) {
-                                gsSize5[startH][startV] = gsArray[minhorizontal + startH][minvertical + startV];
-                            }
-                        }
-                        flat5 = new float[gsSize5[0].length * gsSize5[1].length+1];
-                        index = 0;
-                        for (int x = 0; x < gsSize5[0].length; x++) {
-                            for (int yy = 0; yy < gsSize5[1].length; yy++) {
-                                flat5[index] = gsArray[x][yy];
-                                index++;
-                            }
-                            flat5[gsSize5[0].length * gsSize5[1].length] = squarePositionFraction;
-                        }
-                        tempString5 = tempString5 + p.toString() + "\t" + Arrays.toString(flat5)  + "\t";
-                        //System.out.println("gsSiz5: " + Arrays.deepToString(gsSize5));
-                        break;
-                    }
-
-                    case 6: {
-                        start6[0] = minhorizontal;
-                        start6[1] = minvertical;
-                        xyrange6[0] = xrange;
-                        xyrange6[1] = yrange;
-                        gsSize6 = new float[xrange][yrange];
-                        for (int startH = 0; startH < xyrange6[0]; startH++) {
-                            for (int startV = 0; startV < xyrange6[1]; startV++) {
-                                gsSize6[startH][startV] = gsArray[minhorizontal + startH][minvertical + startV];
-                            }
-                        }
-                        flat6 = new float[gsSize6[0].length * gsSize6[1].length+1];
-                        index = 0;
-                        for (int x = 0; x < gsSize6[0].length; x++) {
-                            for (int yy = 0; yy < gsSize6[1].length; yy++) {
-                                flat6[index] = gsArray[x][yy];
-                                index++;
-                            }
-                            flat6[gsSize6[0].length * gsSize6[1].length] = squarePositionFraction;
-                        }
-                        tempString6 = tempString6 + p.toString() + "\t" + Arrays.toString(flat6)  + "\t";
-                        //System.out.println("gsSiz6: " + Arrays.deepToString(gsSize6));
-                        break;
-                    }
-
-                    case 7: {
-                        start7[0] = minhorizontal;
-                        start7[1] = minvertical;
-                        xyrange7[0] = xrange;
-                        xyrange7[1] = yrange;
-                        gsSize7 = new float[xrange][yrange];
-                        for (int startH = 0; startH < xyrange7[0]; startH++) {
-                            for (int startV = 0; startV < xyrange7[1]; startV++) {
-                                gsSize7[startH][startV] = gsArray[minhorizontal + startH][minvertical + startV];
-                            }
-                        }
-
-                        flat7 = new float[gsSize7[0].length * gsSize7[1].length+1];
-                        index = 0;
-                        for (int x = 0; x < gsSize7[0].length; x++) {
-                            for (int yy = 0; yy < gsSize7[1].length; yy++) {
-                                flat7[index] = gsArray[x][yy];
-                                index++;
-                            }
-                            flat7[gsSize7[0].length * gsSize7[1].length] = squarePositionFraction;
-                        }
-                        tempString7 = tempString7 + p.toString() + "\t" + Arrays.toString(flat7)  + "\t";
-                        //System.out.println("flat7: " + Arrays.toString(flat7));
-                        break;
-                    }
-                    case 8: {
-                        start8[0] = minhorizontal;
-                        start8[1] = minvertical;
-                        xyrange8[0] = xrange;
-                        xyrange8[1] = yrange;
-                        gsSize8 = new float[xrange][yrange];
-                        for (int startH = 0; startH < xyrange8[0]; startH++) {
-                            for (int startV = 0; startV < xyrange8[1]; startV++) {
-                                gsSize8[startH][startV] = gsArray[minhorizontal + startH][minvertical + startV];
-                            }
-                        }
-                        flat8 = new float[gsSize8[0].length * gsSize8[1].length+1];
-                        index = 0;
-                        for (int x = 0; x < gsSize8[0].length; x++) {
-                            for (int yy = 0; yy < gsSize8[1].length; yy++) {
-                                flat8[index] = gsArray[x][yy];
-                                index++;
-                            }
-                            flat8[gsSize8[0].length * gsSize8[1].length] = squarePositionFraction;
-                        }
-                        tempString8 = tempString8 + p.toString() + "\t" + Arrays.toString(flat8)  + "\t";
-                        //System.out.println("gsSize8: " + Arrays.deepToString(gsSize8));
-                        break;
-                    }
-                }
-            }
-            tempString = tempString + p.toString() + "\t" + Arrays.toString(flatGameState)  + "\t";
-
             // Check if this player is still playing
-            if (gameStateObservations[i].winner() == Types.RESULT.INCOMPLETE) {
+            if (isPlaying(i)) {
 
                 ElapsedCpuTimer ect = new ElapsedCpuTimer();
                 ect.setMaxTimeMillis(Types.DECISION_TIME_LIMIT);
+                long start = System.nanoTime();
 
-                actions[i] = p.act(gameStateObservations[i]);
+                actions[i] = p.act(getObservation(i));
 
+                decisionTimes[i].add(System.nanoTime() - start);
                 long elapsedTime = ect.elapsedMillis();
                 if(CHECK_DECISION_TIME && elapsedTime > DECISION_TIME_LIMIT)
                 {
@@ -746,90 +441,289 @@ public class Game {
                 actions[i] = Types.ACTIONS.ACTION_STOP;
             }
 
-            //System.out.println("Player: " + p.getPlayerID() + " " + actions[p.getPlayerID()] + "\n" +  gs.toString()+ "\n");
-            //gs.model.toArray();
-            //System.out.println("Player: " + p.getPlayerID() + " " + actions[p.getPlayerID()] + "\n" + gs.model.toArray().toString()+ " " + "\n");
-            tempString = tempString + actions[i] + "\n"; // + "\t" + gs.model.toArray().toString();
-            tempString2 = tempString2 + actions[i] + "\n";
-            tempString3 = tempString3 + actions[i] + "\n";
-            tempString5 = tempString5 + actions[i] + "\n";
-            tempString6 = tempString6 + actions[i] + "\n";
-            tempString7 = tempString7 + actions[i] + "\n";
-            tempString8 = tempString8 + actions[i] + "\n";
-            //System.out.println("PlayerID: " + p.getPlayerID() + "\n Player Position: " + avPosition + "\n Game State: " + Arrays.toString(flatGameState)+  "\n Player Action: " + actions[p.getPlayerID()] + "\n");
-            //System.out.println("tempString: "+ tempString);
-            toSaveGs.add(tempString);
-            toSaveGs2.add(tempString2);
-            toSaveGs3.add(tempString3);
-            toSaveGs5.add(tempString5);
-            toSaveGs6.add(tempString6);
-            toSaveGs7.add(tempString7);
-            toSaveGs8.add(tempString8);
+            if (samples != null) {
+                addSample(i, p, board, actions[i]);
+            }
         }
-        //System.out.println(gs.toString());
         return actions;
     }
 
+    /**
+     * Creates the sample files of the game, one for each radius of SAMPLE_RADII.
+     */
+    private void openSamples() {
+        sampleRadii = SAMPLE_RADII.clone();
+        maxSampleRadius = 0;
+        for (int radius : sampleRadii) maxSampleRadius = Math.max(maxSampleRadius, radius);
+        sampleCells = new float[LocalWindow.cells(maxSampleRadius)];
+
+        samples = new SampleSink[sampleRadii.length];
+        try {
+            for (int r = 0; r < sampleRadii.length; r++) {
+                samples[r] = new SampleSink(getSamplesFile(seed, REP, sampleRadii[r]),
+                        LocalWindow.cells(sampleRadii[r]));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeSamples();
+        }
+    }
+
+    /**
+     * Adds the samples of a player to the sample files: the windows of each radius around it (see LocalWindow), its
+     * position and its action. The board is read once, for the largest window, and the smaller windows are views of
+     * it. Samples of ACTION_STOP are not kept.
+     */
+    private void addSample(int playerIdx, Player p, Types.TILETYPE[][] board, Types.ACTIONS action) {
+        if (action == ACTIONS.ACTION_STOP) return;
+
+        Vector2d position = gs.getAgents()[playerIdx].getPosition();
+        LocalWindow.extract(board, position.x, position.y, maxSampleRadius, sampleCells, 0);
+        float positionFraction = LocalWindow.positionFraction(position.x, position.y, size);
+        int stride = LocalWindow.stride(maxSampleRadius);
+        try {
+            for (int r = 0; r < sampleRadii.length; r++) {
+                int width = 2 * sampleRadii[r] + 1;
+                samples[r].add(playerIdx, p.getPlayerID(), action, positionFraction, sampleCells,
+                        LocalWindow.viewOffset(maxSampleRadius, sampleRadii[r]), stride, width, width);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeSamples();
+        }
+    }
+
+    /**
+     * Creates the binary log of the game, written as it is played (see BinaryGameLog).
+     */
+    private void openBinaryLog() {
+        try {
+            binaryLog = new BinaryGameLog(getBinaryLogFile(seed, REP), seed, size, gameMode, settings);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void closeBinaryLog() {
+        if (binaryLog == null) return;
+        try {
+            binaryLog.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        binaryLog = null;
+    }
+
+    /**
+     * Adds the binary log of the game to the archive, where it can be found by game id, seed and repetition.
+     * @param move - true to delete the log from the game's folder once it is in the archive.
+     */
+    private void archiveBinaryLog(boolean move) {
+        File log = getBinaryLogFile(seed, REP);
+        try {
+            GameLogArchive.getDefault().add(gameIdStr, seed, REP, log);
+            if (move)
+                log.delete();
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Keeps the samples of the players that did not lose, and closes the sample files.
+     */
+    private void finishSamples(Types.RESULT[] results) {
+        boolean[] keep = new boolean[NUM_PLAYERS];
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            keep[i] = results[i] != Types.RESULT.LOSS;
+        }
+        for (SampleSink sink : samples) {
+            try {
+                sink.finish(keep);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        samples = null;
+    }
+
+    private void closeSamples() {
+        for (SampleSink sink : samples) {
+            if (sink == null) continue;
+            try {
+                sink.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        samples = null;
+    }
+
     /**
      * Get player actions, 1 for each avatar still in the game, using separate threads. Called at every frame.
+     * Players decide at the same time on the threads of the agent executor. If CHECK_DECISION_TIME is set, players
+     * that have not decided DECISION_TIME_LIMIT ms after being asked (their deadline starts once they are submitted,
+     * so the observations of the players before them don't eat their time) play ACTION_STOP and count an overtime, so the
+     * game ticks on time. Their thread is interrupted, which ends the time budget of their ElapsedCpuTimer, and their
+     * late decision is ignored. They are not asked again (and play ACTION_STOP with an overtime) until it ends.
      */
     private Types.ACTIONS[] getAvatarActionsInSeparateThreads() throws InterruptedException {
-        //
         Types.ACTIONS[] actions = new Types.ACTIONS[NUM_PLAYERS];
+        boolean[] asked = new boolean[NUM_PLAYERS];
+        long[] deadline = new long[NUM_PLAYERS];
+        long timeLimit = TimeUnit.MILLISECONDS.toNanos(DECISION_TIME_LIMIT);
         for (int i = 0; i < NUM_PLAYERS; i++) {
             Player p = players.get(i);
 
             // Check if this player is still playing
-            if (gameStateObservations[i].winner() == Types.RESULT.INCOMPLETE) {
-                actors[i].player = p;
-                threads[i] = new Thread(actors[i]);
-                threads[i].start();
+            if (isPlaying(i)) {
+                if (decisions[i] != null && !decisions[i].isDone()) {
+                    // Still deciding a previous action, a player is never asked twice at the same time.
+                    actions[i] = ACTIONS.ACTION_STOP;
+                    playerOvertimes[i]++;
+                } else {
+                    if (decisions[i] != null) {
+                        // Late decision that ended since the last tick.
+                        decisionTimes[i].add(actors[i].getDecisionTime());
+                    }
+                    actors[i].player = p;
+                    actors[i].gamestate = getObservation(i);
+                    decisions[i] = agentExecutor.submit(actors[i]);
+                    deadline[i] = System.nanoTime() + timeLimit;
+                    asked[i] = true;
+                }
             } else {
-                threads[i] = null;
                 // This player is dead and action will be ignored
                 actions[i] = Types.ACTIONS.ACTION_STOP;
             }
         }
 
-        killThreads();
-
         for (int i = 0; i < NUM_PLAYERS; i++) {
-            if (threads[i] != null)
+            if (!asked[i]) continue;
+            try {
+                if (CHECK_DECISION_TIME) {
+                    decisions[i].get(Math.max(0, deadline[i] - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } else {
+                    decisions[i].get();
+                }
                 actions[i] = actors[i].getValue();
+                decisionTimes[i].add(actors[i].getDecisionTime());
+                decisions[i] = null;
+            } catch (TimeoutException e) {
+                if(VERBOSE)
+                    System.out.println("Player " + players.get(i).getPlayerID() + " used more time than allowed (" + DECISION_TIME_LIMIT + "ms). Executing action STOP.");
+                actions[i] = ACTIONS.ACTION_STOP;
+                playerOvertimes[i]++;
+                actors[i].interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Player " + players.get(i).getPlayerID() + " failed to act", e.getCause());
+            }
         }
 
         return actions;
     }
 
     /**
-     * Creates actor objects for the players.
+     * Creates actor objects for the players, and the executor they act on if none was set (see setAgentExecutor()).
      */
     public void createActors() {
         for (int i = 0; i < NUM_PLAYERS; i++)
             actors[i] = new Actor();
+        Arrays.fill(decisions, null);
+        if (agentExecutor == null) {
+            agentExecutor = newAgentExecutor(NUM_PLAYERS);
+            ownsAgentExecutor = true;
+        }
     }
 
     /**
-     * Kills all threads.
-     * @throws InterruptedException if threads could not be killed
+     * Waits for the players still deciding an action, so they are not playing when the game ends, and shuts down the
+     * agent executor if it was created by this game.
+     * @throws InterruptedException if interrupted while waiting
      */
     private void killThreads() throws InterruptedException {
         for (int i = 0; i < NUM_PLAYERS; i++) {
-            if (threads[i] != null && threads[i].isAlive())
-                threads[i].join();
+            if (decisions[i] != null) {
+                try {
+                    decisions[i].get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+                decisionTimes[i].add(actors[i].getDecisionTime());
+                decisions[i] = null;
+            }
+        }
+        if (ownsAgentExecutor) {
+            agentExecutor.shutdown();
+            agentExecutor = null;
+            ownsAgentExecutor = false;
+        }
+    }
+
+    /**
+     * Sets the executor the players act on when the game is run in separate threads, instead of one created for each
+     * run. It can be shared by several games, and it is not shut down by them. It should be able to run all their
+     * players at the same time, as the decision time limit includes the time waiting for a thread.
+     * @param executor executor to run the players on, null to create one for each run.
+     */
+    public void setAgentExecutor(ExecutorService executor) {
+        this.agentExecutor = executor;
+        this.ownsAgentExecutor = false;
+    }
+
+    /**
+     * Creates an executor to run players on. If AGENT_VIRTUAL_THREADS is set and the Java version has virtual
+     * threads, each act() call gets its own virtual thread. Otherwise, a pool of daemon threads is used.
+     * @param nThreads number of threads of the pool, when virtual threads are not used.
+     * @return a new executor, to shut down when not needed anymore.
+     */
+    public static ExecutorService newAgentExecutor(int nThreads) {
+        if (AGENT_VIRTUAL_THREADS) {
+            try {
+                // Looked up by reflection, so the game still builds and runs with Java versions before 21.
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads are not available in this Java version, using platform threads.");
+            }
         }
+        AtomicInteger nCreated = new AtomicInteger();
+        return Executors.newFixedThreadPool(nThreads, r -> {
+            Thread t = new Thread(r, "agent-" + nCreated.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     /**
-     * Updates the state observations for all players.
+     * Updates the state observations for all players. They are only built when first needed (see getObservation()),
+     * so observations of eliminated players, or of players not asked to act, are not built at all.
      */
     private void updateAssignedGameStates() {
         if (gameStateObservations == null) {
             gameStateObservations = new GameState[NUM_PLAYERS];
         }
-        for (int i = 0; i < NUM_PLAYERS; i++) {
-            gameStateObservations[i] = getGameState(i);
+        Arrays.fill(gameStateObservations, null);
+    }
+
+    /**
+     * @param playerIdx index of a player.
+     * @return the state observation of the player for the current tick, built on first access.
+     */
+    private GameState getObservation(int playerIdx) {
+        GameState obs = gameStateObservations[playerIdx];
+        if (obs == null) {
+            obs = getGameState(playerIdx);
+            gameStateObservations[playerIdx] = obs;
         }
+        return obs;
+    }
+
+    /**
+     * @param playerIdx index of a player.
+     * @return true if the player is still in the game, checked on the game state (no observation is built).
+     */
+    private boolean isPlaying(int playerIdx) {
+        return gs.winner(playerIdx) == Types.RESULT.INCOMPLETE;
     }
 
     /**
@@ -841,7 +735,7 @@ public class Game {
      */
     boolean isEnded() {
         //Delegate to our game config
-        return getGameConfig().isEnded(gs.getTick(), gameMode, gs.getAliveAgents());
+        return settings.getGameConfig().isEnded(gs.getTick(), gameMode, gs.getAliveAgents());
     }
 
     /**
@@ -850,8 +744,8 @@ public class Game {
     protected void updateMessages() {
         if (gameMode.equals(GAME_MODE.TEAM_RADIO)){
             for (int i = 0; i < NUM_PLAYERS; i++) {
-                int teammateIdx = getGameConfig().getTeammates(GAME_MODE.TEAM_RADIO, i + TILETYPE.AGENT0.getKey())[0].getKey() - TILETYPE.AGENT0.getKey();
-                if (gameStateObservations[teammateIdx].winner() == RESULT.INCOMPLETE)
+                int teammateIdx = settings.getGameConfig().getTeammates(GAME_MODE.TEAM_RADIO, i + TILETYPE.AGENT0.getKey())[0].getKey() - TILETYPE.AGENT0.getKey();
+                if (isPlaying(teammateIdx))
                     gs.setMessage(i, players.get(teammateIdx).getMessage());
                 else
                     gs.setMessage(i, new int[MESSAGE_LENGTH]); // default case
@@ -874,14 +768,14 @@ public class Game {
         }
 
         // Call all agents' end-of-game method for post-processing. Agents receive their final reward.
-        double[] finalRewards = getGameConfig().getRewards(getTick(), results);
+        double[] finalRewards = settings.getGameConfig().getRewards(getTick(), results);
         for (int i = 0; i < NUM_PLAYERS; i++) {
             Player p = players.get(i);
             p.result(finalRewards[i]);
         }
 
         if (LOGGING_STATISTICS)
-            gs.model.saveEventsStatistics(gameIdStr, seed);
+            gs.getModel().saveEventsStatistics(gameIdStr, seed, REP);
 
 //        if (VERBOSE) {
 //        System.out.println("GameOver: " + Arrays.toString(results));
@@ -916,8 +810,8 @@ public class Game {
      * @return board of the game
      */
     public Types.TILETYPE[][] getBoard(int pIdx) {
-        if (pIdx >= 0 && gameStateObservations[pIdx] != null) {
-            return gameStateObservations[pIdx].getBoard();
+        if (pIdx >= 0) {
+            return getObservation(pIdx).getBoard();
         }
         return gs.getBoard();
     }
@@ -936,10 +830,10 @@ public class Game {
      * @return An array with all avatars that still alive.
      */
     public ArrayList<GameObject> getAliveAvatars(int pIdx) {
-        if (pIdx >= 0 && gameStateObservations[pIdx] != null) {
-            return gameStateObservations[pIdx].model.getAliveAgents();
+        if (pIdx >= 0) {
+            return getObservation(pIdx).getAliveAgents();
         }
-        return gs.model.getAliveAgents();
+        return gs.getAliveAgents();
     }
 
     /**
@@ -958,16 +852,23 @@ public class Game {
         return gameMode;
     }
 
+    /**
+     * @return the rules of this game.
+     */
+    public GameSettings getSettings() {
+        return settings;
+    }
+
     /**
      * Returns all avatars of this game (dead or alive)
      * @param pIdx Index of the player this information is for.
      * @return array with all avatars of this game
      */
     public GameObject[] getAvatars(int pIdx) {
-        if (pIdx >= 0 && gameStateObservations[pIdx] != null) {
-            return gameStateObservations[pIdx].model.getAgents();
+        if (pIdx >= 0) {
+            return getObservation(pIdx).getAgents();
         }
-        return gs.model.getAgents();
+        return gs.getAgents();
     }
 
     /**
@@ -983,7 +884,7 @@ public class Game {
      */
     public void setLogGame(boolean b) {
         if (b && gameLog == null) {
-            gameLog = new GameLog(seed, size, gameMode);
+            gameLog = new GameLog(seed, size, gameMode, settings);
         }
         LOG_GAME = b;
     }
@@ -1011,6 +912,35 @@ public class Game {
         return logToGame(lastLog);
     }
 
+    /**
+     * Returns a game of the archive (see GameLogArchive), with SimonSays players executing the logged action
+     * sequences, the saved seed, initial state and game mode.
+     * @param gameIdStr - identifier of the game.
+     * @param seed - seed of the game.
+     * @param rep - repetition of the game with its seed.
+     * @return - the game, or null if it is not in the archive.
+     * @throws IllegalArgumentException if the game was logged with rules other than the default ones.
+     */
+    public static Game getArchivedReplayGame(String gameIdStr, long seed, int rep) throws IOException {
+        return getArchivedReplayGame(gameIdStr, seed, rep, GameSettings.defaults());
+    }
+
+    /**
+     * Returns a game of the archive (see GameLogArchive) played with the given rules, with SimonSays players
+     * executing the logged action sequences, the saved seed, initial state and game mode.
+     * @param gameIdStr - identifier of the game.
+     * @param seed - seed of the game.
+     * @param rep - repetition of the game with its seed.
+     * @param settings - rules the game was played with.
+     * @return - the game, or null if it is not in the archive.
+     * @throws IllegalArgumentException if the game was logged with other rules.
+     */
+    public static Game getArchivedReplayGame(String gameIdStr, long seed, int rep, GameSettings settings)
+            throws IOException {
+        BinaryGameLog.Reader log = GameLogArchive.getDefault().get(gameIdStr, seed, rep);
+        return log == null ? null : logToGame(log.toGameLog(settings));
+    }
+
     public Game getReplayGame(){
         return logToGame(gameLog);
     }
@@ -1053,12 +983,77 @@ public class Game {
 
     public int[] getPlayerOvertimes() {return playerOvertimes;}
 
+    /**
+     * @return time each player took to decide its actions since the game was reset, including late decisions.
+     */
+    public LatencySummary[] getDecisionTimes() {return decisionTimes;}
+
+    private static LatencySummary[] newDecisionTimes() {
+        LatencySummary[] times = new LatencySummary[NUM_PLAYERS];
+        for (int i = 0; i < NUM_PLAYERS; i++) times[i] = new LatencySummary();
+        return times;
+    }
+
+    /**
+     * Sets the repetition of the game with its seed, used to name the files the game is logged to.
+     * @param rep repetition of the game.
+     */
+    public void setRepetition(int rep) {
+        this.REP = rep;
+    }
+
+    /**
+     * @return the string that identifies this game in the logs.
+     */
+    public String getGameIdStr() {
+        return gameIdStr;
+    }
+
+    /**
+     * @param seed seed of a game.
+     * @param rep repetition of the game with its seed.
+     * @return files that game writes to res/gamelogs: its samples and, if it is logged, its log, unless it
+     * is moved to the archive (see GameLogArchive).
+     */
+    ArrayList<File> getLogFiles(long seed, int rep) {
+        ArrayList<File> files = new ArrayList<>();
+        for (int radius : SAMPLE_RADII) {
+            files.add(getSamplesFile(seed, rep, radius));
+        }
+        if (LOG_GAME && LOG_GAME_JSON) {
+            files.add(new File(JSON_GAMELOGS_PATH + gameIdStr + "/" + seed + "_" + rep + "_" + gameMode.name() +
+                    "[" + size + "x" + size + "].json"));
+        } else if (LOG_GAME && !LOG_GAME_ARCHIVE) {
+            files.add(getBinaryLogFile(seed, rep));
+        }
+        return files;
+    }
+
+    /**
+     * @return file the samples with windows of the given radius of the game with this seed and repetition are written
+     * to (see SampleSink).
+     */
+    File getSamplesFile(long seed, int rep, int radius) {
+        return new File(JSON_GAMELOGS_PATH + gameIdStr + "/" + seed + "_" + rep + "_" + gameMode.name() +
+                "[vision" + radius + "].bin");
+    }
+
+    /**
+     * @return file the binary log of the game with this seed and repetition is written to (see BinaryGameLog).
+     */
+    File getBinaryLogFile(long seed, int rep) {
+        return new File(JSON_GAMELOGS_PATH + gameIdStr + "/" + seed + "_" + rep + "_" + gameMode.name() +
+                "[" + size + "x" + size + "]" + BinaryGameLog.EXTENSION);
+    }
+
     /**
      * Actor class for running multi-threaded games. Each player is an Actor.
      */
     public class Actor implements Runnable {
 
         private volatile  Types.ACTIONS action;
+        private volatile long decisionTime;
+        private Thread thread;  // Thread deciding, null when not deciding.
         public Player player;
         public GameState gamestate;
 
@@ -1069,11 +1064,38 @@ public class Game {
 
         @Override
         public void run() {
-            action = player.act(this.gamestate);
+            synchronized (this) {
+                thread = Thread.currentThread();
+            }
+            long start = System.nanoTime();
+            try {
+                action = player.act(this.gamestate);
+            } finally {
+                decisionTime = System.nanoTime() - start;
+                synchronized (this) {
+                    thread = null;
+                    Thread.interrupted();  // An interrupt arriving late must not reach the next task of the thread.
+                }
+            }
+        }
+
+        /**
+         * Interrupts the player if it is still deciding.
+         */
+        synchronized void interrupt() {
+            if (thread != null)
+                thread.interrupt();
         }
 
         public Types.ACTIONS getValue() {
             return action;
         }
+
+        /**
+         * @return time taken by the last decision, in nanoseconds.
+         */
+        public long getDecisionTime() {
+            return decisionTime;
+        }
     }
 }
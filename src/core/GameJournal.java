@@ -0,0 +1,172 @@
+package core;
+
+import utils.Types;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Journal of the games a tournament finished, so it can be resumed after the process stops (see
+ * Tournament.setJournal()). Each game is appended as one line when it ends, and written to disk before the next one
+ * starts:
+ *
+ *   seed  repetition  lineup  results  overtimes  ticks
+ *
+ * separated by tabs, results and overtimes listed by player, separated by commas. The lineup names the game and its
+ * players (e.g. its game id), games of other lineups in the same file are ignored. The first line keeps the seed of
+ * the players, so the games played after resuming are the ones that would have been played.
+ *
+ * A line cut short by the process stopping while writing it is dropped when the journal is opened.
+ */
+public class GameJournal {
+
+    private static final String PLAYER_SEED = "# playerSeed\t";
+
+    /**
+     * A finished game.
+     */
+    public static class Entry {
+        public final long seed;
+        public final int repetition;
+        public final Types.RESULT[] results;
+        public final int[] overtimes;
+        public final int ticks;
+
+        Entry(long seed, int repetition, Types.RESULT[] results, int[] overtimes, int ticks) {
+            this.seed = seed;
+            this.repetition = repetition;
+            this.results = results;
+            this.overtimes = overtimes;
+            this.ticks = ticks;
+        }
+    }
+
+    private final File file;
+    private final String lineup;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private Long playerSeed;
+    private FileOutputStream out;
+
+    /**
+     * Opens a journal, reading the games already in it.
+     * @param file - file of the journal, created if it doesn't exist.
+     * @param lineup - name of the game and players journaled, e.g. the game id.
+     * @throws IOException if the file can't be read or opened to append games.
+     */
+    public GameJournal(File file, String lineup) throws IOException {
+        if (lineup.contains("\t") || lineup.contains("\n")) {
+            throw new IllegalArgumentException("Lineups can't contain tabs or line breaks: " + lineup);
+        }
+        this.file = file;
+        this.lineup = lineup;
+        if (file.exists()) {
+            read();
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        out = new FileOutputStream(file, true);
+    }
+
+    private void read() throws IOException {
+        byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') end--;
+        if (end < bytes.length) {
+            // Last line not finished: the game will be played again.
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(end);
+            }
+        }
+
+        String[] lines = new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n");
+        for (String line : lines) {
+            if (line.isEmpty()) continue;
+            if (line.startsWith(PLAYER_SEED)) {
+                playerSeed = Long.parseLong(line.substring(PLAYER_SEED.length()));
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (fields.length != 6) {
+                throw new IOException("Bad journal line in " + file + ": " + line);
+            }
+            if (!fields[2].equals(lineup)) continue;
+
+            String[] resultStr = fields[3].split(",");
+            String[] overtimeStr = fields[4].split(",");
+            Types.RESULT[] results = new Types.RESULT[resultStr.length];
+            int[] overtimes = new int[overtimeStr.length];
+            for (int p = 0; p < results.length; p++) results[p] = Types.RESULT.valueOf(resultStr[p]);
+            for (int p = 0; p < overtimes.length; p++) overtimes[p] = Integer.parseInt(overtimeStr[p]);
+
+            Entry e = new Entry(Long.parseLong(fields[0]), Integer.parseInt(fields[1]), results, overtimes,
+                    Integer.parseInt(fields[5]));
+            entries.put(key(e.seed, e.repetition), e);
+        }
+    }
+
+    private static String key(long seed, int repetition) {
+        return seed + "_" + repetition;
+    }
+
+    /**
+     * Seed of the players of the journaled games. The first tournament using the journal sets it, the following ones
+     * use the same. It can also seed anything else the games depend on, e.g. the choice of their levels.
+     * @param playerSeed - seed of the players, if the journal doesn't have one yet.
+     * @return seed of the players to use.
+     */
+    public synchronized long startPlayerSeed(long playerSeed) throws IOException {
+        if (this.playerSeed == null) {
+            this.playerSeed = playerSeed;
+            write(PLAYER_SEED + playerSeed + "\n");
+        }
+        return this.playerSeed;
+    }
+
+    /**
+     * @return the game finished with this seed and repetition, or null if it wasn't.
+     */
+    public synchronized Entry get(long seed, int repetition) {
+        return entries.get(key(seed, repetition));
+    }
+
+    /**
+     * Appends a finished game to the journal, and waits for it to be on disk.
+     */
+    public synchronized void add(long seed, int repetition, Types.RESULT[] results, int[] overtimes, int ticks)
+            throws IOException {
+        StringBuilder line = new StringBuilder();
+        line.append(seed).append('\t').append(repetition).append('\t').append(lineup).append('\t');
+        for (int p = 0; p < results.length; p++) {
+            if (p > 0) line.append(',');
+            line.append(results[p].name());
+        }
+        line.append('\t');
+        for (int p = 0; p < overtimes.length; p++) {
+            if (p > 0) line.append(',');
+            line.append(overtimes[p]);
+        }
+        line.append('\t').append(ticks).append('\n');
+        write(line.toString());
+        entries.put(key(seed, repetition), new Entry(seed, repetition, results.clone(), overtimes.clone(), ticks));
+    }
+
+    private void write(String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        out.getFD().sync();
+    }
+
+    /**
+     * @return number of games of this lineup in the journal.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
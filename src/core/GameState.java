@@ -3,6 +3,7 @@ package core;
 import com.google.gson.*;
 import objects.Avatar;
 import objects.GameObject;
+import utils.GameSettings;
 import utils.Types;
 import utils.Vector2d;
 
@@ -22,6 +23,10 @@ public class GameState {
     // Forward model for the game.
     ForwardModel model;
 
+    // Packed forward model. If set, it is the one rolled forward, and 'model' is rebuilt from it when needed.
+    private PackedForwardModel packed;
+    private boolean modelStale = false;
+
     // Message
     private int[][] message;
 
@@ -43,6 +48,13 @@ public class GameState {
     // Game mode being played
     Types.GAME_MODE gameMode;
 
+    // Rules of the game
+    private GameSettings settings;
+
+    // Marks made on this state when using the packed model (copies of it, and the tick they were made at).
+    private ArrayList<PackedForwardModel> packedMarks;
+    private ArrayList<Integer> packedMarkTicks;
+
     /**
      * Constructor, first thing to call. Creates a GameState object with some information.
      * @param seed - random seed to be used in generating the board.
@@ -51,12 +63,21 @@ public class GameState {
      * @param newFM - indicates if a new ForwardModel should be created at this point or not
      */
     protected GameState(long seed, int size, Types.GAME_MODE gameMode, boolean newFM) {
+        this(seed, size, gameMode, newFM, GameSettings.defaults());
+    }
+
+    /**
+     * Creates a GameState object for a game with the given rules (see the constructor above).
+     * @param settings - rules of the game.
+     */
+    protected GameState(long seed, int size, Types.GAME_MODE gameMode, boolean newFM, GameSettings settings) {
         this.seed = seed;
         this.size = size;
         this.gameMode = gameMode;
+        this.settings = settings;
 
         if (newFM) {
-            model = new ForwardModel(size, gameMode);
+            model = new ForwardModel(size, gameMode, settings);
         }
         if (gameMode.equals(Types.GAME_MODE.TEAM_RADIO)){
             this.message = new int[NUM_PLAYERS][MESSAGE_LENGTH];
@@ -70,10 +91,22 @@ public class GameState {
      * @param gameMode - game mode being played
      */
     public GameState(long seed, int size, Types.GAME_MODE gameMode) {
+        this(seed, size, gameMode, GameSettings.defaults());
+    }
+
+    /**
+     * Optional game state constructor.
+     * @param seed - random seed for board generation
+     * @param size - ize of the board
+     * @param gameMode - game mode being played
+     * @param settings - rules of the game
+     */
+    public GameState(long seed, int size, Types.GAME_MODE gameMode, GameSettings settings) {
         this.seed = seed;
         this.size = size;
         this.gameMode = gameMode;
-        model = new ForwardModel(seed,size,gameMode);
+        this.settings = settings;
+        model = new ForwardModel(seed,size,gameMode,settings);
         if (gameMode.equals(Types.GAME_MODE.TEAM_RADIO)){
             this.message = new int[NUM_PLAYERS][MESSAGE_LENGTH];
         }
@@ -87,7 +120,7 @@ public class GameState {
      * @param gameMode - game mode being played.
      */
     protected GameState(long seed, ForwardModel model, Types.GAME_MODE gameMode) {
-        this(seed, model.getBoard().length, gameMode, false);
+        this(seed, model.getBoard().length, gameMode, false, model.getSettings());
         this.model = model;
         if (gameMode.equals(Types.GAME_MODE.TEAM_RADIO)){
             this.message = new int[NUM_PLAYERS][MESSAGE_LENGTH];
@@ -100,9 +133,86 @@ public class GameState {
      */
     void init() {
         if (model == null) {
-            model = new ForwardModel(size, gameMode);
+            model = new ForwardModel(size, gameMode, settings);
         }
         this.model.init(seed, size, gameMode, null, null);
+        if (packed != null) {
+            packed = new PackedForwardModel(model);
+            modelStale = false;
+        }
+    }
+
+    /**
+     * Creates a game state rolled forward with a copy of the given packed model.
+     * @param seed - random seed the board was generated with.
+     * @param size - size of the board.
+     * @param gameMode - game mode being played.
+     * @param settings - rules of the game.
+     * @param tick - current tick of the game.
+     * @param packed - packed model of the game, copied.
+     * @return a state of the game with the packed model in use.
+     */
+    static GameState ofPacked(long seed, int size, Types.GAME_MODE gameMode, GameSettings settings, int tick,
+                              PackedForwardModel packed) {
+        GameState gs = new GameState(seed, size, gameMode, false, settings);
+        gs.tick = tick;
+        gs.packed = packed.copy();
+        gs.modelStale = true;
+        return gs;
+    }
+
+    /**
+     * Switches this state to the packed forward model (primitive arrays, see PackedForwardModel), or back to
+     * the object one. Both engines follow the same rules; the packed one is cheaper to copy and roll forward.
+     * Game objects obtained from a packed state are a view of it: changes to them are not reflected in the state.
+     * @param usePacked - true to use the packed forward model.
+     */
+    void setPackedModel(boolean usePacked) {
+        clearMarks();
+        if (usePacked && packed == null) {
+            packed = new PackedForwardModel(getModel());
+        } else if (!usePacked && packed != null) {
+            getModel();
+            packed = null;
+        }
+    }
+
+    /**
+     * @return true if this state is rolled forward with the packed forward model.
+     */
+    boolean usesPackedModel() {
+        return packed != null;
+    }
+
+    /**
+     * Returns the object forward model of this state, rebuilding it from the packed model if that one
+     * advanced since it was last requested.
+     * @return the forward model of this state.
+     */
+    ForwardModel getModel() {
+        if (modelStale) {
+            model = packed.toForwardModel();
+            modelStale = false;
+            if (playerIdx >= 0)
+                avatar = (Avatar) model.getAgents()[playerIdx];
+        }
+        return model;
+    }
+
+    /**
+     * Repacks the object model after it was modified directly, if the packed model is in use.
+     */
+    private void modelChanged() {
+        if (packed != null)
+            packed = new PackedForwardModel(model);
+    }
+
+    /**
+     * @return the avatar of the player in control of this state, up to date with the packed model if used.
+     */
+    private Avatar getAvatar() {
+        getModel();
+        return avatar;
     }
 
     /**
@@ -110,7 +220,7 @@ public class GameState {
      * @return the agents of the game
      */
     public GameObject[] getAgents() {
-        return model.getAgents();
+        return getModel().getAgents();
     }
 
     /**
@@ -118,7 +228,7 @@ public class GameState {
      * @return the alive agents of the game
      */
     ArrayList<GameObject> getAliveAgents() {
-        return model.getAliveAgents();
+        return getModel().getAliveAgents();
     }
 
     /**
@@ -152,12 +262,24 @@ public class GameState {
             copyIdx = playerIdx;
         }
 
-        GameState copy = new GameState(seed, size, gameMode, false);
-        copy.model = model.copy(playerIdx);  // Use given playerIdx to reduce state (-1 in copies of copies)
+        GameState copy = new GameState(seed, size, gameMode, false, settings);
         copy.tick = tick;
+        copy.playerIdx = copyIdx;
+
+        if (packed != null && playerIdx == -1) {
+            // Copies of packed states stay packed, objects are only built if requested.
+            copy.packed = packed.copy();
+            copy.modelStale = true;
+            if (copyIdx >= 0 && gameMode.equals(GAME_MODE.FFA) && message != null)
+                copy.message = message.clone();
+            return copy;
+        }
+
+        copy.model = getModel().copy(playerIdx);  // Use given playerIdx to reduce state (-1 in copies of copies)
+        if (packed != null)
+            copy.packed = new PackedForwardModel(copy.model);
 
         // Use this copy's player idx as determined earlier to update copy playerIdx and its assigned avatar.
-        copy.playerIdx = copyIdx;
         if (copyIdx >= 0) {
             copy.avatar = (Avatar) copy.model.getAgents()[copyIdx];
             if (gameMode.equals(GAME_MODE.FFA) && message != null)
@@ -184,18 +306,92 @@ public class GameState {
      */
     public boolean next(Types.ACTIONS[] actions) {
 
-        if (tick < Types.MAX_GAME_TICKS)
+        int maxGameTicks = settings.getMaxGameTicks();
+        if (tick < maxGameTicks)
         {
+            if (packed != null) {
+                packed.next(actions, tick);
+                modelStale = true;
+                tick++;
+                if (tick == maxGameTicks)
+                    packed.processTimeout();
+                return true;
+            }
+
             model.next(actions, tick);
             tick++;
-            if (tick == Types.MAX_GAME_TICKS)
-                Types.getGameConfig().processTimeout(gameMode, getAgents(), getAliveAgents());
+            if (tick == maxGameTicks)
+                settings.getGameConfig().processTimeout(gameMode, getAgents(), getAliveAgents());
 
             return true;
         }
 
         return false;
     }
+    /**
+     * Marks the current state, so that it can be brought back to it with undoTo() after rolling it forward,
+     * instead of copying it first. Only the changes made by next() are undone.
+     * @return mark to pass to undoTo().
+     */
+    public int mark() {
+        if (packed != null) {
+            // Packed models are cheap to copy, so marks keep a copy of the model.
+            if (packedMarks == null) {
+                packedMarks = new ArrayList<>();
+                packedMarkTicks = new ArrayList<>();
+            }
+            packedMarks.add(packed.copy());
+            packedMarkTicks.add(tick);
+            return packedMarks.size() - 1;
+        }
+        return model.mark();
+    }
+
+    /**
+     * Brings this state back to the given mark, undoing all calls to next() made after it. The mark stays valid,
+     * so the state can be rolled forward and brought back again. Marks made after it are no longer valid.
+     * @param mark - mark returned by mark().
+     */
+    public void undoTo(int mark) {
+        if (packed != null) {
+            if (packedMarks == null || mark < 0 || mark >= packedMarks.size()) {
+                throw new IllegalArgumentException("Mark " + mark + " is not valid for this state.");
+            }
+            packed = packedMarks.get(mark).copy();
+            tick = packedMarkTicks.get(mark);
+            modelStale = true;
+            while (packedMarks.size() > mark + 1) {
+                packedMarks.remove(packedMarks.size() - 1);
+                packedMarkTicks.remove(packedMarkTicks.size() - 1);
+            }
+            return;
+        }
+        tick -= model.undoTo(mark);
+    }
+
+    /**
+     * Forgets all marks made on this state, and stops recording the changes made by next().
+     */
+    public void clearMarks() {
+        packedMarks = null;
+        packedMarkTicks = null;
+        if (model != null) {
+            model.clearMarks();
+        }
+    }
+
+    /**
+     * Returns a 64-bit Zobrist hash of this state, covering tiles, hidden power-ups, bombs (life, blast strength,
+     * position and velocity), flames, avatars (position, ammo, blast strength, kick and alive) and the tick. It is
+     * kept up to date as the state is rolled forward, so it is cheap to get after every call to next(), e.g. as
+     * the key of a transposition table. States with the same hash are very likely, but not guaranteed, to be equal.
+     * @return hash of this state.
+     */
+    public long hash() {
+        long hash = modelStale ? packed.hash() : model.hash();
+        return hash ^ StateHash.tick(tick);
+    }
+
     /**
      * @return a copy of the current game state.
      */
@@ -207,51 +403,73 @@ public class GameState {
 
 
     public Types.TILETYPE[][] getBoard() {
+        if (modelStale)
+            return packed.getBoard();
         return model.getBoard();
     }
 
     public int[][] getBombBlastStrength() {
-        return model.getBombBlastStrength();
+        return getModel().getBombBlastStrength();
     }
 
     public int[][] getBombLife() {
-        return model.getBombLife();
+        return getModel().getBombLife();
     }
 
-    public int getTeam(){ return avatar.getTeam(); }
+    public int getTeam(){ return getAvatar().getTeam(); }
 
-    public Types.TILETYPE[] getTeammates(){ return avatar.getTeammates(); }
+    public Types.TILETYPE[] getTeammates(){ return getAvatar().getTeammates(); }
 
-    public Types.TILETYPE[] getEnemies(){ return avatar.getEnemies(); }
+    public Types.TILETYPE[] getEnemies(){ return getAvatar().getEnemies(); }
 
     public int nActions() {
         return nActions;
     }
 
     public Types.RESULT winner() {
+        if (modelStale)
+            return playerIdx >= 0 ? packed.getWinner(playerIdx) : Types.RESULT.INCOMPLETE;
         return avatar != null? avatar.getWinner() : Types.RESULT.INCOMPLETE; // They both retrun the same thing?
         // ? is a ternary argument - boolean statement ? true result : false result;
         // if the avatar != null, ie.e if the gameMode !=null that is if the type of game has been specified: FFA or Team or...
         // true that the gameMode has been defined - then avatar.getWinner() -- return winner --> Types.RESULT.INCOMPLETE --> the game is incomplete?
     }
 
+    /**
+     * @param playerIdx - index of a player.
+     * @return result of the given player, read from this state without reducing it for the player.
+     */
+    Types.RESULT winner(int playerIdx) {
+        if (modelStale)
+            return packed.getWinner(playerIdx);
+        return ((Avatar) model.getAgents()[playerIdx]).getWinner();
+    }
+
     public int getBlastStrength() {
+        if (modelStale)
+            return playerIdx >= 0 ? packed.getBlastStrength(playerIdx) : -1;
         return avatar != null? avatar.getBlastStrength() : -1;
     }
 
     public int getPlayerId() {
-        return avatar.getPlayerID();
+        return getAvatar().getPlayerID();
     }
 
     public int getAmmo() {
+        if (modelStale)
+            return playerIdx >= 0 ? packed.getAmmo(playerIdx) : -1;
         return avatar != null? avatar.getAmmo() : -1;
     }
 
     public boolean canKick() {
+        if (modelStale)
+            return playerIdx >= 0 && packed.canKick(playerIdx);
         return avatar != null? avatar.canKick() : false;
     }
 
     public Vector2d getPosition() {
+        if (modelStale)
+            return packed.getPosition(playerIdx);
         return avatar.getPosition();
     }
 
@@ -263,6 +481,13 @@ public class GameState {
      * @return an array of IDs for all agents left alive in the game.
      */
     public Types.TILETYPE[] getAliveAgentIDs() {
+        if (modelStale) {
+            Types.TILETYPE[] alive = new Types.TILETYPE[packed.getAliveAgentCount()];
+            for (int i = 0; i < alive.length; i++) {
+                alive[i] = packed.getAliveAgentType(i);
+            }
+            return alive;
+        }
         ArrayList<GameObject> aliveAgents = getAliveAgents();
         Types.TILETYPE[] alive = new Types.TILETYPE[aliveAgents.size()];
         for (int i = 0; i < alive.length; i++) {
@@ -276,7 +501,7 @@ public class GameState {
      */
     public ArrayList<Types.TILETYPE> getAliveTeammateIDs(){
         List<Types.TILETYPE> aliveAgents = Arrays.asList(getAliveAgentIDs()); // Doesn't include AGENTDUMMY
-        Types.TILETYPE[] teammateIDs = avatar.getTeammates(); // May include AGENTDUMMY (if FFA)
+        Types.TILETYPE[] teammateIDs = getAvatar().getTeammates(); // May include AGENTDUMMY (if FFA)
         return trimAliveList(aliveAgents, teammateIDs);
     }
 
@@ -285,7 +510,7 @@ public class GameState {
      */
     public ArrayList<Types.TILETYPE> getAliveEnemyIDs(){
         List<Types.TILETYPE> aliveAgents = Arrays.asList(getAliveAgentIDs()); // Doesn't include AGENTDUMMY
-        Types.TILETYPE[] enemyIDs = avatar.getEnemies(); // May include AGENTDUMMY (if Team Mode)
+        Types.TILETYPE[] enemyIDs = getAvatar().getEnemies(); // May include AGENTDUMMY (if Team Mode)
         return trimAliveList(aliveAgents, enemyIDs);
     }
 
@@ -311,9 +536,9 @@ public class GameState {
      */
     public boolean isTerminal()
     {
-        if (tick >= Types.MAX_GAME_TICKS)
+        if (tick >= settings.getMaxGameTicks())
             return true;
-        if (avatar != null)
+        if (modelStale && playerIdx >= 0 || avatar != null)
             return this.winner() != Types.RESULT.INCOMPLETE;
         for (GameObject aliveAgent : getAliveAgents()) {
             Avatar agent = (Avatar) aliveAgent;
@@ -328,47 +553,62 @@ public class GameState {
      */
     public int getTick() { return tick; }
 
+    /**
+     * @return the rules of this game.
+     */
+    public GameSettings getSettings() { return settings; }
+
 
     /* ----- Methods to insert or remove observations into the game model ----- */
 
     public void addBomb(int x, int y, int blastStrength, int bombLife, int playerIdx, boolean addToBoard) {
-        model.addBomb(x, y, blastStrength, bombLife, playerIdx, addToBoard);
+        getModel().addBomb(x, y, blastStrength, bombLife, playerIdx, addToBoard);
+        modelChanged();
     }
 
     public void addFlame(int x, int y, int life) {
-        model.addFlame(x, y, life);
+        getModel().addFlame(x, y, life);
+        modelChanged();
     }
 
     public void addPowerUp(int x, int y, Types.TILETYPE type, boolean visible) {
-        model.addPowerUp(x, y, type, visible);
+        getModel().addPowerUp(x, y, type, visible);
+        modelChanged();
     }
 
     public void addObject(int x, int y, Types.TILETYPE type) {
-        model.addObject(x, y, type);
+        getModel().addObject(x, y, type);
+        modelChanged();
     }
 
     public void removeObject(int x, int y, Types.TILETYPE type, boolean onlyBoard) {
-        model.removeObject(x, y, type, onlyBoard);
+        getModel().removeObject(x, y, type, onlyBoard);
+        modelChanged();
     }
 
     public void removePowerUp(int x, int y, Types.TILETYPE type) {
-        model.removePowerUp(x, y, type);
+        getModel().removePowerUp(x, y, type);
+        modelChanged();
     }
 
     public void addAgent(int x, int y, int idx) {
-        model.addAgent(x, y, idx);
+        getModel().addAgent(x, y, idx);
+        modelChanged();
     }
 
     public void setAgent(int playerIdx, int x, int y, boolean canKick, int ammo, int blastStrength) {
-        model.setAgent(playerIdx, x, y, canKick, ammo, blastStrength);
+        getModel().setAgent(playerIdx, x, y, canKick, ammo, blastStrength);
+        modelChanged();
     }
 
     public void setBomb(int x, int y, int playerIdx, Vector2d velocity) {
-        model.setBomb(x, y, playerIdx, velocity);
+        getModel().setBomb(x, y, playerIdx, velocity);
+        modelChanged();
     }
 
     public void setFlame(int x, int y, int life) {
-        model.setFlame(x, y, life);
+        getModel().setFlame(x, y, life);
+        modelChanged();
     }
 
     public int[] getMessage(){
@@ -387,10 +627,12 @@ public class GameState {
 
     @Override
     public String toString() {
-        return model.toString();
+        return getModel().toString();
     }
 
     public int[][] toArray() {
+        if (modelStale)
+            return packed.toArray();
         return model.toArray();
     }
 
@@ -411,7 +653,7 @@ public class GameState {
             return false;
         if (size != gs.size)
             return false;
-        if (!model.equals(gs.model))
+        if (!getModel().equals(gs.getModel()))
             return false;
         if (!gameMode.equals(gs.gameMode))
             return false;
@@ -469,19 +711,21 @@ public class GameState {
         int action_space = object.get("action_space").getAsInt();
 
         Types.GAME_MODE gameMode = Types.GAME_MODE.FFA; // Default
+        GameSettings settings = GameSettings.defaults();
         if (game_type == 1) {
             gameMode = Types.GAME_MODE.FFA;
-            DEFAULT_VISION_RANGE = 4; // TODO THIS IS HARDCODED BY US
+            settings = settings.withVisionRange(4); // TODO THIS IS HARDCODED BY US
         }
         else if (game_type == 2){
             gameMode = Types.GAME_MODE.TEAM;
-            DEFAULT_VISION_RANGE = 4; // TODO THIS IS HARDCODED BY US
+            settings = settings.withVisionRange(4); // TODO THIS IS HARDCODED BY US
         }
         else if (game_type == 3){
             gameMode = Types.GAME_MODE.TEAM_RADIO;
         }
 
         this.gameMode = gameMode;
+        this.settings = settings;
 
         this.tick = step_count;
         this.seed = -1; // todo setting seed to -1 when communicating with python
@@ -490,11 +734,12 @@ public class GameState {
         this.size = board.length;
 
         try {
-            this.model = new ForwardModel(board, bomb_blast_strength, bomb_life, alive, gameMode, this.playerIdx);
+            this.model = new ForwardModel(board, bomb_blast_strength, bomb_life, alive, gameMode, this.playerIdx,
+                    settings);
             this.avatar = (Avatar) model.getAgents()[playerIdx];
             this.avatar.setAmmo(ammo);
             this.avatar.setBlastStrength(blast_strength);
-            this.avatar.setVisionRange(DEFAULT_VISION_RANGE);
+            this.avatar.setVisionRange(settings.getVisionRange());
             if (can_kick) this.avatar.canKick();
         } catch (Exception e){
             e.printStackTrace();
@@ -515,11 +760,11 @@ public class GameState {
     public String toJson(){
         SerializableGameState serialisableGameState = new SerializableGameState(
                 getAliveAgentIDs(),
-                model.getBoard(),
-                model.getBombBlastStrength(),
-                model.getBombLife(),
+                getModel().getBoard(),
+                getModel().getBombBlastStrength(),
+                getModel().getBombLife(),
                 gameMode,
-                Types.getGameConfig().getEnvironmentName(),
+                settings.getGameConfig().getEnvironmentName(),
                 avatar.getPosition(),
                 avatar.getBlastStrength(),
                 avatar.canKick(),
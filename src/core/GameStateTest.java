@@ -1,6 +1,17 @@
 package core;
 
+import objects.Avatar;
+import objects.GameObject;
+import org.junit.jupiter.api.Test;
+import utils.GameSettings;
 import utils.Types;
+import utils.Vector2d;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class GameStateTest {
 
@@ -10,4 +21,236 @@ class GameStateTest {
         gs.init();
         System.out.println(gs.model);
     }
-}
\ No newline at end of file
+
+    private Types.ACTIONS[] randomActions(Random rnd) {
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = Types.ACTIONS.values()[rnd.nextInt(Types.NUM_ACTIONS)];
+        }
+        return actions;
+    }
+
+    /**
+     * Checks that a state brought back to a mark is the same as the expected one, and that both keep going
+     * through the same states when rolled forward with the same actions (which also compares the fields that
+     * equals() doesn't, like bomb velocities). Both states are rolled forward.
+     * Copies don't keep flame lives or bomb velocities (see Utils._reduceHiddenList), so the expected state
+     * must be a copy made from the same state as the one marked.
+     */
+    private void assertSameState(GameState expected, GameState actual, Random rnd) {
+        assertEquals(expected, actual);
+        assertTrue(Arrays.deepEquals(expected.toArray(), actual.toArray()));
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.hash(), actual.hash());
+
+        for (int t = 0; t < 10; t++) {
+            Types.ACTIONS[] actions = randomActions(rnd);
+            expected.next(actions);
+            actual.next(actions);
+            assertEquals(expected, actual);
+            assertEquals(expected.hash(), actual.hash());
+        }
+    }
+
+    /**
+     * Rolls states forward from a mark and brings them back many times, as a tree search would, checking the
+     * result against a copy made at the mark. Covers full games (collapse and timeout), all game modes,
+     * player observations and the packed model.
+     */
+    @Test
+    void undoToMark() {
+        for (Types.GAME_MODE gameMode : Types.GAME_MODE.values()) {
+            for (long seed = 0; seed < 5; seed++) {
+                GameState gs = new GameState(seed, Types.BOARD_SIZE, gameMode, true);
+                gs.init();
+                if (seed % 2 == 0) {
+                    // Let agents kick bombs, so bombs move
+                    GameObject[] agents = gs.getAgents();
+                    for (int i = 0; i < agents.length; i++) {
+                        Vector2d pos = agents[i].getPosition();
+                        gs.setAgent(i, pos.x, pos.y, true, Types.DEFAULT_BOMB_AMMO, Types.DEFAULT_BOMB_BLAST);
+                    }
+                }
+                gs.setPackedModel(seed == 4);
+                Random rnd = new Random(seed);
+
+                while (gs.getTick() < Types.MAX_GAME_TICKS) {
+                    GameState[] states = {gs.copy(), gs.copy((int) (seed % Types.NUM_PLAYERS))};
+                    for (GameState source : states) {
+                        GameState state = source.copy();
+                        int mark = state.mark();
+                        for (int rollout = 0; rollout < 3; rollout++) {
+                            GameState reference = source.copy();
+                            int depth = rnd.nextInt(12);
+                            for (int d = 0; d < depth; d++) {
+                                state.next(randomActions(rnd));
+                            }
+                            state.undoTo(mark);
+                            assertSameState(reference, state, new Random(rollout));
+                        }
+                    }
+                    gs.next(randomActions(rnd));
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks can be nested: undoing to an inner mark keeps the outer one valid.
+     */
+    @Test
+    void nestedMarks() {
+        GameState original = new GameState(7, Types.BOARD_SIZE, Types.GAME_MODE.FFA, true);
+        original.init();
+        Random rnd = new Random(7);
+        for (int t = 0; t < 20; t++) original.next(randomActions(rnd));
+
+        GameState gs = original.copy();
+        GameState root = original.copy();
+        GameState inner = original.copy();
+        int rootMark = gs.mark();
+        for (int t = 0; t < 20; t++) {
+            Types.ACTIONS[] actions = randomActions(rnd);
+            gs.next(actions);
+            inner.next(actions);
+        }
+
+        int innerMark = gs.mark();
+        for (int t = 0; t < 20; t++) gs.next(randomActions(rnd));
+
+        gs.undoTo(innerMark);
+        assertSameState(inner, gs, new Random(1));
+        for (int t = 0; t < 5; t++) gs.next(randomActions(rnd));
+
+        gs.undoTo(rootMark);
+        assertSameState(root, gs, new Random(2));
+        assertThrows(IllegalArgumentException.class, () -> gs.undoTo(innerMark));
+    }
+
+    /**
+     * The hash must follow the state: states reached with the same actions have the same hash, and it changes
+     * with each part of the state.
+     */
+    @Test
+    void hashTracksState() {
+        // Copies reset the lives of flames and the velocities of bombs, as observations do, so the copy below is taken
+        // at the end of the game, when these seeds leave none. The length of the game is set here, not read from
+        // Types, which other tests change.
+        GameSettings settings = GameSettings.defaults().withMaxGameTicks(800);
+        for (long seed = 0; seed < 5; seed++) {
+            GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA, true, settings);
+            gs.init();
+            GameState twin = gs.copy();
+            Random rnd = new Random(seed);
+
+            HashSet<Long> hashes = new HashSet<>();
+            while (gs.getTick() < settings.getMaxGameTicks()) {
+                Types.ACTIONS[] actions = randomActions(rnd);
+                gs.next(actions);
+                twin.next(actions);
+                assertEquals(gs.hash(), twin.hash());
+                assertTrue(hashes.add(gs.hash()), "Hash repeated at tick " + gs.getTick());
+            }
+
+            GameState copy = gs.copy();
+            assertEquals(gs.hash(), copy.hash());
+            Avatar avatar = (Avatar) copy.getAgents()[0];
+            Vector2d pos = avatar.getPosition();
+            int ammo = avatar.getAmmo(), blastStrength = avatar.getBlastStrength();
+            copy.setAgent(0, pos.x, pos.y, avatar.canKick(), ammo + 1, blastStrength);
+            assertNotEquals(gs.hash(), copy.hash());
+            copy.setAgent(0, pos.x, pos.y, avatar.canKick(), ammo, blastStrength + 1);
+            assertNotEquals(gs.hash(), copy.hash());
+            copy.setAgent(0, pos.x, pos.y, avatar.canKick(), ammo, blastStrength);
+            assertEquals(gs.hash(), copy.hash());
+        }
+    }
+
+    private String gridsToString(GameState gs) {
+        ForwardModel model = gs.getModel();
+        return Arrays.deepToString(model.getBoard()) + Arrays.deepToString(model.getPowerups()) +
+                Arrays.deepToString(model.getBombBlastStrength()) + Arrays.deepToString(model.getBombLife());
+    }
+
+    /**
+     * Full copies share the rows of the grids with the original until one of them writes to a row. Rolling either
+     * of them forward must not change the other.
+     */
+    @Test
+    void copiesShareGridsUntilWritten() {
+        for (long seed = 0; seed < 10; seed++) {
+            GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA, true);
+            gs.init();
+            Random rnd = new Random(seed);
+            for (int t = 0; t < 50; t++) gs.next(randomActions(rnd));
+
+            GameState copy = gs.copy();
+            for (int y = 0; y < Types.BOARD_SIZE; y++) {
+                assertSame(gs.getBoard()[y], copy.getBoard()[y]);
+            }
+
+            String original = gridsToString(gs);
+            GameState copyOfCopy = copy.copy();
+            int mark = copyOfCopy.mark();
+            while (copy.getTick() < Types.MAX_GAME_TICKS) {
+                Types.ACTIONS[] actions = randomActions(rnd);
+                copy.next(actions);
+                copyOfCopy.next(actions);
+            }
+            assertEquals(original, gridsToString(gs));
+            assertEquals(gridsToString(copy), gridsToString(copyOfCopy));
+
+            String copied = gridsToString(copy);
+            GameState other = copyOfCopy.copy();
+            copyOfCopy.undoTo(mark);
+            assertEquals(original, gridsToString(copyOfCopy));
+            for (int t = 0; t < 50; t++) gs.next(randomActions(rnd));
+            assertEquals(copied, gridsToString(copy));
+            assertEquals(copied, gridsToString(other));
+        }
+    }
+
+    /**
+     * Games with different settings can be played side by side: each one follows its own rules, with either
+     * engine, and the defaults in Types are left as they were.
+     */
+    @Test
+    void settingsArePerGame() {
+        int defaultVisionRange = Types.DEFAULT_VISION_RANGE;
+        int defaultMaxTicks = Types.MAX_GAME_TICKS;
+        GameSettings settings = GameSettings.defaults().withVisionRange(1).withMaxGameTicks(60).withBombLife(3);
+
+        for (boolean packed : new boolean[]{false, true}) {
+            GameState custom = new GameState(5, Types.BOARD_SIZE, Types.GAME_MODE.FFA, true, settings);
+            custom.init();
+            custom.setPackedModel(packed);
+            GameState standard = new GameState(5, Types.BOARD_SIZE, Types.GAME_MODE.FFA, true);
+            standard.init();
+            standard.setPackedModel(packed);
+
+            for (GameObject agent : custom.getAgents()) {
+                assertEquals(1, ((Avatar) agent).getVisionRange());
+            }
+            for (GameObject agent : standard.getAgents()) {
+                assertEquals(defaultVisionRange, ((Avatar) agent).getVisionRange());
+            }
+
+            Random rnd = new Random(5);
+            int maxBombLife = 0;
+            while (custom.next(randomActions(rnd))) {
+                assertTrue(standard.next(randomActions(rnd)));
+                for (int[] row : custom.getBombLife()) {
+                    for (int life : row) maxBombLife = Math.max(maxBombLife, life);
+                }
+                assertSame(settings, custom.copy(0).getSettings());
+            }
+            assertEquals(60, custom.getTick());
+            assertTrue(custom.isTerminal());
+            assertTrue(maxBombLife > 0 && maxBombLife <= 3);
+            assertTrue(standard.getTick() < Types.MAX_GAME_TICKS);
+        }
+
+        assertEquals(defaultVisionRange, Types.DEFAULT_VISION_RANGE);
+        assertEquals(defaultMaxTicks, Types.MAX_GAME_TICKS);
+    }
+}
@@ -11,19 +11,43 @@ import players.rhea.utils.Constants;
 import players.rhea.utils.RHEAParams;
 import utils.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static utils.Types.VERBOSE;
 
 class GameTest {
 
+    /**
+     * The last game logged is read back, whether it was logged to json or to a binary log, and replays to the state
+     * the game ended in.
+     */
     @Test
     void getReplayGame(){
-        Game replay = Game.getLastReplayGame();
-        System.out.println(replay.getGameState());
+        boolean logGame = Game.LOG_GAME;
+        Game.LOG_GAME = true;
+        try {
+            Game game = new Game(14, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "replay-test");
+            ArrayList<Player> players = new ArrayList<>();
+            int playerID = Types.TILETYPE.AGENT0.getKey();
+            players.add(new SimplePlayer(5, playerID++));
+            players.add(new SimplePlayer(5, playerID++));
+            players.add(new RandomPlayer(5, playerID++));
+            players.add(new RandomPlayer(5, playerID++));
+            game.setPlayers(players);
+            game.run(false);
+
+            Game replay = Game.getLastReplayGame();
+            System.out.println(replay.getGameState());
+            replay.run(false);
+            assertEquals(game.getGameState(), replay.getGameState());
+        } finally {
+            Game.LOG_GAME = logGame;
+        }
     }
 
     /**
@@ -91,13 +115,13 @@ class GameTest {
 
                     for (int i = xmin; i < xmax; i++) {
                         for (int i1 = ymin; i1 < ymax; i1++) {
-                            assertNotEquals(5, board[i][i1].getKey());
+                            assertNotEquals(5, board[i1][i].getKey());
                         }
                     }
                     for (int i = 0; i < board.length; i++) {
                         for (int i1 = 0; i1 < board[i].length; i1++) {
 
-                            int value = board[i][i1].getKey();
+                            int value = board[i1][i].getKey();
                             // The part of the board which is not supposed to be fogged out
                             if (xmax >= i && i >= xmin && ymax >= i1 && i1 >= ymin) {
                                 if (5 == value) {
@@ -113,16 +137,16 @@ class GameTest {
                                 assertEquals(5, value);
 
                                 int[][] bombLife = pgs.model.getBombLife();
-                                if (bombLife[i][i1] != 0) {
+                                if (bombLife[i1][i] != 0) {
                                     System.out.println("Bomb life info should not be made available to the player");
                                 }
-                                assertEquals(0, bombLife[i][i1]);
+                                assertEquals(0, bombLife[i1][i]);
 
                                 int[][] blastStrength = pgs.model.getBombBlastStrength();
-                                if (blastStrength[i][i1] != 0) {
+                                if (blastStrength[i1][i] != 0) {
                                     System.out.println("Blast strength info should not be made available to the player");
                                 }
-                                assertEquals(0, blastStrength[i][i1]);
+                                assertEquals(0, blastStrength[i1][i]);
                             }
                         }
                     }
@@ -363,77 +387,87 @@ class GameTest {
      */
     @Test
     void determinismTickNoForwardModel() {
-        // Game parameters
-        long seed = System.currentTimeMillis();
-        int boardSize = Types.BOARD_SIZE;
-        Types.GAME_MODE gameMode = Types.GAME_MODE.FFA;
-        boolean useSeparateThreads = false;
+        // Logged to json, read back with deserializeLastJSON(). Games are replayed with the rules in Types, so the
+        // game is 400 ticks long when it is created.
+        boolean logGameJson = Game.LOG_GAME_JSON;
+        int maxGameTicks = Types.MAX_GAME_TICKS;
+        Game.LOG_GAME_JSON = true;
+        Types.MAX_GAME_TICKS = 400;
+        try {
+            // Game parameters
+            long seed = System.currentTimeMillis();
+            int boardSize = Types.BOARD_SIZE;
+            Types.GAME_MODE gameMode = Types.GAME_MODE.FFA;
+            boolean useSeparateThreads = false;
 
-        Game game = new Game(seed, boardSize, gameMode, "");
-        game.setLogGame(true);
+            Game game = new Game(seed, boardSize, gameMode, "");
+            game.setLogGame(true);
 
-        // Create players
-        ArrayList<Player> players = new ArrayList<>();
-        int playerID = Types.TILETYPE.AGENT0.getKey();
+            // Create players
+            ArrayList<Player> players = new ArrayList<>();
+            int playerID = Types.TILETYPE.AGENT0.getKey();
 
-        MCTSParams mctsParams = new MCTSParams();
-        mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
-        mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
+            MCTSParams mctsParams = new MCTSParams();
+            mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
+            mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
 
-        RHEAParams rheaParams = new RHEAParams();
-        rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
+            RHEAParams rheaParams = new RHEAParams();
+            rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
 
-        //players.add(new MCTSPlayer(seed, playerID++, mctsParams));
-        //players.add(new RHEAPlayer(seed, playerID++, rheaParams));
-        //
-        players.add(new SimplePlayer(seed, playerID++));
-        players.add(new SimplePlayer(seed, playerID++));
-        players.add(new SimplePlayer(seed, playerID++));
-        players.add(new SimplePlayer(seed, playerID++));
+            //players.add(new MCTSPlayer(seed, playerID++, mctsParams));
+            //players.add(new RHEAPlayer(seed, playerID++, rheaParams));
+            //
+            players.add(new SimplePlayer(seed, playerID++));
+            players.add(new SimplePlayer(seed, playerID++));
+            players.add(new SimplePlayer(seed, playerID++));
+            players.add(new SimplePlayer(seed, playerID++));
 
-        // Make sure we have exactly NUM_PLAYERS players
-        assert players.size() == Types.NUM_PLAYERS : "There should be " + Types.NUM_PLAYERS +
-                " added to the game, but there are " + players.size();
+            // Make sure we have exactly NUM_PLAYERS players
+            assert players.size() == Types.NUM_PLAYERS : "There should be " + Types.NUM_PLAYERS +
+                    " added to the game, but there are " + players.size();
 
 
-        //Assign players and run the game.
-        game.setPlayers(players);
+            //Assign players and run the game.
+            game.setPlayers(players);
 
-        Game copy = game.copy();
-        Types.MAX_GAME_TICKS = 400;
-        //Run a single game with the players
-        game.run(null, null, useSeparateThreads);
-        GameLog log = game.getGameLog();
-        GameLog deserializedLog = GameLog.deserializeLastJSON();
-        assertEquals(log, deserializedLog); //Logs are the same before and after (de)serialization
+            Game copy = game.copy();
+            //Run a single game with the players
+            game.run(null, null, useSeparateThreads);
+            GameLog log = game.getGameLog();
+            GameLog deserializedLog = GameLog.deserializeLastJSON();
+            assertEquals(log, deserializedLog); //Logs are the same before and after (de)serialization
 
 
-        /* Uncomment to run the replay of the previous game: */
-        if (game.isLogged()){
-            Game replayGame = game.getReplayGame();
-            Game deserializedReplayGame = Game.getLastReplayGame();
-            assertEquals(replayGame.getGameState(), deserializedReplayGame.getGameState()); //Replay games from fresh and deserialized log are the same
+            /* Uncomment to run the replay of the previous game: */
+            if (game.isLogged()){
+                Game replayGame = game.getReplayGame();
+                Game deserializedReplayGame = Game.getLastReplayGame();
+                assertEquals(replayGame.getGameState(), deserializedReplayGame.getGameState()); //Replay games from fresh and deserialized log are the same
 
-            replayGame.run(null,null, useSeparateThreads);
-            deserializedReplayGame.run(null, null, useSeparateThreads);
-            assertEquals(replayGame.getGameState(), deserializedReplayGame.getGameState()); //The two replay games finish in same state
-            /*
-            If replaygame and deserialized replay game finish the same but game does not finish the same,
-            then there is probably an error in how the action data is stored to the game logs,
-            not in how the logs are serialized and deserialized.
-            */
+                replayGame.run(null,null, useSeparateThreads);
+                deserializedReplayGame.run(null, null, useSeparateThreads);
+                assertEquals(replayGame.getGameState(), deserializedReplayGame.getGameState()); //The two replay games finish in same state
+                /*
+                If replaygame and deserialized replay game finish the same but game does not finish the same,
+                then there is probably an error in how the action data is stored to the game logs,
+                not in how the logs are serialized and deserialized.
+                */
 
 
-            assertEquals(game.getGameState(), replayGame.getGameState()); // Fresh replay finishes in same state as real game
+                assertEquals(game.getGameState(), replayGame.getGameState()); // Fresh replay finishes in same state as real game
 
-            assertEquals(game.getGameState(), deserializedReplayGame.getGameState()); // Deserialized replay finishes in same state as real game
+                assertEquals(game.getGameState(), deserializedReplayGame.getGameState()); // Deserialized replay finishes in same state as real game
 
-        }
+            }
 
 
-        /* Run with no visuals, N Times: */
+            /* Run with no visuals, N Times: */
 //        int N = 20;
 //        Run.runGames(game, new long[]{seed}, N, useSeparateThreads);
+        } finally {
+            Game.LOG_GAME_JSON = logGameJson;
+            Types.MAX_GAME_TICKS = maxGameTicks;
+        }
     }
 
     /**
@@ -443,68 +477,404 @@ class GameTest {
      */
     @Test
     void determinismTickForwardModelUsed() {
-        // Game parameters
-        long seed = System.currentTimeMillis();
-        int boardSize = Types.BOARD_SIZE;
-        Types.GAME_MODE gameMode = Types.GAME_MODE.FFA;
-        boolean useSeparateThreads = false;
+        // Logged to json, read back with deserializeLastJSON(). Games are replayed with the rules in Types, so the
+        // game is 400 ticks long when it is created.
+        boolean logGameJson = Game.LOG_GAME_JSON;
+        int maxGameTicks = Types.MAX_GAME_TICKS;
+        Game.LOG_GAME_JSON = true;
+        Types.MAX_GAME_TICKS = 400;
+        try {
+            // Game parameters
+            long seed = System.currentTimeMillis();
+            int boardSize = Types.BOARD_SIZE;
+            Types.GAME_MODE gameMode = Types.GAME_MODE.FFA;
+            boolean useSeparateThreads = false;
 
-        Game game = new Game(seed, boardSize, gameMode, "");
-        game.setLogGame(true);
+            Game game = new Game(seed, boardSize, gameMode, "");
+            game.setLogGame(true);
 
-        // Create players
-        ArrayList<Player> players = new ArrayList<>();
-        int playerID = Types.TILETYPE.AGENT0.getKey();
+            // Create players
+            ArrayList<Player> players = new ArrayList<>();
+            int playerID = Types.TILETYPE.AGENT0.getKey();
 
-        MCTSParams mctsParams = new MCTSParams();
-        mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
-        mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
+            MCTSParams mctsParams = new MCTSParams();
+            mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
+            mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
 
-        RHEAParams rheaParams = new RHEAParams();
-        rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
+            RHEAParams rheaParams = new RHEAParams();
+            rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
 
-        players.add(new MCTSPlayer(seed, playerID++, mctsParams));
-        players.add(new RHEAPlayer(seed, playerID++, rheaParams));
+            players.add(new MCTSPlayer(seed, playerID++, mctsParams));
+            players.add(new RHEAPlayer(seed, playerID++, rheaParams));
 
-        players.add(new SimplePlayer(seed, playerID++));
-        players.add(new SimplePlayer(seed, playerID++));
-        //players.add(new SimplePlayer(seed, playerID++));
-        //players.add(new SimplePlayer(seed, playerID++));
+            players.add(new SimplePlayer(seed, playerID++));
+            players.add(new SimplePlayer(seed, playerID++));
+            //players.add(new SimplePlayer(seed, playerID++));
+            //players.add(new SimplePlayer(seed, playerID++));
 
-        // Make sure we have exactly NUM_PLAYERS players
-        assert players.size() == Types.NUM_PLAYERS : "There should be " + Types.NUM_PLAYERS +
-                " added to the game, but there are " + players.size();
+            // Make sure we have exactly NUM_PLAYERS players
+            assert players.size() == Types.NUM_PLAYERS : "There should be " + Types.NUM_PLAYERS +
+                    " added to the game, but there are " + players.size();
 
 
-        //Assign players and run the game.
+            //Assign players and run the game.
+            game.setPlayers(players);
+
+            Game copy = game.copy();
+            //Run a single game with the players
+            game.run(null, null, useSeparateThreads);
+            GameLog log = game.getGameLog();
+            GameLog deserializedLog = GameLog.deserializeLastJSON();
+            assertEquals(log, deserializedLog); //Logs are the same before and after (de)serialization
+
+
+            /* Uncomment to run the replay of the previous game: */
+            if (game.isLogged()){
+                Game replayGame = game.getReplayGame();
+                Game deserializedReplayGame = Game.getLastReplayGame();
+                assertEquals(replayGame.getGameState(), deserializedReplayGame.getGameState()); //Replay games from fresh and deserialized log are the same
+
+                replayGame.run(null,null, useSeparateThreads);
+                deserializedReplayGame.run(null, null, useSeparateThreads);
+                assertEquals(replayGame.getGameState(), deserializedReplayGame.getGameState()); //The two replay games finish in same state
+                /*
+                If replaygame and deserialized replay game finish the same but game does not finish the same,
+                then there is probably an error in how the action data is stored to the game logs,
+                not in how the logs are serialized and deserialized.
+                */
+
+                assertEquals(game.getGameState(), replayGame.getGameState()); // Fresh replay finishes in same state as real game
+                assertEquals(game.getGameState(), deserializedReplayGame.getGameState()); // Deserialized replay finishes in same state as real game
+            }
+        } finally {
+            Game.LOG_GAME_JSON = logGameJson;
+            Types.MAX_GAME_TICKS = maxGameTicks;
+        }
+    }
+
+    /**
+     * Players acting in separate threads play the same game as players acting one after another.
+     */
+    @Test
+    void separateThreadsMatchSequential() {
+        boolean checkDecisionTime = Types.CHECK_DECISION_TIME;
+        Types.CHECK_DECISION_TIME = false;
+        try {
+            GameSettings settings = GameSettings.defaults().withMaxGameTicks(200);
+            Game sequential = new Game(7, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "", settings);
+            Game threaded = new Game(7, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "", settings);
+            for (Game game : new Game[]{sequential, threaded}) {
+                ArrayList<Player> players = new ArrayList<>();
+                int playerID = Types.TILETYPE.AGENT0.getKey();
+                players.add(new SimplePlayer(3, playerID++));
+                players.add(new OSLAPlayer(3, playerID++));
+                players.add(new SimplePlayer(3, playerID++));
+                players.add(new RandomPlayer(3, playerID++));
+                game.setPlayers(players);
+            }
+
+            Types.RESULT[] sequentialResults = sequential.run(false);
+            Types.RESULT[] threadedResults = threaded.run(true);
+
+            assertArrayEquals(sequentialResults, threadedResults);
+            assertEquals(sequential.getTick(), threaded.getTick());
+            assertEquals(sequential.getGameState().hash(), threaded.getGameState().hash());
+        } finally {
+            Types.CHECK_DECISION_TIME = checkDecisionTime;
+        }
+    }
+
+    /**
+     * Players that take longer than the decision time limit play ACTION_STOP and count an overtime. Their late
+     * decisions are ignored, and they are not asked again while still deciding, even if they ignore interrupts.
+     */
+    @Test
+    void separateThreadsEnforceDecisionTime() {
+        boolean checkDecisionTime = Types.CHECK_DECISION_TIME;
+        int decisionTimeLimit = Types.DECISION_TIME_LIMIT;
+        Types.CHECK_DECISION_TIME = true;
+        Types.DECISION_TIME_LIMIT = 10;
+        try {
+            AtomicInteger acting = new AtomicInteger();
+            AtomicInteger maxActing = new AtomicInteger();
+            AtomicInteger nCalls = new AtomicInteger();
+            Player slowPlayer = new Player(0, Types.TILETYPE.AGENT0.getKey()) {
+                @Override
+                public Types.ACTIONS act(GameState gs) {
+                    assertNotNull(gs);
+                    maxActing.accumulateAndGet(acting.incrementAndGet(), Math::max);
+                    nCalls.incrementAndGet();
+                    // Ignores interrupts, keeps deciding for 100ms.
+                    long end = System.nanoTime() + 100_000_000L;
+                    while (System.nanoTime() < end) {
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                    acting.decrementAndGet();
+                    return Types.ACTIONS.ACTION_BOMB;
+                }
+
+                @Override
+                public int[] getMessage() { return new int[Types.MESSAGE_LENGTH]; }
+
+                @Override
+                public Player copy() { return this; }
+            };
+
+            Game game = new Game(5, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "");
+            ArrayList<Player> players = new ArrayList<>();
+            int playerID = Types.TILETYPE.AGENT1.getKey();
+            players.add(slowPlayer);
+            players.add(new DoNothingPlayer(playerID++));
+            players.add(new DoNothingPlayer(playerID++));
+            players.add(new DoNothingPlayer(playerID++));
+            game.setPlayers(players);
+
+            game.createActors();
+            int ammo = ((Avatar) game.getGameState().getAgents()[0]).getAmmo();
+            int nTicks = 30;
+            for (int t = 0; t < nTicks; t++) {
+                game.tick(true);
+                // The bombs the slow player asks for come too late to be placed.
+                assertEquals(ammo, ((Avatar) game.getGameState().getAgents()[0]).getAmmo());
+            }
+
+            assertEquals(nTicks, game.getPlayerOvertimes()[0]);
+            assertEquals(0, game.getPlayerOvertimes()[1]);
+            assertTrue(nCalls.get() < nTicks);
+            assertEquals(1, maxActing.get());
+        } finally {
+            Types.CHECK_DECISION_TIME = checkDecisionTime;
+            Types.DECISION_TIME_LIMIT = decisionTimeLimit;
+        }
+    }
+
+    /**
+     * Players searching with an ElapsedCpuTimer stop when the game stops waiting for them, however long their budget.
+     * Decision times of all players are recorded.
+     */
+    @Test
+    void separateThreadsInterruptTimedPlayers() {
+        boolean checkDecisionTime = Types.CHECK_DECISION_TIME;
+        int decisionTimeLimit = Types.DECISION_TIME_LIMIT;
+        Types.CHECK_DECISION_TIME = true;
+        Types.DECISION_TIME_LIMIT = 10;
+        try {
+            Player greedyPlayer = new Player(0, Types.TILETYPE.AGENT0.getKey()) {
+                @Override
+                public Types.ACTIONS act(GameState gs) {
+                    ElapsedCpuTimer ect = new ElapsedCpuTimer();
+                    ect.setMaxTimeMillis(60_000);
+                    while (!ect.exceededMaxTime()) {
+                        gs.copy();
+                    }
+                    return Types.ACTIONS.ACTION_STOP;
+                }
+
+                @Override
+                public int[] getMessage() { return new int[Types.MESSAGE_LENGTH]; }
+
+                @Override
+                public Player copy() { return this; }
+            };
+
+            GameSettings settings = GameSettings.defaults().withMaxGameTicks(20);
+            Game game = new Game(5, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "", settings);
+            ArrayList<Player> players = new ArrayList<>();
+            int playerID = Types.TILETYPE.AGENT1.getKey();
+            players.add(greedyPlayer);
+            players.add(new DoNothingPlayer(playerID++));
+            players.add(new DoNothingPlayer(playerID++));
+            players.add(new DoNothingPlayer(playerID++));
+            game.setPlayers(players);
+
+            game.run(true);
+
+            assertEquals(20, game.getTick());
+            assertEquals(20, game.getPlayerOvertimes()[0]);
+            LatencySummary[] decisionTimes = game.getDecisionTimes();
+            assertTrue(decisionTimes[0].n() > 0);
+            assertTrue(decisionTimes[0].max() < 5_000_000_000L);
+            for (int i = 1; i < Types.NUM_PLAYERS; i++) {
+                assertEquals(20, decisionTimes[i].n());
+                assertEquals(0, game.getPlayerOvertimes()[i]);
+            }
+        } finally {
+            Types.CHECK_DECISION_TIME = checkDecisionTime;
+            Types.DECISION_TIME_LIMIT = decisionTimeLimit;
+        }
+    }
+
+    /**
+     * Observations built when first needed are the same as the ones built for all players after each tick.
+     */
+    @Test
+    void lazyObservationsMatchCopies() {
+        boolean logGame = Game.LOG_GAME;
+        Game.LOG_GAME = false;
+        try {
+            checkLazyObservations();
+        } finally {
+            Game.LOG_GAME = logGame;
+        }
+    }
+
+    private void checkLazyObservations() {
+        GameSettings settings = GameSettings.defaults().withMaxGameTicks(300);
+        Game game = new Game(11, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "", settings);
+        ArrayList<Player> players = new ArrayList<>();
+        int playerID = Types.TILETYPE.AGENT0.getKey();
+        players.add(new SimplePlayer(2, playerID++));
+        players.add(new OSLAPlayer(2, playerID++));
+        players.add(new SimplePlayer(2, playerID++));
+        players.add(new RandomPlayer(2, playerID++));
         game.setPlayers(players);
 
-        Game copy = game.copy();
-        Types.MAX_GAME_TICKS = 400;
-        //Run a single game with the players
-        game.run(null, null, useSeparateThreads);
-        GameLog log = game.getGameLog();
-        GameLog deserializedLog = GameLog.deserializeLastJSON();
-        assertEquals(log, deserializedLog); //Logs are the same before and after (de)serialization
+        while (!game.isEnded()) {
+            game.tick(false);
+            GameState gs = game.getGameState();
+            for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+                GameState expected = gs.copy(p);
+                assertArrayEquals(expected.getBoard(), game.getBoard(p));
+                assertEquals(expected.getAliveAgents().size(), game.getAliveAvatars(p).size());
+                GameObject[] expectedAvatars = expected.getAgents();
+                GameObject[] avatars = game.getAvatars(p);
+                for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+                    assertEquals(expectedAvatars[i], avatars[i]);
+                }
+            }
+        }
+    }
 
+    /**
+     * The sample files of a game keep the samples of the players that did not lose, without ACTION_STOP, and the
+     * windows of each radius are the centres of the largest one.
+     */
+    @Test
+    void samplesKeepPlayersThatDidNotLose() throws IOException {
+        boolean logGame = Game.LOG_GAME;
+        int[] sampleRadii = Game.SAMPLE_RADII;
+        Game.LOG_GAME = false;
+        Game.SAMPLE_RADII = new int[]{2, 5};
+        try {
+            GameSettings settings = GameSettings.defaults().withMaxGameTicks(300);
+            Game game = new Game(11, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "samples-test", settings);
+            ArrayList<Player> players = new ArrayList<>();
+            int playerID = Types.TILETYPE.AGENT0.getKey();
+            players.add(new SimplePlayer(2, playerID++));
+            players.add(new OSLAPlayer(2, playerID++));
+            players.add(new SimplePlayer(2, playerID++));
+            players.add(new RandomPlayer(2, playerID++));
+            game.setPlayers(players);
+            Types.RESULT[] results = game.run(false);
+
+            float[][] records = SampleSink.read(game.getSamplesFile(11, 0, 2));
+            float[][] wideRecords = SampleSink.read(game.getSamplesFile(11, 0, 5));
+            assertTrue(records.length > 0);
+            assertEquals(records.length, wideRecords.length);
+            for (int r = 0; r < records.length; r++) {
+                float[] record = records[r], wide = wideRecords[r];
+                int playerIdx = (int) record[0] - Types.TILETYPE.AGENT0.getKey();
+                assertNotEquals(Types.RESULT.LOSS, results[playerIdx]);
+                assertNotEquals(Types.ACTIONS.ACTION_STOP.ordinal(), (int) record[1]);
+                assertEquals(5, (int) record[3]);
+                assertEquals(5, (int) record[4]);
+                assertEquals(11, (int) wide[3]);
+                for (int f = 0; f < SampleSink.RECORD_FIELDS - 2; f++) {
+                    assertEquals(record[f], wide[f]);
+                }
+                for (int y = 0; y < 5; y++) {
+                    for (int x = 0; x < 5; x++) {
+                        assertEquals(record[SampleSink.RECORD_FIELDS + y * 5 + x],
+                                wide[SampleSink.RECORD_FIELDS + (y + 3) * 11 + x + 3]);
+                    }
+                }
+            }
+        } finally {
+            Game.LOG_GAME = logGame;
+            Game.SAMPLE_RADII = sampleRadii;
+        }
+    }
 
-        /* Uncomment to run the replay of the previous game: */
-        if (game.isLogged()){
-            Game replayGame = game.getReplayGame();
-            Game deserializedReplayGame = Game.getLastReplayGame();
-            assertEquals(replayGame.getGameState(), deserializedReplayGame.getGameState()); //Replay games from fresh and deserialized log are the same
-
-            replayGame.run(null,null, useSeparateThreads);
-            deserializedReplayGame.run(null, null, useSeparateThreads);
-            assertEquals(replayGame.getGameState(), deserializedReplayGame.getGameState()); //The two replay games finish in same state
-            /*
-            If replaygame and deserialized replay game finish the same but game does not finish the same,
-            then there is probably an error in how the action data is stored to the game logs,
-            not in how the logs are serialized and deserialized.
-            */
-
-            assertEquals(game.getGameState(), replayGame.getGameState()); // Fresh replay finishes in same state as real game
-            assertEquals(game.getGameState(), deserializedReplayGame.getGameState()); // Deserialized replay finishes in same state as real game
+    /**
+     * The binary log written during a game replays to the state the game ended in.
+     */
+    @Test
+    void binaryLogReplaysGame() throws IOException {
+        boolean logGame = Game.LOG_GAME, logGameJson = Game.LOG_GAME_JSON;
+        Game.LOG_GAME = true;
+        Game.LOG_GAME_JSON = false;
+        try {
+            GameSettings settings = GameSettings.defaults().withMaxGameTicks(300);
+            Game game = new Game(12, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "binary-log-test", settings);
+            ArrayList<Player> players = new ArrayList<>();
+            int playerID = Types.TILETYPE.AGENT0.getKey();
+            players.add(new SimplePlayer(3, playerID++));
+            players.add(new OSLAPlayer(3, playerID++));
+            players.add(new SimplePlayer(3, playerID++));
+            players.add(new RandomPlayer(3, playerID++));
+            game.setPlayers(players);
+            game.run(false);
+
+            BinaryGameLog.Reader reader = BinaryGameLog.read(game.getBinaryLogFile(12, 0));
+            assertEquals(game.getTick(), reader.getTicks());
+            assertEquals(game.getGameState(), reader.replay(settings));
+            assertEquals(game.getGameLog(), reader.toGameLog(settings));
+            assertThrows(IllegalArgumentException.class, () -> reader.replay(GameSettings.defaults()));
+            assertThrows(IllegalArgumentException.class, reader::toGameLog);
+        } finally {
+            Game.LOG_GAME = logGame;
+            Game.LOG_GAME_JSON = logGameJson;
+        }
+    }
+
+    /**
+     * An archived game is moved out of its binary log file, and found in the archive by its id, seed and repetition.
+     */
+    @Test
+    void archivedGameFound() throws IOException {
+        boolean logGame = Game.LOG_GAME, logGameJson = Game.LOG_GAME_JSON, logGameArchive = Game.LOG_GAME_ARCHIVE;
+        Game.LOG_GAME = true;
+        Game.LOG_GAME_JSON = false;
+        Game.LOG_GAME_ARCHIVE = true;
+        try {
+            GameSettings settings = GameSettings.defaults().withMaxGameTicks(300);
+            Game game = new Game(13, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "archive-test", settings);
+            ArrayList<Player> players = new ArrayList<>();
+            int playerID = Types.TILETYPE.AGENT0.getKey();
+            players.add(new SimplePlayer(4, playerID++));
+            players.add(new SimplePlayer(4, playerID++));
+            players.add(new RandomPlayer(4, playerID++));
+            players.add(new RandomPlayer(4, playerID++));
+            game.setPlayers(players);
+            game.run(false);
+
+            assertFalse(game.getBinaryLogFile(13, 0).exists());
+            BinaryGameLog.Reader reader = GameLogArchive.getDefault().get("archive-test", 13, 0);
+            assertEquals(game.getGameState(), reader.replay(settings));
+            assertEquals(game.getGameLog(), GameLogArchive.getDefault().last().toGameLog(settings));
+            assertNotNull(Game.getArchivedReplayGame("archive-test", 13, 0, settings));
+
+            // A game logged after it, but not moved to the archive, keeps its log and is the last game logged.
+            // Replay games turn logging off.
+            Game.LOG_GAME = true;
+            Game.LOG_GAME_ARCHIVE = false;
+            Game loose = new Game(15, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "archive-test");
+            ArrayList<Player> loosePlayers = new ArrayList<>();
+            playerID = Types.TILETYPE.AGENT0.getKey();
+            for (int i = 0; i < Types.NUM_PLAYERS; i++) loosePlayers.add(new RandomPlayer(5, playerID++));
+            loose.setPlayers(loosePlayers);
+            loose.run(false);
+            assertNotNull(loose.getGameLog());
+            assertTrue(loose.getBinaryLogFile(15, 0).exists());
+            assertTrue(GameLogArchive.getDefault().contains("archive-test", 15, 0));
+            assertEquals(loose.getGameLog(), GameLog.deserializeLast());
+        } finally {
+            Game.LOG_GAME = logGame;
+            Game.LOG_GAME_JSON = logGameJson;
+            Game.LOG_GAME_ARCHIVE = logGameArchive;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,405 @@
+package core;
+
+import players.Player;
+import utils.GameSettings;
+import utils.Types;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A league of players, rated as they play against each other. Each game takes NUM_PLAYERS entrants of the pool, those
+ * that played the fewest games so far, and seats them so that their games are spread as evenly as possible over the
+ * seats. Game modes are played in turns (e.g. FFA, TEAM, FFA...).
+ *
+ * Ratings are Elo ratings extended to more than two players: a game counts as one match between each pair of
+ * opponents (all other players in FFA, the players of the other team in TEAM), scored by their results
+ * (WIN > TIE > LOSS), and each match moves the ratings by K / number of opponents. Ratings only move between players,
+ * so their average stays at the initial rating.
+ *
+ * Games can be played by several worker threads. Ratings are updated as games end, in the order the games were
+ * scheduled, so they don't depend on the number of workers. The league can be saved to a file after every game and
+ * resumed from it: scheduling only depends on the games already rated, so a resumed league plays the same games.
+ */
+public class League {
+
+    /**
+     * Creates the players of an entrant, one for each game it plays.
+     */
+    public interface PlayerFactory {
+        Player create(long seed, int playerID);
+    }
+
+    /**
+     * A player of the league, with its rating and counts of its games.
+     */
+    public static class Entrant {
+        private final String name;
+        private final PlayerFactory factory;
+        private double rating;
+        private int games, wins, ties, losses;
+        private final int[] seatGames = new int[Types.NUM_PLAYERS];
+
+        private Entrant(String name, PlayerFactory factory, double rating) {
+            this.name = name;
+            this.factory = factory;
+            this.rating = rating;
+        }
+
+        public String getName() { return name; }
+        public double getRating() { return rating; }
+        public int getGames() { return games; }
+        public int getWins() { return wins; }
+        public int getTies() { return ties; }
+        public int getLosses() { return losses; }
+
+        /**
+         * @return number of games played on each seat.
+         */
+        public int[] getSeatGames() { return seatGames; }
+    }
+
+    public static final double INITIAL_RATING = 1500;
+
+    private final ArrayList<Entrant> entrants = new ArrayList<>();
+    private final Types.GAME_MODE[] gameModes;
+    private final long leagueSeed;
+    private GameSettings settings = GameSettings.defaults();
+    private double k = 32;
+    private int nWorkers = 1;
+    private File file;
+
+    // Games rated so far, the next game scheduled is this one.
+    private int gamesRated;
+
+    /**
+     * Creates a league.
+     * @param leagueSeed - seed of the league. Game g is played on level seed leagueSeed + g, with the same seed for
+     *                   its players.
+     * @param gameModes - modes of the games, played in turns.
+     */
+    public League(long leagueSeed, Types.GAME_MODE... gameModes) {
+        if (gameModes.length == 0) {
+            throw new IllegalArgumentException("At least one game mode is needed");
+        }
+        this.leagueSeed = leagueSeed;
+        this.gameModes = gameModes;
+    }
+
+    /**
+     * Adds a player to the league. All entrants must be added before the league is played or loaded.
+     * @param name - unique name of the player, used to find it in saved leagues.
+     * @param factory - creates the player for each game.
+     */
+    public void addEntrant(String name, PlayerFactory factory) {
+        for (Entrant e : entrants) {
+            if (e.name.equals(name)) {
+                throw new IllegalArgumentException("Entrant " + name + " already in the league");
+            }
+        }
+        if (name.contains("\t") || name.contains("\n")) {
+            throw new IllegalArgumentException("Entrant names can't contain tabs or line breaks: " + name);
+        }
+        entrants.add(new Entrant(name, factory, INITIAL_RATING));
+    }
+
+    /**
+     * @param settings - rules of the games.
+     */
+    public void setSettings(GameSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * @param k - maximum rating change of a match between two players.
+     */
+    public void setK(double k) {
+        this.k = k;
+    }
+
+    /**
+     * @param nWorkers - number of games played at the same time.
+     */
+    public void setWorkers(int nWorkers) {
+        if (nWorkers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive, not " + nWorkers);
+        }
+        this.nWorkers = nWorkers;
+    }
+
+    /**
+     * Saves the league to the given file after every game. If the file exists, the league is resumed from it.
+     * @param file - file to save the league to.
+     * @throws IOException if the file exists and can't be read
+     */
+    public void setFile(File file) throws IOException {
+        this.file = file;
+        if (file.exists()) {
+            load(file);
+        }
+    }
+
+    /**
+     * Plays the next games of the league.
+     * @param nGames - number of games to play.
+     */
+    public void play(int nGames) {
+        if (entrants.size() < Types.NUM_PLAYERS) {
+            throw new IllegalStateException("A league needs at least " + Types.NUM_PLAYERS + " entrants, not " +
+                    entrants.size());
+        }
+        Entrant[][] lineups = schedule(nGames);
+        int first = gamesRated;
+
+        if (nWorkers <= 1) {
+            for (int g = 0; g < nGames; g++) {
+                rate(lineups[g], first + g, playGame(lineups[g], first + g));
+            }
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(nWorkers, nGames));
+        try {
+            ArrayList<Future<Types.RESULT[]>> results = new ArrayList<>(nGames);
+            for (int g = 0; g < nGames; g++) {
+                Entrant[] lineup = lineups[g];
+                int gameIdx = first + g;
+                results.add(pool.submit(() -> playGame(lineup, gameIdx)));
+            }
+            // Rated in order: each game waits for the ones scheduled before it.
+            for (int g = 0; g < nGames; g++) {
+                rate(lineups[g], first + g, results.get(g).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the games to end", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("League game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Chooses the lineups of the next games, from the counts of the games rated so far.
+     * @return entrants of each game, indexed by seat.
+     */
+    private Entrant[][] schedule(int nGames) {
+        int nEntrants = entrants.size();
+        int[] games = new int[nEntrants];
+        int[][] seats = new int[nEntrants][];
+        for (int e = 0; e < nEntrants; e++) {
+            games[e] = entrants.get(e).games;
+            seats[e] = entrants.get(e).seatGames.clone();
+        }
+
+        Entrant[][] lineups = new Entrant[nGames][];
+        for (int g = 0; g < nGames; g++) {
+            Random rnd = new Random(leagueSeed + gamesRated + g);
+
+            // Entrants that played the fewest games, ties broken at random.
+            Integer[] order = new Integer[nEntrants];
+            double[] tieBreak = new double[nEntrants];
+            for (int e = 0; e < nEntrants; e++) {
+                order[e] = e;
+                tieBreak[e] = rnd.nextDouble();
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingInt(e -> games[e]).thenComparingDouble(e -> tieBreak[e]));
+
+            // Seats are given so that the players' games are spread as evenly as possible over the seats.
+            int[] players = new int[Types.NUM_PLAYERS];
+            for (int i = 0; i < Types.NUM_PLAYERS; i++) players[i] = order[i];
+            int[] best = null;
+            long bestCost = Long.MAX_VALUE;
+            for (int[] perm : permutations(Types.NUM_PLAYERS)) {
+                long cost = 0;
+                for (int s = 0; s < Types.NUM_PLAYERS; s++) {
+                    long seatGames = seats[players[perm[s]]][s];
+                    cost += 2 * seatGames + 1;  // Increase of the sum of squared seat counts
+                }
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = perm;
+                }
+            }
+
+            Entrant[] lineup = new Entrant[Types.NUM_PLAYERS];
+            for (int s = 0; s < Types.NUM_PLAYERS; s++) {
+                int e = players[best[s]];
+                lineup[s] = entrants.get(e);
+                games[e]++;
+                seats[e][s]++;
+            }
+            lineups[g] = lineup;
+        }
+        return lineups;
+    }
+
+    /**
+     * @return all orderings of 0..n-1, in lexicographic order.
+     */
+    private static ArrayList<int[]> permutations(int n) {
+        ArrayList<int[]> perms = new ArrayList<>();
+        permutations(new int[n], new boolean[n], 0, perms);
+        return perms;
+    }
+
+    private static void permutations(int[] perm, boolean[] used, int pos, ArrayList<int[]> perms) {
+        if (pos == perm.length) {
+            perms.add(perm.clone());
+            return;
+        }
+        for (int i = 0; i < perm.length; i++) {
+            if (used[i]) continue;
+            used[i] = true;
+            perm[pos] = i;
+            permutations(perm, used, pos + 1, perms);
+            used[i] = false;
+        }
+    }
+
+    /**
+     * Plays one game of the league, with new players.
+     * @return results of the players, indexed by seat.
+     */
+    private Types.RESULT[] playGame(Entrant[] lineup, int gameIdx) {
+        long seed = leagueSeed + gameIdx;
+        // One game id for the whole league, its games are told apart by their seeds.
+        Game game = new Game(seed, Types.BOARD_SIZE, gameMode(gameIdx), "league-" + leagueSeed, settings);
+        ArrayList<Player> players = new ArrayList<>(Types.NUM_PLAYERS);
+        for (int s = 0; s < Types.NUM_PLAYERS; s++) {
+            players.add(lineup[s].factory.create(seed, Types.TILETYPE.AGENT0.getKey() + s));
+        }
+        game.setPlayers(players);
+        return game.run(false);
+    }
+
+    private Types.GAME_MODE gameMode(int gameIdx) {
+        return gameModes[gameIdx % gameModes.length];
+    }
+
+    /**
+     * Updates the ratings and counts of the players of a game, and saves the league.
+     */
+    private void rate(Entrant[] lineup, int gameIdx, Types.RESULT[] results) {
+        boolean ffa = gameMode(gameIdx) == Types.GAME_MODE.FFA;
+        int n = Types.NUM_PLAYERS;
+
+        // Rating changes are computed from the ratings before the game, and applied together.
+        double[] delta = new double[n];
+        for (int i = 0; i < n; i++) {
+            int nOpponents = ffa ? n - 1 : n / 2;
+            for (int j = 0; j < n; j++) {
+                if (i == j || !ffa && i % 2 == j % 2) continue;
+                double expected = 1 / (1 + Math.pow(10, (lineup[j].rating - lineup[i].rating) / 400));
+                double score = Integer.compare(rank(results[i]), rank(results[j])) * 0.5 + 0.5;
+                delta[i] += k / nOpponents * (score - expected);
+            }
+        }
+
+        for (int s = 0; s < n; s++) {
+            Entrant e = lineup[s];
+            e.rating += delta[s];
+            e.games++;
+            e.seatGames[s]++;
+            switch (results[s]) {
+                case WIN: e.wins++; break;
+                case TIE: e.ties++; break;
+                default: e.losses++;
+            }
+        }
+        gamesRated = gameIdx + 1;
+
+        if (file != null) {
+            try {
+                save(file);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Could not save the league to " + file, ex);
+            }
+        }
+    }
+
+    private static int rank(Types.RESULT result) {
+        switch (result) {
+            case WIN: return 2;
+            case TIE: return 1;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Saves the league: the number of games rated, then one line per entrant with its name, rating, counts of games,
+     * wins, ties and losses and games on each seat, separated by tabs. The file is replaced at once, so it is never
+     * left half written.
+     */
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(tmp)))) {
+            out.println("games\t" + gamesRated);
+            for (Entrant e : entrants) {
+                StringBuilder line = new StringBuilder(e.name);
+                line.append('\t').append(e.rating).append('\t').append(e.games).append('\t').append(e.wins)
+                        .append('\t').append(e.ties).append('\t').append(e.losses);
+                for (int seatGames : e.seatGames) line.append('\t').append(seatGames);
+                out.println(line);
+            }
+        }
+        java.nio.file.Files.move(tmp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the ratings and counts of the entrants from a saved league. Entrants not in the file start again, and
+     * entrants in the file that are not in the league are ignored.
+     */
+    private void load(File file) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line = in.readLine();
+            if (line == null || !line.startsWith("games\t")) {
+                throw new IOException("Not a league file: " + file);
+            }
+            gamesRated = Integer.parseInt(line.substring("games\t".length()));
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] fields = line.split("\t");
+                for (Entrant e : entrants) {
+                    if (!e.name.equals(fields[0])) continue;
+                    e.rating = Double.parseDouble(fields[1]);
+                    e.games = Integer.parseInt(fields[2]);
+                    e.wins = Integer.parseInt(fields[3]);
+                    e.ties = Integer.parseInt(fields[4]);
+                    e.losses = Integer.parseInt(fields[5]);
+                    for (int s = 0; s < Types.NUM_PLAYERS; s++) {
+                        e.seatGames[s] = Integer.parseInt(fields[6 + s]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the entrants, best rated first.
+     */
+    public void printTable() {
+        System.out.println("Rating \tN \tWin \tTie \tLoss \tPlayer");
+        for (Entrant e : getTable()) {
+            System.out.println(String.format("%.1f", e.rating) + "\t" + e.games + "\t" + e.wins + "\t" + e.ties +
+                    "\t" + e.losses + "\t" + e.name);
+        }
+    }
+
+    /**
+     * @return entrants, best rated first.
+     */
+    public List<Entrant> getTable() {
+        ArrayList<Entrant> table = new ArrayList<>(entrants);
+        table.sort(Comparator.comparingDouble((Entrant e) -> e.rating).reversed());
+        return table;
+    }
+
+    /**
+     * @return number of games rated so far.
+     */
+    public int getGamesRated() { return gamesRated; }
+}
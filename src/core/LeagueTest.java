@@ -0,0 +1,93 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import players.*;
+import utils.Types;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeagueTest {
+
+    /**
+     * Ratings only move between players, seats are balanced, and the results don't depend on the number of workers.
+     */
+    @Test
+    void ratingsConservedAndSeatsBalanced() {
+        // The parallel league plays first, so that it doesn't start from state left by the sequential one.
+        League parallel = newLeague();
+        parallel.setWorkers(4);
+        parallel.play(10);
+
+        League sequential = newLeague();
+        sequential.play(10);
+
+        double sum = 0;
+        int games = 0;
+        for (League.Entrant e : sequential.getTable()) {
+            sum += e.getRating();
+            games += e.getGames();
+            assertEquals(e.getGames(), e.getWins() + e.getTies() + e.getLosses());
+            int[] seats = e.getSeatGames();
+            for (int s = 1; s < Types.NUM_PLAYERS; s++) {
+                assertTrue(Math.abs(seats[s] - seats[0]) <= 1, e.getName() + " seats unbalanced");
+            }
+        }
+        assertEquals(5 * League.INITIAL_RATING, sum, 1e-6);
+        assertEquals(10 * Types.NUM_PLAYERS, games);
+        assertTables(sequential.getTable(), parallel.getTable());
+    }
+
+    /**
+     * A league saved to a file and resumed plays the same games as one played at once.
+     */
+    @Test
+    void resumedLeagueMatchesUninterrupted() throws IOException {
+        File file = File.createTempFile("league", ".tsv");
+        assertTrue(file.delete());
+        try {
+            League first = newLeague();
+            first.setFile(file);
+            first.play(6);
+
+            League resumed = newLeague();
+            resumed.setFile(file);
+            assertEquals(6, resumed.getGamesRated());
+            resumed.play(4);
+
+            League uninterrupted = newLeague();
+            uninterrupted.play(10);
+
+            assertEquals(10, resumed.getGamesRated());
+            assertTables(uninterrupted.getTable(), resumed.getTable());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void assertTables(List<League.Entrant> expected, List<League.Entrant> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            League.Entrant e = expected.get(i), a = actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getRating(), a.getRating(), 1e-9);
+            assertEquals(e.getWins(), a.getWins());
+            assertEquals(e.getTies(), a.getTies());
+            assertEquals(e.getLosses(), a.getLosses());
+            assertArrayEquals(e.getSeatGames(), a.getSeatGames());
+        }
+    }
+
+    private static League newLeague() {
+        League league = new League(1234, Types.GAME_MODE.FFA, Types.GAME_MODE.TEAM);
+        league.addEntrant("simple", SimplePlayer::new);
+        league.addEntrant("osla", OSLAPlayer::new);
+        league.addEntrant("random", RandomPlayer::new);
+        league.addEntrant("donothing", (seed, id) -> new DoNothingPlayer(id));
+        league.addEntrant("simple2", (seed, id) -> new SimplePlayer(seed + 1, id));
+        return league;
+    }
+}
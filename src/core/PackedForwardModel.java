@@ -0,0 +1,1078 @@
+package core;
+
+import objects.Avatar;
+import objects.Bomb;
+import objects.Flame;
+import objects.GameObject;
+import utils.GameSettings;
+import utils.Types;
+import utils.Vector2d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static utils.Types.*;
+
+/**
+ * Forward model that keeps the state of the game in flat primitive arrays instead of game objects.
+ * Board and hidden power-ups are byte layers indexed by (y * size + x), while bombs, flames and avatars
+ * are stored as fixed-width int records. Copying this model only takes a few System.arraycopy calls, and
+ * no objects are created while rolling it forward (except when agents die, as the game configuration
+ * decides the winners on avatar objects).
+ *
+ * The rules applied in next() follow the ones in ForwardModel step by step, including the order in which
+ * objects are visited, so both engines produce the same states. Event statistics and debug output are only
+ * produced by ForwardModel.
+ */
+public class PackedForwardModel {
+
+    // Bomb record layout: position, desired position, life, blast strength, owner, velocity.
+    private static final int B_X = 0, B_Y = 1, B_DX = 2, B_DY = 3, B_LIFE = 4, B_BLAST = 5, B_OWNER = 6,
+            B_VX = 7, B_VY = 8;
+    private static final int BOMB_FIELDS = 9;
+
+    // Flame record layout: position, life, owner. The desired position of a flame is always its position.
+    private static final int F_X = 0, F_Y = 1, F_LIFE = 2, F_OWNER = 3;
+    private static final int FLAME_FIELDS = 4;
+
+    // Avatar record layout: position, desired position, ammo, blast strength, kick, vision range, winner, life.
+    private static final int A_X = 0, A_Y = 1, A_DX = 2, A_DY = 3, A_AMMO = 4, A_BLAST = 5, A_KICK = 6,
+            A_VISION = 7, A_WINNER = 8, A_LIFE = 9;
+    private static final int AGENT_FIELDS = 10;
+
+    // Value of a coordinate that is not known (null position or desired coordinate in the object model).
+    private static final int NONE = -1;
+
+    // Tile keys used by the rules.
+    private static final int PASSAGE = TILETYPE.PASSAGE.getKey();
+    private static final int RIGID = TILETYPE.RIGID.getKey();
+    private static final int WOOD = TILETYPE.WOOD.getKey();
+    private static final int BOMB = TILETYPE.BOMB.getKey();
+    private static final int FLAMES = TILETYPE.FLAMES.getKey();
+    private static final int EXTRABOMB = TILETYPE.EXTRABOMB.getKey();
+    private static final int INCRRANGE = TILETYPE.INCRRANGE.getKey();
+    private static final int KICK = TILETYPE.KICK.getKey();
+    private static final int AGENT0 = TILETYPE.AGENT0.getKey();
+    private static final int AGENT3 = TILETYPE.AGENT3.getKey();
+
+    // Tiles that block movement, as bit masks of tile keys.
+    private static final int MOVE_COLLISIONS = (1 << RIGID) | (1 << WOOD);
+    private static final int KICK_COLLISIONS = MOVE_COLLISIONS | (0xF << AGENT0);
+    private static final int FLAME_COLLISIONS = 1 << RIGID;
+
+    private static final Types.TILETYPE[] TILES = Types.TILETYPE.values();
+    private static final Types.RESULT[] RESULTS = Types.RESULT.values();
+
+    // Size of the board.
+    private int size;
+
+    // Game mode being played
+    private Types.GAME_MODE game_mode;
+
+    // Rules of the game
+    private GameSettings settings;
+
+    // Board of the game and hidden power-ups (PASSAGE if there is none), indexed by y * size + x.
+    private byte[] board;
+    private byte[] powerups;
+
+    // Blast strength and life of bombs mapped on board structure.
+    private int[] bombBlastStrength;
+    private int[] bombLife;
+
+    // Bomb and flame records, in the same order as the object lists of ForwardModel.
+    private int[] bombs;
+    private int nBombs;
+    private int[] flames;
+    private int nFlames;
+
+    // Avatar records for all players, and indices of the alive ones in the order of ForwardModel.aliveAgents.
+    private int[] agents;
+    private int[] aliveAgents;
+    private int nAlive;
+
+    // Scratch buffers used while rolling the model forward. Not part of the state, never copied.
+    private int[] occupancy;
+    private boolean[] deadBombs;
+    private int[] deadAgents;
+    private int[] agentCounts;
+
+    // Avatars the game configuration decides the end of the game on (see isEnded()). Not part of the state.
+    private Avatar[] endAvatars;
+    private ArrayList<GameObject> endAlive;
+
+    private PackedForwardModel(int size, Types.GAME_MODE game_mode, GameSettings settings) {
+        this.size = size;
+        this.game_mode = game_mode;
+        this.settings = settings;
+    }
+
+    /**
+     * Creates a packed model with the same state as the given object model.
+     * @param model - forward model to pack.
+     */
+    PackedForwardModel(ForwardModel model) {
+        this(model.getBoard().length, model.getGameMode(), model.getSettings());
+        pack(model);
+    }
+
+    /**
+     * Sets this model to the state of the given object model, reusing the arrays of this one where they are large
+     * enough. Used to start new games on the same packed model.
+     * @param model - forward model to pack.
+     */
+    void pack(ForwardModel model) {
+        Types.TILETYPE[][] objBoard = model.getBoard();
+        Types.TILETYPE[][] objPowerups = model.getPowerups();
+        int[][] objBlastStrength = model.getBombBlastStrength();
+        int[][] objBombLife = model.getBombLife();
+        if (model.getGameMode() != game_mode || model.getSettings() != settings)
+            endAvatars = null;
+        size = objBoard.length;
+        game_mode = model.getGameMode();
+        settings = model.getSettings();
+        if (board == null || board.length != size * size) {
+            board = new byte[size * size];
+            powerups = new byte[size * size];
+            bombBlastStrength = new int[size * size];
+            bombLife = new int[size * size];
+            occupancy = null;
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int c = y * size + x;
+                board[c] = (byte) objBoard[y][x].getKey();
+                powerups[c] = (byte) (objPowerups[y][x] != null ? objPowerups[y][x].getKey() : PASSAGE);
+                bombBlastStrength[c] = objBlastStrength[y][x];
+                bombLife[c] = objBombLife[y][x];
+            }
+        }
+
+        ArrayList<GameObject> objBombs = model.getBombs();
+        if (bombs == null || bombs.length < Math.max(objBombs.size(), NUM_PLAYERS) * BOMB_FIELDS)
+            bombs = new int[Math.max(objBombs.size(), NUM_PLAYERS) * BOMB_FIELDS];
+        nBombs = 0;
+        for (GameObject go : objBombs) {
+            Bomb b = (Bomb) go;
+            Vector2d velocity = b.getVelocity();
+            int o = nBombs++ * BOMB_FIELDS;
+            bombs[o + B_X] = b.getPosition().x;
+            bombs[o + B_Y] = b.getPosition().y;
+            bombs[o + B_DX] = b.getDesiredCoordinate().x;
+            bombs[o + B_DY] = b.getDesiredCoordinate().y;
+            bombs[o + B_LIFE] = b.getLife();
+            bombs[o + B_BLAST] = b.getBlastStrength();
+            bombs[o + B_OWNER] = b.getPlayerIdx();
+            bombs[o + B_VX] = velocity != null ? velocity.x : 0;
+            bombs[o + B_VY] = velocity != null ? velocity.y : 0;
+        }
+
+        ArrayList<GameObject> objFlames = model.getFlames();
+        if (flames == null || flames.length < Math.max(objFlames.size(), NUM_PLAYERS) * FLAME_FIELDS)
+            flames = new int[Math.max(objFlames.size(), NUM_PLAYERS) * FLAME_FIELDS];
+        nFlames = 0;
+        for (GameObject go : objFlames) {
+            int o = nFlames++ * FLAME_FIELDS;
+            flames[o + F_X] = go.getPosition().x;
+            flames[o + F_Y] = go.getPosition().y;
+            flames[o + F_LIFE] = go.getLife();
+            flames[o + F_OWNER] = ((Flame) go).playerIdx;
+        }
+
+        GameObject[] objAgents = model.getAgents();
+        if (agents == null) {
+            agents = new int[NUM_PLAYERS * AGENT_FIELDS];
+            aliveAgents = new int[NUM_PLAYERS];
+        }
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            Avatar a = (Avatar) objAgents[i];
+            int o = i * AGENT_FIELDS;
+            agents[o + A_X] = a.getPosition() != null ? a.getPosition().x : NONE;
+            agents[o + A_Y] = a.getPosition() != null ? a.getPosition().y : NONE;
+            agents[o + A_DX] = a.getDesiredCoordinate() != null ? a.getDesiredCoordinate().x : NONE;
+            agents[o + A_DY] = a.getDesiredCoordinate() != null ? a.getDesiredCoordinate().y : NONE;
+            agents[o + A_AMMO] = a.getAmmo();
+            agents[o + A_BLAST] = a.getBlastStrength();
+            agents[o + A_KICK] = a.canKick() ? 1 : 0;
+            agents[o + A_VISION] = a.getVisionRange();
+            agents[o + A_WINNER] = a.getWinner().getKey();
+            agents[o + A_LIFE] = a.getLife();
+        }
+
+        nAlive = 0;
+        for (GameObject go : model.getAliveAgents()) {
+            aliveAgents[nAlive++] = ((Avatar) go).getPlayerID() - AGENT0;
+        }
+    }
+
+    /**
+     * Creates a copy of this model. No reduction is applied, observations are reduced through ForwardModel.
+     * @return a deep copy of this model
+     */
+    PackedForwardModel copy() {
+        PackedForwardModel copy = new PackedForwardModel(size, game_mode, settings);
+        copy.board = board.clone();
+        copy.powerups = powerups.clone();
+        copy.bombBlastStrength = bombBlastStrength.clone();
+        copy.bombLife = bombLife.clone();
+        copy.bombs = bombs.clone();
+        copy.nBombs = nBombs;
+        copy.flames = flames.clone();
+        copy.nFlames = nFlames;
+        copy.agents = agents.clone();
+        copy.aliveAgents = aliveAgents.clone();
+        copy.nAlive = nAlive;
+        return copy;
+    }
+
+    /**
+     * Unpacks this model into game objects.
+     * @return a forward model in the same state as this one.
+     */
+    ForwardModel toForwardModel() {
+        Types.TILETYPE[][] objBoard = new Types.TILETYPE[size][size];
+        Types.TILETYPE[][] objPowerups = new Types.TILETYPE[size][size];
+        int[][] objBlastStrength = new int[size][size];
+        int[][] objBombLife = new int[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int c = y * size + x;
+                objBoard[y][x] = TILES[board[c]];
+                if (powerups[c] != PASSAGE)
+                    objPowerups[y][x] = TILES[powerups[c]];
+                objBlastStrength[y][x] = bombBlastStrength[c];
+                objBombLife[y][x] = bombLife[c];
+            }
+        }
+
+        GameObject[] objAgents = toAvatars();
+        ArrayList<GameObject> objAlive = aliveList(objAgents);
+
+        ArrayList<GameObject> objBombs = new ArrayList<>();
+        for (int b = 0; b < nBombs; b++) {
+            int o = b * BOMB_FIELDS;
+            Bomb bomb = new Bomb(bombs[o + B_BLAST], bombs[o + B_LIFE], bombs[o + B_OWNER]);
+            bomb.setPosition(new Vector2d(bombs[o + B_X], bombs[o + B_Y]));
+            bomb.setDesiredCoordinate(new Vector2d(bombs[o + B_DX], bombs[o + B_DY]));
+            bomb.setVelocity(new Vector2d(bombs[o + B_VX], bombs[o + B_VY]));
+            objBombs.add(bomb);
+        }
+
+        ArrayList<GameObject> objFlames = new ArrayList<>();
+        for (int f = 0; f < nFlames; f++) {
+            int o = f * FLAME_FIELDS;
+            Flame flame = new Flame();
+            flame.setLife(flames[o + F_LIFE]);
+            flame.playerIdx = flames[o + F_OWNER];
+            flame.setPosition(new Vector2d(flames[o + F_X], flames[o + F_Y]));
+            flame.setDesiredCoordinate(flame.getPosition());
+            objFlames.add(flame);
+        }
+
+        return new ForwardModel(size, game_mode, settings, objBoard, objPowerups, objBlastStrength, objBombLife,
+                objAgents, objAlive, objBombs, objFlames);
+    }
+
+    /**
+     * Observation getters, package-level access only.
+     */
+    Types.RESULT getWinner(int playerIdx) {
+        return RESULTS[agents[playerIdx * AGENT_FIELDS + A_WINNER]];
+    }
+    int getAmmo(int playerIdx) {
+        return agents[playerIdx * AGENT_FIELDS + A_AMMO];
+    }
+    int getBlastStrength(int playerIdx) {
+        return agents[playerIdx * AGENT_FIELDS + A_BLAST];
+    }
+    boolean canKick(int playerIdx) {
+        return agents[playerIdx * AGENT_FIELDS + A_KICK] != 0;
+    }
+    Vector2d getPosition(int playerIdx) {
+        int o = playerIdx * AGENT_FIELDS;
+        return agents[o + A_X] == NONE ? null : new Vector2d(agents[o + A_X], agents[o + A_Y]);
+    }
+    int getAliveAgentCount() {
+        return nAlive;
+    }
+    Types.TILETYPE getAliveAgentType(int i) {
+        return TILES[AGENT0 + aliveAgents[i]];
+    }
+    int getX(int playerIdx) {
+        return agents[playerIdx * AGENT_FIELDS + A_X];
+    }
+    int getY(int playerIdx) {
+        return agents[playerIdx * AGENT_FIELDS + A_Y];
+    }
+    int getVisionRange(int playerIdx) {
+        return agents[playerIdx * AGENT_FIELDS + A_VISION];
+    }
+    boolean isAlive(int playerIdx) {
+        for (int k = 0; k < nAlive; k++) {
+            if (aliveAgents[k] == playerIdx) return true;
+        }
+        return false;
+    }
+    int getTileKey(int x, int y) {
+        return board[y * size + x];
+    }
+
+    /**
+     * Indicates if the game is ended (see IGameConfig.isEnded()). The alive avatars given to the game configuration
+     * are kept by this model and only carry the winning statuses, which is what game configurations end games on, so
+     * nothing is allocated.
+     * @param gsTick - current tick of the game state.
+     * @return true if the game is over.
+     */
+    boolean isEnded(int gsTick) {
+        if (endAvatars == null) {
+            endAvatars = new Avatar[NUM_PLAYERS];
+            for (int i = 0; i < NUM_PLAYERS; i++) {
+                endAvatars[i] = new Avatar(AGENT0 + i, game_mode, settings);
+            }
+            endAlive = new ArrayList<>(NUM_PLAYERS);
+        }
+        endAlive.clear();
+        for (int k = 0; k < nAlive; k++) {
+            Avatar a = endAvatars[aliveAgents[k]];
+            a.setWinner(RESULTS[agents[aliveAgents[k] * AGENT_FIELDS + A_WINNER]]);
+            endAlive.add(a);
+        }
+        return settings.getGameConfig().isEnded(gsTick, game_mode, endAlive);
+    }
+
+    /**
+     * @return the board of the game, as tile types.
+     */
+    Types.TILETYPE[][] getBoard() {
+        Types.TILETYPE[][] objBoard = new Types.TILETYPE[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                objBoard[y][x] = TILES[board[y * size + x]];
+            }
+        }
+        return objBoard;
+    }
+
+    /**
+     * @return the board of the game, as tile keys (same as ForwardModel.toArray()).
+     */
+    int[][] toArray() {
+        int[][] boardArray = new int[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                boardArray[y][x] = board[y * size + x];
+            }
+        }
+        return boardArray;
+    }
+
+    /**
+     * Returns the Zobrist hash of this model, computed from scratch with the same keys as ForwardModel.hash(), so
+     * both engines give the same hash for the same state.
+     * @return 64-bit hash of the model.
+     */
+    long hash() {
+        long hash = 0;
+        for (int cell = 0; cell < size * size; cell++) {
+            hash ^= StateHash.tile(cell, board[cell]) ^ StateHash.powerUp(cell, powerups[cell]);
+        }
+        for (int o = 0; o < nBombs * BOMB_FIELDS; o += BOMB_FIELDS) {
+            hash ^= StateHash.bomb(bombs[o + B_X], bombs[o + B_Y], bombs[o + B_LIFE], bombs[o + B_BLAST],
+                    bombs[o + B_VX], bombs[o + B_VY]);
+        }
+        for (int o = 0; o < nFlames * FLAME_FIELDS; o += FLAME_FIELDS) {
+            hash ^= StateHash.flame(flames[o + F_X], flames[o + F_Y], flames[o + F_LIFE]);
+        }
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            int a = i * AGENT_FIELDS;
+            boolean alive = false;
+            for (int k = 0; k < nAlive; k++) {
+                if (aliveAgents[k] == i) {
+                    alive = true;
+                    break;
+                }
+            }
+            hash ^= StateHash.avatar(i, agents[a + A_X], agents[a + A_Y], agents[a + A_AMMO], agents[a + A_BLAST],
+                    agents[a + A_KICK] != 0, alive);
+        }
+        return hash;
+    }
+
+    /**
+     * ROLLS the MODEL FORWARD, applying the actions received as parameters,
+     * and executing all passive events
+     * (i.e. bombs exploding, flames appearing/disappearing).
+     * It modifies THIS object to time t+1. Steps are numbered as in ForwardModel.next().
+     * @param playerActions player actions to execute in this game state.
+     * @param gsTick current tick of the game state.
+     */
+    void next(Types.ACTIONS[] playerActions, int gsTick) {
+        if (occupancy == null) {
+            occupancy = new int[size * size];
+            deadAgents = new int[NUM_PLAYERS];
+            agentCounts = new int[NUM_PLAYERS];
+        }
+
+        // 1. Put actions into effect
+        translatePlayerActions(playerActions);
+
+        // 2. Tick the flames. Dead flames (life reached 0) are only removed after explosions have been resolved.
+        int nTickedFlames = nFlames;
+        for (int f = 0; f < nFlames; f++) {
+            flames[f * FLAME_FIELDS + F_LIFE]--;
+        }
+
+        // 4. Tick bombs, updating their life and desired position.
+        for (int b = 0; b < nBombs; b++) {
+            int o = b * BOMB_FIELDS;
+            bombs[o + B_LIFE]--;
+            if (!setBombDesiredCoordinate(o, bombs[o + B_X] + bombs[o + B_VX], bombs[o + B_Y] + bombs[o + B_VY],
+                    MOVE_COLLISIONS)) {
+                bombs[o + B_VX] = 0;
+                bombs[o + B_VY] = 0;
+            }
+        }
+
+        // 5. Position swap:
+        //      agent <-> agent. Bounce back both.
+        //      bomb <-> bomb. Bounce back both.
+        //      bomb <-> agent. Bomb only bounce back.
+        checkAgentSwap();
+        checkBombSwap();
+        checkAgentBombSwap();
+
+        // 6. If >= 2 agents or >= 2 bombs on same space, bounce both back.
+        checkAgentOverlap();
+        checkBombOverlap();
+
+        // 7. Handle kicks & moving bombs hitting agents that can not kick
+        handleMovingBombs();
+
+        // 8. Late update bomb overlaps, then bounce back agents moving onto bombs and move the bombs.
+        checkBombOverlap();
+        for (int b = 0; b < nBombs; b++) {
+            int o = b * BOMB_FIELDS;
+            for (int p = 0; p < NUM_PLAYERS; p++) {
+                int a = p * AGENT_FIELDS;
+                if (agents[a + A_DX] != NONE && agents[a + A_X] != NONE && agentMoved(a) &&
+                        agents[a + A_DX] == bombs[o + B_DX] && agents[a + A_DY] == bombs[o + B_DY]) {
+                    revertAgent(a);
+                }
+            }
+            if (move(BOMB, bombs[o + B_X], bombs[o + B_Y], bombs[o + B_DX], bombs[o + B_DY])) {
+                bombs[o + B_X] = bombs[o + B_DX];
+                bombs[o + B_Y] = bombs[o + B_DY];
+            }
+        }
+
+        // 9. Players pick up power-ups
+        for (int k = 0; k < nAlive; k++) {
+            int a = aliveAgents[k] * AGENT_FIELDS;
+            if (agents[a + A_DX] != NONE) {
+                pickPowerUp(a, agents[a + A_DX], agents[a + A_DY]);
+            }
+        }
+
+        // 10. Explode bombs. Occupancy keeps the flame positions of this tick.
+        handleBombExplosions();
+
+        // 11. Resolve flame on death effects, then remove dead flames.
+        for (int f = 0; f < nTickedFlames; f++) {
+            int o = f * FLAME_FIELDS;
+            if (flames[o + F_LIFE] == 0) {
+                int c = flames[o + F_Y] * size + flames[o + F_X];
+                if (powerups[c] != PASSAGE) {
+                    board[c] = powerups[c];
+                    powerups[c] = (byte) PASSAGE;
+                } else {
+                    board[c] = (byte) PASSAGE;
+                }
+            }
+        }
+        int alive = 0;
+        for (int f = 0; f < nFlames; f++) {
+            int o = f * FLAME_FIELDS;
+            if (f >= nTickedFlames || flames[o + F_LIFE] != 0) {
+                System.arraycopy(flames, o, flames, alive++ * FLAME_FIELDS, FLAME_FIELDS);
+            }
+        }
+        nFlames = alive;
+
+        // 12. Add flames left alive back into the board if missing.
+        for (int f = 0; f < nFlames; f++) {
+            int o = f * FLAME_FIELDS;
+            board[flames[o + F_Y] * size + flames[o + F_X]] = (byte) FLAMES;
+        }
+
+        // 13. Kill agents on flames. Otherwise, update position on board.
+        int nDead = handleAgentKilling();
+
+        // 14. Check for terminated agents
+        if (nDead > 0) {
+            processDeadAgents(deadAgents, nDead);
+        }
+
+        // 15. Update bomb blast strengths and bomb lives
+        Arrays.fill(bombBlastStrength, 0);
+        Arrays.fill(bombLife, 0);
+        for (int b = 0; b < nBombs; b++) {
+            int o = b * BOMB_FIELDS;
+            int c = bombs[o + B_Y] * size + bombs[o + B_X];
+            bombBlastStrength[c] = bombs[o + B_BLAST];
+            bombLife[c] = bombs[o + B_LIFE];
+        }
+
+        // 16. Collapse
+        if (settings.isCollapseBoard()) {
+            int collapseStart = settings.getCollapseStart();
+            int collapseStep = settings.getCollapseStep();
+            if (gsTick >= collapseStart && (gsTick - collapseStart) % collapseStep == 0) {
+                int collapse_stage = (gsTick - collapseStart) / collapseStep;
+                int ring_min = collapse_stage;
+                int ring_max = size - collapse_stage - 1;
+
+                nDead = 0;
+                for (int x = ring_min; x <= ring_max; x++) {
+                    if (x == ring_min || x == ring_max) {
+                        for (int y = ring_min + 1; y <= ring_max - 1; y++) {
+                            nDead = collapseTile(x, y, nDead);
+                        }
+                    }
+                    nDead = collapseTile(x, ring_min, nDead);
+                    nDead = collapseTile(x, ring_max, nDead);
+                }
+
+                // Kill agents.
+                if (nDead > 0)
+                    processDeadAgents(deadAgents, nDead);
+            }
+        }
+    }
+
+    /**
+     * Processes the final winning statuses for all agents when the time runs out.
+     */
+    void processTimeout() {
+        GameObject[] objAgents = toAvatars();
+        ArrayList<GameObject> objAlive = aliveList(objAgents);
+        settings.getGameConfig().processTimeout(game_mode, objAgents, objAlive);
+        readWinners(objAgents, objAlive);
+    }
+
+    private int collapseTile(int x, int y, int nCollapsed) {
+        int c = y * size + x;
+        int tile = board[c];
+
+        if (tile == BOMB) {
+            int kept = 0;
+            for (int b = 0; b < nBombs; b++) {
+                int o = b * BOMB_FIELDS;
+                if (bombs[o + B_X] != x || bombs[o + B_Y] != y)
+                    System.arraycopy(bombs, o, bombs, kept++ * BOMB_FIELDS, BOMB_FIELDS);
+            }
+            nBombs = kept;
+            bombLife[c] = 0;
+            bombBlastStrength[c] = 0;
+        } else if (tile == FLAMES) {
+            int kept = 0;
+            for (int f = 0; f < nFlames; f++) {
+                int o = f * FLAME_FIELDS;
+                if (flames[o + F_X] != x || flames[o + F_Y] != y)
+                    System.arraycopy(flames, o, flames, kept++ * FLAME_FIELDS, FLAME_FIELDS);
+            }
+            nFlames = kept;
+        } else if (tile >= AGENT0 && tile <= AGENT3) {
+            for (int k = 0; k < nAlive; k++) {
+                int a = aliveAgents[k] * AGENT_FIELDS;
+                if (agents[a + A_X] == x && agents[a + A_Y] == y)
+                    deadAgents[nCollapsed++] = aliveAgents[k];
+            }
+        }
+        board[c] = (byte) RIGID;
+        return nCollapsed;
+    }
+
+    /**
+     * Function to insert player action effects into the game.
+     * @param actions - array of actions, indexed by player.
+     */
+    private void translatePlayerActions(Types.ACTIONS[] actions) {
+        for (int i = 0; i < actions.length; i++) {
+            int a = i * AGENT_FIELDS;
+            if (agents[a + A_WINNER] != Types.RESULT.INCOMPLETE.getKey() || agents[a + A_X] == NONE) {
+                continue;
+            }
+
+            int x = agents[a + A_X];
+            int y = agents[a + A_Y];
+            Types.ACTIONS action = actions[i];
+
+            if (action == null)
+            {
+                System.out.println("WARNING: " + TILES[AGENT0 + i] + " sent an action NULL.");
+                action = Types.ACTIONS.ACTION_STOP;
+            }
+
+            Types.DIRECTIONS dir = action.getDirection();
+            setAgentDesiredCoordinate(a, x + dir.x(), y + dir.y());
+
+            if (action == Types.ACTIONS.ACTION_BOMB) {
+                if (agents[a + A_AMMO] > 0 && bombBlastStrength[y * size + x] == 0) {
+                    agents[a + A_AMMO]--;
+                    addBomb(x, y, agents[a + A_BLAST], settings.getBombLife(), i);
+                }
+            }
+        }
+    }
+
+    private void addBomb(int x, int y, int blastStrength, int life, int playerIdx) {
+        if ((nBombs + 1) * BOMB_FIELDS > bombs.length) {
+            bombs = Arrays.copyOf(bombs, bombs.length * 2);
+        }
+        int o = nBombs++ * BOMB_FIELDS;
+        bombs[o + B_X] = x;
+        bombs[o + B_Y] = y;
+        bombs[o + B_DX] = x;
+        bombs[o + B_DY] = y;
+        bombs[o + B_LIFE] = life;
+        bombs[o + B_BLAST] = blastStrength;
+        bombs[o + B_OWNER] = playerIdx;
+        bombs[o + B_VX] = 0;
+        bombs[o + B_VY] = 0;
+        board[y * size + x] = (byte) BOMB;
+    }
+
+    private void addFlame(int x, int y, int playerIdx) {
+        if ((nFlames + 1) * FLAME_FIELDS > flames.length) {
+            flames = Arrays.copyOf(flames, flames.length * 2);
+        }
+        int o = nFlames++ * FLAME_FIELDS;
+        flames[o + F_X] = x;
+        flames[o + F_Y] = y;
+        flames[o + F_LIFE] = settings.getFlameLife();
+        flames[o + F_OWNER] = playerIdx;
+    }
+
+    /**
+     * Method for a player to pick up a power-up.
+     * @param a - offset of the player record.
+     * @param x - x position of the power-up
+     * @param y - y position of the power-up
+     */
+    private void pickPowerUp(int a, int x, int y) {
+        if (x >= 0 && x < size && y >= 0 && y < size) {
+            int tile = board[y * size + x];
+            if (tile == EXTRABOMB) {
+                agents[a + A_AMMO]++;
+            } else if (tile == INCRRANGE) {
+                agents[a + A_BLAST]++;
+            } else if (tile == KICK) {
+                agents[a + A_KICK] = 1;
+            }
+        }
+    }
+
+    private void checkAgentSwap() {
+        for (int k1 = 0; k1 < nAlive; k1++) {
+            for (int k2 = 0; k2 < nAlive; k2++) {
+                int a1 = aliveAgents[k1] * AGENT_FIELDS;
+                int a2 = aliveAgents[k2] * AGENT_FIELDS;
+                if (a1 != a2 && agentCanSwap(a1) && agentCanSwap(a2) &&
+                        agents[a1 + A_DX] == agents[a2 + A_X] && agents[a1 + A_DY] == agents[a2 + A_Y] &&
+                        agents[a2 + A_DX] == agents[a1 + A_X] && agents[a2 + A_DY] == agents[a1 + A_Y]) {
+                    revertAgent(a1);
+                    revertAgent(a2);
+                }
+            }
+        }
+    }
+
+    private void checkBombSwap() {
+        for (int b1 = 0; b1 < nBombs; b1++) {
+            for (int b2 = 0; b2 < nBombs; b2++) {
+                int o1 = b1 * BOMB_FIELDS;
+                int o2 = b2 * BOMB_FIELDS;
+                if (b1 != b2 && bombMoved(o1) && bombMoved(o2) &&
+                        bombs[o1 + B_DX] == bombs[o2 + B_X] && bombs[o1 + B_DY] == bombs[o2 + B_Y] &&
+                        bombs[o2 + B_DX] == bombs[o1 + B_X] && bombs[o2 + B_DY] == bombs[o1 + B_Y]) {
+                    revertBomb(o1);
+                    revertBomb(o2);
+                }
+            }
+        }
+    }
+
+    private void checkAgentBombSwap() {
+        for (int k = 0; k < nAlive; k++) {
+            for (int b = 0; b < nBombs; b++) {
+                int a = aliveAgents[k] * AGENT_FIELDS;
+                int o = b * BOMB_FIELDS;
+                if (agentCanSwap(a) && bombMoved(o) &&
+                        agents[a + A_DX] == bombs[o + B_X] && agents[a + A_DY] == bombs[o + B_Y] &&
+                        bombs[o + B_DX] == agents[a + A_X] && bombs[o + B_DY] == agents[a + A_Y]) {
+                    revertBomb(o);
+                }
+            }
+        }
+    }
+
+    private void checkAgentOverlap() {
+        // Count how many agents want to move to the same position (unknown positions count together).
+        int[] counts = agentCounts;
+        for (int k1 = 0; k1 < nAlive; k1++) {
+            int a1 = aliveAgents[k1] * AGENT_FIELDS;
+            counts[k1] = 0;
+            for (int k2 = 0; k2 < nAlive; k2++) {
+                int a2 = aliveAgents[k2] * AGENT_FIELDS;
+                if (agents[a1 + A_DX] == agents[a2 + A_DX] && agents[a1 + A_DY] == agents[a2 + A_DY])
+                    counts[k1]++;
+            }
+        }
+        for (int k = 0; k < nAlive; k++) {
+            int a = aliveAgents[k] * AGENT_FIELDS;
+            if (counts[k] > 1 && agents[a + A_X] != NONE) {
+                revertAgent(a);
+            }
+        }
+    }
+
+    private void checkBombOverlap() {
+        Arrays.fill(occupancy, 0);
+        for (int b = 0; b < nBombs; b++) {
+            int o = b * BOMB_FIELDS;
+            occupancy[bombs[o + B_DY] * size + bombs[o + B_DX]]++;
+        }
+        for (int b = 0; b < nBombs; b++) {
+            int o = b * BOMB_FIELDS;
+            if (occupancy[bombs[o + B_DY] * size + bombs[o + B_DX]] > 1) {
+                revertBomb(o);
+            }
+        }
+    }
+
+    /**
+     * Handles the movement of bombs, including kicking them if the agent can do so.
+     */
+    private void handleMovingBombs() {
+        for (int b = 0; b < nBombs; b++) {
+            int o = b * BOMB_FIELDS;
+            for (int k = 0; k < nAlive; k++) {
+                int a = aliveAgents[k] * AGENT_FIELDS;
+                if (agents[a + A_DX] == NONE || agents[a + A_X] == NONE)
+                    continue;
+
+                if (!bombMoved(o)) {
+                    bombs[o + B_VX] = 0;
+                    bombs[o + B_VY] = 0;
+                }
+                if (agents[a + A_DX] == bombs[o + B_DX] && agents[a + A_DY] == bombs[o + B_DY]) {
+                    // Agent tried to move onto bomb OR bomb tried to move onto agent, check if agent can kick
+                    if (agents[a + A_KICK] != 0) {
+                        int vx = agents[a + A_DX] - agents[a + A_X];
+                        int vy = agents[a + A_DY] - agents[a + A_Y];
+                        bombs[o + B_VX] = vx;
+                        bombs[o + B_VY] = vy;
+
+                        if (vx == 0 && vy == 0) {
+                            if (agentMoved(a))
+                                revertAgent(a);
+                        } else if (!setBombDesiredCoordinate(o, bombs[o + B_DX] + vx, bombs[o + B_DY] + vy,
+                                KICK_COLLISIONS)) {
+                            bombs[o + B_VX] = 0;
+                            bombs[o + B_VY] = 0;
+                        }
+                    } else {
+                        // Move both back
+                        if (agentMoved(a))
+                            revertAgent(a);
+                        if (bombMoved(o))
+                            revertBomb(o);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles bomb explosions, creating the flames that destroy things. Chained explosions are resolved
+     * with repeated passes over the bombs, as in ForwardModel. When this method returns, the occupancy
+     * buffer counts the flames (dead or alive) on each cell for this tick.
+     */
+    private void handleBombExplosions() {
+        Arrays.fill(occupancy, 0);
+        for (int f = 0; f < nFlames; f++) {
+            int o = f * FLAME_FIELDS;
+            occupancy[flames[o + F_Y] * size + flames[o + F_X]]++;
+        }
+
+        boolean newExplosions = true;
+        while (newExplosions) {
+            newExplosions = false;
+
+            if (deadBombs == null || deadBombs.length < nBombs)
+                deadBombs = new boolean[Math.max(nBombs, bombs.length / BOMB_FIELDS)];
+            Arrays.fill(deadBombs, false);
+
+            for (int b = 0; b < nBombs; b++) {
+                int o = b * BOMB_FIELDS;
+                boolean forceExplosion = occupancy[bombs[o + B_Y] * size + bombs[o + B_X]] > 0;
+                if (bombs[o + B_LIFE] == 0 || forceExplosion) {
+                    if (explode(o)) {
+                        newExplosions = true;
+                        deadBombs[b] = true;
+
+                        // Give the player 1 ammo back for this bomb
+                        int pIdx = bombs[o + B_OWNER];
+                        if (pIdx >= 0) {
+                            agents[pIdx * AGENT_FIELDS + A_AMMO]++;
+                        }
+                    }
+                }
+            }
+
+            if (newExplosions)
+                removeDeadBombs();
+        }
+    }
+
+    /**
+     * Removes exploded bombs. Like ArrayList.removeAll() in the object model, bombs equal to an exploded
+     * one (same life, position and desired position) are removed as well.
+     */
+    private void removeDeadBombs() {
+        int kept = 0;
+        for (int b = 0; b < nBombs; b++) {
+            int o = b * BOMB_FIELDS;
+            boolean remove = false;
+            for (int d = 0; d < nBombs && !remove; d++) {
+                int od = d * BOMB_FIELDS;
+                remove = deadBombs[d] && bombs[o + B_LIFE] == bombs[od + B_LIFE] &&
+                        bombs[o + B_X] == bombs[od + B_X] && bombs[o + B_Y] == bombs[od + B_Y] &&
+                        bombs[o + B_DX] == bombs[od + B_DX] && bombs[o + B_DY] == bombs[od + B_DY];
+            }
+            if (!remove)
+                System.arraycopy(bombs, o, bombs, kept++ * BOMB_FIELDS, BOMB_FIELDS);
+        }
+        nBombs = kept;
+    }
+
+    /**
+     * Explodes a bomb, adding flames on its position and along the four directions up to its blast strength.
+     * @param o - offset of the bomb record
+     * @return true if any flame was created.
+     */
+    private boolean explode(int o) {
+        int x = bombs[o + B_X];
+        int y = bombs[o + B_Y];
+        int blastStrength = bombs[o + B_BLAST];
+        int owner = bombs[o + B_OWNER];
+        int flamesBefore = nFlames;
+
+        tryToAddFlame(x, y, owner);
+        boolean advanceP = true;
+        boolean advanceM = true;
+        for (int i = 1; i < blastStrength; i++) {
+            if (advanceP)
+                advanceP = tryToAddFlame(x + i, y, owner);
+            if (advanceM)
+                advanceM = tryToAddFlame(x - i, y, owner);
+        }
+        advanceP = true;
+        advanceM = true;
+        for (int i = 1; i < blastStrength; i++) {
+            if (advanceP)
+                advanceP = tryToAddFlame(x, y + i, owner);
+            if (advanceM)
+                advanceM = tryToAddFlame(x, y - i, owner);
+        }
+        return nFlames > flamesBefore;
+    }
+
+    private boolean tryToAddFlame(int x, int y, int owner) {
+        if (x < 0 || y < 0 || x >= size || y >= size) {
+            return false;
+        }
+        int c = y * size + x;
+        int tile = board[c];
+        if (((1 << tile) & FLAME_COLLISIONS) != 0) {
+            return false;
+        }
+        addFlame(x, y, owner);
+        occupancy[c]++;
+        board[c] = (byte) FLAMES;
+        return tile != WOOD;  // Flames should stop at first wooden block
+    }
+
+    /**
+     * Handles killing agents with flames in the board, moving the ones that survive.
+     * @return number of agents killed on this tick, stored in deadAgents.
+     */
+    private int handleAgentKilling() {
+        int nDead = 0;
+        for (int k = 0; k < nAlive; k++) {
+            int a = aliveAgents[k] * AGENT_FIELDS;
+            if (agents[a + A_DX] == NONE || agents[a + A_X] == NONE)
+                continue;
+
+            int curr = agents[a + A_Y] * size + agents[a + A_X];
+            if (occupancy[agents[a + A_DY] * size + agents[a + A_DX]] > 0) {
+                // This agent was killed by a flame
+                agents[a + A_LIFE] = 0;
+                deadAgents[nDead++] = aliveAgents[k];
+                if (board[curr] != BOMB && board[curr] != FLAMES) {
+                    board[curr] = (byte) PASSAGE;
+                }
+            } else if (move(AGENT0 + aliveAgents[k], agents[a + A_X], agents[a + A_Y],
+                    agents[a + A_DX], agents[a + A_DY])) {
+                agents[a + A_X] = agents[a + A_DX];
+                agents[a + A_Y] = agents[a + A_DY];
+            }
+        }
+        return nDead;
+    }
+
+    /**
+     * Moves an object on the board from its current position to its desired one. Objects don't move through
+     * walls (rigid or wood). The caller updates the position of the object if this returns true.
+     * @param type - tile key of the object to move
+     * @return true if the object changed position.
+     */
+    private boolean move(int type, int x, int y, int nextX, int nextY) {
+        boolean moved = false;
+        int next = nextY * size + nextX;
+
+        if (x != nextX || y != nextY) {
+            int nextType = board[next];
+            if (nextType != RIGID && nextType != WOOD) {
+                moved = true;
+                boolean isPowerUp = nextType == EXTRABOMB || nextType == INCRRANGE || nextType == KICK;
+
+                // Bombs moving onto power-ups put them back in the power-ups layer
+                if (type == BOMB && isPowerUp) {
+                    powerups[next] = board[next];
+                }
+
+                // Only replace the current position if the object there can be overwritten: power-ups, flames and
+                // other agents stay, and bombs are only removed by themselves.
+                int curr = y * size + x;
+                int currType = board[curr];
+                boolean illegal = currType == EXTRABOMB || currType == INCRRANGE || currType == KICK ||
+                        currType == FLAMES || (currType >= AGENT0 && currType <= AGENT3 && currType != type) ||
+                        (type != BOMB && currType == BOMB);
+                if (!illegal) {
+                    if (powerups[curr] != PASSAGE) {
+                        board[curr] = powerups[curr];
+                        powerups[curr] = (byte) PASSAGE;
+                    } else {
+                        board[curr] = (byte) PASSAGE;
+                    }
+                }
+            }
+        }
+
+        board[next] = (byte) type;
+        return moved;
+    }
+
+    /**
+     * Decides the winners after agents died, using the game configuration on avatar objects.
+     * @param dead - indices of the dead agents.
+     * @param nDead - number of dead agents.
+     */
+    private void processDeadAgents(int[] dead, int nDead) {
+        GameObject[] objAgents = toAvatars();
+        ArrayList<GameObject> objAlive = aliveList(objAgents);
+        ArrayList<GameObject> objDead = new ArrayList<>();
+        for (int k = 0; k < nDead; k++) {
+            objDead.add(objAgents[dead[k]]);
+        }
+        settings.getGameConfig().processDeadAgents(objAgents, objAlive, objDead, game_mode);
+        readWinners(objAgents, objAlive);
+    }
+
+    private void readWinners(GameObject[] objAgents, ArrayList<GameObject> objAlive) {
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            agents[i * AGENT_FIELDS + A_WINNER] = ((Avatar) objAgents[i]).getWinner().getKey();
+        }
+        nAlive = 0;
+        for (GameObject go : objAlive) {
+            aliveAgents[nAlive++] = ((Avatar) go).getPlayerID() - AGENT0;
+        }
+    }
+
+    private GameObject[] toAvatars() {
+        GameObject[] objAgents = new GameObject[NUM_PLAYERS];
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            int o = i * AGENT_FIELDS;
+            Avatar a = new Avatar(AGENT0 + i, 0, 0, agents[o + A_KICK] != 0, agents[o + A_AMMO],
+                    agents[o + A_BLAST], game_mode, settings.getGameConfig());
+            a.setVisionRange(agents[o + A_VISION]);
+            a.setWinner(RESULTS[agents[o + A_WINNER]]);
+            a.setLife(agents[o + A_LIFE]);
+            if (agents[o + A_X] == NONE)
+                a.setPositionNull();
+            else
+                a.setPosition(new Vector2d(agents[o + A_X], agents[o + A_Y]));
+            if (agents[o + A_DX] == NONE)
+                a.setDesiredCoordinateNull();
+            else
+                a.setDesiredCoordinate(new Vector2d(agents[o + A_DX], agents[o + A_DY]));
+            objAgents[i] = a;
+        }
+        return objAgents;
+    }
+
+    private ArrayList<GameObject> aliveList(GameObject[] objAgents) {
+        ArrayList<GameObject> objAlive = new ArrayList<>();
+        for (int k = 0; k < nAlive; k++) {
+            objAlive.add(objAgents[aliveAgents[k]]);
+        }
+        return objAlive;
+    }
+
+    private boolean agentCanSwap(int a) {
+        return agents[a + A_DX] != NONE && agents[a + A_X] != NONE && agentMoved(a);
+    }
+
+    private boolean agentMoved(int a) {
+        return agents[a + A_DX] != agents[a + A_X] || agents[a + A_DY] != agents[a + A_Y];
+    }
+
+    private boolean bombMoved(int o) {
+        return bombs[o + B_DX] != bombs[o + B_X] || bombs[o + B_DY] != bombs[o + B_Y];
+    }
+
+    private void revertAgent(int a) {
+        agents[a + A_DX] = agents[a + A_X];
+        agents[a + A_DY] = agents[a + A_Y];
+    }
+
+    private void revertBomb(int o) {
+        bombs[o + B_DX] = bombs[o + B_X];
+        bombs[o + B_DY] = bombs[o + B_Y];
+    }
+
+    private boolean isLegal(int x, int y, int collisions) {
+        return x >= 0 && y >= 0 && x < size && y < size && ((1 << board[y * size + x]) & collisions) == 0;
+    }
+
+    private void setAgentDesiredCoordinate(int a, int x, int y) {
+        if (isLegal(x, y, MOVE_COLLISIONS)) {
+            agents[a + A_DX] = x;
+            agents[a + A_DY] = y;
+        } else {
+            revertAgent(a);
+        }
+    }
+
+    private boolean setBombDesiredCoordinate(int o, int x, int y, int collisions) {
+        if (isLegal(x, y, collisions)) {
+            bombs[o + B_DX] = x;
+            bombs[o + B_DY] = y;
+            return true;
+        }
+        revertBomb(o);
+        return false;
+    }
+}
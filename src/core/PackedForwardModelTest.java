@@ -0,0 +1,146 @@
+package core;
+
+import objects.GameObject;
+import org.junit.jupiter.api.Test;
+import utils.Types;
+import utils.Vector2d;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedForwardModelTest {
+
+    private static final int N_SEEDS = 20;
+
+    /**
+     * Random actions for all players. Players with a low bomb probability survive longer, so games also
+     * reach the board collapse.
+     */
+    private Types.ACTIONS[] randomActions(Random rnd, double[] bombProb) {
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        for (int i = 0; i < actions.length; i++) {
+            if (rnd.nextDouble() < bombProb[i])
+                actions[i] = Types.ACTIONS.ACTION_BOMB;
+            else
+                actions[i] = Types.ACTIONS.values()[rnd.nextInt(Types.NUM_ACTIONS - 1)];
+        }
+        return actions;
+    }
+
+    private GameState newGameState(long seed, Types.GAME_MODE gameMode, boolean canKick) {
+        GameState gs = new GameState(seed, Types.BOARD_SIZE, gameMode, true);
+        gs.init();
+        if (canKick) {
+            GameObject[] agents = gs.getAgents();
+            for (int i = 0; i < agents.length; i++) {
+                Vector2d pos = agents[i].getPosition();
+                gs.setAgent(i, pos.x, pos.y, true, Types.DEFAULT_BOMB_AMMO, Types.DEFAULT_BOMB_BLAST);
+            }
+        }
+        return gs;
+    }
+
+    /**
+     * Plays full games (until the tick limit) with both forward models in lockstep, checking they go through
+     * the same states (and hashes). This covers chained explosions, kicks, power-ups, board collapse and all game modes.
+     */
+    @Test
+    void fullGamesMatchObjectModel() {
+        for (Types.GAME_MODE gameMode : Types.GAME_MODE.values()) {
+            for (long seed = 0; seed < N_SEEDS; seed++) {
+                GameState gs = newGameState(seed, gameMode, seed % 2 == 0);
+                GameState packed = gs.copy();
+                packed.setPackedModel(true);
+                assertEquals(gs, packed);
+
+                Random rnd = new Random(seed);
+                double[] bombProb = {0.3, 0.1, 0.02, 0.0};
+                while (gs.getTick() < Types.MAX_GAME_TICKS) {
+                    Types.ACTIONS[] actions = randomActions(rnd, bombProb);
+                    assertTrue(gs.next(actions));
+                    assertTrue(packed.next(actions));
+                    assertEquals(gs, packed, gameMode + " game " + seed + " diverged at tick " + gs.getTick());
+                    assertArrayEquals(gs.getAliveAgentIDs(), packed.getAliveAgentIDs());
+                    // The object model updates its hash as it goes, the packed one computes it from scratch.
+                    assertEquals(gs.hash(), packed.hash());
+                }
+                assertFalse(packed.next(randomActions(rnd, bombProb)));
+            }
+        }
+    }
+
+    /**
+     * Checks that player observations of a packed state match the ones of the object model, including the
+     * accessors served directly by the packed arrays, and that rolling observations forward (as agents do in
+     * their simulations) gives the same results.
+     */
+    @Test
+    void observationsMatchObjectModel() {
+        for (long seed = 0; seed < N_SEEDS; seed++) {
+            Types.GAME_MODE gameMode = Types.GAME_MODE.values()[(int) (seed % Types.GAME_MODE.values().length)];
+            GameState gs = newGameState(seed, gameMode, false);
+            GameState packed = gs.copy();
+            packed.setPackedModel(true);
+
+            Random rnd = new Random(seed);
+            double[] bombProb = {0.1, 0.1, 0.05, 0.05};
+            for (int t = 0; t < 300; t++) {
+                Types.ACTIONS[] actions = randomActions(rnd, bombProb);
+                gs.next(actions);
+                packed.next(actions);
+
+                for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+                    GameState obs = gs.copy(p);
+                    GameState packedObs = packed.copy(p).copy();
+                    assertTrue(packedObs.usesPackedModel());
+
+                    assertEquals(obs.winner(), packedObs.winner());
+                    assertEquals(obs.getAmmo(), packedObs.getAmmo());
+                    assertEquals(obs.getBlastStrength(), packedObs.getBlastStrength());
+                    assertEquals(obs.canKick(), packedObs.canKick());
+                    assertEquals(obs.getPosition(), packedObs.getPosition());
+                    assertEquals(obs.isTerminal(), packedObs.isTerminal());
+                    assertArrayEquals(obs.getAliveAgentIDs(), packedObs.getAliveAgentIDs());
+                    assertTrue(Arrays.deepEquals(obs.toArray(), packedObs.toArray()));
+                    assertTrue(Types.TILETYPE.boardEquals(obs.getBoard(), packedObs.getBoard()));
+                    assertEquals(obs, packedObs);
+
+                    // Simulate a few steps ahead on the observation.
+                    for (int s = 0; s < 5; s++) {
+                        Types.ACTIONS[] simActions = randomActions(rnd, bombProb);
+                        obs.next(simActions);
+                        packedObs.next(simActions);
+                    }
+                    assertEquals(obs, packedObs);
+                    assertEquals(obs.hash(), packedObs.hash());
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies of a packed state must be independent from the original.
+     */
+    @Test
+    void copiesAreIndependent() {
+        GameState packed = newGameState(42, Types.GAME_MODE.FFA, true);
+        packed.setPackedModel(true);
+        Random rnd = new Random(42);
+        double[] bombProb = {0.2, 0.2, 0.2, 0.2};
+        for (int t = 0; t < 20; t++) {
+            packed.next(randomActions(rnd, bombProb));
+        }
+
+        GameState reference = packed.copy();
+        reference.setPackedModel(false);
+
+        GameState copy = packed.copy();
+        for (int t = 0; t < 50; t++) {
+            copy.next(randomActions(rnd, bombProb));
+        }
+        assertNotEquals(copy.getTick(), packed.getTick());
+        assertEquals(reference, packed);
+    }
+}
@@ -0,0 +1,264 @@
+package core;
+
+import utils.StatSummary;
+import utils.Types;
+import utils.WinRateBounds;
+
+import java.util.ArrayList;
+
+/**
+ * Plays several matchups, each a game with its players, and stops playing a matchup as soon as it is known whether
+ * the win rate of its focal player is above or below a threshold (0.5 by default), at the given confidence. Games
+ * are played in rounds of a few games per undecided matchup, so the budget of the decided ones goes to the others.
+ *
+ * A game scores 1 for a win of the focal player, 0.5 for a tie and 0 for a loss. Matchups are decided by:
+ *   - WILSON: the Wilson score interval of the win rate no longer contains the threshold.
+ *   - SPRT: the sequential probability ratio test of win rate threshold + margin against threshold - margin
+ *     accepts one of them, with error rates 1 - confidence.
+ * Both are checked after every round. Checking Wilson intervals repeatedly makes errors more likely than
+ * 1 - confidence over long matchups, SPRT keeps close to the error rates asked for.
+ *
+ * Game k of a matchup is played on seed seeds[k % seeds.length] with player seed playerSeed + k, so matchups are
+ * played on the same levels. Games are not journaled (see GameJournal): a tournament stopped early is played again
+ * from the start.
+ */
+public class SequentialTournament {
+
+    public enum STOP_RULE {
+        WILSON,
+        SPRT
+    }
+
+    public enum DECISION {
+        UNDECIDED,  // Still playing
+        ABOVE,      // Win rate above the threshold
+        BELOW,      // Win rate below the threshold
+        BUDGET      // Maximum number of games played before a decision
+    }
+
+    /**
+     * A lineup of players and the results of its focal player so far.
+     */
+    public static class Matchup {
+        private final String name;
+        private final Game game;
+        private final int focalPlayer;
+        private final StatSummary scores;
+        private double llr;  // SPRT log-likelihood ratio
+        private DECISION decision = DECISION.UNDECIDED;
+
+        private Matchup(String name, Game game, int focalPlayer) {
+            this.name = name;
+            this.game = game;
+            this.focalPlayer = focalPlayer;
+            this.scores = new StatSummary(name);
+        }
+
+        public String getName() { return name; }
+        public int getFocalPlayer() { return focalPlayer; }
+        public DECISION getDecision() { return decision; }
+        public int getGamesPlayed() { return scores.n(); }
+
+        /**
+         * @return scores of the focal player: 1 for a win, 0.5 for a tie and 0 for a loss.
+         */
+        public StatSummary getScores() { return scores; }
+    }
+
+    private final long[] seeds;
+    private final ArrayList<Matchup> matchups = new ArrayList<>();
+    private STOP_RULE stopRule = STOP_RULE.WILSON;
+    private double confidence = 0.95;
+    private double threshold = 0.5;
+    private double margin = 0.05;
+    private int minGames = 10;
+    private int maxGamesPerMatchup = 1000;
+    private int maxGames = Integer.MAX_VALUE;
+    private int roundGames = 10;
+    private int nWorkers = 1;
+    private boolean useSeparateThreads = false;
+    private long playerSeed = System.currentTimeMillis();
+
+    // Games played over all matchups.
+    private int gamesPlayed;
+
+    /**
+     * @param seeds - level generation seeds, played in order by each matchup and then again from the first one.
+     */
+    public SequentialTournament(long[] seeds) {
+        if (seeds.length == 0) {
+            throw new IllegalArgumentException("At least one seed is needed");
+        }
+        this.seeds = seeds;
+    }
+
+    /**
+     * Adds a matchup to play.
+     * @param name - name of the matchup, for the summary.
+     * @param game - game to play, with its players set.
+     * @param focalPlayer - index of the player whose win rate is tested.
+     * @return the matchup added.
+     */
+    public Matchup addMatchup(String name, Game game, int focalPlayer) {
+        Matchup m = new Matchup(name, game, focalPlayer);
+        matchups.add(m);
+        return m;
+    }
+
+    /**
+     * @param stopRule - test deciding the matchups.
+     * @param confidence - confidence of the decisions, e.g. 0.95.
+     */
+    public void setStopRule(STOP_RULE stopRule, double confidence) {
+        if (confidence <= 0.5 || confidence >= 1) {
+            throw new IllegalArgumentException("Confidence must be between 0.5 and 1, not " + confidence);
+        }
+        this.stopRule = stopRule;
+        this.confidence = confidence;
+    }
+
+    /**
+     * @param threshold - win rate the focal players are compared to.
+     * @param margin - half the width of the win rates around the threshold considered equal to it (SPRT only).
+     */
+    public void setThreshold(double threshold, double margin) {
+        if (threshold - margin <= 0 || threshold + margin >= 1) {
+            throw new IllegalArgumentException("Win rates " + (threshold - margin) + " and " + (threshold + margin) +
+                    " must be between 0 and 1");
+        }
+        this.threshold = threshold;
+        this.margin = margin;
+    }
+
+    /**
+     * @param minGames - games played by each matchup before it can be decided.
+     * @param maxGamesPerMatchup - games after which a matchup is stopped undecided.
+     * @param maxGames - games played over all matchups.
+     */
+    public void setBudget(int minGames, int maxGamesPerMatchup, int maxGames) {
+        this.minGames = minGames;
+        this.maxGamesPerMatchup = maxGamesPerMatchup;
+        this.maxGames = maxGames;
+    }
+
+    /**
+     * @param roundGames - games played by each undecided matchup before checking it again.
+     */
+    public void setRoundGames(int roundGames) {
+        if (roundGames < 1) {
+            throw new IllegalArgumentException("Games per round must be positive, not " + roundGames);
+        }
+        this.roundGames = roundGames;
+    }
+
+    /**
+     * @param nWorkers - number of threads playing the games of a round at the same time (see Tournament).
+     * @param useSeparateThreads - if separate threads should be used for the agents or not.
+     */
+    public void setWorkers(int nWorkers, boolean useSeparateThreads) {
+        this.nWorkers = nWorkers;
+        this.useSeparateThreads = useSeparateThreads;
+    }
+
+    /**
+     * @param playerSeed - seed of the players in the first game of each matchup, the following games add their index.
+     */
+    public void setPlayerSeed(long playerSeed) {
+        this.playerSeed = playerSeed;
+    }
+
+    /**
+     * Plays rounds until all matchups are decided or the budget is spent.
+     */
+    public void run() {
+        boolean undecided = true;
+        while (undecided && gamesPlayed < maxGames) {
+            undecided = false;
+            for (Matchup m : matchups) {
+                if (m.decision != DECISION.UNDECIDED) continue;
+                int nGames = Math.min(roundGames, Math.min(maxGames - gamesPlayed, maxGamesPerMatchup - m.scores.n()));
+                if (nGames <= 0) continue;  // No games left for this matchup, the next ones may still have some
+
+                play(m, nGames);
+                decide(m);
+                undecided |= m.decision == DECISION.UNDECIDED;
+            }
+        }
+    }
+
+    /**
+     * Plays the next games of a matchup and adds their scores.
+     */
+    private void play(Matchup m, int nGames) {
+        int first = m.scores.n();
+        long[] roundSeeds = new long[nGames];
+        for (int k = 0; k < nGames; k++) {
+            roundSeeds[k] = seeds[(first + k) % seeds.length];
+        }
+
+        Tournament round = new Tournament(m.game, roundSeeds, 1, useSeparateThreads);
+        round.setWorkers(nWorkers);
+        round.setPlayerSeed(playerSeed + first);
+        round.run();
+
+        for (Types.RESULT[] results : round.getGameResults()) {
+            double score = score(results[m.focalPlayer]);
+            m.scores.add(score);
+            if (score == 1) m.scores.addWin();
+            m.llr += WinRateBounds.sprtStep(score, threshold - margin, threshold + margin);
+        }
+        gamesPlayed += nGames;
+    }
+
+    private static double score(Types.RESULT result) {
+        switch (result) {
+            case WIN:
+                return 1;
+            case TIE:
+                return 0.5;
+            default:
+                return 0;
+        }
+    }
+
+    private void decide(Matchup m) {
+        int n = m.scores.n();
+        if (n >= minGames) {
+            if (stopRule == STOP_RULE.WILSON) {
+                double[] bounds = WinRateBounds.wilson(m.scores.mean(), n, WinRateBounds.z(confidence));
+                if (bounds[0] > threshold) m.decision = DECISION.ABOVE;
+                else if (bounds[1] < threshold) m.decision = DECISION.BELOW;
+            } else {
+                double error = 1 - confidence;
+                if (m.llr >= WinRateBounds.sprtUpper(error, error)) m.decision = DECISION.ABOVE;
+                else if (m.llr <= WinRateBounds.sprtLower(error, error)) m.decision = DECISION.BELOW;
+            }
+        }
+        if (m.decision == DECISION.UNDECIDED && n >= maxGamesPerMatchup) {
+            m.decision = DECISION.BUDGET;
+        }
+    }
+
+    /**
+     * Prints the win rate, its interval and the decision of each matchup.
+     */
+    public void printSummary() {
+        double z = WinRateBounds.z(confidence);
+        System.out.println("N \tWin rate \tInterval \tDecision \tMatchup");
+        for (Matchup m : matchups) {
+            int n = m.scores.n();
+            double winRate = n > 0 ? m.scores.mean() : 0;
+            double[] bounds = WinRateBounds.wilson(winRate, n, z);
+            System.out.println(n + "\t" + String.format("%.3f", winRate) + "\t[" + String.format("%.3f", bounds[0]) +
+                    ", " + String.format("%.3f", bounds[1]) + "]\t" + m.decision + "\t" + m.name);
+        }
+        System.out.println("Games played: " + gamesPlayed);
+    }
+
+    public ArrayList<Matchup> getMatchups() { return matchups; }
+
+    /**
+     * @return games played over all matchups.
+     */
+    public int getGamesPlayed() { return gamesPlayed; }
+}
@@ -0,0 +1,69 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import players.*;
+import utils.Types;
+import utils.WinRateBounds;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequentialTournamentTest {
+
+    @Test
+    void boundsMatchReferenceValues() {
+        assertEquals(1.959964, WinRateBounds.z(0.95), 1e-6);
+        assertEquals(2.575829, WinRateBounds.z(0.99), 1e-6);
+        assertEquals(-1.644854, WinRateBounds.normalQuantile(0.05), 1e-6);
+
+        double[] bounds = WinRateBounds.wilson(0.5, 100, 1.959964);
+        assertEquals(0.403832, bounds[0], 1e-6);
+        assertEquals(0.596168, bounds[1], 1e-6);
+
+        // Accepting H1 needs about log(19) / log(0.55 / 0.45) = 14.7 wins in a row.
+        double llr = 0;
+        int wins = 0;
+        while (llr < WinRateBounds.sprtUpper(0.05, 0.05)) {
+            llr += WinRateBounds.sprtStep(1, 0.45, 0.55);
+            wins++;
+        }
+        assertEquals(15, wins);
+    }
+
+    /**
+     * A matchup the focal player always loses is stopped after the minimum number of games, and the rest of the
+     * budget is left to the others.
+     */
+    @Test
+    void decidedMatchupsStopEarly() {
+        SequentialTournament tournament = new SequentialTournament(new long[]{93988, 19067, 64416, 83884});
+        tournament.setPlayerSeed(42);
+        tournament.setBudget(10, 40, 1000);
+        tournament.setRoundGames(10);
+
+        SequentialTournament.Matchup losing = tournament.addMatchup("Random vs Simple",
+                newGame(new RandomPlayer(0, Types.TILETYPE.AGENT0.getKey())), 0);
+        SequentialTournament.Matchup other = tournament.addMatchup("DoNothing vs Simple",
+                newGame(new DoNothingPlayer(Types.TILETYPE.AGENT0.getKey())), 0);
+        tournament.run();
+
+        assertEquals(SequentialTournament.DECISION.BELOW, losing.getDecision());
+        assertEquals(10, losing.getGamesPlayed());
+        assertNotEquals(SequentialTournament.DECISION.UNDECIDED, other.getDecision());
+        assertTrue(other.getGamesPlayed() <= 40);
+        assertEquals(losing.getGamesPlayed() + other.getGamesPlayed(), tournament.getGamesPlayed());
+    }
+
+    private static Game newGame(Player focalPlayer) {
+        Game game = new Game(0, Types.BOARD_SIZE, Types.GAME_MODE.FFA, "");
+        ArrayList<Player> players = new ArrayList<>();
+        int playerID = Types.TILETYPE.AGENT1.getKey();
+        players.add(focalPlayer);
+        players.add(new SimplePlayer(0, playerID++));
+        players.add(new SimplePlayer(0, playerID++));
+        players.add(new SimplePlayer(0, playerID++));
+        game.setPlayers(players);
+        return game;
+    }
+}
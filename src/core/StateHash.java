@@ -0,0 +1,80 @@
+package core;
+
+import utils.Types;
+
+/**
+ * Keys of the Zobrist hash of game states. Each part of a state (a tile, a hidden power-up, a bomb, a flame, an
+ * avatar, the tick) has a pseudo-random 64-bit key, and the hash of the state is the XOR of the keys of its parts,
+ * so it can be updated when a part changes by XOR-ing out its old key and XOR-ing in the new one.
+ *
+ * Keys are computed by mixing the values of the part with the SplitMix64 finalizer, instead of being looked up in
+ * random tables, so they don't depend on the size of the board. Both ForwardModel and PackedForwardModel use these
+ * keys, so the same state has the same hash in both.
+ */
+final class StateHash {
+
+    // Salts for the different parts of the state.
+    private static final long TILE = 0x6A09E667F3BCC908L;
+    private static final long POWER_UP = 0xBB67AE8584CAA73BL;
+    private static final long BOMB = 0x3C6EF372FE94F82BL;
+    private static final long FLAME = 0xA54FF53A5F1D36F1L;
+    private static final long AVATAR = 0x510E527FADE682D1L;
+    private static final long TICK = 0x9B05688C2B3E6C1FL;
+
+    private StateHash() {}
+
+    /**
+     * @param cell - index of the tile, y * size + x.
+     * @param type - type of the tile, may be null.
+     * @return key of a tile of the board.
+     */
+    static long tile(int cell, Types.TILETYPE type) {
+        return type == null ? 0 : tile(cell, type.getKey());
+    }
+
+    static long tile(int cell, int key) {
+        return mix(TILE, ((long) cell << 8) | key);
+    }
+
+    /**
+     * @param cell - index of the tile, y * size + x.
+     * @param type - power-up hidden in the tile. Null and PASSAGE (no power-up) have no key.
+     * @return key of a power-up hidden under a tile.
+     */
+    static long powerUp(int cell, Types.TILETYPE type) {
+        return type == null ? 0 : powerUp(cell, type.getKey());
+    }
+
+    static long powerUp(int cell, int key) {
+        return key == Types.TILETYPE.PASSAGE.getKey() ? 0 : mix(POWER_UP, ((long) cell << 8) | key);
+    }
+
+    static long bomb(int x, int y, int life, int blastStrength, int vx, int vy) {
+        return mix(BOMB, (x & 0xFF) | (y & 0xFF) << 8 | (long) (life & 0xFFFF) << 16 |
+                (long) (blastStrength & 0xFF) << 32 | (long) ((vx + 1) & 3) << 40 | (long) ((vy + 1) & 3) << 42);
+    }
+
+    static long flame(int x, int y, int life) {
+        return mix(FLAME, (x & 0xFF) | (y & 0xFF) << 8 | (long) (life & 0xFFFF) << 16);
+    }
+
+    /**
+     * Key of an avatar. Unknown positions are given as -1.
+     */
+    static long avatar(int playerIdx, int x, int y, int ammo, int blastStrength, boolean canKick, boolean alive) {
+        return mix(AVATAR, (playerIdx & 0xF) | ((x + 1) & 0xFF) << 4 | ((y + 1) & 0xFF) << 12 |
+                (long) (ammo & 0xFF) << 20 | (long) (blastStrength & 0xFF) << 28 |
+                (canKick ? 1L << 36 : 0) | (alive ? 1L << 37 : 0));
+    }
+
+    static long tick(int tick) {
+        return mix(TICK, tick);
+    }
+
+    private static long mix(long salt, long value) {
+        long z = salt + value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,310 @@
+package core;
+
+import players.Player;
+import utils.GameLogArchive;
+import utils.LatencySummary;
+import utils.Types;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays every seed of a set a number of times with the same players, and counts the results of each player.
+ * Games can be spread over several worker threads: each worker plays on its own copy of the game and players
+ * (see Game.copy()), and results are counted in the order of the games once all of them are played, so they are the
+ * same with any number of workers.
+ *
+ * Game k (seed k / repetitions, repetition k % repetitions) resets its players with seed playerSeed + k.
+ *
+ * When players act in separate threads, the threads are shared by all games and kept for the whole tournament.
+ *
+ * With a journal (see GameJournal), each game is journaled when it ends, and games already journaled are not played
+ * again, unless the files they logged to res/gamelogs, or their logs in the archive (see GameLogArchive), are
+ * missing. Their decision times are not kept.
+ */
+public class Tournament {
+
+    private final Game game;
+    private final long[] seeds;
+    private final int repetitions;
+    private final boolean useSeparateThreads;
+    private int nWorkers = 1;
+    private long playerSeed = System.currentTimeMillis();
+    private GameJournal journal;
+
+    // Results of each game, indexed [game][player].
+    private Types.RESULT[][] gameResults;
+    private int[][] gameOvertimes;
+    private LatencySummary[][] gameDecisionTimes;
+
+    // Counts of each player over all the games played.
+    private int[] winCount, tieCount, lossCount, overtimeCount;
+    private LatencySummary[] decisionTimes;
+
+    /**
+     * Creates a tournament.
+     * @param game - game to play, with its players set. Used as is when there is only one worker.
+     * @param seeds - level generation seeds.
+     * @param repetitions - games played with each seed.
+     * @param useSeparateThreads - if separate threads should be used for the agents or not.
+     */
+    public Tournament(Game game, long[] seeds, int repetitions, boolean useSeparateThreads) {
+        this.game = game;
+        this.seeds = seeds;
+        this.repetitions = repetitions;
+        this.useSeparateThreads = useSeparateThreads;
+    }
+
+    /**
+     * @param nWorkers - number of threads playing games at the same time. 1 plays all games on the calling thread.
+     */
+    public void setWorkers(int nWorkers) {
+        if (nWorkers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive, not " + nWorkers);
+        }
+        this.nWorkers = nWorkers;
+    }
+
+    /**
+     * @param playerSeed - seed of the players in the first game, the following games add their index to it.
+     */
+    public void setPlayerSeed(long playerSeed) {
+        this.playerSeed = playerSeed;
+    }
+
+    /**
+     * @param journal - journal of the games played, to resume the tournament from. Its seed of the players is used
+     *                if it has one.
+     */
+    public void setJournal(GameJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Plays all games and counts their results.
+     */
+    public void run() {
+        if (journal != null) {
+            try {
+                playerSeed = journal.startPlayerSeed(playerSeed);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write to the journal", e);
+            }
+        }
+
+        int totalNgames = seeds.length * repetitions;
+        gameResults = new Types.RESULT[totalNgames][];
+        gameOvertimes = new int[totalNgames][];
+        gameDecisionTimes = new LatencySummary[totalNgames][];
+
+        int nThreads = Math.min(nWorkers, totalNgames);
+
+        // Players of all games act on the same threads, kept for the whole tournament.
+        ExecutorService agentExecutor = null;
+        if (useSeparateThreads) {
+            agentExecutor = Game.newAgentExecutor(Math.max(nThreads, 1) * Types.NUM_PLAYERS);
+            game.setAgentExecutor(agentExecutor);
+        }
+
+        try {
+            playAll(totalNgames, nThreads);
+        } finally {
+            if (agentExecutor != null) {
+                game.setAgentExecutor(null);
+                agentExecutor.shutdown();
+            }
+        }
+
+        count();
+    }
+
+    /**
+     * Plays all games, on the given number of threads.
+     */
+    private void playAll(int totalNgames, int nThreads) {
+        if (nThreads <= 1) {
+            for (int k = 0; k < totalNgames; k++) {
+                play(game, k);
+            }
+        } else {
+            Game[] workerGames = new Game[nThreads];
+            for (int w = 0; w < nThreads; w++) {
+                workerGames[w] = game.copy();
+            }
+
+            AtomicInteger nextGame = new AtomicInteger();
+            Thread[] workers = new Thread[nThreads];
+            RuntimeException[] errors = new RuntimeException[nThreads];
+            for (int w = 0; w < nThreads; w++) {
+                Game workerGame = workerGames[w];
+                int workerIdx = w;
+                workers[w] = new Thread(() -> {
+                    try {
+                        for (int k = nextGame.getAndIncrement(); k < totalNgames; k = nextGame.getAndIncrement()) {
+                            play(workerGame, k);
+                        }
+                    } catch (RuntimeException e) {
+                        errors[workerIdx] = e;
+                        nextGame.set(totalNgames);
+                    }
+                }, "tournament-worker-" + w);
+                workers[w].start();
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for the games to end", e);
+                }
+            }
+            for (RuntimeException error : errors) {
+                if (error != null) throw error;
+            }
+        }
+    }
+
+    /**
+     * Plays game k on the given game object.
+     */
+    private void play(Game g, int k) {
+        int s = k / repetitions;
+        int i = k % repetitions;
+        long seed = seeds[s];
+        long gamePlayerSeed = playerSeed + k;
+
+        if (journal != null) {
+            GameJournal.Entry entry = journal.get(seed, i);
+            if (entry != null && logged(g, seed, i)) {
+                System.out.println(gamePlayerSeed + ", " + seed + ", " + k + "/" + seeds.length * repetitions +
+                        ", journaled");
+                gameResults[k] = entry.results;
+                gameOvertimes[k] = entry.overtimes;
+                gameDecisionTimes[k] = new LatencySummary[entry.results.length];
+                for (int p = 0; p < entry.results.length; p++) {
+                    gameDecisionTimes[k][p] = new LatencySummary();
+                }
+                return;
+            }
+        }
+
+        g.reset(seed);
+        g.setRepetition(i);
+        System.out.println(gamePlayerSeed + ", " + seed + ", " + k + "/" + seeds.length * repetitions + ", ");
+
+        // Set random seed for players and reset them
+        ArrayList<Player> players = g.getPlayers();
+        for (int p = 0; p < g.nPlayers(); p++) {
+            players.get(p).reset(gamePlayerSeed, p);
+        }
+
+        gameResults[k] = g.run(useSeparateThreads);
+        gameOvertimes[k] = g.getPlayerOvertimes().clone();
+        gameDecisionTimes[k] = new LatencySummary[g.nPlayers()];
+        for (int p = 0; p < g.nPlayers(); p++) {
+            gameDecisionTimes[k][p] = new LatencySummary();
+            gameDecisionTimes[k][p].add(g.getDecisionTimes()[p]);
+        }
+
+        if (journal != null) {
+            try {
+                journal.add(seed, i, gameResults[k], gameOvertimes[k], g.getTick());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write to the journal", e);
+            }
+        }
+    }
+
+    /**
+     * @return true if the files the game with this seed and repetition logs to are all there, and its log is in the
+     * archive if it is moved there.
+     */
+    private static boolean logged(Game g, long seed, int rep) {
+        for (File file : g.getLogFiles(seed, rep)) {
+            if (!file.exists()) return false;
+        }
+        if (Game.LOG_GAME && !Game.LOG_GAME_JSON && Game.LOG_GAME_ARCHIVE) {
+            try {
+                return GameLogArchive.getDefault().contains(g.getGameIdStr(), seed, rep);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the game log archive", e);
+            }
+        }
+        return true;
+    }
+
+    private void count() {
+        int numPlayers = game.getPlayers().size();
+        winCount = new int[numPlayers];
+        tieCount = new int[numPlayers];
+        lossCount = new int[numPlayers];
+        overtimeCount = new int[numPlayers];
+        decisionTimes = new LatencySummary[numPlayers];
+        for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
+            decisionTimes[pIdx] = new LatencySummary();
+        }
+
+        for (int k = 0; k < gameResults.length; k++) {
+            for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
+                switch (gameResults[k][pIdx]) {
+                    case WIN:
+                        winCount[pIdx]++;
+                        break;
+                    case TIE:
+                        tieCount[pIdx]++;
+                        break;
+                    case LOSS:
+                        lossCount[pIdx]++;
+                        break;
+                }
+            }
+            for (int j = 0; j < gameOvertimes[k].length; ++j)
+                overtimeCount[j] += gameOvertimes[k][j];
+            for (int j = 0; j < gameDecisionTimes[k].length; ++j)
+                decisionTimes[j].add(gameDecisionTimes[k][j]);
+        }
+    }
+
+    /**
+     * Prints the percentage of wins, ties and losses and the average overtimes of each player, and percentiles of
+     * the time they took to decide their actions.
+     */
+    public void printSummary() {
+        int totalNgames = gameResults.length;
+        System.out.println("N \tWin \tTie \tLoss \tPlayer (overtime average)");
+        for (int pIdx = 0; pIdx < winCount.length; pIdx++) {
+            String player = game.getPlayers().get(pIdx).getClass().toString().replaceFirst("class ", "");
+
+            double winPerc = winCount[pIdx] * 100.0 / (double)totalNgames;
+            double tiePerc = tieCount[pIdx] * 100.0 / (double)totalNgames;
+            double lossPerc = lossCount[pIdx] * 100.0 / (double)totalNgames;
+            double overtimesAvg = overtimeCount[pIdx] / (double)totalNgames;
+
+            System.out.println(totalNgames + "\t" + winPerc + "%\t" + tiePerc + "%\t" + lossPerc + "%\t" + player + " (" + overtimesAvg + ")" );
+        }
+        System.out.println("Decision times:");
+        for (int pIdx = 0; pIdx < decisionTimes.length; pIdx++) {
+            String player = game.getPlayers().get(pIdx).getClass().toString().replaceFirst("class ", "");
+            System.out.println(player + ": " + decisionTimes[pIdx]);
+        }
+    }
+
+    /**
+     * @return results of each game, indexed [game][player], in the order they were listed (see class comment).
+     */
+    public Types.RESULT[][] getGameResults() { return gameResults; }
+
+    public int[] getWinCount() { return winCount; }
+    public int[] getTieCount() { return tieCount; }
+    public int[] getLossCount() { return lossCount; }
+    public int[] getOvertimeCount() { return overtimeCount; }
+
+    /**
+     * @return time each player took to decide its actions, over all games.
+     */
+    public LatencySummary[] getDecisionTimes() { return decisionTimes; }
+}
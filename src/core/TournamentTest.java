@@ -0,0 +1,154 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import players.*;
+import utils.GameLogArchive;
+import utils.Types;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TournamentTest {
+
+    /**
+     * With fixed seeds, games played by several workers give the same results as games played one after another.
+     */
+    @Test
+    void workersGiveSameResults() {
+        long[] seeds = new long[]{93988, 19067, 64416};
+        int repetitions = 3;
+
+        Tournament sequential = new Tournament(newGame(), seeds, repetitions, false);
+        sequential.setPlayerSeed(42);
+        sequential.run();
+
+        Tournament parallel = new Tournament(newGame(), seeds, repetitions, false);
+        parallel.setPlayerSeed(42);
+        parallel.setWorkers(4);
+        parallel.run();
+
+        assertEquals(seeds.length * repetitions, parallel.getGameResults().length);
+        for (int k = 0; k < seeds.length * repetitions; k++) {
+            assertArrayEquals(sequential.getGameResults()[k], parallel.getGameResults()[k]);
+        }
+        assertArrayEquals(sequential.getWinCount(), parallel.getWinCount());
+        assertArrayEquals(sequential.getTieCount(), parallel.getTieCount());
+        assertArrayEquals(sequential.getLossCount(), parallel.getLossCount());
+        assertArrayEquals(sequential.getOvertimeCount(), parallel.getOvertimeCount());
+        for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+            assertEquals(sequential.getDecisionTimes()[p].n(), parallel.getDecisionTimes()[p].n());
+        }
+    }
+
+    /**
+     * A tournament resumed from its journal doesn't play the games journaled again, unless their logs are missing,
+     * and gives the same results.
+     */
+    @Test
+    void journalResumesTournament() throws IOException {
+        long[] seeds = new long[]{93988, 19067};
+        int repetitions = 2;
+        File file = File.createTempFile("journal", ".tsv");
+        assertTrue(file.delete());
+        try {
+            Game game = newGame("journal-test");
+            GameJournal journal = new GameJournal(file, game.getGameIdStr());
+            Tournament first = new Tournament(game, seeds, repetitions, false);
+            first.setPlayerSeed(42);
+            first.setJournal(journal);
+            first.run();
+            journal.close();
+            assertEquals(seeds.length * repetitions, journal.size());
+
+            // The process stopped while writing a game, and the logs of another one are gone.
+            try (FileWriter out = new FileWriter(file, true)) {
+                out.write("64416\t0\tjournal-test\tWIN,LO");
+            }
+            for (File log : game.getLogFiles(seeds[1], 1)) {
+                assertTrue(log.delete());
+            }
+
+            journal = new GameJournal(file, game.getGameIdStr());
+            assertEquals(seeds.length * repetitions, journal.size());
+            Tournament resumed = new Tournament(newGame("journal-test"), seeds, repetitions, false);
+            resumed.setPlayerSeed(7);  // The journal's seed is used
+            resumed.setJournal(journal);
+            resumed.run();
+            journal.close();
+
+            for (int k = 0; k < seeds.length * repetitions; k++) {
+                assertArrayEquals(first.getGameResults()[k], resumed.getGameResults()[k]);
+            }
+            // Only the game without logs was played again: seed line, the first games and that one.
+            assertEquals(1 + seeds.length * repetitions + 1,
+                    java.nio.file.Files.readAllLines(file.toPath()).size());
+            for (File log : game.getLogFiles(seeds[1], 1)) {
+                assertTrue(log.exists());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * A tournament whose logs were moved to the archive doesn't play or archive its journaled games again when resumed.
+     */
+    @Test
+    void journalSkipsArchivedGames() throws IOException {
+        boolean logGame = Game.LOG_GAME, logGameJson = Game.LOG_GAME_JSON, logGameArchive = Game.LOG_GAME_ARCHIVE;
+        Game.LOG_GAME = true;
+        Game.LOG_GAME_JSON = false;
+        Game.LOG_GAME_ARCHIVE = true;
+        long[] seeds = new long[]{93988, 19067};
+        File file = File.createTempFile("journal", ".tsv");
+        assertTrue(file.delete());
+        try {
+            Game game = newGame("journal-archive-test");
+            GameJournal journal = new GameJournal(file, game.getGameIdStr());
+            Tournament first = new Tournament(game, seeds, 1, false);
+            first.setJournal(journal);
+            first.run();
+            journal.close();
+            for (long seed : seeds) {
+                assertFalse(game.getBinaryLogFile(seed, 0).exists());
+                assertTrue(GameLogArchive.getDefault().contains(game.getGameIdStr(), seed, 0));
+            }
+            long archived = new File(GameLogArchive.DEFAULT_PATH, GameLogArchive.INDEX).length();
+
+            journal = new GameJournal(file, game.getGameIdStr());
+            Tournament resumed = new Tournament(newGame("journal-archive-test"), seeds, 1, false);
+            resumed.setJournal(journal);
+            resumed.run();
+            journal.close();
+
+            // Nothing played again: seed line and the first games only, and no log added to the archive.
+            assertEquals(1 + seeds.length, java.nio.file.Files.readAllLines(file.toPath()).size());
+            assertEquals(archived, new File(GameLogArchive.DEFAULT_PATH, GameLogArchive.INDEX).length());
+        } finally {
+            file.delete();
+            Game.LOG_GAME = logGame;
+            Game.LOG_GAME_JSON = logGameJson;
+            Game.LOG_GAME_ARCHIVE = logGameArchive;
+        }
+    }
+
+    private static Game newGame() {
+        return newGame("");
+    }
+
+    private static Game newGame(String gameIdStr) {
+        Game game = new Game(0, Types.BOARD_SIZE, Types.GAME_MODE.FFA, gameIdStr);
+        ArrayList<Player> players = new ArrayList<>();
+        int playerID = Types.TILETYPE.AGENT0.getKey();
+        players.add(new SimplePlayer(0, playerID++));
+        players.add(new OSLAPlayer(0, playerID++));
+        players.add(new RandomPlayer(0, playerID++));
+        players.add(new SimplePlayer(0, playerID++));
+        game.setPlayers(players);
+        return game;
+    }
+}
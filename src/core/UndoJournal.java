@@ -0,0 +1,414 @@
+package core;
+
+import objects.Avatar;
+import objects.Bomb;
+import objects.Flame;
+import objects.GameObject;
+import utils.Types;
+import utils.Vector2d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static utils.Types.NUM_PLAYERS;
+
+/**
+ * Journal of the changes that ForwardModel.next() makes to a model, so that they can be undone instead of copying
+ * the model before rolling it forward.
+ *
+ * Each call to next() opens a frame. When the frame is opened, the fields of bombs and flames (which change on
+ * every tick, and are all overwritten when the model reuses dead ones) are recorded, and the board grids, object
+ * lists and avatars are snapshotted into reusable buffers. When the frame is closed (on the next call to next(), or when marking or undoing), only the grid cells, list
+ * contents and avatars that differ from the snapshot are added to the journal. Undoing restores frames in reverse
+ * order, writing old values back into the same objects, so references to them stay valid.
+ *
+ * Records are kept in flat int and object stacks, which grow as needed and are then reused, so no garbage is
+ * produced in steady state.
+ */
+class UndoJournal {
+
+    // Record tags. Grid records are followed by cell index and old value.
+    private static final int BOARD = 0, POWERUP = 1, BLAST = 2, LIFE = 3, BOMB = 4, FLAME = 5, AVATAR = 6,
+            BOMB_LIST = 7, FLAME_LIST = 8, ALIVE_LIST = 9, STALE_BOMB_GRIDS = 10;
+
+    // Avatar snapshot layout: life, position, desired position, ammo, blast strength, kick, winner.
+    private static final int A_LIFE = 0, A_X = 1, A_Y = 2, A_DX = 3, A_DY = 4, A_AMMO = 5, A_BLAST = 6, A_KICK = 7,
+            A_WINNER = 8;
+    private static final int AGENT_FIELDS = 9;
+
+    // Coordinate stored for positions that are not known (null).
+    private static final int NONE = -1;
+
+    private static final Types.TILETYPE[] TILE_TYPES = Types.TILETYPE.values();
+    private static final Types.RESULT[] RESULTS = Types.RESULT.values();
+
+    private final ForwardModel model;
+    private final int size;
+
+    // Journal stacks, and where each frame starts in them.
+    private int[] ints = new int[1024];
+    private int nInts = 0;
+    private GameObject[] objects = new GameObject[256];
+    private int nObjects = 0;
+    private int[] frameInts = new int[64];
+    private int[] frameObjects = new int[64];
+    private int nFrames = 0;
+    private boolean frameOpen = false;
+
+    // State at the start of the open frame.
+    private final Types.TILETYPE[] boardBefore;
+    private final Types.TILETYPE[] powerupsBefore;
+    private final int[] blastBefore;
+    private final int[] lifeBefore;
+    private final int[] agentsBefore = new int[NUM_PLAYERS * AGENT_FIELDS];
+    private final int[] agentNow = new int[AGENT_FIELDS];
+    private GameObject[] bombsBefore = new GameObject[16];
+    private GameObject[] flamesBefore = new GameObject[64];
+    private GameObject[] aliveBefore = new GameObject[NUM_PLAYERS];
+    private int nBombsBefore, nFlamesBefore, nAliveBefore;
+
+    private final Vector2d restored = new Vector2d();
+
+    UndoJournal(ForwardModel model) {
+        this.model = model;
+        this.size = model.getBoard().length;
+        boardBefore = new Types.TILETYPE[size * size];
+        powerupsBefore = new Types.TILETYPE[size * size];
+        blastBefore = new int[size * size];
+        lifeBefore = new int[size * size];
+    }
+
+    /**
+     * Marks the current state of the model.
+     * @return the number of ticks recorded so far, to pass to undoTo() to bring the model back to this state.
+     */
+    int mark() {
+        closeFrame();
+        return nFrames;
+    }
+
+    /**
+     * Undoes the ticks recorded after the given mark, in reverse order. The mark stays valid, so the model
+     * can be brought back to it again after rolling it forward.
+     * @param mark - mark returned by mark().
+     * @return the number of ticks undone.
+     */
+    int undoTo(int mark) {
+        if (mark < 0 || mark > nFrames) {
+            throw new IllegalArgumentException("Mark " + mark + " is not in the journal (" + nFrames + " ticks).");
+        }
+        closeFrame();
+        int undone = 0;
+        while (nFrames > mark) {
+            restoreFrame();
+            undone++;
+        }
+        return undone;
+    }
+
+    /**
+     * Opens the frame for a new tick. Called by the model before it applies the tick.
+     */
+    void beginTick() {
+        closeFrame();
+        if (nFrames == frameInts.length) {
+            frameInts = Arrays.copyOf(frameInts, nFrames * 2);
+            frameObjects = Arrays.copyOf(frameObjects, nFrames * 2);
+        }
+        frameInts[nFrames] = nInts;
+        frameObjects[nFrames] = nObjects;
+        nFrames++;
+        frameOpen = true;
+
+        // next() brings the bomb grids up to date with the bombs, remember if they weren't.
+        if (model.areBombGridsStale()) {
+            ensureInts(1);
+            ints[nInts++] = STALE_BOMB_GRIDS;
+        }
+
+        // Grids
+        Types.TILETYPE[][] board = model.getBoard();
+        Types.TILETYPE[][] powerups = model.getPowerups();
+        int[][] blast = model.getBombBlastStrength();
+        int[][] life = model.getBombLife();
+        for (int y = 0; y < size; y++) {
+            System.arraycopy(board[y], 0, boardBefore, y * size, size);
+            System.arraycopy(powerups[y], 0, powerupsBefore, y * size, size);
+            System.arraycopy(blast[y], 0, blastBefore, y * size, size);
+            System.arraycopy(life[y], 0, lifeBefore, y * size, size);
+        }
+
+        // Lists
+        ArrayList<GameObject> bombs = model.getBombs();
+        ArrayList<GameObject> flames = model.getFlames();
+        ArrayList<GameObject> alive = model.getAliveAgents();
+        bombsBefore = snapshot(bombs, bombsBefore);
+        nBombsBefore = bombs.size();
+        flamesBefore = snapshot(flames, flamesBefore);
+        nFlamesBefore = flames.size();
+        aliveBefore = snapshot(alive, aliveBefore);
+        nAliveBefore = alive.size();
+
+        // Bombs and flames change on every tick, record them straight away.
+        for (GameObject b : bombs) {
+            Bomb bomb = (Bomb) b;
+            pushObject(b);
+            ensureInts(10);
+            ints[nInts++] = BOMB;
+            ints[nInts++] = b.getLife();
+            ints[nInts++] = bomb.getBlastStrength();
+            ints[nInts++] = bomb.getPlayerIdx();
+            nInts = pushVector(b.getPosition(), nInts);
+            nInts = pushVector(b.getDesiredCoordinate(), nInts);
+            nInts = pushVector(bomb.getVelocity(), nInts);
+        }
+        for (GameObject f : flames) {
+            pushObject(f);
+            ensureInts(7);
+            ints[nInts++] = FLAME;
+            ints[nInts++] = f.getLife();
+            ints[nInts++] = ((Flame) f).playerIdx;
+            nInts = pushVector(f.getPosition(), nInts);
+            nInts = pushVector(f.getDesiredCoordinate(), nInts);
+        }
+
+        // Avatars
+        GameObject[] agents = model.getAgents();
+        for (int i = 0; i < agents.length; i++) {
+            readAvatar((Avatar) agents[i], agentsBefore, i * AGENT_FIELDS);
+        }
+    }
+
+    /**
+     * Closes the open frame, adding the grid cells, lists and avatars that changed during it.
+     */
+    private void closeFrame() {
+        if (!frameOpen)
+            return;
+        frameOpen = false;
+
+        Types.TILETYPE[][] board = model.getBoard();
+        Types.TILETYPE[][] powerups = model.getPowerups();
+        int[][] blast = model.getBombBlastStrength();
+        int[][] life = model.getBombLife();
+        for (int y = 0; y < size; y++) {
+            int row = y * size;
+            if (!Arrays.equals(board[y], 0, size, boardBefore, row, row + size)) {
+                for (int x = 0; x < size; x++) {
+                    if (board[y][x] != boardBefore[row + x])
+                        pushCell(BOARD, row + x, ordinal(boardBefore[row + x]));
+                }
+            }
+            if (!Arrays.equals(powerups[y], 0, size, powerupsBefore, row, row + size)) {
+                for (int x = 0; x < size; x++) {
+                    if (powerups[y][x] != powerupsBefore[row + x])
+                        pushCell(POWERUP, row + x, ordinal(powerupsBefore[row + x]));
+                }
+            }
+            if (!Arrays.equals(blast[y], 0, size, blastBefore, row, row + size)) {
+                for (int x = 0; x < size; x++) {
+                    if (blast[y][x] != blastBefore[row + x])
+                        pushCell(BLAST, row + x, blastBefore[row + x]);
+                }
+            }
+            if (!Arrays.equals(life[y], 0, size, lifeBefore, row, row + size)) {
+                for (int x = 0; x < size; x++) {
+                    if (life[y][x] != lifeBefore[row + x])
+                        pushCell(LIFE, row + x, lifeBefore[row + x]);
+                }
+            }
+        }
+
+        pushListIfChanged(BOMB_LIST, model.getBombs(), bombsBefore, nBombsBefore);
+        pushListIfChanged(FLAME_LIST, model.getFlames(), flamesBefore, nFlamesBefore);
+        pushListIfChanged(ALIVE_LIST, model.getAliveAgents(), aliveBefore, nAliveBefore);
+
+        GameObject[] agents = model.getAgents();
+        for (int i = 0; i < agents.length; i++) {
+            readAvatar((Avatar) agents[i], agentNow, 0);
+            boolean changed = false;
+            for (int k = 0; k < AGENT_FIELDS && !changed; k++) {
+                changed = agentNow[k] != agentsBefore[i * AGENT_FIELDS + k];
+            }
+            if (changed) {
+                pushObject(agents[i]);
+                ensureInts(1 + AGENT_FIELDS);
+                ints[nInts++] = AVATAR;
+                System.arraycopy(agentsBefore, i * AGENT_FIELDS, ints, nInts, AGENT_FIELDS);
+                nInts += AGENT_FIELDS;
+            }
+        }
+    }
+
+    /**
+     * Restores the state at the start of the last frame, and removes it from the journal.
+     */
+    private void restoreFrame() {
+        nFrames--;
+        int i = frameInts[nFrames];
+        int o = frameObjects[nFrames];
+        while (i < nInts) {
+            int tag = ints[i++];
+            switch (tag) {
+                case BOARD:
+                case POWERUP: {
+                    int cell = ints[i++];
+                    int value = ints[i++];
+                    Types.TILETYPE type = value == NONE ? null : TILE_TYPES[value];
+                    if (tag == BOARD) model.setTile(cell % size, cell / size, type);
+                    else model.setPowerUp(cell % size, cell / size, type);
+                    break;
+                }
+                case BLAST:
+                case LIFE: {
+                    int cell = ints[i++];
+                    int[][] grid = tag == BLAST ? model.getBombBlastStrength() : model.getBombLife();
+                    model.ownRow(cell / size);
+                    grid[cell / size][cell % size] = ints[i++];
+                    break;
+                }
+                case BOMB: {
+                    Bomb b = (Bomb) objects[o++];
+                    b.setLife(ints[i++]);
+                    b.setBlastStrength(ints[i++]);
+                    b.setPlayerIdx(ints[i++]);
+                    i = restorePosition(b, i);
+                    i = restoreDesiredCoordinate(b, i);
+                    b.setVelocity(ints[i], ints[i + 1]);
+                    i += 2;
+                    break;
+                }
+                case FLAME: {
+                    Flame f = (Flame) objects[o++];
+                    f.setLife(ints[i++]);
+                    f.playerIdx = ints[i++];
+                    i = restorePosition(f, i);
+                    i = restoreDesiredCoordinate(f, i);
+                    break;
+                }
+                case AVATAR: {
+                    Avatar a = (Avatar) objects[o++];
+                    a.setLife(ints[i + A_LIFE]);
+                    restorePosition(a, i + A_X);
+                    restoreDesiredCoordinate(a, i + A_DX);
+                    a.setAmmo(ints[i + A_AMMO]);
+                    a.setBlastStrength(ints[i + A_BLAST]);
+                    a.setCanKick(ints[i + A_KICK] == 1);
+                    a.setWinner(RESULTS[ints[i + A_WINNER]]);
+                    i += AGENT_FIELDS;
+                    break;
+                }
+                case STALE_BOMB_GRIDS:
+                    model.markBombGridsStale();
+                    break;
+                default: {
+                    ArrayList<GameObject> list = tag == BOMB_LIST ? model.getBombs() :
+                            tag == FLAME_LIST ? model.getFlames() : model.getAliveAgents();
+                    int n = ints[i++];
+                    list.clear();
+                    for (int k = 0; k < n; k++) {
+                        list.add(objects[o++]);
+                    }
+                }
+            }
+        }
+
+        nInts = frameInts[nFrames];
+        Arrays.fill(objects, frameObjects[nFrames], nObjects, null);
+        nObjects = frameObjects[nFrames];
+    }
+
+    private void readAvatar(Avatar a, int[] dest, int offset) {
+        dest[offset + A_LIFE] = a.getLife();
+        pushVector(a.getPosition(), dest, offset + A_X);
+        pushVector(a.getDesiredCoordinate(), dest, offset + A_DX);
+        dest[offset + A_AMMO] = a.getAmmo();
+        dest[offset + A_BLAST] = a.getBlastStrength();
+        dest[offset + A_KICK] = a.canKick() ? 1 : 0;
+        dest[offset + A_WINNER] = a.getWinner().ordinal();
+    }
+
+    private int restorePosition(GameObject go, int i) {
+        if (ints[i] == NONE) {
+            go.setPositionNull();
+        } else {
+            restored.set(ints[i], ints[i + 1]);
+            go.setPosition(restored);
+        }
+        return i + 2;
+    }
+
+    private int restoreDesiredCoordinate(GameObject go, int i) {
+        if (ints[i] == NONE) {
+            go.setDesiredCoordinateNull();
+        } else {
+            restored.set(ints[i], ints[i + 1]);
+            go.setDesiredCoordinate(restored);
+        }
+        return i + 2;
+    }
+
+    private GameObject[] snapshot(ArrayList<GameObject> list, GameObject[] dest) {
+        if (dest.length < list.size()) {
+            dest = new GameObject[list.size() * 2];
+        }
+        for (int k = 0; k < list.size(); k++) {
+            dest[k] = list.get(k);
+        }
+        return dest;
+    }
+
+    private void pushListIfChanged(int tag, ArrayList<GameObject> list, GameObject[] before, int nBefore) {
+        boolean changed = list.size() != nBefore;
+        for (int k = 0; k < nBefore && !changed; k++) {
+            changed = list.get(k) != before[k];
+        }
+        if (changed) {
+            ensureInts(2);
+            ints[nInts++] = tag;
+            ints[nInts++] = nBefore;
+            for (int k = 0; k < nBefore; k++) {
+                pushObject(before[k]);
+            }
+        }
+    }
+
+    private static int ordinal(Types.TILETYPE type) {
+        return type == null ? NONE : type.ordinal();
+    }
+
+    private void pushCell(int tag, int cell, int value) {
+        ensureInts(3);
+        ints[nInts++] = tag;
+        ints[nInts++] = cell;
+        ints[nInts++] = value;
+    }
+
+    private int pushVector(Vector2d v, int i) {
+        pushVector(v, ints, i);
+        return i + 2;
+    }
+
+    private static void pushVector(Vector2d v, int[] dest, int i) {
+        if (v == null) {
+            dest[i] = NONE;
+            dest[i + 1] = NONE;
+        } else {
+            dest[i] = v.x;
+            dest[i + 1] = v.y;
+        }
+    }
+
+    private void pushObject(GameObject go) {
+        if (nObjects == objects.length) {
+            objects = Arrays.copyOf(objects, nObjects * 2);
+        }
+        objects[nObjects++] = go;
+    }
+
+    private void ensureInts(int n) {
+        if (nInts + n > ints.length) {
+            ints = Arrays.copyOf(ints, Math.max(ints.length * 2, nInts + n));
+        }
+    }
+}
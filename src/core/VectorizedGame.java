@@ -0,0 +1,267 @@
+package core;
+
+import utils.GameSettings;
+import utils.Types;
+
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+import static utils.Types.*;
+
+/**
+ * A batch of independent games advanced together, one step of all of them per call. Meant for learning and
+ * evaluation loops that play many games without players or a GUI.
+ *
+ * Inputs and outputs are kept as flat primitive arrays, laid out game after game, which are overwritten on each call
+ * to step() or reset():
+ *   - observations: [game][player][y][x], the key of the tile seen by each player (FOG out of its vision range).
+ *   - agentFeatures: [game][player][feature], the state of each avatar (see the F_* indices).
+ *   - rewards: [game][player], 0 while the game goes on and IGameConfig.getRewards() on its last step.
+ *   - dones: [game], true if the game ended on the last step.
+ *
+ * Games that end are reset with the next seed of the seed stream on the same step: their reward and done flag are
+ * the ones of the game that ended, their observation is the first one of the new game.
+ *
+ * Each game is a PackedForwardModel (see there), flat primitive arrays rolled forward by the same rules as Game.
+ * Games that end are replaced in place: the board of the new game is generated by a ForwardModel kept for that and
+ * packed into the arrays of the game that ended, so steps don't create game states or objects (except when agents
+ * die, see PackedForwardModel). Messages of TEAM_RADIO games are not exchanged.
+ */
+public class VectorizedGame {
+
+    // Indices of the features of each avatar in agentFeatures.
+    public static final int F_X = 0;
+    public static final int F_Y = 1;
+    public static final int F_AMMO = 2;
+    public static final int F_BLAST = 3;
+    public static final int F_KICK = 4;
+    public static final int F_ALIVE = 5;
+    public static final int NUM_AGENT_FEATURES = 6;
+
+    private final int nGames;
+    private final int size;
+    private final Types.GAME_MODE gameMode;
+    private final GameSettings settings;
+    private final LongSupplier seeds;
+
+    // Games being played, their ticks and the seeds they were created with.
+    private final PackedForwardModel[] games;
+    private final int[] ticks;
+    private final long[] gameSeeds;
+
+    // Generates the boards of new games, which are then packed.
+    private final ForwardModel generator;
+
+    // Buffers reused on every step: results of a game that ended, and the visibility of a player that sees nothing.
+    private final Types.RESULT[] results = new Types.RESULT[NUM_PLAYERS];
+    private final long[] noneVisible;
+
+    // Outputs of the last step, see the class comment for their layout.
+    private final int[] observations;
+    private final int[] agentFeatures;
+    private final double[] rewards;
+    private final boolean[] dones;
+
+    // Number of games that ended since this was created.
+    private long episodes;
+
+    /**
+     * Creates a batch of games with seeds from a Random initialised with the given seed.
+     * @param nGames - number of games.
+     * @param seed - seed of the seed stream.
+     * @param size - size of the boards.
+     * @param gameMode - mode of the games.
+     */
+    public VectorizedGame(int nGames, long seed, int size, Types.GAME_MODE gameMode) {
+        this(nGames, new Random(seed)::nextLong, size, gameMode);
+    }
+
+    /**
+     * Creates a batch of games, drawing the seed of each new game from the given stream. Games are created here.
+     * @param nGames - number of games.
+     * @param seeds - stream of seeds of the games, used in order.
+     * @param size - size of the boards.
+     * @param gameMode - mode of the games.
+     */
+    public VectorizedGame(int nGames, LongSupplier seeds, int size, Types.GAME_MODE gameMode) {
+        this(nGames, seeds, size, gameMode, GameSettings.defaults());
+    }
+
+    /**
+     * Creates a batch of games with the given rules (see the constructor above).
+     * @param settings - rules of the games.
+     */
+    public VectorizedGame(int nGames, LongSupplier seeds, int size, Types.GAME_MODE gameMode, GameSettings settings) {
+        if (nGames <= 0) {
+            throw new IllegalArgumentException("Number of games must be positive, not " + nGames);
+        }
+        this.nGames = nGames;
+        this.size = size;
+        this.gameMode = gameMode;
+        this.settings = settings;
+        this.seeds = seeds;
+
+        games = new PackedForwardModel[nGames];
+        ticks = new int[nGames];
+        gameSeeds = new long[nGames];
+        generator = new ForwardModel(size, gameMode, settings);
+        noneVisible = new long[size];
+        observations = new int[nGames * NUM_PLAYERS * size * size];
+        agentFeatures = new int[nGames * NUM_PLAYERS * NUM_AGENT_FEATURES];
+        rewards = new double[nGames * NUM_PLAYERS];
+        dones = new boolean[nGames];
+        reset();
+    }
+
+    /**
+     * Starts a new game in all slots, with the next seeds of the stream.
+     */
+    public void reset() {
+        for (int g = 0; g < nGames; g++) {
+            newGame(g);
+            rewards[g * NUM_PLAYERS] = rewards[g * NUM_PLAYERS + 1] =
+                    rewards[g * NUM_PLAYERS + 2] = rewards[g * NUM_PLAYERS + 3] = 0;
+            dones[g] = false;
+            observe(g);
+        }
+    }
+
+    /**
+     * Advances all games one tick.
+     * @param actions - actions of the players of each game, indexed [game][player].
+     */
+    public void step(Types.ACTIONS[][] actions) {
+        if (actions.length != nGames) {
+            throw new IllegalArgumentException("Expected actions for " + nGames + " games, got " + actions.length);
+        }
+        for (int g = 0; g < nGames; g++) {
+            // Same as GameState.next(): games are reset before they reach the ticks limit.
+            PackedForwardModel model = games[g];
+            model.next(actions[g], ticks[g]);
+            int tick = ++ticks[g];
+            if (tick == settings.getMaxGameTicks())
+                model.processTimeout();
+
+            int offset = g * NUM_PLAYERS;
+            if (model.isEnded(tick)) {
+                for (int i = 0; i < NUM_PLAYERS; i++) {
+                    results[i] = model.getWinner(i);
+                }
+                double[] finalRewards = settings.getGameConfig().getRewards(tick, results);
+                System.arraycopy(finalRewards, 0, rewards, offset, NUM_PLAYERS);
+                dones[g] = true;
+                episodes++;
+                newGame(g);
+            } else {
+                for (int i = 0; i < NUM_PLAYERS; i++) {
+                    rewards[offset + i] = 0;
+                }
+                dones[g] = false;
+            }
+            observe(g);
+        }
+    }
+
+    private void newGame(int g) {
+        long seed = seeds.getAsLong();
+        generator.init(seed, size, gameMode, null, null);
+        if (games[g] == null)
+            games[g] = new PackedForwardModel(generator);
+        else
+            games[g].pack(generator);
+        ticks[g] = 0;
+        gameSeeds[g] = seed;
+    }
+
+    /**
+     * Writes the observations and avatar features of all players of a game.
+     */
+    private void observe(int g) {
+        PackedForwardModel model = games[g];
+        int cells = size * size;
+        int fog = TILETYPE.FOG.getKey();
+
+        for (int p = 0; p < NUM_PLAYERS; p++) {
+            // Coordinates are -1 if the avatar has no position.
+            int px = model.getX(p), py = model.getY(p);
+            int range = model.getVisionRange(p);
+
+            // Same tiles as seen by the player in the observations of Game (see ForwardModel.reduce()).
+            long[] visibleRows = null;
+            if (range != -1) {
+                visibleRows = px == -1 ? noneVisible : VisionMask.get(size, range, px, py);
+            }
+
+            int obs = (g * NUM_PLAYERS + p) * cells;
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    boolean visible = visibleRows == null || VisionMask.isVisible(visibleRows, x, y);
+                    observations[obs++] = visible ? model.getTileKey(x, y) : fog;
+                }
+            }
+
+            int features = (g * NUM_PLAYERS + p) * NUM_AGENT_FEATURES;
+            agentFeatures[features + F_X] = px;
+            agentFeatures[features + F_Y] = py;
+            agentFeatures[features + F_AMMO] = model.getAmmo(p);
+            agentFeatures[features + F_BLAST] = model.getBlastStrength(p);
+            agentFeatures[features + F_KICK] = model.canKick(p) ? 1 : 0;
+            agentFeatures[features + F_ALIVE] = model.isAlive(p) ? 1 : 0;
+        }
+    }
+
+    /**
+     * @return tile keys seen by each player, indexed [game][player][y][x]. Overwritten on every step.
+     */
+    public int[] getObservations() { return observations; }
+
+    /**
+     * @return features of each avatar, indexed [game][player][feature]. Overwritten on every step.
+     */
+    public int[] getAgentFeatures() { return agentFeatures; }
+
+    /**
+     * @return rewards of the last step, indexed [game][player]. Overwritten on every step.
+     */
+    public double[] getRewards() { return rewards; }
+
+    /**
+     * @return flags of the games that ended on the last step. Overwritten on every step.
+     */
+    public boolean[] getDones() { return dones; }
+
+    /**
+     * @return number of games played at once.
+     */
+    public int getNumGames() { return nGames; }
+
+    /**
+     * @return size of the boards.
+     */
+    public int getSize() { return size; }
+
+    /**
+     * @return number of games that ended since this was created.
+     */
+    public long getEpisodes() { return episodes; }
+
+    /**
+     * @param g - index of a game.
+     * @return seed of the game currently played in that slot.
+     */
+    public long getSeed(int g) { return gameSeeds[g]; }
+
+    /**
+     * @param g - index of a game.
+     * @return tick of the game currently played in that slot.
+     */
+    public int getTick(int g) { return ticks[g]; }
+
+    /**
+     * @param g - index of a game.
+     * @return a copy of the state of the game currently played in that slot.
+     */
+    public GameState getGameState(int g) {
+        return GameState.ofPacked(gameSeeds[g], size, gameMode, settings, ticks[g], games[g]);
+    }
+}
@@ -0,0 +1,95 @@
+package core;
+
+import objects.Avatar;
+import objects.GameObject;
+import org.junit.jupiter.api.Test;
+import utils.Types;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utils.Types.*;
+
+class VectorizedGameTest {
+
+    /**
+     * Games of the batch are played as the same games rolled forward on their own: same observations as the ones
+     * given to the players, final rewards from the game config, and a new game from the seed stream when one ends.
+     */
+    @Test
+    void matchesGamesPlayedAlone() {
+        int nGames = 3;
+        Random seedStream = new Random(7);
+        VectorizedGame batch = new VectorizedGame(nGames, seedStream::nextLong, BOARD_SIZE, GAME_MODE.FFA);
+
+        Random expectedSeeds = new Random(7);
+        GameState[] games = new GameState[nGames];
+        for (int g = 0; g < nGames; g++) games[g] = newGame(expectedSeeds.nextLong());
+
+        Random rnd = new Random(11);
+        int ended = 0;
+        for (int t = 0; t < 1500; t++) {
+            Types.ACTIONS[][] actions = new Types.ACTIONS[nGames][NUM_PLAYERS];
+            for (int g = 0; g < nGames; g++) {
+                for (int i = 0; i < NUM_PLAYERS; i++) {
+                    actions[g][i] = Types.ACTIONS.values()[rnd.nextInt(NUM_ACTIONS)];
+                }
+            }
+            batch.step(actions);
+
+            for (int g = 0; g < nGames; g++) {
+                GameState gs = games[g];
+                gs.next(actions[g]);
+                boolean done = getGameConfig().isEnded(gs.getTick(), GAME_MODE.FFA, gs.getAliveAgents());
+                assertEquals(done, batch.getDones()[g]);
+
+                double[] expectedRewards = new double[NUM_PLAYERS];
+                if (done) {
+                    Types.RESULT[] results = new Types.RESULT[NUM_PLAYERS];
+                    for (int i = 0; i < NUM_PLAYERS; i++) results[i] = ((Avatar) gs.getAgents()[i]).getWinner();
+                    expectedRewards = getGameConfig().getRewards(gs.getTick(), results);
+                    gs = games[g] = newGame(expectedSeeds.nextLong());
+                    ended++;
+                }
+                for (int i = 0; i < NUM_PLAYERS; i++) {
+                    assertEquals(expectedRewards[i], batch.getRewards()[g * NUM_PLAYERS + i]);
+                }
+                assertEquals(gs.getTick(), batch.getTick(g));
+                // Compared to the state itself: copies of object states reset the life of flames.
+                assertEquals(gs.hash(), batch.getGameState(g).hash());
+                assertObservations(gs, batch, g);
+            }
+        }
+        assertTrue(ended > 0);
+        assertEquals(ended, batch.getEpisodes());
+    }
+
+    private static GameState newGame(long seed) {
+        GameState gs = new GameState(seed, BOARD_SIZE, GAME_MODE.FFA, true);
+        gs.getModel().setTrueModel();
+        gs.init();
+        return gs;
+    }
+
+    private static void assertObservations(GameState gs, VectorizedGame batch, int g) {
+        int cells = BOARD_SIZE * BOARD_SIZE;
+        for (int p = 0; p < NUM_PLAYERS; p++) {
+            Types.TILETYPE[][] board = gs.copy(p).getBoard();
+            int obs = (g * NUM_PLAYERS + p) * cells;
+            for (int y = 0; y < BOARD_SIZE; y++) {
+                for (int x = 0; x < BOARD_SIZE; x++) {
+                    assertEquals(board[y][x].getKey(), batch.getObservations()[obs + y * BOARD_SIZE + x]);
+                }
+            }
+
+            Avatar avatar = (Avatar) gs.getAgents()[p];
+            int features = (g * NUM_PLAYERS + p) * VectorizedGame.NUM_AGENT_FEATURES;
+            int[] agentFeatures = batch.getAgentFeatures();
+            assertEquals(avatar.getAmmo(), agentFeatures[features + VectorizedGame.F_AMMO]);
+            assertEquals(avatar.getBlastStrength(), agentFeatures[features + VectorizedGame.F_BLAST]);
+            boolean alive = false;
+            for (GameObject agent : gs.getAliveAgents()) alive |= agent == avatar;
+            assertEquals(alive ? 1 : 0, agentFeatures[features + VectorizedGame.F_ALIVE]);
+        }
+    }
+}
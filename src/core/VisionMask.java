@@ -0,0 +1,88 @@
+package core;
+
+import utils.Types;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed visibility masks used to reduce game states to player observations. An avatar sees the tiles within
+ * its vision range (Chebyshev distance, see Vector2d.custom_dist()). The mask of a position is stored as one word
+ * per row of the board, with bit x set if tile x of that row is visible, so fog is applied a row at a time instead
+ * of measuring the distance to each tile. Masks are computed once for each board size and vision range.
+ */
+final class VisionMask {
+
+    // Masks for each board size and vision range, indexed by the position of the avatar (y * size + x).
+    private static final ConcurrentHashMap<Long, long[][]> MASKS = new ConcurrentHashMap<>();
+
+    // Rows can't be wider than a word.
+    static final int MAX_SIZE = Long.SIZE;
+
+    private VisionMask() {}
+
+    /**
+     * Returns the visibility mask of an avatar. The mask is shared, it must not be modified.
+     * @param size - size of the board, at most MAX_SIZE.
+     * @param range - vision range of the avatar.
+     * @param x - x coordinate of the avatar.
+     * @param y - y coordinate of the avatar.
+     * @return one word per row of the board, with the bits of the visible tiles set.
+     */
+    static long[] get(int size, int range, int x, int y) {
+        long[][] masks = MASKS.computeIfAbsent(((long) size << 32) | range, key -> compute(size, range));
+        return masks[y * size + x];
+    }
+
+    /**
+     * @param visibleRows - visibility mask, as returned by get().
+     * @param x - x coordinate of a tile.
+     * @param y - y coordinate of a tile.
+     * @return true if the tile is visible.
+     */
+    static boolean isVisible(long[] visibleRows, int x, int y) {
+        return (visibleRows[y] >>> x & 1) != 0;
+    }
+
+    /**
+     * Copies a row of the board, replacing the tiles that are not visible with fog.
+     * @param row - row of the board.
+     * @param target - row to write to, same length as row.
+     * @param visible - visibility mask of the row.
+     */
+    static void copyVisible(Types.TILETYPE[] row, Types.TILETYPE[] target, long visible) {
+        int x = 0;
+        while (visible != 0) {
+            int from = Long.numberOfTrailingZeros(visible);
+            int to = from + Long.numberOfTrailingZeros(~(visible >>> from));
+            Arrays.fill(target, x, from, Types.TILETYPE.FOG);
+            System.arraycopy(row, from, target, from, to - from);
+            visible = to >= Long.SIZE ? 0 : visible & (-1L << to);
+            x = to;
+        }
+        Arrays.fill(target, x, target.length, Types.TILETYPE.FOG);
+    }
+
+    private static long[][] compute(int size, int range) {
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("Vision masks support boards of up to " + MAX_SIZE + " tiles, not "
+                    + size);
+        }
+        long[][] masks = new long[size * size][];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // Visible tiles of a row are the ones at most range tiles away from the avatar, if the row is.
+                int from = Math.max(0, x - range);
+                int to = Math.min(size - 1, x + range);
+                long rowMask = (-1L >>> (Long.SIZE - 1 - to + from)) << from;
+
+                long[] mask = new long[size];
+                for (int row = Math.max(0, y - range); row <= Math.min(size - 1, y + range); row++) {
+                    mask[row] = rowMask;
+                }
+                masks[y * size + x] = mask;
+            }
+        }
+        return masks;
+    }
+}
@@ -0,0 +1,81 @@
+package core;
+
+import objects.GameObject;
+import org.junit.jupiter.api.Test;
+import utils.Types;
+import utils.Vector2d;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisionMaskTest {
+
+    /**
+     * Masks must match the distance check they replace, for all positions and ranges, including boards as wide as
+     * a word and ranges that cover the whole board.
+     */
+    @Test
+    void masksMatchDistance() {
+        Random rnd = new Random(0);
+        Types.TILETYPE[] tiles = Types.TILETYPE.values();
+        for (int size : new int[]{1, 5, 11, VisionMask.MAX_SIZE}) {
+            for (int range : new int[]{0, 1, 2, 4, size}) {
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) {
+                        Vector2d avatarPosition = new Vector2d(x, y);
+                        long[] mask = VisionMask.get(size, range, x, y);
+
+                        for (int row = 0; row < size; row++) {
+                            Types.TILETYPE[] original = new Types.TILETYPE[size];
+                            for (int i = 0; i < size; i++) original[i] = tiles[rnd.nextInt(tiles.length)];
+                            Types.TILETYPE[] fogged = new Types.TILETYPE[size];
+                            VisionMask.copyVisible(original, fogged, mask[row]);
+
+                            for (int col = 0; col < size; col++) {
+                                boolean visible = avatarPosition.custom_dist(col, row) <= range;
+                                assertEquals(visible, VisionMask.isVisible(mask, col, row));
+                                assertEquals(visible ? original[col] : Types.TILETYPE.FOG, fogged[col]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Player observations only show the tiles and objects within the vision range of the player.
+     */
+    @Test
+    void observationsHideTilesOutOfRange() {
+        GameState gs = new GameState(3, Types.BOARD_SIZE, Types.GAME_MODE.FFA, true);
+        gs.init();
+        Random rnd = new Random(3);
+        for (int t = 0; t < 100; t++) {
+            Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+            for (int i = 0; i < actions.length; i++) {
+                actions[i] = Types.ACTIONS.values()[rnd.nextInt(Types.NUM_ACTIONS)];
+            }
+            gs.next(actions);
+
+            for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+                GameState obs = gs.copy(p);
+                Vector2d avatarPosition = gs.getAgents()[p].getPosition();
+                int range = Types.DEFAULT_VISION_RANGE;
+                Types.TILETYPE[][] board = gs.getBoard();
+                Types.TILETYPE[][] obsBoard = obs.getBoard();
+                for (int y = 0; y < Types.BOARD_SIZE; y++) {
+                    for (int x = 0; x < Types.BOARD_SIZE; x++) {
+                        boolean visible = avatarPosition.custom_dist(x, y) <= range;
+                        assertEquals(visible ? board[y][x] : Types.TILETYPE.FOG, obsBoard[y][x]);
+                    }
+                }
+                for (GameObject agent : obs.getAgents()) {
+                    Vector2d position = agent.getPosition();
+                    assertTrue(position == null || avatarPosition.custom_dist(position) <= range);
+                }
+            }
+        }
+    }
+}
@@ -12,6 +12,24 @@ import static utils.Types.MAX_GAME_TICKS;
 
 public class OriginalGameConfig implements IGameConfig {
 
+    // Duration of the game in ticks, -1 to follow Types.MAX_GAME_TICKS.
+    private final int maxGameTicks;
+
+    public OriginalGameConfig() {
+        this(-1);
+    }
+
+    /**
+     * @param maxGameTicks duration of the game in ticks.
+     */
+    public OriginalGameConfig(int maxGameTicks) {
+        this.maxGameTicks = maxGameTicks;
+    }
+
+    private int maxGameTicks() {
+        return maxGameTicks >= 0 ? maxGameTicks : MAX_GAME_TICKS;
+    }
+
     @Override
     public String getEnvironmentName() {
         return "java-pommermam-original";
@@ -207,7 +225,7 @@ public class OriginalGameConfig implements IGameConfig {
     public boolean isEnded(int gameTick, Types.GAME_MODE gameMode, ArrayList<GameObject> aliveAgents) {
 
         //All game modes trigger and end when the the number of game ticks reaches the the max.
-        if (gameTick == MAX_GAME_TICKS)
+        if (gameTick == maxGameTicks())
         {
             return true;
         }
@@ -244,7 +262,7 @@ public class OriginalGameConfig implements IGameConfig {
         //Fast init.
         Arrays.fill(rewards, -1);
 
-        if (gameTick < MAX_GAME_TICKS) {
+        if (gameTick < maxGameTicks()) {
             // The game is not over due to time , then agents get
             // 1 for winning, -1 in all the other cases.
             for(int i = 0; i < results.length; ++i)
@@ -1,5 +1,7 @@
 package objects;
 
+import core.gameConfig.IGameConfig;
+import utils.GameSettings;
 import utils.Types;
 import utils.Vector2d;
 
@@ -26,13 +28,29 @@ public class Avatar extends GameObject {
         playerID = pId;
 
         if(gameMode != null) {
-            // Setup team, enemies and teammates
-            team = getGameConfig().getTeam(gameMode, playerID);
-            enemies = getGameConfig().getEnemies(gameMode, playerID);
-            teammates = getGameConfig().getTeammates(gameMode, playerID);
+            setupTeams(gameMode, getGameConfig());
         }
     }
+
+    /**
+     * Creates an avatar with the starting abilities and teams given by the settings of its game.
+     */
+    public Avatar(int pId, Types.GAME_MODE gameMode, GameSettings settings) {
+        super(Types.TILETYPE.values()[pId]);
+        playerID = pId;
+        reset(settings);
+        visionRange = settings.getVisionRange();
+        if(gameMode != null) {
+            setupTeams(gameMode, settings.getGameConfig());
+        }
+    }
+
     public Avatar(int pId, int x, int y, boolean canKick, int ammo, int blastStrength, Types.GAME_MODE gameMode){
+        this(pId, x, y, canKick, ammo, blastStrength, gameMode, getGameConfig());
+    }
+
+    public Avatar(int pId, int x, int y, boolean canKick, int ammo, int blastStrength, Types.GAME_MODE gameMode,
+                  IGameConfig gameConfig){
         // todo new constructor for building from observation
         // contain all info that we get
         super(Types.TILETYPE.values()[pId], x, y);
@@ -42,19 +60,33 @@ public class Avatar extends GameObject {
         this.ammo = ammo;
         this.blastStrength = blastStrength;
         if(gameMode != null) {
-            // Setup team, enemies and teammates
-            team = getGameConfig().getTeam(gameMode, playerID);
-            enemies = getGameConfig().getEnemies(gameMode, playerID);
-            teammates = getGameConfig().getTeammates(gameMode, playerID);
+            setupTeams(gameMode, gameConfig);
         }
     }
 
+    // Setup team, enemies and teammates
+    private void setupTeams(Types.GAME_MODE gameMode, IGameConfig gameConfig) {
+        team = gameConfig.getTeam(gameMode, playerID);
+        enemies = gameConfig.getEnemies(gameMode, playerID);
+        teammates = gameConfig.getTeammates(gameMode, playerID);
+    }
+
     public void reset() {
         canKick = DEFAULT_BOMB_KICK;
         ammo = DEFAULT_BOMB_AMMO;
         blastStrength = DEFAULT_BOMB_BLAST;
     }
 
+    /**
+     * Resets the abilities of this avatar to the ones it starts the game with.
+     * @param settings - settings of the game.
+     */
+    public void reset(GameSettings settings) {
+        canKick = settings.getDefaultBombKick();
+        ammo = settings.getDefaultBombAmmo();
+        blastStrength = settings.getDefaultBombBlast();
+    }
+
     @Override
     public GameObject copy() {
         Avatar copy = new Avatar(playerID, null);
@@ -129,6 +161,10 @@ public class Avatar extends GameObject {
         this.canKick = true;
     }
 
+    public void setCanKick(boolean canKick) {
+        this.canKick = canKick;
+    }
+
     public void setWinner(Types.RESULT winner) {
         this.winner = winner;
     }
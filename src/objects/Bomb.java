@@ -1,7 +1,6 @@
 package objects;
 
 import utils.Types;
-import utils.Utils;
 import utils.Vector2d;
 
 import java.util.ArrayList;
@@ -10,6 +9,12 @@ import static utils.Types.*;
 
 public class Bomb extends GameObject {
 
+    // Flames can't go through rigid blocks.
+    private static final ArrayList<Types.TILETYPE> FLAME_COLLISIONS = new ArrayList<>();
+    static {
+        FLAME_COLLISIONS.add(Types.TILETYPE.RIGID);
+    }
+
     private int blastStrength;
     private Vector2d velocity;
     private int playerIdx;
@@ -28,10 +33,25 @@ public class Bomb extends GameObject {
         life = BOMB_LIFE;
     }
 
+    /**
+     * Reuses this bomb, which exploded, as a new one that is not moving. The position and desired coordinate
+     * are kept, they must be set by the caller.
+     * @param blastStrength - blast strength of the new bomb.
+     * @param life - life of the new bomb.
+     * @param pIdx - player that placed the new bomb.
+     */
+    public void reuse(int blastStrength, int life, int pIdx) {
+        this.life = life;
+        this.blastStrength = blastStrength;
+        this.playerIdx = pIdx;
+        setVelocity(0, 0);
+    }
+
     @Override
     public void tick() {
         life--;
-        desiredCoordinate = position.add(velocity);
+        if (desiredCoordinate != null) desiredCoordinate.set(position.x + velocity.x, position.y + velocity.y);
+        else desiredCoordinate = position.add(velocity);
     }
 
     @Override
@@ -46,23 +66,52 @@ public class Bomb extends GameObject {
 
     public ArrayList<GameObject> explode(boolean forceExplode, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups) {
         ArrayList<GameObject> flames = new ArrayList<>();
+        if (explode(forceExplode, board, powerups, flames)) {
+            for (GameObject f : flames) {
+                board[f.getPosition().y][f.getPosition().x] = f.getType();
+            }
+            return flames;
+        }
+        return null;
+    }
 
+    /**
+     * Explodes this bomb if its life is over, or if forced to, adding the flames created to the list given.
+     * Flames are not put on the board, the caller must do it before any other bomb explodes.
+     * @param forceExplode - true if the bomb should explode regardless of its life.
+     * @param board - board of the game.
+     * @param powerups - power-ups hidden in the board.
+     * @param flames - list where new flames are added.
+     * @return true if the bomb exploded.
+     */
+    public boolean explode(boolean forceExplode, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups,
+                           ArrayList<GameObject> flames) {
+        return explode(forceExplode, board, powerups, flames, null, FLAME_LIFE);
+    }
+
+    /**
+     * Same as explode() above, reusing dead flames for the new ones.
+     * @param spareFlames - flames that died and can be reused, taken from the end of the list. May be null.
+     * @param flameLife - life of the new flames.
+     */
+    public boolean explode(boolean forceExplode, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups,
+                           ArrayList<GameObject> flames, ArrayList<GameObject> spareFlames, int flameLife) {
         if (life == 0 || forceExplode) {
             if (VERBOSE)
                 System.out.println("KABOOM at "+position.toString());
 
             // First add the flame at the current position
-            tryToAddFlame(position.x, position.y, board, powerups, flames);
+            tryToAddFlame(position.x, position.y, board, powerups, flames, spareFlames, flameLife);
             boolean advanceP = true;
             boolean advanceM = true;
             for (int i = 1; i < blastStrength; i++) {
                 if (advanceP) {
                     int x1 = position.x + i;
-                    advanceP = tryToAddFlame(x1, position.y, board, powerups, flames);
+                    advanceP = tryToAddFlame(x1, position.y, board, powerups, flames, spareFlames, flameLife);
                 }
                 if (advanceM) {
                     int x2 = position.x - i;
-                    advanceM = tryToAddFlame(x2, position.y, board, powerups, flames);
+                    advanceM = tryToAddFlame(x2, position.y, board, powerups, flames, spareFlames, flameLife);
                 }
             }
             advanceM = true;
@@ -70,31 +119,34 @@ public class Bomb extends GameObject {
             for (int i = 1; i < blastStrength; i++) {
                 if (advanceP) {
                     int y1 = position.y + i;
-                    advanceP = tryToAddFlame(position.x, y1, board, powerups, flames);
+                    advanceP = tryToAddFlame(position.x, y1, board, powerups, flames, spareFlames, flameLife);
                 }
                 if (advanceM) {
                     int y2 = position.y - i;
-                    advanceM = tryToAddFlame(position.x, y2, board, powerups, flames);
+                    advanceM = tryToAddFlame(position.x, y2, board, powerups, flames, spareFlames, flameLife);
                 }
             }
-            return flames;
+            return true;
         }
-        return null;
+        return false;
     }
 
     private boolean tryToAddFlame(int x, int y, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups,
-                                  ArrayList<GameObject> flames) {
+                                  ArrayList<GameObject> flames, ArrayList<GameObject> spareFlames, int flameLife) {
         if (x < 0 || y < 0 || x >= board.length || y >= board.length) {
             return false;
         }
-        ArrayList<Types.TILETYPE> flameCollisions = new ArrayList<>();
-        flameCollisions.add(Types.TILETYPE.RIGID);
-
         Types.TILETYPE type = board[y][x];
-        Flame f = new Flame();
-        f.playerIdx = playerIdx;
-        boolean success = Utils.setDesiredCoordinate(f, new Vector2d(x, y), board, flameCollisions);
-        if (success) {
+        if (type == null || !FLAME_COLLISIONS.contains(type)) {
+            Flame f;
+            if (spareFlames != null && !spareFlames.isEmpty()) {
+                f = (Flame) spareFlames.remove(spareFlames.size() - 1);
+            } else {
+                f = new Flame();
+            }
+            f.setLife(flameLife);
+            f.playerIdx = playerIdx;
+            f.getDesiredCoordinate().set(x, y);
             f.setPosition(f.getDesiredCoordinate());
             flames.add(f);
 
@@ -104,7 +156,6 @@ public class Bomb extends GameObject {
 //                // when this flame dies
 //                powerups[y][x] = board[y][x];
 
-            board[y][x] = f.getType();
             return type != Types.TILETYPE.WOOD;  // Flames should stop at first wooden block
         }
         else
@@ -117,6 +168,10 @@ public class Bomb extends GameObject {
     public void setVelocity(Vector2d vel) {
         this.velocity = vel;
     }
+    public void setVelocity(int x, int y) {
+        if (velocity != null) velocity.set(x, y);
+        else velocity = new Vector2d(x, y);
+    }
 
     public int getBlastStrength() {
         return blastStrength;
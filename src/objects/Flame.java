@@ -16,7 +16,7 @@ public class Flame extends GameObject {
     @Override
     public void tick(){
         this.life--;
-        desiredCoordinate = position.copy();
+        setDesiredCoordinate(position);
     }
 
     @Override
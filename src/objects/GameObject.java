@@ -3,13 +3,13 @@ package objects;
 import utils.Types;
 import utils.Vector2d;
 
-import java.awt.Image;
 import java.util.List;
 
 /**
  * The superclass for game objects.
  * Models directly all game objects that do not contain special features.
  * Examples of game objects modeled directly by this class is walls, empty corridor and fog.
+ * Game objects are plain data used by the forward model, views get their images from the tile type.
  */
 public class GameObject {
 
@@ -19,28 +19,21 @@ public class GameObject {
     private utils.Types.TILETYPE type = Types.TILETYPE.PASSAGE;
     int id;
 
-    private Image img;
-
-
     public GameObject(utils.Types.TILETYPE type, int x, int y){
         this.type = type;
-        this.img = type.getImage();
         this.desiredCoordinate = new Vector2d(x, y);
     }
 
     public GameObject(utils.Types.TILETYPE type){
         this.type = type;
-        this.img = type.getImage();
         this.desiredCoordinate = new Vector2d();
     }
 
     public GameObject(int x, int y){
-        this.img = type.getImage();
         this.desiredCoordinate = new Vector2d(x, y);
     }
 
     public GameObject(){
-        this.img = type.getImage();
         this.desiredCoordinate = new Vector2d();
     }
 
@@ -89,7 +82,7 @@ public class GameObject {
      * Update the current state of this object
      */
     public void tick(){
-        desiredCoordinate = position.copy();
+        setDesiredCoordinate(position);
     }
 
     /**
@@ -106,7 +99,8 @@ public class GameObject {
 
     public void setDesiredCoordinate(Vector2d desiredCoordinate) {
         if (desiredCoordinate != null) {
-            this.desiredCoordinate = desiredCoordinate.copy();
+            if (this.desiredCoordinate != null) this.desiredCoordinate.set(desiredCoordinate);
+            else this.desiredCoordinate = desiredCoordinate.copy();
         }
     }
 
@@ -116,7 +110,8 @@ public class GameObject {
 
     public void setPosition(Vector2d position) {
         if (position != null) {
-            this.position = position.copy();
+            if (this.position != null) this.position.set(position);
+            else this.position = position.copy();
         }
     }
 
@@ -150,8 +145,6 @@ public class GameObject {
         return copy;
     }
 
-    public Image getImage() { return img;}
-
     /**
      * If this object is a copy, the id has been set to a non 0 value, the hashCode of the original
      * @return
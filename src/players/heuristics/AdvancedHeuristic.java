@@ -18,9 +18,14 @@ public class AdvancedHeuristic extends StateHeuristic {
     private BoardStats rootBoardStats;
     private Random random;
 
+    // Scales of the wood and blast strength scores, set from the root state of this heuristic.
+    private final double maxWoods;
+    private final double maxBlastStrength = 10;
+
     public AdvancedHeuristic(GameState root, Random random) {
         this.random = random;
         rootBoardStats = new BoardStats(root, this.random);
+        maxWoods = rootBoardStats.nWoods;
 
     }
 
@@ -31,7 +36,7 @@ public class AdvancedHeuristic extends StateHeuristic {
 
         // Compute a score relative to the root's state.
         BoardStats lastBoardState = new BoardStats(gs, this.random);
-        double rawScore = rootBoardStats.score(lastBoardState);
+        double rawScore = rootBoardStats.score(lastBoardState, maxWoods, maxBlastStrength);
 
         // TODO: Should we reserve -1 and 1 to LOSS and WIN, and shrink rawScore to be in [-0.5, 0.5]?
         // rawScore is in [-1, 1], move it to [-0.5, 0.5]
@@ -52,9 +57,6 @@ public class AdvancedHeuristic extends StateHeuristic {
         boolean canKick;
         int nWoods;
 
-        static double maxWoods = -1;
-        static double maxBlastStrength = 10;
-
         // 0.4
         double FACTOR_SAFE_DIRECTIONS = 0.2;
         double FACTOR_BOMB_DIRECTIONS = 0.2;
@@ -134,9 +136,6 @@ public class AdvancedHeuristic extends StateHeuristic {
                         nWoods++;
                 }
             }
-            if (maxWoods == -1) {
-                maxWoods = nWoods;
-            }
 
             this.myPosition = gs.getPosition();
             this.board = gs.getBoard();
@@ -185,9 +184,11 @@ public class AdvancedHeuristic extends StateHeuristic {
          * Minimizes number of opponents in the game and number of wood walls. Maximizes blast strength and
          * number of teammates, wants to kick.
          * @param futureState the stats of the board at the end of the rollout.
+         * @param maxWoods number of wood walls the wood score is divided by.
+         * @param maxBlastStrength blast strength the blast strength score is divided by.
          * @return a score [0, 1]
          */
-        double score(BoardStats futureState)
+        double score(BoardStats futureState, double maxWoods, double maxBlastStrength)
         {
             int diffSafeDirections = futureState.getNumberOfSafeDirections() - this.getNumberOfSafeDirections();
             int diffDirectionsInRangeOfBomb = -(futureState.getNumberOfDirectionsInRangeOfBomb() - this.getNumberOfDirectionsInRangeOfBomb());
@@ -6,8 +6,13 @@ import utils.Types;
 public class CustomHeuristic extends StateHeuristic {
     private BoardStats rootBoardStats; // class decribe later down
 
+    // Scales of the wood and blast strength scores, set from the root state of this heuristic.
+    private final double maxWoods;
+    private final double maxBlastStrength = 10;
+
     public CustomHeuristic(GameState root) {
         rootBoardStats = new BoardStats(root);
+        maxWoods = rootBoardStats.nWoods;
     }
 
     @Override
@@ -17,7 +22,7 @@ public class CustomHeuristic extends StateHeuristic {
 
         // Compute a score relative to the root's state.
         BoardStats lastBoardState = new BoardStats(gs);
-        double rawScore = rootBoardStats.score(lastBoardState); //if game incomplete?
+        double rawScore = rootBoardStats.score(lastBoardState, maxWoods, maxBlastStrength); //if game incomplete?
 
         if(gameOver && win == Types.RESULT.LOSS)
             rawScore = -1;
@@ -33,8 +38,6 @@ public class CustomHeuristic extends StateHeuristic {
         int tick, nTeammates, nEnemies, blastStrength;
         boolean canKick;
         int nWoods;
-        static double maxWoods = -1;
-        static double maxBlastStrength = 10;
 
         double FACTOR_ENEMY;
         double FACTOR_TEAM;
@@ -69,9 +72,6 @@ public class CustomHeuristic extends StateHeuristic {
                         nWoods++;
                 }
             }
-            if (maxWoods == -1) {
-                maxWoods = nWoods;
-            }
         }
 
         /**
@@ -79,9 +79,11 @@ public class CustomHeuristic extends StateHeuristic {
          * Minimizes number of opponents in the game and number of wood walls. Maximizes blast strength and
          * number of teammates, wants to kick.
          * @param futureState the stats of the board at the end of the rollout.
+         * @param maxWoods number of wood walls the wood score is divided by.
+         * @param maxBlastStrength blast strength the blast strength score is divided by.
          * @return a score [0, 1]
          */
-        double score(BoardStats futureState)
+        double score(BoardStats futureState, double maxWoods, double maxBlastStrength)
         {
             int diffTeammates = futureState.nTeammates - this.nTeammates;
             int diffEnemies = - (futureState.nEnemies - this.nEnemies);
@@ -27,6 +27,9 @@ public class MCTSParams implements ParameterSet {
     public double K = Math.sqrt(2); // Constant for UCB1
     public int rollout_depth = 8;//10; //number of steps the tree can grow form the tree
     public int heuristic_method = CUSTOM_HEURISTIC; //heurisitc to evaluate the states
+    // Opponent model of the rollouts reads the window around the opponent, as the training samples do. Its current
+    // weights were fit to the window at the corner of the board (see SingleTreeNode), so this needs retrained weights.
+    public boolean centred_opponent_window = false;
 
     // Budget settings
     public int stop_type = STOP_TIME; //what is stop time?
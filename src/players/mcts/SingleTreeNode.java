@@ -5,11 +5,10 @@ import players.heuristics.AdvancedHeuristic;
 import players.heuristics.CustomHeuristic;
 import players.heuristics.StateHeuristic;
 import utils.ElapsedCpuTimer;
+import utils.LocalWindow;
 import utils.Types;
 import utils.Utils;
 import utils.Vector2d;
-import objects.GameObject;
-import objects.Avatar;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -35,6 +34,12 @@ public class SingleTreeNode
     private GameState rootState;
     private StateHeuristic rootStateHeuristic;
 
+    // Features and action scores of the opponent model (see roll()), shared by all nodes of the tree.
+    private static final int OPPONENT_RADIUS = LocalWindow.OPPONENT_MODEL_RADIUS;
+    private static final int OPPONENT_FEATURES = LocalWindow.cells(OPPONENT_RADIUS) + 1;
+    private final float[] features;
+    private final double[] scores;
+
     SingleTreeNode(MCTSParams p, Random rnd, int num_actions, Types.ACTIONS[] actions) { //root constructor
         this(p, null, -1, rnd, num_actions, actions, 0, null);
     }
@@ -53,9 +58,14 @@ public class SingleTreeNode
         if(parent != null) {
             m_depth = parent.m_depth + 1;
             this.rootStateHeuristic = sh;
+            this.features = parent.features;
+            this.scores = parent.scores;
         }
-        else
+        else {
             m_depth = 0;
+            this.features = new float[OPPONENT_FEATURES];
+            this.scores = new double[weight.length];
+        }
     }
 
     void setRootGameState(GameState gs)
@@ -78,9 +88,13 @@ public class SingleTreeNode
         int remainingLimit = 5;
         boolean stop = false;
 
+        // One working copy of the root state: each iteration rolls it forward and brings it back to the root.
+        GameState state = rootState.copy();
+        int rootMark = state.mark();
+
         while(!stop){
 
-            GameState state = rootState.copy();
+            state.undoTo(rootMark);
             ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer();
             SingleTreeNode selected = treePolicy(state); //recomendation policy ? not UCB (in the code though) so selection & expansion
             double delta = selected.rollOut(state); //simulation
@@ -146,7 +160,10 @@ public class SingleTreeNode
         return tn;
     }
 
-    double[][] weight = { //from offline training
+    // Weights of the original opponent model, one row of OPPONENT_FEATURES weights per action. They score the window of
+    // radius OPPONENT_RADIUS at the top-left corner of the board, which is what the original feature code read, not
+    // the window around the opponent written to the training samples (see MCTSParams.centred_opponent_window).
+    private static final double[][] weight = {
             {
                     2.19717309e+00,
                     4.64529639e+00,
@@ -211,6 +228,14 @@ public class SingleTreeNode
             }
     };
 
+    static {
+        for (double[] row : weight) {
+            if (row.length != OPPONENT_FEATURES)
+                throw new IllegalStateException("Opponent model weights take " + row.length + " features, windows of " +
+                        "radius " + OPPONENT_RADIUS + " give " + OPPONENT_FEATURES + ".");
+        }
+    }
+
     private void roll(GameState gs, Types.ACTIONS act) {
         //Simple, all random first, then my position.
         int nPlayers = 4;
@@ -225,89 +250,24 @@ public class SingleTreeNode
                     int actionIdx = m_rnd.nextInt(gs.nActions());
                     actionsAll[i] = Types.ACTIONS.all().get(actionIdx);
                 } else {
-                    int gsArray[][];
-                    gsArray = gs.toArray();
-                    int size = gs.getBoard().length;
-                    float sqrSize = size * size;
-
-                    // Retrieve the game state and transform it into a cross-vision of range 2
-                    GameObject agents[];
-                    agents = gs.getAgents();
-                    Avatar av = (Avatar) agents[playerId];
-                    Vector2d avatarPosition = av.getPosition();
-                    String[] tempAvPosition = (avatarPosition.toString().replace(" : ", ",")).split(",");
-
-                    float squarePositionFraction = ((Float.parseFloat(tempAvPosition[0]) + 1 * size) - (size - Float.parseFloat(tempAvPosition[1]))) / (sqrSize);
-
-                    int newGsSize = 2;
-                    int z = newGsSize;
-                    int zvert = newGsSize;
-                    int minhorizontal = Integer.parseInt(tempAvPosition[0]) - z;
-                    int minvertical = Integer.parseInt(tempAvPosition[1]) - z;
-
-                    while (z >= 0) {
-                        if (minhorizontal >= 0) {
-                            break;
-                        } else {
-                            z--;
-                            minhorizontal++;
-                        }
-                    }
-                    while (zvert >= 0) {
-                        if (minvertical >= 0) {
-                            break;
-                        } else {
-                            zvert--;
-                            minvertical++;
-                        }
-                    }
-                    int xrange = z + 1 + 2;
-                    int yrange = zvert + 1 + 2;
-
-                    while (xrange > 2 + 1) {
-                        xrange--;
-                    }
-                    while (yrange > 2 + 1) {
-                        yrange--;
-                    }
-
-                    int start2[] = new int[2];
-                    int xyrange2[] = new int[2];
-                    float gsSize2[][];
-                    float flat2[];
-
-                    start2[0] = minhorizontal;
-                    start2[1] = minvertical;
-                    xyrange2[0] = xrange;
-                    xyrange2[1] = yrange;
-
-                    gsSize2 = new float[xrange][yrange];
-                    for (int startH = 0; startH < xyrange2[0]; startH++) {
-                        for (int startV = 0; startV < xyrange2[1]; startV++) {
-                            gsSize2[startH][startV] = gsArray[minhorizontal + startH][minvertical + startV];
-                        }
-                    }
-                    flat2 = new float[gsSize2[0].length * gsSize2[1].length + 1];
-                    int index = 0;
-                    for (int x = 0; x < gsSize2[0].length; x++) {
-                        for (int yy = 0; yy < gsSize2[1].length; yy++) {
-                            flat2[index] = gsArray[x][yy];
-                            index++;
-                        }
-                        flat2[gsSize2[0].length * gsSize2[1].length] = squarePositionFraction;
-                    }
-
-                    double[] results = new double[5];
+                    // Features of a window and the player's position (see LocalWindow). Unless the window around the
+                    // player is asked for, the window at the corner of the board the weights were fit to.
+                    Types.TILETYPE[][] board = gs.getBoard();
+                    Vector2d avatarPosition = gs.getAgents()[playerId].getPosition();
+                    int nCells = LocalWindow.cells(OPPONENT_RADIUS);
+                    if (params.centred_opponent_window)
+                        LocalWindow.extract(board, avatarPosition.x, avatarPosition.y, OPPONENT_RADIUS, features, 0);
+                    else
+                        LocalWindow.extract(board, OPPONENT_RADIUS, OPPONENT_RADIUS, OPPONENT_RADIUS, features, 0);
+                    features[nCells] = LocalWindow.positionFraction(avatarPosition.x, avatarPosition.y, board.length);
+
+                    double[] results = scores;
 
                     // Matrix multiplication
                     for (int ii = 0; ii < weight.length; ii++) {
-                        int j = 0;
                         results[ii] = 0;
-                        while (j < weight[0].length) {
-                            for (int k = 0; k < flat2.length; k++) {
-                                results[ii] += weight[ii][j] * flat2[k];
-                                j++;
-                            }
+                        for (int k = 0; k < OPPONENT_FEATURES; k++) {
+                            results[ii] += weight[ii][k] * features[k];
                         }
                         results[i] = Math.exp(results[i]);
                     }
@@ -317,15 +277,13 @@ public class SingleTreeNode
                         sum += results[ii];
                     }
 
-                    double[] probabilities = new double[5];
-
                     double maxProb = 0;
                     int maxProbindex = 0;
 
                     for (int ii = 0; ii < results.length; ii++) {
-                        probabilities[ii] = results[ii] / sum;
-                        if (probabilities[ii] >= maxProb) {
-                            maxProb = probabilities[ii];
+                        double probability = results[ii] / sum;
+                        if (probability >= maxProb) {
+                            maxProb = probability;
                             maxProbindex = ii;
                         }
                     }
@@ -0,0 +1,266 @@
+package utils;
+
+import core.GameState;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary log of a game, written tick by tick while the game is played. It holds what is needed to replay the
+ * game: a header with the seed, size and mode of the game and a hash of its settings, and the actions of the players
+ * at each tick.
+ *
+ * The header is, big-endian: MAGIC (int), VERSION (int), seed (long), size (int), game mode ordinal (int), settings
+ * hash (long, see GameSettings.configHash()) and number of ticks (int, -1 until the log is closed). The actions
+ * follow, 12 bits per tick: the ordinals of the actions of the 4 players, 3 bits each, player 0 in the highest bits.
+ * Ticks are packed one after the other, most significant bit first, and the last byte is padded with zeros. An 800 tick
+ * game takes 1236 bytes.
+ *
+ * A log not closed (e.g. the process stopped during the game) still reads, up to the last whole tick written.
+ *
+ * Logs are replayed with Reader.replay(), which decodes the actions of each tick into the same array and passes it to
+ * GameState.next(), so no objects are created per tick.
+ */
+public class BinaryGameLog implements Closeable {
+
+    public static final int MAGIC = 0x504d474c;  // "PMGL"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES + Long.BYTES
+            + Integer.BYTES;
+    public static final String EXTENSION = ".pglog";
+
+    private static final int TICKS_OFFSET = HEADER_BYTES - Integer.BYTES;
+    private static final int ACTION_BITS = 3;
+    private static final int TICK_BITS = ACTION_BITS * Types.NUM_PLAYERS;
+    private static final int ACTION_MASK = (1 << ACTION_BITS) - 1;
+    private static final Types.ACTIONS[] ACTIONS = Types.ACTIONS.values();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+    private int ticks;
+
+    // Bits of the ticks added, not written to the buffer yet.
+    private int bits;
+    private int nBits;
+
+    /**
+     * Creates the log file, replacing it if it exists, and writes its header.
+     * @param file - file to write the log to.
+     * @param seed - seed of the game.
+     * @param size - size of the board.
+     * @param gameMode - game mode.
+     * @param settings - rules of the game.
+     * @throws IOException if the file can't be written.
+     */
+    public BinaryGameLog(File file, long seed, int size, Types.GAME_MODE gameMode, GameSettings settings)
+            throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(seed).putInt(size).putInt(gameMode.ordinal())
+                .putLong(settings.configHash()).putInt(-1);
+    }
+
+    /**
+     * Adds the actions of the players at the next tick.
+     * @param actions - actions of the players, indexed by player index.
+     */
+    public void add(Types.ACTIONS[] actions) throws IOException {
+        int tick = 0;
+        for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+            tick = (tick << ACTION_BITS) | actions[p].ordinal();
+        }
+        bits = (bits << TICK_BITS) | tick;
+        nBits += TICK_BITS;
+        while (nBits >= 8) {
+            nBits -= 8;
+            if (!buffer.hasRemaining()) flush();
+            buffer.put((byte) (bits >>> nBits));
+        }
+        bits &= (1 << nBits) - 1;
+        ticks++;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * @return number of ticks added.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Writes the bits of the last tick and the number of ticks, and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) return;
+        if (nBits > 0) {
+            if (!buffer.hasRemaining()) flush();
+            buffer.put((byte) (bits << (8 - nBits)));
+            nBits = 0;
+        }
+        flush();
+        ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).putInt(ticks);
+        count.flip();
+        while (count.hasRemaining()) channel.write(count, TICKS_OFFSET + count.position());
+        channel.close();
+    }
+
+    /**
+     * @return reader of the log in the file.
+     * @throws IOException if the file can't be read or is not a log of this version.
+     */
+    public static Reader read(File file) throws IOException {
+        try {
+            return new Reader(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + ": " + file, e);
+        }
+    }
+
+    /**
+     * Reads a log from a buffer, e.g. a file read in memory or mapped. The buffer is not copied.
+     */
+    public static class Reader {
+        private final ByteBuffer data;  // From the header to the end of the log.
+        private final long seed;
+        private final int size;
+        private final Types.GAME_MODE gameMode;
+        private final long configHash;
+        private final int ticks;
+
+        /**
+         * @param buffer - buffer with the log, from its position to its limit.
+         * @throws IllegalArgumentException if the buffer doesn't hold a log of this version.
+         */
+        public Reader(ByteBuffer buffer) {
+            data = buffer.slice();
+            if (data.remaining() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a binary game log");
+            }
+            int version = data.getInt(Integer.BYTES);
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Binary game log version " + version + " not supported");
+            }
+            seed = data.getLong(2 * Integer.BYTES);
+            size = data.getInt(2 * Integer.BYTES + Long.BYTES);
+            gameMode = Types.GAME_MODE.values()[data.getInt(3 * Integer.BYTES + Long.BYTES)];
+            configHash = data.getLong(4 * Integer.BYTES + Long.BYTES);
+            int written = (int) ((data.remaining() - HEADER_BYTES) * 8L / TICK_BITS);
+            int closed = data.getInt(TICKS_OFFSET);
+            ticks = closed < 0 ? written : Math.min(closed, written);
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public Types.GAME_MODE getGameMode() {
+            return gameMode;
+        }
+
+        /**
+         * @return hash of the settings of the logged game (see GameSettings.configHash()).
+         */
+        public long getConfigHash() {
+            return configHash;
+        }
+
+        /**
+         * @return number of ticks logged.
+         */
+        public int getTicks() {
+            return ticks;
+        }
+
+        /**
+         * Decodes the actions of the players at a tick.
+         * @param tick - tick, 0 to getTicks() - 1.
+         * @param out - array the actions are written to, one per player.
+         * @return out.
+         */
+        public Types.ACTIONS[] getActions(int tick, Types.ACTIONS[] out) {
+            long bit = (long) tick * TICK_BITS;
+            int b = HEADER_BYTES + (int) (bit >>> 3);
+            int twoBytes = ((data.get(b) & 0xff) << 8) | (b + 1 < data.limit() ? data.get(b + 1) & 0xff : 0);
+            int value = (twoBytes >>> (16 - TICK_BITS - (int) (bit & 7))) & ((1 << TICK_BITS) - 1);
+            for (int p = Types.NUM_PLAYERS - 1; p >= 0; p--) {
+                out[p] = ACTIONS[value & ACTION_MASK];
+                value >>>= ACTION_BITS;
+            }
+            return out;
+        }
+
+        /**
+         * Replays the whole game.
+         * @param settings - rules of the logged game, checked against its settings hash.
+         * @return state of the game after the last tick logged.
+         */
+        public GameState replay(GameSettings settings) {
+            return replay(settings, ticks);
+        }
+
+        /**
+         * Replays the first ticks of the game, from its starting state.
+         * @param settings - rules of the logged game, checked against its settings hash.
+         * @param nTicks - number of ticks to replay, up to getTicks().
+         * @return state of the game after nTicks ticks.
+         * @throws IllegalArgumentException if the settings are not the ones of the logged game.
+         */
+        public GameState replay(GameSettings settings, int nTicks) {
+            checkSettings(settings);
+            GameState gs = new GameState(seed, size, gameMode, settings);
+            Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+            for (int t = 0; t < Math.min(nTicks, ticks); t++) {
+                gs.next(getActions(t, actions));
+            }
+            return gs;
+        }
+
+        /**
+         * @return the log as a GameLog, with the actions of every tick, replayed with the default rules.
+         * @throws IllegalArgumentException if the game was logged with other settings.
+         */
+        public GameLog toGameLog() {
+            return toGameLog(GameSettings.defaults());
+        }
+
+        /**
+         * @param settings - rules of the logged game, checked against its settings hash.
+         * @return the log as a GameLog, with the actions of every tick, replayed with the given rules.
+         * @throws IllegalArgumentException if the settings are not the ones of the logged game.
+         */
+        public GameLog toGameLog(GameSettings settings) {
+            checkSettings(settings);
+            GameLog log = new GameLog(seed, size, gameMode, settings);
+            for (int t = 0; t < ticks; t++) {
+                log.addActions(getActions(t, new Types.ACTIONS[Types.NUM_PLAYERS]));
+            }
+            return log;
+        }
+
+        private void checkSettings(GameSettings settings) {
+            if (settings.configHash() != configHash) {
+                throw new IllegalArgumentException("Game logged with other settings (hash " +
+                        Long.toHexString(configHash) + ", not " + Long.toHexString(settings.configHash()) + ")");
+            }
+        }
+    }
+}
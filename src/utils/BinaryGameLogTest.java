@@ -0,0 +1,82 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryGameLogTest {
+
+    private static Types.ACTIONS[][] randomActions(int ticks) {
+        Random rnd = new Random(7);
+        Types.ACTIONS[] values = Types.ACTIONS.values();
+        Types.ACTIONS[][] actions = new Types.ACTIONS[ticks][Types.NUM_PLAYERS];
+        for (Types.ACTIONS[] tick : actions) {
+            for (int p = 0; p < Types.NUM_PLAYERS; p++) tick[p] = values[rnd.nextInt(values.length)];
+        }
+        return actions;
+    }
+
+    /**
+     * Actions and header read back as written, with an odd number of ticks so the last byte is padded.
+     */
+    @Test
+    void actionsReadAsWritten() throws IOException {
+        File file = File.createTempFile("log", BinaryGameLog.EXTENSION);
+        file.deleteOnExit();
+        GameSettings settings = GameSettings.defaults().withMaxGameTicks(300);
+        Types.ACTIONS[][] actions = randomActions(251);
+        try (BinaryGameLog log = new BinaryGameLog(file, 42, 11, Types.GAME_MODE.TEAM, settings)) {
+            for (Types.ACTIONS[] tick : actions) log.add(tick);
+        }
+        assertEquals(BinaryGameLog.HEADER_BYTES + (251 * 12 + 7) / 8, file.length());
+
+        BinaryGameLog.Reader reader = BinaryGameLog.read(file);
+        assertEquals(42, reader.getSeed());
+        assertEquals(11, reader.getSize());
+        assertEquals(Types.GAME_MODE.TEAM, reader.getGameMode());
+        assertEquals(settings.configHash(), reader.getConfigHash());
+        assertNotEquals(GameSettings.defaults().withMaxGameTicks(301).configHash(), reader.getConfigHash());
+        assertEquals(actions.length, reader.getTicks());
+        Types.ACTIONS[] out = new Types.ACTIONS[Types.NUM_PLAYERS];
+        for (int t = 0; t < actions.length; t++) {
+            assertArrayEquals(actions[t], reader.getActions(t, out));
+        }
+
+        // Turned into a GameLog only with the settings it was logged with.
+        assertThrows(IllegalArgumentException.class, reader::toGameLog);
+        GameLog gameLog = reader.toGameLog(settings);
+        assertEquals(actions.length, gameLog.getActions().size());
+        assertEquals(300, gameLog.getStartingGameState().getSettings().getMaxGameTicks());
+    }
+
+    /**
+     * A log whose writer didn't close it reads up to its last whole tick.
+     */
+    @Test
+    void unfinishedLogReadsWholeTicks() throws IOException {
+        File file = File.createTempFile("log", BinaryGameLog.EXTENSION);
+        file.deleteOnExit();
+        Types.ACTIONS[][] actions = randomActions(100);
+        try (BinaryGameLog log = new BinaryGameLog(file, 1, 11, Types.GAME_MODE.FFA, GameSettings.defaults())) {
+            for (Types.ACTIONS[] tick : actions) log.add(tick);
+        }
+        // As if the process stopped in the middle of tick 57, before the number of ticks was written.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(BinaryGameLog.HEADER_BYTES + 57 * 12 / 8 + 1);
+            raf.seek(BinaryGameLog.HEADER_BYTES - Integer.BYTES);
+            raf.writeInt(-1);
+        }
+
+        BinaryGameLog.Reader reader = BinaryGameLog.read(file);
+        assertEquals(57, reader.getTicks());
+        Types.ACTIONS[] out = new Types.ACTIONS[Types.NUM_PLAYERS];
+        for (int t = 0; t < 57; t++) {
+            assertArrayEquals(actions[t], reader.getActions(t, out));
+        }
+    }
+}
@@ -88,14 +88,20 @@ public class ElapsedCpuTimer {
 
     }
 
+    /**
+     * @return time left before the maximum time, 0 if the thread was interrupted (e.g. when the game stopped waiting
+     * for the decision being timed), so players using this budget stop searching.
+     */
     public long remainingTimeMillis()
     {
+        if (Thread.currentThread().isInterrupted())
+            return 0;
         long diff = maxTime - elapsed();
         return (long) (diff / 1000000.0);
     }
 
     public boolean exceededMaxTime() {
-        return elapsed() > maxTime;
+        return Thread.currentThread().isInterrupted() || elapsed() > maxTime;
     }
 
     /**
@@ -24,15 +24,22 @@ public class GameLog implements Serializable {
     private long seed;
     private int size;
     private Types.GAME_MODE gameMode;
+    // Rules of the logged game. Not saved to files, games loaded from them are replayed with the default rules.
+    private transient GameSettings settings;
     private final static String GAMELOGS_PATH = "res/gamelogs/ser";
     private final static String JSON_GAMELOGS_PATH = "res/gamelogs/";
 
     public static int REP = 0;
 
     public GameLog(long seed, int size, Types.GAME_MODE gameMode){
+        this(seed, size, gameMode, GameSettings.defaults());
+    }
+
+    public GameLog(long seed, int size, Types.GAME_MODE gameMode, GameSettings settings){
         this.seed = seed;
         this.size = size;
         this.gameMode = gameMode;
+        this.settings = settings;
     }
 
     public void addActions(Types.ACTIONS[] actions){
@@ -40,7 +47,7 @@ public class GameLog implements Serializable {
     }
 
     public GameState getStartingGameState(){
-        return new GameState(seed, size, gameMode);
+        return new GameState(seed, size, gameMode, settings != null ? settings : GameSettings.defaults());
     }
 
     /**
@@ -78,6 +85,15 @@ public class GameLog implements Serializable {
     }
 
     public void serializeJSON(String gameIdStr){
+        serializeJSON(gameIdStr, REP);
+    }
+
+    /**
+     * Writes this object as json to the folder of the given game, naming the file after the repetition given.
+     * @param gameIdStr - identifier of the game, name of the folder.
+     * @param rep - repetition of the game with this seed.
+     */
+    public void serializeJSON(String gameIdStr, int rep){
         File file = new File(JSON_GAMELOGS_PATH + gameIdStr + "/");
         if (! file.exists()){
             file.mkdirs();
@@ -87,7 +103,7 @@ public class GameLog implements Serializable {
             throw new Error("Folder specified at "+ JSON_GAMELOGS_PATH +" does not exist nor could be created.");
         }
 
-        String path = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ REP +"_"+  gameMode.name() + "["+size+"x"+size+"].json";
+        String path = JSON_GAMELOGS_PATH  + gameIdStr + "/" + seed + "_"+ rep +"_"+  gameMode.name() + "["+size+"x"+size+"].json";
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
         String json = gson.toJson(this);
 
@@ -102,45 +118,64 @@ public class GameLog implements Serializable {
     }
 
     /**
-     * Read the last logfile that was serialized
-     * @return the GameLog object that was serialized to that file
+     * Read the last game logged: the last binary log (see BinaryGameLog) added to the archive (see GameLogArchive) if
+     * there is one, as games also add the logs they keep in their folders to an archive that exists. Otherwise, the
+     * binary log written last to the folders of the games or, if there is none, the last logfile that was serialized.
+     * @return the GameLog object that was logged to that file, or null if no game was logged or it can't be read
+     * (e.g. a binary log of a game played with rules other than the default ones, or an archive open elsewhere)
      */
     public static GameLog deserializeLast(){
-        int id = 0;
+        if (GameLogArchive.defaultExists()) {
+            try {
+                BinaryGameLog.Reader archived = GameLogArchive.getDefault().last();
+                if (archived != null)
+                    return archived.toGameLog();
+            } catch (IOException | IllegalArgumentException i) {
+                i.printStackTrace();
+                return null;
+            }
+        }
+        File last = lastModified(BinaryGameLog.EXTENSION);
+        if (last != null)
+            return deserializeBinary(last.getAbsolutePath());
+
         File logsFolder = new File(GAMELOGS_PATH);
-        if (logsFolder.listFiles() != null)
-            id = logsFolder.listFiles().length-1;
-        if (id < 0)
+        File[] logs = logsFolder.listFiles();
+        if (logs == null || logs.length == 0)
             return null;
-        else {
-            return deserialize(id, logsFolder);
-        }
+        return deserialize(logs.length - 1, logsFolder);
     }
 
     /**
-     * Read the last logfile that was serialized
-     * @return the GameLog object that was serialized to that file
+     * Read the last json logfile that was serialized, the one modified last in the gamelogs folder or the folders of
+     * the games in it
+     * @return the GameLog object that was serialized to that file, or null if there is none
      */
     public static GameLog deserializeLastJSON(){
-        int id = 0;
-        File logsFolder = new File(JSON_GAMELOGS_PATH);
-        if (logsFolder.listFiles() != null)
-            id = logsFolder.listFiles().length-1;
-        if (id < 0)
-            return null;
-        else {
-            return deserializeJSON(id, logsFolder);
-        }
+        File last = lastModified(".json");
+        return last == null ? null : deserializeJSON(last.getAbsolutePath());
     }
 
-    private static GameLog deserializeJSON(int id, File logsFolder) {
-        File log = null;
-        if (logsFolder.listFiles() != null) {
-            File[] fileArray = logsFolder.listFiles();
-            Arrays.sort(fileArray, File::compareTo);
-            log = fileArray[id];
+    /**
+     * @param extension of the log files
+     * @return the log file with that extension modified last, in the gamelogs folder or the folders of the games in
+     * it, or null if there is none
+     */
+    private static File lastModified(String extension) {
+        File[] files = new File(JSON_GAMELOGS_PATH).listFiles();
+        if (files == null)
+            return null;
+        File last = null;
+        for (File file : files) {
+            File[] logs = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(extension)) :
+                    file.getName().endsWith(extension) ? new File[]{file} : null;
+            if (logs == null) continue;
+            for (File log : logs) {
+                if (last == null || log.lastModified() > last.lastModified())
+                    last = log;
+            }
         }
-        return deserializeJSON(log.getAbsolutePath());
+        return last;
     }
 
     private static GameLog deserializeJSON(String absolutePath) {
@@ -196,6 +231,23 @@ public class GameLog implements Serializable {
         return null;
     }
 
+    /**
+     * Reads a binary log (see BinaryGameLog). Games loaded from it are replayed with the default rules.
+     * @param path of the log file
+     * @return the GameLog object with the actions logged to that file, or null if it can't be read or the game was
+     * logged with other rules
+     */
+    public static GameLog deserializeBinary(String path){
+        try {
+            GameLog gameLog = BinaryGameLog.read(new File(path)).toGameLog();
+            System.out.println("Deserialized log at "+path);
+            return gameLog;
+        } catch (IOException | IllegalArgumentException i) {
+            i.printStackTrace();
+        }
+        return null;
+    }
+
     public long getSeed() {
         return seed;
     }
@@ -213,7 +265,7 @@ public class GameLog implements Serializable {
     }
 
     public GameLog copy() {
-        GameLog copy = new GameLog(seed, size, gameMode);
+        GameLog copy = new GameLog(seed, size, gameMode, settings);
         List<Types.ACTIONS[]> actionsArrayList = new ArrayList<>();
         for (Types.ACTIONS[] actions : this.actionsArrayList) {
             Types.ACTIONS[] copyArr = Arrays.copyOf(actions, actions.length);
@@ -225,7 +277,7 @@ public class GameLog implements Serializable {
 
     @Override
     public boolean equals(Object o){
-        if (o.getClass() != getClass())
+        if (o == null || o.getClass() != getClass())
             return false;
 
         GameLog gl = (GameLog) o;
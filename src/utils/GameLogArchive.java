@@ -0,0 +1,260 @@
+package utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * Archive of binary game logs (see BinaryGameLog), to find the log of any game without listing and sorting folders of
+ * log files. Logs are appended to segment files, segment-00000.pglogs, segment-00001.pglogs, ..., a new one started
+ * when the current one would get larger than SEGMENT_BYTES. An index file keeps where each log is, one line per log:
+ *
+ *   game id  seed  repetition  segment  offset  length
+ *
+ * separated by tabs. The index is read into memory when the archive is opened, so a log is found in constant time,
+ * and its bytes are read from the segment mapped in memory, without copying them.
+ *
+ * A log is written to its segment before its index line, and both are on disk before add() returns. A log or index
+ * line cut short by the process stopping is dropped when the archive is opened. Adding the log of a game already in
+ * the archive replaces it.
+ *
+ * An archive is written by one process at a time: it holds a lock on its index while it is open, and opening an
+ * archive that is open elsewhere fails at once instead of mixing the logs of both.
+ */
+public class GameLogArchive implements Closeable {
+
+    public static final String INDEX = "index.tsv";
+    public static final String SEGMENT_EXTENSION = ".pglogs";
+    public static final String DEFAULT_PATH = "res/gamelogs/archive";
+
+    // Size after which a new segment is started.
+    public static long SEGMENT_BYTES = 64L << 20;
+
+    private static GameLogArchive defaultArchive;
+
+    /**
+     * Where the log of a game is.
+     */
+    private static class Entry {
+        final int segment;
+        final long offset;
+        final int length;
+
+        Entry(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File dir;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private Entry last;
+    private final FileOutputStream indexOut;
+
+    // Segment logs are appended to.
+    private int segment;
+    private FileChannel segmentOut;
+    private long segmentLength;
+
+    // Segments mapped in memory, by number. Remapped when they grew past their mapping.
+    private final HashMap<Integer, MappedByteBuffer> mapped = new HashMap<>();
+
+    /**
+     * Opens an archive, reading its index.
+     * @param dir - folder of the archive, created if it doesn't exist.
+     * @throws IOException if the index can't be read, the archive can't be written or it is open elsewhere.
+     */
+    public GameLogArchive(File dir) throws IOException {
+        this.dir = dir;
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        File index = new File(dir, INDEX);
+        indexOut = new FileOutputStream(index, true);
+        try {
+            FileLock lock;
+            try {
+                lock = indexOut.getChannel().tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;  // Open in this process
+            }
+            if (lock == null) {
+                throw new IOException("Archive " + dir + " is open elsewhere");
+            }
+            // End of the last log indexed in the last segment.
+            long segmentEnd = readIndex(index);
+
+            segmentOut = FileChannel.open(segmentFile(segment).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            // Bytes after the last log indexed are from a log whose index line wasn't written.
+            segmentOut.truncate(segmentEnd);
+            segmentLength = segmentEnd;
+        } catch (IOException | RuntimeException e) {
+            // Closing the index releases its lock.
+            indexOut.close();
+            throw e;
+        }
+    }
+
+    private long readIndex(File index) throws IOException {
+        byte[] bytes = Files.readAllBytes(index.toPath());
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') end--;
+        if (end < bytes.length) {
+            // Last line not finished: the log it indexes is dropped.
+            indexOut.getChannel().truncate(end);
+        }
+
+        long segmentEnd = 0;
+        for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) continue;
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 6) {
+                throw new IOException("Bad index line in " + index + ": " + line);
+            }
+            Entry e = new Entry(Integer.parseInt(fields[3]), Long.parseLong(fields[4]), Integer.parseInt(fields[5]));
+            entries.put(key(fields[0], Long.parseLong(fields[1]), Integer.parseInt(fields[2])), e);
+            last = e;
+            if (e.segment > segment) {
+                segment = e.segment;
+                segmentEnd = 0;
+            }
+            if (e.segment == segment) {
+                segmentEnd = Math.max(segmentEnd, e.offset + e.length);
+            }
+        }
+        return segmentEnd;
+    }
+
+    private static String key(String gameIdStr, long seed, int rep) {
+        return gameIdStr + "\t" + seed + "\t" + rep;
+    }
+
+    private File segmentFile(int segment) {
+        return new File(dir, String.format("segment-%05d", segment) + SEGMENT_EXTENSION);
+    }
+
+    /**
+     * @return the archive in DEFAULT_PATH, opened when first needed and shared by the games of the process.
+     * @throws IOException if it can't be opened.
+     */
+    public static synchronized GameLogArchive getDefault() throws IOException {
+        if (defaultArchive == null) {
+            defaultArchive = new GameLogArchive(new File(DEFAULT_PATH));
+        }
+        return defaultArchive;
+    }
+
+    /**
+     * @return true if there is an archive in DEFAULT_PATH, without creating it.
+     */
+    public static boolean defaultExists() {
+        return new File(DEFAULT_PATH, INDEX).exists();
+    }
+
+    /**
+     * Appends the log of a game, and waits for it to be on disk.
+     * @param gameIdStr - identifier of the game, e.g. its game id.
+     * @param seed - seed of the game.
+     * @param rep - repetition of the game with its seed.
+     * @param log - binary log of the game.
+     * @throws IllegalArgumentException if log is not a binary game log.
+     */
+    public synchronized void add(String gameIdStr, long seed, int rep, byte[] log) throws IOException {
+        if (gameIdStr.contains("\t") || gameIdStr.contains("\n")) {
+            throw new IllegalArgumentException("Game ids can't contain tabs or line breaks: " + gameIdStr);
+        }
+        new BinaryGameLog.Reader(ByteBuffer.wrap(log));
+
+        if (segmentLength > 0 && segmentLength + log.length > SEGMENT_BYTES) {
+            segmentOut.close();
+            segment++;
+            segmentOut = FileChannel.open(segmentFile(segment).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            segmentLength = 0;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(log);
+        while (bytes.hasRemaining()) segmentOut.write(bytes, segmentLength + bytes.position());
+        segmentOut.force(false);
+
+        Entry e = new Entry(segment, segmentLength, log.length);
+        String line = key(gameIdStr, seed, rep) + "\t" + e.segment + "\t" + e.offset + "\t" + e.length + "\n";
+        indexOut.write(line.getBytes(StandardCharsets.UTF_8));
+        indexOut.flush();
+        indexOut.getFD().sync();
+
+        segmentLength += log.length;
+        entries.put(key(gameIdStr, seed, rep), e);
+        last = e;
+    }
+
+    /**
+     * Appends the log in a file (see add(String, long, int, byte[])).
+     */
+    public void add(String gameIdStr, long seed, int rep, File log) throws IOException {
+        add(gameIdStr, seed, rep, Files.readAllBytes(log.toPath()));
+    }
+
+    /**
+     * @return reader of the log of a game, or null if it is not in the archive.
+     */
+    public synchronized BinaryGameLog.Reader get(String gameIdStr, long seed, int rep) throws IOException {
+        Entry e = entries.get(key(gameIdStr, seed, rep));
+        return e == null ? null : read(e);
+    }
+
+    /**
+     * @return reader of the log added last, or null if the archive is empty.
+     */
+    public synchronized BinaryGameLog.Reader last() throws IOException {
+        return last == null ? null : read(last);
+    }
+
+    private BinaryGameLog.Reader read(Entry e) throws IOException {
+        MappedByteBuffer buffer = mapped.get(e.segment);
+        if (buffer == null || buffer.capacity() < e.offset + e.length) {
+            try (FileChannel channel = FileChannel.open(segmentFile(e.segment).toPath(), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            mapped.put(e.segment, buffer);
+        }
+        ByteBuffer log = buffer.duplicate();
+        log.position((int) e.offset).limit((int) (e.offset + e.length));
+        return new BinaryGameLog.Reader(log);
+    }
+
+    /**
+     * @return true if the log of the game is in the archive.
+     */
+    public synchronized boolean contains(String gameIdStr, long seed, int rep) {
+        return entries.containsKey(key(gameIdStr, seed, rep));
+    }
+
+    /**
+     * @return number of games in the archive.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Closes the archive, releasing it to other processes.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        indexOut.close();
+        segmentOut.close();
+        mapped.clear();
+        if (defaultArchive == this) {
+            defaultArchive = null;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameLogArchiveTest {
+
+    /**
+     * @return binary log of a game with random actions, the action of player 0 at tick 0 set to the given one.
+     */
+    private static byte[] log(File dir, long seed, int ticks, Types.ACTIONS first) throws IOException {
+        File file = new File(dir, seed + BinaryGameLog.EXTENSION);
+        Random rnd = new Random(seed);
+        Types.ACTIONS[] values = Types.ACTIONS.values();
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        try (BinaryGameLog log = new BinaryGameLog(file, seed, 11, Types.GAME_MODE.FFA, GameSettings.defaults())) {
+            for (int t = 0; t < ticks; t++) {
+                for (int p = 0; p < Types.NUM_PLAYERS; p++) actions[p] = values[rnd.nextInt(values.length)];
+                if (t == 0) actions[0] = first;
+                log.add(actions);
+            }
+        }
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private static File tempDir() throws IOException {
+        File dir = Files.createTempDirectory("archive").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /**
+     * Games are found by id, seed and repetition, across segments and after the archive is opened again.
+     */
+    @Test
+    void gamesFoundAfterReopening() throws IOException {
+        long segmentBytes = GameLogArchive.SEGMENT_BYTES;
+        GameLogArchive.SEGMENT_BYTES = 1000;
+        try {
+            File dir = tempDir(), logs = tempDir();
+            byte[][] games = new byte[10][];
+            try (GameLogArchive archive = new GameLogArchive(dir)) {
+                for (int g = 0; g < games.length; g++) {
+                    games[g] = log(logs, g, 100 + 50 * g, Types.ACTIONS.ACTION_UP);
+                    archive.add(g % 2 == 0 ? "even" : "odd", g, g / 2, games[g]);
+                }
+                assertEquals(games.length, archive.size());
+            }
+            assertTrue(new File(dir, "segment-00003" + GameLogArchive.SEGMENT_EXTENSION).exists());
+
+            try (GameLogArchive archive = new GameLogArchive(dir)) {
+                assertEquals(games.length, archive.size());
+                Types.ACTIONS[] out = new Types.ACTIONS[Types.NUM_PLAYERS];
+                for (int g = 0; g < games.length; g++) {
+                    BinaryGameLog.Reader expected = new BinaryGameLog.Reader(ByteBuffer.wrap(games[g]));
+                    BinaryGameLog.Reader reader = archive.get(g % 2 == 0 ? "even" : "odd", g, g / 2);
+                    assertEquals(g, reader.getSeed());
+                    assertEquals(expected.getTicks(), reader.getTicks());
+                    for (int t = 0; t < reader.getTicks(); t++) {
+                        assertArrayEquals(expected.getActions(t, new Types.ACTIONS[Types.NUM_PLAYERS]),
+                                reader.getActions(t, out));
+                    }
+                }
+                assertNull(archive.get("odd", 0, 0));
+                assertEquals(games.length - 1, archive.last().getSeed());
+
+                // Adding a game again replaces it.
+                archive.add("even", 0, 0, log(logs, 0, 10, Types.ACTIONS.ACTION_BOMB));
+                assertEquals(10, archive.get("even", 0, 0).getTicks());
+                assertEquals(games.length, archive.size());
+            }
+        } finally {
+            GameLogArchive.SEGMENT_BYTES = segmentBytes;
+        }
+    }
+
+    /**
+     * A game whose index line was cut short is dropped, and the next game takes its place in the segment.
+     */
+    @Test
+    void unfinishedGameDropped() throws IOException {
+        File dir = tempDir(), logs = tempDir();
+        try (GameLogArchive archive = new GameLogArchive(dir)) {
+            archive.add("game", 1, 0, log(logs, 1, 200, Types.ACTIONS.ACTION_UP));
+            archive.add("game", 2, 0, log(logs, 2, 200, Types.ACTIONS.ACTION_UP));
+        }
+        File index = new File(dir, GameLogArchive.INDEX);
+        try (RandomAccessFile raf = new RandomAccessFile(index, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        try (GameLogArchive archive = new GameLogArchive(dir)) {
+            assertEquals(1, archive.size());
+            assertNull(archive.get("game", 2, 0));
+            archive.add("game", 3, 0, log(logs, 3, 300, Types.ACTIONS.ACTION_LEFT));
+        }
+        try (GameLogArchive archive = new GameLogArchive(dir)) {
+            assertEquals(2, archive.size());
+            assertEquals(200, archive.get("game", 1, 0).getTicks());
+            BinaryGameLog.Reader reader = archive.get("game", 3, 0);
+            assertEquals(300, reader.getTicks());
+            assertEquals(Types.ACTIONS.ACTION_LEFT, reader.getActions(0, new Types.ACTIONS[Types.NUM_PLAYERS])[0]);
+        }
+    }
+
+    /**
+     * An archive can't be opened while it is open elsewhere, and can once it is closed.
+     */
+    @Test
+    void openArchiveLocked() throws IOException {
+        File dir = tempDir(), logs = tempDir();
+        try (GameLogArchive archive = new GameLogArchive(dir)) {
+            archive.add("game", 1, 0, log(logs, 1, 100, Types.ACTIONS.ACTION_UP));
+            assertThrows(IOException.class, () -> new GameLogArchive(dir));
+        }
+        try (GameLogArchive archive = new GameLogArchive(dir)) {
+            assertEquals(1, archive.size());
+        }
+    }
+}
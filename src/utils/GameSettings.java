@@ -0,0 +1,236 @@
+package utils;
+
+import core.gameConfig.IGameConfig;
+import core.gameConfig.OriginalGameConfig;
+
+/**
+ * Rules and board generation settings of one game. Settings are immutable: the with* methods return a modified
+ * copy, so a game, its copies and the forward models rolling them keep the settings they were created with, and
+ * games with different settings can be played at the same time.
+ *
+ * The static fields of Types are the defaults, read when defaults() is called.
+ */
+public final class GameSettings {
+
+    private int maxGameTicks;
+    private int bombLife;
+    private int flameLife;
+    private int defaultBombBlast;
+    private int defaultBombAmmo;
+    private boolean defaultBombKick;
+    private int visionRange;
+
+    private boolean collapseBoard;
+    private int collapseStart;
+    private int collapseStages;
+    private int collapseStep;
+
+    private int boardNumRigid;
+    private int boardNumWood;
+    private int boardNumItems;
+    private int maxInaccessibleTiles;
+    private int cornerDistance;
+    private int breathingSpace;
+
+    // Game configuration, which determines victory conditions. Built from maxGameTicks unless one is given.
+    private IGameConfig gameConfig;
+    private boolean customGameConfig;
+
+    private GameSettings() {}
+
+    /**
+     * @return settings with the current values of the static fields of Types.
+     */
+    public static GameSettings defaults() {
+        GameSettings s = new GameSettings();
+        s.maxGameTicks = Types.MAX_GAME_TICKS;
+        s.bombLife = Types.BOMB_LIFE;
+        s.flameLife = Types.FLAME_LIFE;
+        s.defaultBombBlast = Types.DEFAULT_BOMB_BLAST;
+        s.defaultBombAmmo = Types.DEFAULT_BOMB_AMMO;
+        s.defaultBombKick = Types.DEFAULT_BOMB_KICK;
+        s.visionRange = Types.DEFAULT_VISION_RANGE;
+        s.collapseBoard = Types.COLLAPSE_BOARD;
+        s.collapseStart = Types.COLLAPSE_START;
+        s.collapseStages = Types.COLLAPSE_STAGES;
+        s.collapseStep = Types.COLLAPSE_STEP;
+        s.boardNumRigid = Types.BOARD_NUM_RIGID;
+        s.boardNumWood = Types.BOARD_NUM_WOOD;
+        s.boardNumItems = Types.BOARD_NUM_ITEMS;
+        s.maxInaccessibleTiles = Types.MAX_INACCESIBLE_TILES;
+        s.cornerDistance = Types.CORNER_DISTANCE;
+        s.breathingSpace = Types.BREATHING_SPACE;
+        if (Types.getGameConfig().getClass() == OriginalGameConfig.class) {
+            s.gameConfig = new OriginalGameConfig(s.maxGameTicks);
+        } else {
+            s.gameConfig = Types.getGameConfig();
+            s.customGameConfig = true;
+        }
+        return s;
+    }
+
+    private GameSettings copy() {
+        GameSettings s = new GameSettings();
+        s.maxGameTicks = maxGameTicks;
+        s.bombLife = bombLife;
+        s.flameLife = flameLife;
+        s.defaultBombBlast = defaultBombBlast;
+        s.defaultBombAmmo = defaultBombAmmo;
+        s.defaultBombKick = defaultBombKick;
+        s.visionRange = visionRange;
+        s.collapseBoard = collapseBoard;
+        s.collapseStart = collapseStart;
+        s.collapseStages = collapseStages;
+        s.collapseStep = collapseStep;
+        s.boardNumRigid = boardNumRigid;
+        s.boardNumWood = boardNumWood;
+        s.boardNumItems = boardNumItems;
+        s.maxInaccessibleTiles = maxInaccessibleTiles;
+        s.cornerDistance = cornerDistance;
+        s.breathingSpace = breathingSpace;
+        s.gameConfig = gameConfig;
+        s.customGameConfig = customGameConfig;
+        return s;
+    }
+
+    /**
+     * Recomputes the settings derived from the duration of the game.
+     */
+    private GameSettings timingChanged() {
+        collapseStep = (maxGameTicks - collapseStart) / collapseStages;
+        if (!customGameConfig)
+            gameConfig = new OriginalGameConfig(maxGameTicks);
+        return this;
+    }
+
+    public GameSettings withMaxGameTicks(int maxGameTicks) {
+        GameSettings s = copy();
+        s.maxGameTicks = maxGameTicks;
+        return s.timingChanged();
+    }
+
+    public GameSettings withBombLife(int bombLife) {
+        GameSettings s = copy();
+        s.bombLife = bombLife;
+        return s;
+    }
+
+    public GameSettings withFlameLife(int flameLife) {
+        GameSettings s = copy();
+        s.flameLife = flameLife;
+        return s;
+    }
+
+    public GameSettings withDefaultBombBlast(int defaultBombBlast) {
+        GameSettings s = copy();
+        s.defaultBombBlast = defaultBombBlast;
+        return s;
+    }
+
+    public GameSettings withDefaultBombAmmo(int defaultBombAmmo) {
+        GameSettings s = copy();
+        s.defaultBombAmmo = defaultBombAmmo;
+        return s;
+    }
+
+    public GameSettings withDefaultBombKick(boolean defaultBombKick) {
+        GameSettings s = copy();
+        s.defaultBombKick = defaultBombKick;
+        return s;
+    }
+
+    /**
+     * @param visionRange - vision range of the avatars, -1 for full observability.
+     */
+    public GameSettings withVisionRange(int visionRange) {
+        GameSettings s = copy();
+        s.visionRange = visionRange;
+        return s;
+    }
+
+    /**
+     * @param collapseBoard - true if the board collapses at the end of the game.
+     * @param collapseStart - tick the first ring of the board collapses at.
+     * @param collapseStages - number of rings that collapse before the end of the game.
+     */
+    public GameSettings withCollapse(boolean collapseBoard, int collapseStart, int collapseStages) {
+        GameSettings s = copy();
+        s.collapseBoard = collapseBoard;
+        s.collapseStart = collapseStart;
+        s.collapseStages = collapseStages;
+        return s.timingChanged();
+    }
+
+    /**
+     * @param boardNumRigid - number of rigid blocks to put in the level.
+     * @param boardNumWood - number of wooden (destroyable) blocks to put in the level.
+     * @param boardNumItems - number of items to put in the level.
+     */
+    public GameSettings withBoardContents(int boardNumRigid, int boardNumWood, int boardNumItems) {
+        GameSettings s = copy();
+        s.boardNumRigid = boardNumRigid;
+        s.boardNumWood = boardNumWood;
+        s.boardNumItems = boardNumItems;
+        return s;
+    }
+
+    /**
+     * @param maxInaccessibleTiles - number of inaccessible parts of the level allowed.
+     * @param cornerDistance - distance to the corner, in tiles, of the starting agent positions.
+     * @param breathingSpace - size of the L shaped section left free around each agent at the start.
+     */
+    public GameSettings withBoardLayout(int maxInaccessibleTiles, int cornerDistance, int breathingSpace) {
+        GameSettings s = copy();
+        s.maxInaccessibleTiles = maxInaccessibleTiles;
+        s.cornerDistance = cornerDistance;
+        s.breathingSpace = breathingSpace;
+        return s;
+    }
+
+    /**
+     * @param gameConfig - game configuration, which determines victory conditions. It is used as given, its
+     *                   notion of the duration of the game must match getMaxGameTicks().
+     */
+    public GameSettings withGameConfig(IGameConfig gameConfig) {
+        GameSettings s = copy();
+        s.gameConfig = gameConfig;
+        s.customGameConfig = true;
+        return s;
+    }
+
+    public int getMaxGameTicks() { return maxGameTicks; }
+    public int getBombLife() { return bombLife; }
+    public int getFlameLife() { return flameLife; }
+    public int getDefaultBombBlast() { return defaultBombBlast; }
+    public int getDefaultBombAmmo() { return defaultBombAmmo; }
+    public boolean getDefaultBombKick() { return defaultBombKick; }
+    public int getVisionRange() { return visionRange; }
+    public boolean isCollapseBoard() { return collapseBoard; }
+    public int getCollapseStart() { return collapseStart; }
+    public int getCollapseStages() { return collapseStages; }
+    public int getCollapseStep() { return collapseStep; }
+    public int getBoardNumRigid() { return boardNumRigid; }
+    public int getBoardNumWood() { return boardNumWood; }
+    public int getBoardNumItems() { return boardNumItems; }
+    public int getMaxInaccessibleTiles() { return maxInaccessibleTiles; }
+    public int getCornerDistance() { return cornerDistance; }
+    public int getBreathingSpace() { return breathingSpace; }
+    public IGameConfig getGameConfig() { return gameConfig; }
+
+    /**
+     * Hash of the settings, the same in every run for settings with the same values and game configuration class.
+     * Kept in game logs (see BinaryGameLog), so they are not replayed with other rules.
+     * @return 64-bit hash of the settings.
+     */
+    public long configHash() {
+        long[] values = {maxGameTicks, bombLife, flameLife, defaultBombBlast, defaultBombAmmo, defaultBombKick ? 1 : 0,
+                visionRange, collapseBoard ? 1 : 0, collapseStart, collapseStages, collapseStep, boardNumRigid,
+                boardNumWood, boardNumItems, maxInaccessibleTiles, cornerDistance, breathingSpace,
+                gameConfig.getClass().getName().hashCode()};
+        long hash = 0xcbf29ce484222325L;  // FNV-1a over the values
+        for (long v : values) {
+            hash = (hash ^ v) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,70 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Keeps all latencies added to it, in nanoseconds, to report their percentiles. Unlike StatSummary, values are
+ * stored (8 bytes each), as percentiles can't be computed from running totals.
+ */
+public class LatencySummary {
+
+    private long[] values = new long[64];
+    private int n;
+
+    // Values in increasing order, computed when a percentile is asked for after a value was added.
+    private long[] sorted;
+
+    public void add(long nanos) {
+        if (n == values.length) {
+            values = Arrays.copyOf(values, n * 2);
+        }
+        values[n++] = nanos;
+        sorted = null;
+    }
+
+    /**
+     * Adds all latencies of another summary to this one.
+     */
+    public void add(LatencySummary other) {
+        if (n + other.n > values.length) {
+            values = Arrays.copyOf(values, Math.max(n + other.n, values.length * 2));
+        }
+        System.arraycopy(other.values, 0, values, n, other.n);
+        n += other.n;
+        sorted = null;
+    }
+
+    public void reset() {
+        n = 0;
+        sorted = null;
+    }
+
+    public int n() {
+        return n;
+    }
+
+    /**
+     * @param p - percentile, between 0 and 100.
+     * @return smallest latency that is greater or equal than p percent of the latencies (nearest rank), in
+     * nanoseconds, or 0 if there are none.
+     */
+    public long percentile(double p) {
+        if (n == 0) return 0;
+        if (sorted == null) {
+            sorted = Arrays.copyOf(values, n);
+            Arrays.sort(sorted);
+        }
+        int rank = (int) Math.ceil(p / 100.0 * n);
+        return sorted[Math.max(0, Math.min(n - 1, rank - 1))];
+    }
+
+    public long max() {
+        return percentile(100);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n = %d, p50 = %.2fms, p90 = %.2fms, p99 = %.2fms, max = %.2fms", n,
+                percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6, max() / 1e6);
+    }
+}
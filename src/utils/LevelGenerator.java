@@ -5,7 +5,6 @@ import objects.GameObject;
 
 import java.util.*;
 
-import static utils.Types.BREATHING_SPACE;
 import static utils.Types.VERBOSE;
 
 public class LevelGenerator {
@@ -22,8 +21,27 @@ public class LevelGenerator {
      * @return board created by this algorithm
      */
     public static int[][] makeBoard(long seed, int size, int numRigid, int numWood, GameObject[] agents){
+        return makeBoard(seed, size, numRigid, numWood, Types.MAX_INACCESIBLE_TILES, Types.CORNER_DISTANCE,
+                Types.BREATHING_SPACE, agents);
+    }
+
+    /**
+     * Generates a board following the given settings (see makeBoard() above).
+     * @param seed seed for the random generator
+     * @param size size of the board (size x size)
+     * @param settings settings of the game, which give the contents and layout of the board.
+     * @param agents Agents to put in the game.
+     * @return board created by this algorithm
+     */
+    public static int[][] makeBoard(long seed, int size, GameSettings settings, GameObject[] agents){
+        return makeBoard(seed, size, settings.getBoardNumRigid(), settings.getBoardNumWood(),
+                settings.getMaxInaccessibleTiles(), settings.getCornerDistance(), settings.getBreathingSpace(), agents);
+    }
+
+    private static int[][] makeBoard(long seed, int size, int numRigid, int numWood, int maxInaccessibleTiles,
+                                     int cornerDistance, int breathingSpace, GameObject[] agents){
         //Build the board
-        int[][] board = make(seed, size, numRigid, numWood, agents);
+        int[][] board = make(seed, size, numRigid, numWood, cornerDistance, breathingSpace, agents);
 
         //Make a record of all agent positions
         ArrayList<Vector2d> agent_positions = new ArrayList<>();
@@ -33,11 +51,11 @@ public class LevelGenerator {
 
         //Find out how many inaccessible passages exist in the board. If above certain threshold, repeat
         int inaccessPassages = inaccesibleTiles(board, agent_positions).size();
-        while (inaccessPassages > Types.MAX_INACCESIBLE_TILES){
+        while (inaccessPassages > maxInaccessibleTiles){
             if (VERBOSE) {
                 System.out.println("Size of inaccessible passages: " + inaccessPassages);
             }
-            board = make(seed, size, numRigid, numWood, agents);
+            board = make(seed, size, numRigid, numWood, cornerDistance, breathingSpace, agents);
             inaccessPassages = inaccesibleTiles(board, agent_positions).size();
         }
 
@@ -57,7 +75,9 @@ public class LevelGenerator {
         int[][] items = new int[board.length][board[0].length];     //Items will be here.
 
         //All items to place.
+        // Sorted, as the order of the set changes between runs and the same seed must give the same items.
         Types.TILETYPE[] powerUpTypes = Types.TILETYPE.getPowerUpTypes().toArray(new Types.TILETYPE[0]);
+        Arrays.sort(powerUpTypes);
 
         //Count how many wood boxes we have to put items in
         int numberOfWood = 0;
@@ -97,7 +117,8 @@ public class LevelGenerator {
      * @param agents Agents to put in the game.
      * @return a int[][] with the walls and player locations in the board.
      */
-    private static int[][] make(long seed, int size, int numRigid, int numWood, GameObject[] agents){
+    private static int[][] make(long seed, int size, int numRigid, int numWood, int cornerDistance,
+                                int breathingSpace, GameObject[] agents){
 
         //Some strict checks
         assert numRigid%2 == 0: "number of rigid walls should be even";
@@ -123,19 +144,19 @@ public class LevelGenerator {
             }
         }
 
-        // Locate all the players in the board. they must respect a Types.CORNER_DISTANCE to
+        // Locate all the players in the board. they must respect a cornerDistance to
         // their respective corners.
-        board[Types.CORNER_DISTANCE][Types.CORNER_DISTANCE] = Types.TILETYPE.AGENT0.getKey();
-        board[size-Types.CORNER_DISTANCE -1][Types.CORNER_DISTANCE] = Types.TILETYPE.AGENT1.getKey();
-        board[size-Types.CORNER_DISTANCE -1][size-Types.CORNER_DISTANCE -1] = Types.TILETYPE.AGENT2.getKey();
-        board[Types.CORNER_DISTANCE][size-Types.CORNER_DISTANCE -1] = Types.TILETYPE.AGENT3.getKey();
+        board[cornerDistance][cornerDistance] = Types.TILETYPE.AGENT0.getKey();
+        board[size-cornerDistance -1][cornerDistance] = Types.TILETYPE.AGENT1.getKey();
+        board[size-cornerDistance -1][size-cornerDistance -1] = Types.TILETYPE.AGENT2.getKey();
+        board[cornerDistance][size-cornerDistance -1] = Types.TILETYPE.AGENT3.getKey();
 
         // Keep a list of the agent positions
         ArrayList<Vector2d> agent_positions = new ArrayList<>();
-        agent_positions.add(new Vector2d(Types.CORNER_DISTANCE, Types.CORNER_DISTANCE));
-        agent_positions.add(new Vector2d(size-Types.CORNER_DISTANCE -1, Types.CORNER_DISTANCE));
-        agent_positions.add(new Vector2d(size-Types.CORNER_DISTANCE -1, size-Types.CORNER_DISTANCE -1));
-        agent_positions.add(new Vector2d(Types.CORNER_DISTANCE, size-Types.CORNER_DISTANCE -1));
+        agent_positions.add(new Vector2d(cornerDistance, cornerDistance));
+        agent_positions.add(new Vector2d(size-cornerDistance -1, cornerDistance));
+        agent_positions.add(new Vector2d(size-cornerDistance -1, size-cornerDistance -1));
+        agent_positions.add(new Vector2d(cornerDistance, size-cornerDistance -1));
 
         // and mark those as not available places to put more stuff
         for (Vector2d agent_position : agent_positions) available_coordinates.remove(agent_position);
@@ -149,8 +170,8 @@ public class LevelGenerator {
         }
 
         //Some positions around the agent must be free, so those are not valid coordinates either.
-        int loc = Types.CORNER_DISTANCE;
-        for (int i = 1; i <= BREATHING_SPACE; i++){
+        int loc = cornerDistance;
+        for (int i = 1; i <= breathingSpace; i++){
             //top left
             int avX = loc, avY = loc; // location of the avatar in this corner
             available_coordinates.remove(new Vector2d(avX, avY + i));
@@ -173,7 +194,7 @@ public class LevelGenerator {
         }
 
         //Create a wooden passage in the rows and columns between agents
-        int passage_start = loc+BREATHING_SPACE+1;
+        int passage_start = loc+breathingSpace+1;
         int WOOD = Types.TILETYPE.WOOD.getKey();
         int n = size - (passage_start*2);
         for (int i = 0; i < n; i++){
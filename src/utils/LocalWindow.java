@@ -0,0 +1,82 @@
+package utils;
+
+/**
+ * Features of what a player sees around itself: the tiles of the square window of a given radius centred on its
+ * position, and its position on the board. Used to write training samples (see core.Game) and by the opponent model
+ * of MCTS rollouts (see players.mcts.SingleTreeNode), so a model trained on the samples sees the same features.
+ *
+ * A window of radius r has (2r+1) x (2r+1) cells, written row by row (y, then x) as the keys of their tiles
+ * (see Types.TILETYPE). Cells outside the board are written as RIGID, as they can't be walked into either.
+ *
+ * Features are written to a buffer given by the caller, so nothing is allocated. To get windows of several radii,
+ * only the largest one needs to be written: the window of a smaller radius is the centre of it, a view starting at
+ * viewOffset() with rows stride() cells apart.
+ */
+public class LocalWindow {
+
+    // Value of the cells outside the board.
+    public static final float PADDING = Types.TILETYPE.RIGID.getKey();
+
+    // Radius of the windows of the MCTS opponent model. Weights for it are trained on the samples of this radius.
+    public static final int OPPONENT_MODEL_RADIUS = 1;
+
+    /**
+     * @param radius - radius of the window.
+     * @return number of cells of a window of that radius.
+     */
+    public static int cells(int radius) {
+        int width = 2 * radius + 1;
+        return width * width;
+    }
+
+    /**
+     * Writes the window of the given radius around a position.
+     * @param board - board of the game, indexed [y][x].
+     * @param x - x coordinate of the centre of the window.
+     * @param y - y coordinate of the centre of the window.
+     * @param radius - radius of the window.
+     * @param out - buffer the cells are written to, from out[offset] to out[offset + cells(radius) - 1].
+     * @param offset - index of the first cell in the buffer.
+     */
+    public static void extract(Types.TILETYPE[][] board, int x, int y, int radius, float[] out, int offset) {
+        int height = board.length;
+        int idx = offset;
+        for (int wy = y - radius; wy <= y + radius; wy++) {
+            if (wy < 0 || wy >= height) {
+                for (int wx = x - radius; wx <= x + radius; wx++) out[idx++] = PADDING;
+                continue;
+            }
+            Types.TILETYPE[] row = board[wy];
+            for (int wx = x - radius; wx <= x + radius; wx++) {
+                out[idx++] = wx < 0 || wx >= row.length ? PADDING : row[wx].getKey();
+            }
+        }
+    }
+
+    /**
+     * @param maxRadius - radius of the window written.
+     * @return number of cells between the starts of two rows of the window, and of the views in it.
+     */
+    public static int stride(int maxRadius) {
+        return 2 * maxRadius + 1;
+    }
+
+    /**
+     * @param maxRadius - radius of the window written.
+     * @param radius - radius of the view, not larger than maxRadius.
+     * @return index of the first cell of the window of the given radius in the window of radius maxRadius.
+     */
+    public static int viewOffset(int maxRadius, int radius) {
+        return (maxRadius - radius) * (stride(maxRadius) + 1);
+    }
+
+    /**
+     * @param x - x coordinate of the player.
+     * @param y - y coordinate of the player.
+     * @param size - size of the board.
+     * @return position feature of a player, (x + y) / size^2.
+     */
+    public static float positionFraction(int x, int y, int size) {
+        return (x + y) / (float) (size * size);
+    }
+}
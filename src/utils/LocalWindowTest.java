@@ -0,0 +1,87 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalWindowTest {
+
+    /**
+     * Windows are centred on the position, row by row, with the cells outside the board padded.
+     */
+    @Test
+    void windowsArePaddedAtTheEdges() {
+        int size = 5;
+        Types.TILETYPE[][] board = new Types.TILETYPE[size][size];
+        Types.TILETYPE[] tiles = Types.TILETYPE.values();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                board[y][x] = tiles[(y * size + x) % tiles.length];
+            }
+        }
+
+        for (int radius = 0; radius <= 3; radius++) {
+            int width = 2 * radius + 1;
+            float[] out = new float[LocalWindow.cells(radius) + 2];
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    out[0] = -7;
+                    out[out.length - 1] = -7;
+                    LocalWindow.extract(board, x, y, radius, out, 1);
+                    assertEquals(-7, out[0]);
+                    assertEquals(-7, out[out.length - 1]);
+                    for (int dy = -radius; dy <= radius; dy++) {
+                        for (int dx = -radius; dx <= radius; dx++) {
+                            int wx = x + dx, wy = y + dy;
+                            float expected = wx < 0 || wy < 0 || wx >= size || wy >= size ?
+                                    LocalWindow.PADDING : board[wy][wx].getKey();
+                            assertEquals(expected, out[1 + (dy + radius) * width + dx + radius]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The windows of smaller radii are the views of the largest window.
+     */
+    @Test
+    void viewsMatchSmallerWindows() {
+        int size = 11;
+        Types.TILETYPE[][] board = new Types.TILETYPE[size][size];
+        Types.TILETYPE[] tiles = Types.TILETYPE.values();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                board[y][x] = tiles[(7 * y + 3 * x) % tiles.length];
+            }
+        }
+
+        int maxRadius = 8;
+        float[] window = new float[LocalWindow.cells(maxRadius)];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                LocalWindow.extract(board, x, y, maxRadius, window, 0);
+                for (int radius = 0; radius <= maxRadius; radius++) {
+                    int width = 2 * radius + 1;
+                    float[] expected = new float[LocalWindow.cells(radius)];
+                    LocalWindow.extract(board, x, y, radius, expected, 0);
+                    int offset = LocalWindow.viewOffset(maxRadius, radius);
+                    for (int row = 0; row < width; row++) {
+                        for (int col = 0; col < width; col++) {
+                            assertEquals(expected[row * width + col],
+                                    window[offset + row * LocalWindow.stride(maxRadius) + col]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void positionFraction() {
+        assertEquals(0, LocalWindow.positionFraction(0, 0, 11));
+        assertEquals(20 / 121f, LocalWindow.positionFraction(10, 10, 11));
+        assertEquals(7 / 121f, LocalWindow.positionFraction(3, 4, 11));
+    }
+}
@@ -0,0 +1,185 @@
+package utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams training samples (what a player sees around itself and the action it took) to a binary shard file as they
+ * are produced, so they are not kept in memory until the end of the game.
+ *
+ * The file starts with a header of 4 big-endian ints: MAGIC, VERSION, the number of floats of each record and the
+ * maximum number of cells of a window. Records follow, all with the same number of big-endian floats:
+ *
+ *   player id, action (ordinal of Types.ACTIONS), position fraction, window width, window height, window cells
+ *
+ * with the cells row by row, padded with zeros up to the maximum number of cells. From Python, the records are
+ * numpy.fromfile(path, dtype='>f4', offset=16).reshape(-1, recordFloats) (see py/samples.py).
+ *
+ * The offsets of the records of each player are kept, so the records of some players can be dropped once the game
+ * ends (see finish()).
+ */
+public class SampleSink implements Closeable {
+
+    public static final int MAGIC = 0x504d5353;  // "PMSS"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 4 * Integer.BYTES;
+    public static final int RECORD_FIELDS = 5;
+
+    private final FileChannel channel;
+    private final int maxCells;
+    private final int recordBytes;
+    private final ByteBuffer buffer;
+
+    // Index of each record written, by player index.
+    private int[][] offsets = new int[Types.NUM_PLAYERS][64];
+    private final int[] nOffsets = new int[Types.NUM_PLAYERS];
+    private int nRecords;
+
+    /**
+     * Creates the shard file, replacing it if it exists.
+     * @param file - file to write the samples to.
+     * @param maxCells - maximum number of cells of the windows added.
+     * @throws IOException if the file can't be written.
+     */
+    public SampleSink(File file, int maxCells) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+        this.maxCells = maxCells;
+        this.recordBytes = (RECORD_FIELDS + maxCells) * Float.BYTES;
+        this.buffer = ByteBuffer.allocate(Math.max(1 << 16, recordBytes));
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(RECORD_FIELDS + maxCells).putInt(maxCells);
+    }
+
+    /**
+     * Adds a sample.
+     * @param playerIdx - index of the player in the game, 0 to NUM_PLAYERS - 1.
+     * @param playerId - id of the player (see Types.TILETYPE).
+     * @param action - action the player took.
+     * @param positionFraction - position of the player on the board.
+     * @param cells - cells of the window, row by row, at least width * height of them.
+     * @param width - width of the window.
+     * @param height - height of the window.
+     */
+    public void add(int playerIdx, int playerId, Types.ACTIONS action, float positionFraction, float[] cells,
+                    int width, int height) throws IOException {
+        add(playerIdx, playerId, action, positionFraction, cells, 0, width, width, height);
+    }
+
+    /**
+     * Adds a sample, with a window that is a view of a larger one (see LocalWindow.viewOffset()).
+     * @param playerIdx - index of the player in the game, 0 to NUM_PLAYERS - 1.
+     * @param playerId - id of the player (see Types.TILETYPE).
+     * @param action - action the player took.
+     * @param positionFraction - position of the player on the board.
+     * @param cells - buffer holding the cells of the window.
+     * @param offset - index of the first cell of the window in the buffer.
+     * @param stride - number of cells between the starts of two rows of the window in the buffer.
+     * @param width - width of the window.
+     * @param height - height of the window.
+     */
+    public void add(int playerIdx, int playerId, Types.ACTIONS action, float positionFraction, float[] cells,
+                    int offset, int stride, int width, int height) throws IOException {
+        int nCells = width * height;
+        if (nCells > maxCells) {
+            throw new IllegalArgumentException("Window of " + nCells + " cells, more than " + maxCells);
+        }
+        if (buffer.remaining() < recordBytes) {
+            flush();
+        }
+        buffer.putFloat(playerId).putFloat(action.ordinal()).putFloat(positionFraction).putFloat(width)
+                .putFloat(height);
+        for (int row = 0; row < height; row++) {
+            int start = offset + row * stride;
+            for (int c = start; c < start + width; c++) buffer.putFloat(cells[c]);
+        }
+        for (int c = nCells; c < maxCells; c++) buffer.putFloat(0);
+
+        if (nOffsets[playerIdx] == offsets[playerIdx].length) {
+            offsets[playerIdx] = Arrays.copyOf(offsets[playerIdx], nOffsets[playerIdx] * 2);
+        }
+        offsets[playerIdx][nOffsets[playerIdx]++] = nRecords++;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * @return number of records added, including the ones of players dropped by finish().
+     */
+    public int size() {
+        return nRecords;
+    }
+
+    /**
+     * Drops the records of the players not kept, moving the following records over them, and closes the file.
+     * @param keep - if the records of each player index are kept.
+     */
+    public void finish(boolean[] keep) throws IOException {
+        flush();
+        boolean[] dropped = new boolean[nRecords];
+        int firstDropped = nRecords;
+        for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+            if (keep[p]) continue;
+            for (int i = 0; i < nOffsets[p]; i++) {
+                dropped[offsets[p][i]] = true;
+                firstDropped = Math.min(firstDropped, offsets[p][i]);
+            }
+        }
+
+        // Records before the first dropped one stay where they are.
+        ByteBuffer record = ByteBuffer.allocate(recordBytes);
+        long write = HEADER_BYTES + (long) firstDropped * recordBytes;
+        for (int r = firstDropped; r < nRecords; r++) {
+            if (dropped[r]) continue;
+            record.clear();
+            long read = HEADER_BYTES + (long) r * recordBytes;
+            while (record.hasRemaining()) channel.read(record, read + record.position());
+            record.flip();
+            while (record.hasRemaining()) channel.write(record, write + record.position());
+            write += recordBytes;
+        }
+        channel.truncate(write);
+        close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            flush();
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the records of a shard file.
+     * @return records of the file, indexed [record][field].
+     * @throws IOException if the file can't be read or is not a shard of this version.
+     */
+    public static float[][] read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a sample shard: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Sample shard version " + version + " not supported: " + file);
+            int recordFloats = in.readInt();
+            in.readInt();
+
+            long n = (file.length() - HEADER_BYTES) / ((long) recordFloats * Float.BYTES);
+            float[][] records = new float[(int) n][recordFloats];
+            for (float[] record : records) {
+                for (int f = 0; f < recordFloats; f++) record[f] = in.readFloat();
+            }
+            return records;
+        }
+    }
+}
@@ -11,6 +11,13 @@ import static utils.Types.FLAME_LIFE;
 @SuppressWarnings({"unused", "WeakerAccess"})
 public class Utils
 {
+    // Types which make a position illegal for moving objects, unless other collisions are specified.
+    private static final ArrayList<Types.TILETYPE> DEFAULT_COLLISIONS = new ArrayList<>();
+    static {
+        DEFAULT_COLLISIONS.add(Types.TILETYPE.RIGID);
+        DEFAULT_COLLISIONS.add(Types.TILETYPE.WOOD);
+    }
+
     // Takes an object from an array at random
     public static Object choice(Object[] elements, Random rnd)
     {
@@ -141,10 +148,7 @@ public class Utils
      * @return true if new position set successfully, false otherwise
      */
     public static boolean setDesiredCoordinate(GameObject gameObject, Vector2d pos, Types.TILETYPE[][] board) {
-        ArrayList<Types.TILETYPE> defaultCollisions = new ArrayList<>();
-        defaultCollisions.add(Types.TILETYPE.RIGID);
-        defaultCollisions.add(Types.TILETYPE.WOOD);
-        return setDesiredCoordinate(gameObject, pos, board, defaultCollisions);
+        return setDesiredCoordinate(gameObject, pos, board, DEFAULT_COLLISIONS);
     }
 
     /**
@@ -297,18 +301,43 @@ public class Utils
 
             // Check if the object is in range. If it is, add a copy of the object to the copy list.
             if (range == -1 || posG != null && refPosition != null && refPosition.custom_dist(posG) <= range) {
-                GameObject ob = g.copy();
-                if (ob.getType() == Types.TILETYPE.FLAMES) ob.setLife(FLAME_LIFE);
-                else if (ob.getType() == Types.TILETYPE.BOMB) {
-                    Bomb b = (Bomb)ob;
-                    b.setVelocity(new Vector2d());
-                    b.setPlayerIdx(-1);
-                }
-                copyList.add(ob);
+                copyList.add(_hiddenCopy(g, FLAME_LIFE));
+            }
+        }
+    }
+
+    /**
+     * Adds copies of game objects to a new list, given original list, where items are on visible tiles.
+     * @param originalList - original list of game objects to check.
+     * @param copyList - list which will contain the new objects.
+     * @param visibleRows - visible tiles, one word per row of the board with bit x set if tile x is visible.
+     *                    May be null, which means all objects should be included.
+     * @param flameLife - life flames are created with, given to all flames in the copies.
+     */
+    public static void _reduceHiddenList(ArrayList<GameObject> originalList, ArrayList<GameObject> copyList,
+                                         long[] visibleRows, int flameLife) {
+        for (GameObject g: originalList) {
+            Vector2d posG = g.getPosition();
+            if (visibleRows == null || posG != null && (visibleRows[posG.y] >>> posG.x & 1) != 0) {
+                copyList.add(_hiddenCopy(g, flameLife));
             }
         }
     }
 
+    /**
+     * Copies a game object for an observation, resetting the properties players don't know.
+     */
+    private static GameObject _hiddenCopy(GameObject g, int flameLife) {
+        GameObject ob = g.copy();
+        if (ob.getType() == Types.TILETYPE.FLAMES) ob.setLife(flameLife);
+        else if (ob.getType() == Types.TILETYPE.BOMB) {
+            Bomb b = (Bomb)ob;
+            b.setVelocity(new Vector2d());
+            b.setPlayerIdx(-1);
+        }
+        return ob;
+    }
+
     /**
      * Finds all agents which are still alive (win status INCOMPLETE), given list of all agents.
      * @param allAgents - list of all agents, including those that died already.
@@ -0,0 +1,93 @@
+package utils;
+
+/**
+ * Statistical tests on win rates, used to stop playing a matchup once its result is known (see
+ * core.SequentialTournament). Scores are 1 for a win, 0.5 for a tie and 0 for a loss, so a win rate is the mean score
+ * of a StatSummary.
+ */
+public class WinRateBounds {
+
+    /**
+     * Wilson score interval of a win rate.
+     * @param winRate - observed win rate.
+     * @param n - number of games.
+     * @param z - quantile of the normal distribution for the confidence wanted (see z()).
+     * @return lower and upper bounds of the interval, {0, 1} if there are no games.
+     */
+    public static double[] wilson(double winRate, int n, double z) {
+        if (n == 0) return new double[]{0, 1};
+        double z2 = z * z;
+        double centre = winRate + z2 / (2 * n);
+        double margin = z * Math.sqrt(winRate * (1 - winRate) / n + z2 / (4.0 * n * n));
+        double denominator = 1 + z2 / n;
+        return new double[]{Math.max(0, (centre - margin) / denominator), Math.min(1, (centre + margin) / denominator)};
+    }
+
+    /**
+     * @param confidence - probability that a two-sided interval contains the true value, e.g. 0.95.
+     * @return quantile of the normal distribution to use for intervals with that confidence, e.g. 1.96.
+     */
+    public static double z(double confidence) {
+        return normalQuantile(1 - (1 - confidence) / 2);
+    }
+
+    /**
+     * Log-likelihood ratio of one game for the SPRT test of win rate p1 (H1) against win rate p0 (H0). Ties count
+     * as half a win and half a loss.
+     * @param score - score of the game (1, 0.5 or 0).
+     */
+    public static double sprtStep(double score, double p0, double p1) {
+        return score * Math.log(p1 / p0) + (1 - score) * Math.log((1 - p1) / (1 - p0));
+    }
+
+    /**
+     * @param alpha - probability of accepting H1 when H0 holds.
+     * @param beta - probability of accepting H0 when H1 holds.
+     * @return log-likelihood ratio at or above which the SPRT test accepts H1.
+     */
+    public static double sprtUpper(double alpha, double beta) {
+        return Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * @param alpha - probability of accepting H1 when H0 holds.
+     * @param beta - probability of accepting H0 when H1 holds.
+     * @return log-likelihood ratio at or below which the SPRT test accepts H0.
+     */
+    public static double sprtLower(double alpha, double beta) {
+        return Math.log(beta / (1 - alpha));
+    }
+
+    /**
+     * Quantile function of the standard normal distribution (P. J. Acklam's rational approximation, relative
+     * error below 1.2e-9).
+     * @param p - probability, strictly between 0 and 1.
+     */
+    public static double normalQuantile(double p) {
+        if (p <= 0 || p >= 1) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1, not " + p);
+        }
+        double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        double pLow = 0.02425;
+
+        if (p < pLow) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5]) /
+                    ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - pLow) {
+            return -normalQuantile(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q /
+                (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}